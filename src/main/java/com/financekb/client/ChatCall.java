@@ -0,0 +1,68 @@
+package com.financekb.client;
+
+import okhttp3.Call;
+
+/**
+ * 可取消的模型调用
+ * <p>
+ * 失败重试时底层会换成新的HTTP调用，取消始终作用于当前正在进行的那一次。
+ */
+public class ChatCall {
+    
+    private Call current;
+    
+    private boolean canceled;
+    
+    private Runnable cancelCallback;
+    
+    /**
+     * 取消调用（已结束的调用取消无副作用，取消回调仍会执行）
+     */
+    public void cancel() {
+        Runnable callback;
+        synchronized (this) {
+            if (canceled) {
+                return;
+            }
+            canceled = true;
+            callback = cancelCallback;
+            cancelCallback = null;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+        if (callback != null) {
+            callback.run();
+        }
+    }
+    
+    /**
+     * 登记取消回调：首次取消时在取消方线程上执行一次，已取消时立即执行
+     */
+    public void onCancel(Runnable callback) {
+        synchronized (this) {
+            if (!canceled) {
+                cancelCallback = callback;
+                return;
+            }
+        }
+        callback.run();
+    }
+    
+    public synchronized boolean isCanceled() {
+        return canceled;
+    }
+    
+    /**
+     * 登记本次HTTP调用
+     *
+     * @return 已取消时返回false，调用方不再发起请求
+     */
+    synchronized boolean attach(Call call) {
+        if (canceled) {
+            return false;
+        }
+        current = call;
+        return true;
+    }
+}
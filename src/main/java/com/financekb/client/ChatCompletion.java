@@ -0,0 +1,21 @@
+package com.financekb.client;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 非流式对话结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatCompletion {
+    
+    private String content;
+    
+    /**
+     * 本次消耗的Token数，接口未返回时为null
+     */
+    private Integer tokenUsage;
+}
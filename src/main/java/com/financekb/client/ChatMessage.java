@@ -0,0 +1,22 @@
+package com.financekb.client;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 对话消息（OpenAI Chat Completions 格式）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessage {
+    
+    public static final String ROLE_SYSTEM = "system";
+    public static final String ROLE_USER = "user";
+    public static final String ROLE_ASSISTANT = "assistant";
+    
+    private String role;
+    
+    private String content;
+}
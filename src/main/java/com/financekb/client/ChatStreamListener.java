@@ -0,0 +1,25 @@
+package com.financekb.client;
+
+/**
+ * 流式对话回调（在HTTP客户端线程上依次调用，同一次对话的回调不会并发）
+ */
+public interface ChatStreamListener {
+    
+    /**
+     * 收到一段增量内容
+     */
+    void onToken(String token);
+    
+    /**
+     * 生成结束
+     *
+     * @param content    完整回复
+     * @param tokenUsage 本次消耗的Token数，接口未返回时为null
+     */
+    void onComplete(String content, Integer tokenUsage);
+    
+    /**
+     * 调用失败（主动取消时不回调）
+     */
+    void onError(Throwable error);
+}
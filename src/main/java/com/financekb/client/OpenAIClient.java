@@ -0,0 +1,557 @@
+package com.financekb.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.financekb.config.OpenAIConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * OpenAI兼容接口客户端（OkHttp）
+ * <p>
+ * 所有调用均为异步（OkHttp回调线程），不占用Tomcat工作线程等待模型生成。
+ * 流式对话使用 stream=true 的 SSE 响应，逐行解析 data 事件并立即回调，不等待完整结果。
+ * 客户端全局共享：连接池复用已建立的TLS连接，TLS协商到HTTP/2时多个请求复用同一连接；
+ * OkHttp默认每个主机最多5个并发请求，流式响应会长时间占用请求槽位，因此按配置放宽，避免后续对话在本地排队拖慢首个Token。
+ * <ul>
+ *     <li>合并：正在进行中的相同非流式请求（请求体完全一致）共用一次调用</li>
+ *     <li>批量：向量化请求在短时间窗口内攒批，以一次多输入请求发出，批内相同文本只请求一次</li>
+ *     <li>重试：连接失败和 408/409/429/5xx 按指数退避加随机抖动重试；服务端给出
+ *     Retry-After、retry-after-ms 或已耗尽限额的 x-ratelimit-reset-* 时，至少等待到该时间，超过最长等待时间则不再重试。
+ *     流式对话只在收到响应之前重试，已推送的内容不会重复</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class OpenAIClient {
+    
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final String DATA_PREFIX = "data:";
+    private static final String DONE = "[DONE]";
+    private static final int MAX_ERROR_BODY = 2000;
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(408, 409, 429, 500, 502, 503, 504);
+    private static final Pattern RESET_DURATION = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|s|m|h)");
+    
+    private final OpenAIConfig config;
+    private final ObjectMapper objectMapper;
+    private final OkHttpClient httpClient;
+    
+    /**
+     * 重试等待和向量化攒批的定时器（只负责发起请求，不执行耗时操作）
+     */
+    private final ScheduledExecutorService scheduler;
+    
+    /**
+     * 请求体 -> 进行中的非流式调用
+     */
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    
+    private final Object embeddingLock = new Object();
+    
+    /**
+     * 等待发送的向量化输入（文本 -> 结果），按加入顺序
+     */
+    private Map<String, CompletableFuture<float[]>> pendingEmbeddings = new LinkedHashMap<>();
+    
+    private final Counter retryCounter;
+    private final Counter chatCoalescedCounter;
+    private final Counter embeddingCoalescedCounter;
+    private final DistributionSummary embeddingBatchSize;
+    
+    public OpenAIClient(OpenAIConfig config, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+        
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(config.getMaxConcurrentRequests());
+        dispatcher.setMaxRequestsPerHost(config.getMaxConcurrentRequests());
+        this.httpClient = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(config.getMaxIdleConnections(), config.getKeepAliveMinutes(), TimeUnit.MINUTES))
+            .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            // HTTP/2连接上多个流式响应并存，定期PING及时发现已断开的连接
+            .pingInterval(30, TimeUnit.SECONDS)
+            .connectTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
+            // 流式响应中两段数据之间的最长间隔
+            .readTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
+            .writeTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
+            .build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "openai-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        this.retryCounter = meterRegistry.counter("ai.client.retries");
+        this.chatCoalescedCounter = meterRegistry.counter("ai.client.coalesced", "type", "chat");
+        this.embeddingCoalescedCounter = meterRegistry.counter("ai.client.coalesced", "type", "embedding");
+        this.embeddingBatchSize = DistributionSummary.builder("ai.client.embedding.batch.size")
+            .description("每次向量化请求的输入条数")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * 流式对话（异步），返回的调用可用于取消（客户端断开时释放连接）
+     */
+    public ChatCall streamChat(List<ChatMessage> messages, ChatStreamListener listener) {
+        ChatCall chatCall = new ChatCall();
+        send(chatRequest(chatBody(messages, true), true), chatCall, 0,
+            response -> readStream(response.body(), listener), listener::onError);
+        return chatCall;
+    }
+    
+    /**
+     * 非流式对话（异步），相同的请求正在进行时直接等待其结果
+     * <p>
+     * 取消返回的结果只影响当前调用方，所有等待方都取消后才取消HTTP调用。
+     */
+    public CompletableFuture<ChatCompletion> complete(List<ChatMessage> messages) {
+        String body = chatBody(messages, false);
+        while (true) {
+            Flight created = new Flight();
+            Flight existing = inFlight.putIfAbsent(body, created);
+            Flight flight = existing == null ? created : existing;
+            if (!flight.join()) {
+                // 已被全部等待方取消，换一个新的调用
+                inFlight.remove(body, flight);
+                continue;
+            }
+            if (existing == null) {
+                // 全部等待方取消时移出；正常结束时先移出再完成，之后到达的相同请求重新发起而不是拿到已结束的结果
+                flight.result.whenComplete((result, error) -> inFlight.remove(body, flight));
+                send(chatRequest(body, false), flight.call, 0, response -> {
+                    ChatCompletion completion = parseCompletion(response);
+                    inFlight.remove(body, flight);
+                    flight.result.complete(completion);
+                }, error -> {
+                    inFlight.remove(body, flight);
+                    flight.result.completeExceptionally(error);
+                });
+            } else {
+                chatCoalescedCounter.increment();
+            }
+            
+            CompletableFuture<ChatCompletion> view = flight.result.thenApply(Function.identity());
+            view.whenComplete((result, error) -> {
+                if (view.isCancelled()) {
+                    flight.leave();
+                }
+            });
+            return view;
+        }
+    }
+    
+    /**
+     * 文本向量化（异步），与同一时间窗口内的其他输入合并为一次请求
+     */
+    public CompletableFuture<float[]> embed(String input) {
+        Map<String, CompletableFuture<float[]>> fullBatch = null;
+        CompletableFuture<float[]> future;
+        synchronized (embeddingLock) {
+            future = pendingEmbeddings.get(input);
+            if (future != null) {
+                embeddingCoalescedCounter.increment();
+                return future.thenApply(Function.identity());
+            }
+            future = new CompletableFuture<>();
+            pendingEmbeddings.put(input, future);
+            if (pendingEmbeddings.size() >= config.getEmbeddingBatchSize()) {
+                fullBatch = pendingEmbeddings;
+                pendingEmbeddings = new LinkedHashMap<>();
+            } else if (pendingEmbeddings.size() == 1) {
+                scheduleEmbeddingFlush();
+            }
+        }
+        if (fullBatch != null) {
+            sendEmbeddings(fullBatch);
+        }
+        return future;
+    }
+    
+    /**
+     * 批量向量化（异步），结果顺序与输入一致
+     */
+    public CompletableFuture<List<float[]>> embedAll(List<String> inputs) {
+        List<CompletableFuture<float[]>> futures = new ArrayList<>(inputs.size());
+        for (String input : inputs) {
+            futures.add(embed(input));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+    
+    /**
+     * 发起请求，可重试的失败在退避后以新的HTTP调用重发
+     */
+    private void send(Request request, ChatCall chatCall, int attempt, ResponseHandler handler,
+                      Consumer<Throwable> onError) {
+        Call call = httpClient.newCall(request);
+        if (!chatCall.attach(call)) {
+            return;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (call.isCanceled()) {
+                    return;
+                }
+                if (attempt < config.getMaxRetries()) {
+                    retry(request, chatCall, attempt, handler, onError, backoff(attempt), e.toString());
+                    return;
+                }
+                onError.accept(e);
+            }
+            
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    if (!response.isSuccessful()) {
+                        long delay = attempt < config.getMaxRetries() && RETRYABLE_STATUS.contains(response.code())
+                            ? retryDelay(response, attempt) : -1;
+                        if (delay >= 0) {
+                            retry(request, chatCall, attempt, handler, onError, delay, "HTTP " + response.code());
+                            return;
+                        }
+                        onError.accept(new OpenAIException(response.code(), errorMessage(response)));
+                        return;
+                    }
+                    handler.handle(response);
+                } catch (IOException | RuntimeException e) {
+                    if (!call.isCanceled()) {
+                        onError.accept(e);
+                    }
+                }
+            }
+        });
+    }
+    
+    private void retry(Request request, ChatCall chatCall, int attempt, ResponseHandler handler,
+                       Consumer<Throwable> onError, long delay, String reason) {
+        retryCounter.increment();
+        log.debug("OpenAI请求失败（{}），{}ms后第{}次重试：{}", reason, delay, attempt + 1, request.url());
+        try {
+            scheduler.schedule(() -> send(request, chatCall, attempt + 1, handler, onError), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            onError.accept(e);
+        }
+    }
+    
+    /**
+     * 重试等待时间：服务端指定了等待时间时以其为准（超过最长等待时间返回-1，不再重试），否则指数退避
+     */
+    private long retryDelay(Response response, int attempt) {
+        long serverDelay = serverRetryDelay(response);
+        if (serverDelay > config.getRetryMaxDelay()) {
+            return -1;
+        }
+        if (serverDelay >= 0) {
+            // 少量抖动，避免同时被限流的请求在同一时刻重发
+            return serverDelay + ThreadLocalRandom.current().nextLong(serverDelay / 10 + 1);
+        }
+        return backoff(attempt);
+    }
+    
+    /**
+     * 指数退避，实际等待时间在上限的一半到上限之间随机
+     */
+    private long backoff(int attempt) {
+        long ceiling = Math.min(config.getRetryMaxDelay(), config.getRetryBaseDelay() << Math.min(attempt, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+    
+    /**
+     * 服务端要求的等待时间（毫秒），未指定时返回-1
+     */
+    static long serverRetryDelay(Response response) {
+        String millis = response.header("retry-after-ms");
+        if (millis != null) {
+            try {
+                return Math.max(0, (long) Double.parseDouble(millis.trim()));
+            } catch (NumberFormatException ignored) {
+                // 继续尝试其他响应头
+            }
+        }
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter != null) {
+            try {
+                return Math.max(0, (long) (Double.parseDouble(retryAfter.trim()) * 1000));
+            } catch (NumberFormatException e) {
+                try {
+                    return Math.max(0, ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toInstant().toEpochMilli() - System.currentTimeMillis());
+                } catch (DateTimeParseException ignored) {
+                    // 继续尝试其他响应头
+                }
+            }
+        }
+        // 已耗尽的请求数/Token限额的重置时间，如 "1s"、"6m0s"、"250ms"
+        long reset = -1;
+        for (String limit : new String[]{"requests", "tokens"}) {
+            if ("0".equals(response.header("x-ratelimit-remaining-" + limit))) {
+                reset = Math.max(reset, parseDuration(response.header("x-ratelimit-reset-" + limit)));
+            }
+        }
+        return reset;
+    }
+    
+    private static long parseDuration(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Matcher matcher = RESET_DURATION.matcher(value);
+        double millis = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "ms" -> amount;
+                case "s" -> amount * 1000;
+                case "m" -> amount * 60_000;
+                default -> amount * 3_600_000;
+            };
+        }
+        return matched ? (long) Math.ceil(millis) : -1;
+    }
+    
+    private void scheduleEmbeddingFlush() {
+        try {
+            scheduler.schedule(this::flushEmbeddings, config.getEmbeddingBatchDelay(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            flushEmbeddings();
+        }
+    }
+    
+    /**
+     * 发送当前攒下的向量化输入（定时触发时可能提前发出后一批，不影响结果）
+     */
+    private void flushEmbeddings() {
+        Map<String, CompletableFuture<float[]>> batch;
+        synchronized (embeddingLock) {
+            if (pendingEmbeddings.isEmpty()) {
+                return;
+            }
+            batch = pendingEmbeddings;
+            pendingEmbeddings = new LinkedHashMap<>();
+        }
+        sendEmbeddings(batch);
+    }
+    
+    private void sendEmbeddings(Map<String, CompletableFuture<float[]>> batch) {
+        List<String> inputs = new ArrayList<>(batch.keySet());
+        embeddingBatchSize.record(inputs.size());
+        
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("model", config.getEmbeddingModel());
+        ArrayNode input = body.putArray("input");
+        inputs.forEach(input::add);
+        if (config.getEmbeddingDimensions() != null) {
+            body.put("dimensions", config.getEmbeddingDimensions());
+        }
+        Request request = new Request.Builder()
+            .url(config.getBaseUrl() + "/embeddings")
+            .header("Authorization", "Bearer " + config.getApiKey())
+            .post(RequestBody.create(body.toString(), JSON))
+            .build();
+        
+        send(request, new ChatCall(), 0, response -> {
+            JsonNode data = objectMapper.readTree(response.body().byteStream()).path("data");
+            float[][] vectors = new float[inputs.size()][];
+            for (JsonNode item : data) {
+                int index = item.path("index").asInt(-1);
+                JsonNode embedding = item.path("embedding");
+                if (index < 0 || index >= vectors.length || !embedding.isArray()) {
+                    continue;
+                }
+                float[] vector = new float[embedding.size()];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = (float) embedding.get(i).asDouble();
+                }
+                vectors[index] = vector;
+            }
+            for (int i = 0; i < vectors.length; i++) {
+                CompletableFuture<float[]> future = batch.get(inputs.get(i));
+                if (vectors[i] == null) {
+                    future.completeExceptionally(new OpenAIException(response.code(), "向量化结果缺少第" + i + "条输入"));
+                } else {
+                    future.complete(vectors[i]);
+                }
+            }
+        }, error -> batch.values().forEach(future -> future.completeExceptionally(error)));
+    }
+    
+    private String chatBody(List<ChatMessage> messages, boolean stream) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("model", config.getModel());
+        body.set("messages", objectMapper.valueToTree(messages));
+        if (stream) {
+            body.put("stream", true);
+            // 最后一个分片返回本次用量
+            body.putObject("stream_options").put("include_usage", true);
+        }
+        if (config.getMaxTokens() != null) {
+            body.put("max_tokens", config.getMaxTokens());
+        }
+        if (config.getTemperature() != null) {
+            body.put("temperature", config.getTemperature());
+        }
+        return body.toString();
+    }
+    
+    private Request chatRequest(String body, boolean stream) {
+        return new Request.Builder()
+            .url(config.getBaseUrl() + "/chat/completions")
+            .header("Authorization", "Bearer " + config.getApiKey())
+            .header("Accept", stream ? "text/event-stream" : "application/json")
+            .post(RequestBody.create(body, JSON))
+            .build();
+    }
+    
+    private ChatCompletion parseCompletion(Response response) throws IOException {
+        JsonNode body = objectMapper.readTree(response.body().byteStream());
+        JsonNode usage = body.path("usage").path("total_tokens");
+        return new ChatCompletion(body.path("choices").path(0).path("message").path("content").asText(""),
+            usage.isNumber() ? usage.asInt() : null);
+    }
+    
+    /**
+     * 逐行读取SSE，每个 data 事件解析出增量内容后立即回调
+     */
+    private void readStream(ResponseBody body, ChatStreamListener listener) throws IOException {
+        StringBuilder content = new StringBuilder();
+        Integer tokenUsage = null;
+        BufferedSource source = body.source();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (!line.startsWith(DATA_PREFIX)) {
+                continue;
+            }
+            String data = line.substring(DATA_PREFIX.length()).trim();
+            if (DONE.equals(data)) {
+                break;
+            }
+            if (data.isEmpty()) {
+                continue;
+            }
+            JsonNode chunk = objectMapper.readTree(data);
+            JsonNode choices = chunk.path("choices");
+            if (choices.size() > 0) {
+                JsonNode delta = choices.get(0).path("delta").path("content");
+                if (delta.isTextual() && !delta.asText().isEmpty()) {
+                    content.append(delta.asText());
+                    listener.onToken(delta.asText());
+                }
+            }
+            JsonNode usage = chunk.path("usage").path("total_tokens");
+            if (usage.isNumber()) {
+                tokenUsage = usage.asInt();
+            }
+        }
+        listener.onComplete(content.toString(), tokenUsage);
+    }
+    
+    private static String errorMessage(Response response) {
+        try {
+            ResponseBody body = response.body();
+            String text = body == null ? "" : body.string();
+            return "OpenAI接口返回" + response.code() + "：" + (text.length() > MAX_ERROR_BODY ? text.substring(0, MAX_ERROR_BODY) : text);
+        } catch (IOException e) {
+            return "OpenAI接口返回" + response.code();
+        }
+    }
+    
+    /**
+     * 成功响应的处理（响应由调用方关闭）
+     */
+    private interface ResponseHandler {
+        void handle(Response response) throws IOException;
+    }
+    
+    /**
+     * 一次被多个调用方共用的非流式调用
+     */
+    private static class Flight {
+        
+        private final CompletableFuture<ChatCompletion> result = new CompletableFuture<>();
+        
+        private final ChatCall call = new ChatCall();
+        
+        /**
+         * 等待方数量，-1 表示已全部取消
+         */
+        private final AtomicInteger waiters = new AtomicInteger();
+        
+        boolean join() {
+            while (true) {
+                int current = waiters.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (waiters.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+        
+        void leave() {
+            while (true) {
+                int current = waiters.get();
+                int next = current == 1 ? -1 : current - 1;
+                if (waiters.compareAndSet(current, next)) {
+                    if (next < 0) {
+                        call.cancel();
+                        result.cancel(false);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
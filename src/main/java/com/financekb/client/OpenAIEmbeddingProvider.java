@@ -0,0 +1,68 @@
+package com.financekb.client;
+
+import com.financekb.vector.EmbeddingProvider;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 基于OpenAI兼容接口的向量化
+ * <p>
+ * 并发的单条请求（如同时进行的搜索）由客户端合并为一次多输入请求；返回维度与索引维度不一致时直接报错，
+ * 需配置 openai.embedding-dimensions 与 vector.dimension 相同。
+ */
+public class OpenAIEmbeddingProvider implements EmbeddingProvider {
+    
+    private final OpenAIClient openAIClient;
+    
+    private final int dimension;
+    
+    private final long timeoutMillis;
+    
+    public OpenAIEmbeddingProvider(OpenAIClient openAIClient, int dimension, long timeoutMillis) {
+        this.openAIClient = openAIClient;
+        this.dimension = dimension;
+        this.timeoutMillis = timeoutMillis;
+    }
+    
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+    
+    @Override
+    public float[] embed(String text) {
+        return checkDimension(await(openAIClient.embed(text)));
+    }
+    
+    @Override
+    public List<float[]> embedBatch(List<String> texts) {
+        List<float[]> vectors = await(openAIClient.embedAll(texts));
+        vectors.forEach(this::checkDimension);
+        return vectors;
+    }
+    
+    private float[] checkDimension(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalStateException("向量维度不一致：期望" + dimension + "，实际" + vector.length);
+        }
+        return vector;
+    }
+    
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("向量化被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("向量化失败：" + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new IllegalStateException("向量化超时", e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.financekb.client;
+
+import lombok.Getter;
+
+/**
+ * OpenAI接口返回错误状态
+ */
+@Getter
+public class OpenAIException extends RuntimeException {
+    
+    /**
+     * HTTP状态码
+     */
+    private final int statusCode;
+    
+    public OpenAIException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+}
@@ -0,0 +1,22 @@
+package com.financekb.common;
+
+import lombok.Getter;
+
+/**
+ * 业务异常（携带响应状态码）
+ */
+@Getter
+public class BusinessException extends RuntimeException {
+    
+    private final Integer code;
+    
+    public BusinessException(ResultCode resultCode) {
+        super(resultCode.getMessage());
+        this.code = resultCode.getCode();
+    }
+    
+    public BusinessException(ResultCode resultCode, String message) {
+        super(message);
+        this.code = resultCode.getCode();
+    }
+}
@@ -0,0 +1,268 @@
+package com.financekb.common;
+
+import com.financekb.config.FileConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文档文本提取（Tika）
+ * <p>
+ * 解析器按内容自动识别格式，输出的字符流边解析边检查：
+ * 超过最大长度时截断并立即停止解析，超过截止时间时中止并抛出 {@link ExtractTimeoutException}，
+ * 避免超大或异常文档长时间占用提取线程。
+ * <p>
+ * 解析在独立线程中执行，调用方最多等待超时时间：解析器卡在解码等不产生输出的步骤时，
+ * 调用方按时返回，解析线程被中断并关闭输入流；不响应中断的解析线程在结束前仍占用一个线程。
+ * 解析线程数有上限（提取并行数 + 允许滞留的线程数），滞留线程占满时新的提取直接拒绝
+ * （{@link ExtractRejectedException}），滞留数通过 document.extract.stuck 指标暴露。
+ */
+@Slf4j
+@Component
+public class DocumentTextExtractor {
+    
+    private static final int PARSE_NEW = 0;
+    private static final int PARSE_RUNNING = 1;
+    private static final int PARSE_DONE = 2;
+    private static final int PARSE_ABANDONED = 3;
+    
+    private final Parser parser;
+    
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    
+    /**
+     * 调用方已超时返回、但仍未结束的解析线程数
+     */
+    private final AtomicInteger stuckParses = new AtomicInteger();
+    
+    private final ThreadPoolExecutor parseExecutor;
+    
+    @Autowired
+    public DocumentTextExtractor(FileConfig fileConfig, MeterRegistry meterRegistry) {
+        this(new AutoDetectParser(), fileConfig.getExtract().getParallelism(),
+            fileConfig.getExtract().getMaxStuckParses(), meterRegistry);
+    }
+    
+    /**
+     * @param parallelism    同时提取的文档数
+     * @param maxStuckParses 允许滞留（不响应中断）的解析线程数
+     */
+    public DocumentTextExtractor(Parser parser, int parallelism, int maxStuckParses, MeterRegistry meterRegistry) {
+        this.parser = parser;
+        // 不排队：每个提取调用独占一个解析线程，线程用完即说明滞留线程已达上限
+        this.parseExecutor = new ThreadPoolExecutor(0, parallelism + maxStuckParses, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), r -> {
+                Thread thread = new Thread(r, "document-parse-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("document.extract.stuck", stuckParses, AtomicInteger::get)
+            .description("超时后仍未结束的解析线程数")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * 提取文档纯文本（已合并多余空白）
+     *
+     * @param path      文件路径
+     * @param fileName  原始文件名（辅助格式识别）
+     * @param timeout   超时时间
+     * @param maxLength 最大字符数，超出部分截断
+     * @throws ExtractRejectedException 滞留的解析线程已达上限
+     */
+    public String extract(Path path, String fileName, Duration timeout, int maxLength)
+            throws IOException, TikaException, ExtractTimeoutException, ExtractRejectedException {
+        Metadata metadata = new Metadata();
+        if (fileName != null) {
+            metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, fileName);
+        }
+        LimitedTextHandler handler = new LimitedTextHandler(System.nanoTime() + timeout.toNanos(), maxLength);
+        InputStream inputStream = TikaInputStream.get(path);
+        AtomicInteger state = new AtomicInteger(PARSE_NEW);
+        Future<?> parsing;
+        try {
+            parsing = parseExecutor.submit(() -> {
+                state.set(PARSE_RUNNING);
+                try {
+                    parser.parse(inputStream, handler, metadata, new ParseContext());
+                } finally {
+                    if (state.getAndSet(PARSE_DONE) == PARSE_ABANDONED) {
+                        stuckParses.decrementAndGet();
+                    }
+                }
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            inputStream.close();
+            throw new ExtractRejectedException("解析线程已满（" + stuckParses.get() + "个超时解析尚未结束）");
+        }
+        try {
+            parsing.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            parsing.cancel(true);
+            if (state.compareAndSet(PARSE_RUNNING, PARSE_ABANDONED)) {
+                stuckParses.incrementAndGet();
+            }
+            throw timeoutException(timeout);
+        } catch (InterruptedException e) {
+            parsing.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("文档提取被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SAXException || cause instanceof TikaException) {
+                // 部分解析器会把处理器抛出的 SAXException 包装为 TikaException，按处理器状态判断原因
+                if (handler.timedOut) {
+                    throw timeoutException(timeout);
+                }
+                if (!handler.truncated) {
+                    throw cause instanceof TikaException
+                        ? (TikaException) cause : new TikaException("文档解析失败：" + cause.getMessage(), cause);
+                }
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new TikaException("文档解析失败：" + cause, cause);
+            }
+        } finally {
+            // 超时时关闭输入流，阻塞在读取上的解析线程随之结束
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                log.debug("关闭文档输入流失败：{}", path, e);
+            }
+        }
+        return normalize(handler.text);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        parseExecutor.shutdownNow();
+    }
+    
+    private static ExtractTimeoutException timeoutException(Duration timeout) {
+        return new ExtractTimeoutException("文档提取超时（" + timeout.getSeconds() + "秒）");
+    }
+    
+    /**
+     * 截取摘要（按字符数，尽量在句末截断）
+     */
+    public static String summarize(String text, int length) {
+        String flat = text.replaceAll("\\s+", " ").trim();
+        if (flat.length() <= length) {
+            return flat;
+        }
+        String head = flat.substring(0, length);
+        int sentenceEnd = Math.max(head.lastIndexOf('。'), head.lastIndexOf(". "));
+        return sentenceEnd > length / 2 ? head.substring(0, sentenceEnd + 1) : head + "…";
+    }
+    
+    /**
+     * 合并行内连续空白，最多保留一个空行
+     */
+    static String normalize(CharSequence text) {
+        return text.toString()
+            .replaceAll("[ \\t\\x0B\\f\\r\\u00A0]+", " ")
+            .replaceAll(" ?\\n ?", "\n")
+            .replaceAll("\\n{3,}", "\n\n")
+            .trim();
+    }
+    
+    /**
+     * 文档提取超时
+     */
+    public static class ExtractTimeoutException extends Exception {
+        
+        public ExtractTimeoutException(String message) {
+            super(message);
+        }
+    }
+    
+    /**
+     * 滞留的解析线程已达上限，本次不提取
+     */
+    public static class ExtractRejectedException extends Exception {
+        
+        public ExtractRejectedException(String message) {
+            super(message);
+        }
+    }
+    
+    /**
+     * 收集正文字符，超长或超时时抛出 SAXException 中止解析
+     */
+    private static class LimitedTextHandler extends DefaultHandler {
+        
+        private final StringBuilder text = new StringBuilder();
+        
+        private final long deadline;
+        
+        private final int maxLength;
+        
+        private boolean truncated;
+        
+        private boolean timedOut;
+        
+        LimitedTextHandler(long deadline, int maxLength) {
+            this.deadline = deadline;
+            this.maxLength = maxLength;
+        }
+        
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            checkDeadline();
+            int remaining = maxLength - text.length();
+            if (length > remaining) {
+                text.append(ch, start, Math.max(remaining, 0));
+                truncated = true;
+                throw new SAXException("已达到最大长度");
+            }
+            text.append(ch, start, length);
+        }
+        
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            characters(ch, start, length);
+        }
+        
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            checkDeadline();
+        }
+        
+        private void checkDeadline() throws SAXException {
+            if (System.nanoTime() > deadline) {
+                timedOut = true;
+                throw new SAXException("已超时");
+            }
+        }
+    }
+}
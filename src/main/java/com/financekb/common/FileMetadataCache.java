@@ -0,0 +1,90 @@
+package com.financekb.common;
+
+import com.financekb.config.FileConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+
+/**
+ * 文件元数据缓存
+ * 文件上传后不可变，缓存 路径 -> (大小, 修改时间, 类型, ETag)，重复访问无需再读取文件系统元数据。
+ * 文件删除时需调用 {@link #evict(Path)}。
+ */
+@Component
+public class FileMetadataCache {
+
+    private final Cache<Path, FileMetadata> cache;
+
+    public FileMetadataCache(FileConfig fileConfig) {
+        FileConfig.Download download = fileConfig.getDownload();
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(download.getMetadataCacheSize())
+            .expireAfterWrite(Duration.ofMinutes(download.getMetadataCacheExpireMinutes()))
+            .build();
+    }
+
+    /**
+     * 获取文件元数据，文件不存在时返回null（不存在的结果不缓存）
+     */
+    public FileMetadata get(Path filePath) throws IOException {
+        Path key = filePath.toAbsolutePath().normalize();
+        try {
+            return cache.get(key, this::load);
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof NoSuchFileException) {
+                return null;
+            }
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 移除缓存（文件删除后调用）
+     */
+    public void evict(Path filePath) {
+        cache.invalidate(filePath.toAbsolutePath().normalize());
+    }
+
+    private FileMetadata load(Path filePath) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            long length = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            return new FileMetadata(filePath, length, lastModified, Files.probeContentType(filePath),
+                FileResponseWriter.buildETag(length, lastModified));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 文件元数据
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class FileMetadata {
+
+        private final Path path;
+
+        private final long length;
+
+        private final long lastModified;
+
+        /**
+         * 探测到的类型，无法识别时为null
+         */
+        private final String contentType;
+
+        private final String etag;
+    }
+}
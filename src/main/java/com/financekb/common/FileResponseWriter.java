@@ -0,0 +1,366 @@
+package com.financekb.common;
+
+import com.financekb.config.FileConfig;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 文件响应输出
+ * 支持 HTTP Range（单段/多段 multipart/byteranges）、If-Range 和 HEAD 请求，
+ * 视频拖动、PDF跳页时只传输需要的字节；
+ * 支持 If-None-Match / If-Modified-Since 条件请求，内容未变化时返回304。
+ * 单段输出优先交给 Tomcat sendfile 由内核直接从文件写入socket（零拷贝），
+ * 连接器不支持（如HTTPS、APR未启用）时回退为流式复制。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FileResponseWriter {
+
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 单次请求允许的最大分段数，超过时忽略Range返回完整内容
+     */
+    private static final int MAX_RANGES = 16;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileConfig fileConfig;
+    private final FileMetadataCache fileMetadataCache;
+
+    /**
+     * 输出文件内容（Content-Type、Content-Disposition、Cache-Control等业务响应头由调用方预先设置）
+     *
+     * @return 实际输出的状态码
+     */
+    public int write(HttpServletRequest request, HttpServletResponse response, Path filePath, String contentType)
+            throws IOException {
+        FileMetadataCache.FileMetadata metadata = fileMetadataCache.get(filePath);
+        if (metadata == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return HttpServletResponse.SC_NOT_FOUND;
+        }
+        return write(request, response, metadata, contentType);
+    }
+
+    /**
+     * 按已获取的元数据输出文件内容
+     *
+     * @return 实际输出的状态码
+     */
+    public int write(HttpServletRequest request, HttpServletResponse response, FileMetadataCache.FileMetadata metadata,
+                     String contentType) throws IOException {
+        try {
+            return doWrite(request, response, metadata, contentType);
+        } catch (NoSuchFileException e) {
+            // 元数据缓存后文件已被删除
+            fileMetadataCache.evict(metadata.getPath());
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.reset();
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return HttpServletResponse.SC_NOT_FOUND;
+        }
+    }
+
+    private int doWrite(HttpServletRequest request, HttpServletResponse response, FileMetadataCache.FileMetadata metadata,
+                        String contentType) throws IOException {
+        Path filePath = metadata.getPath();
+        long length = metadata.getLength();
+        long lastModified = metadata.getLastModified();
+        String etag = metadata.getEtag();
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return HttpServletResponse.SC_NOT_MODIFIED;
+        }
+
+        List<long[]> ranges = resolveRanges(request, length, etag, lastModified);
+        boolean headRequest = "HEAD".equalsIgnoreCase(request.getMethod());
+
+        if (ranges != null && ranges.isEmpty()) {
+            // 请求的范围全部不可满足
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+        }
+
+        if (ranges == null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            if (!headRequest) {
+                sendRegion(request, response, filePath, 0, length);
+            }
+            return HttpServletResponse.SC_OK;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + length);
+            response.setContentLengthLong(range[1] - range[0] + 1);
+            if (!headRequest) {
+                sendRegion(request, response, filePath, range[0], range[1] - range[0] + 1);
+            }
+            return HttpServletResponse.SC_PARTIAL_CONTENT;
+        }
+
+        // 多段范围：multipart/byteranges
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (long[] range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                + HttpHeaders.CONTENT_RANGE + ": bytes " + range[0] + "-" + range[1] + "/" + length + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + (range[1] - range[0] + 1);
+        }
+        byte[] closeDelimiter = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closeDelimiter.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (!headRequest) {
+            ServletOutputStream outputStream = response.getOutputStream();
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                for (int i = 0; i < ranges.size(); i++) {
+                    long[] range = ranges.get(i);
+                    outputStream.write(partHeaders.get(i));
+                    copyRange(channel, outputStream, range[0], range[1] - range[0] + 1);
+                }
+            }
+            outputStream.write(closeDelimiter);
+        }
+        return HttpServletResponse.SC_PARTIAL_CONTENT;
+    }
+
+    /**
+     * 生成强ETag（文件上传后不可变，大小+修改时间即可唯一标识内容版本）
+     */
+    public static String buildETag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * If-None-Match 是否命中（弱比较，支持逗号分隔的多个ETag和*）
+     */
+    public static boolean matchesETag(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if ("*".equals(candidate)) {
+                return true;
+            }
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析Range头（重叠或相邻的范围按 RFC 9110 §14.2 合并，同一字节不会重复输出）
+     *
+     * @return null 表示忽略Range返回完整内容；空列表表示范围不可满足；否则为按起点升序的 [start, end]（闭区间）列表
+     */
+    public static List<long[]> parseRanges(String rangeHeader, long length) {
+        if (rangeHeader == null || !rangeHeader.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = rangeHeader.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<long[]> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            try {
+                long start;
+                long end;
+                if (first.isEmpty()) {
+                    // 后缀范围：最后N个字节
+                    long suffixLength = Long.parseLong(last);
+                    if (suffixLength <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffixLength);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                    if (start < 0 || (!last.isEmpty() && Long.parseLong(last) < start)) {
+                        return null;
+                    }
+                }
+                if (start < length && start <= end) {
+                    ranges.add(new long[]{start, end});
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return coalesce(ranges);
+    }
+
+    /**
+     * 按起点排序后合并重叠或相邻的范围
+     */
+    private static List<long[]> coalesce(List<long[]> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> merged = new ArrayList<>(ranges.size());
+        long[] current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            long[] next = ranges.get(i);
+            if (next[0] <= current[1] + 1) {
+                current = new long[]{current[0], Math.max(current[1], next[1])};
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    /**
+     * 条件请求判断：If-None-Match 优先，存在时忽略 If-Modified-Since
+     */
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        if (!"GET".equalsIgnoreCase(request.getMethod()) && !"HEAD".equalsIgnoreCase(request.getMethod())) {
+            return false;
+        }
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return matchesETag(ifNoneMatch, etag);
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // HTTP日期精度为秒
+        return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * 解析本次请求需要返回的范围（不满足If-Range条件时返回完整内容）
+     */
+    private List<long[]> resolveRanges(HttpServletRequest request, long length, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !("GET".equalsIgnoreCase(request.getMethod()) || "HEAD".equalsIgnoreCase(request.getMethod()))) {
+            return null;
+        }
+
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.isBlank()) {
+            ifRange = ifRange.trim();
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                // If-Range 只接受强ETag比较
+                if (!ifRange.equals(etag)) {
+                    return null;
+                }
+            } else {
+                long ifRangeTime;
+                try {
+                    ifRangeTime = request.getDateHeader(HttpHeaders.IF_RANGE);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+                // HTTP日期精度为秒
+                if (ifRangeTime / 1000 != lastModified / 1000) {
+                    return null;
+                }
+            }
+        }
+
+        return parseRanges(rangeHeader, length);
+    }
+
+    /**
+     * 输出单段区间：支持时交给Tomcat sendfile，响应结束后由连接器直接发送文件
+     */
+    private void sendRegion(HttpServletRequest request, HttpServletResponse response, Path filePath,
+                            long position, long count) throws IOException {
+        if (isZeroCopySupported(request, count)) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, filePath.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, position);
+            request.setAttribute(SENDFILE_END_ATTR, position + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            copyRange(channel, response.getOutputStream(), position, count);
+        }
+    }
+
+    private boolean isZeroCopySupported(HttpServletRequest request, long count) {
+        FileConfig.Download download = fileConfig.getDownload();
+        return Boolean.TRUE.equals(download.getZeroCopy())
+            && count >= download.getZeroCopyMinSize()
+            && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR));
+    }
+
+    /**
+     * 流式复制文件指定区间
+     */
+    private void copyRange(FileChannel channel, OutputStream outputStream, long position, long count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(count, 1)));
+        long remaining = count;
+        while (remaining > 0) {
+            buffer.clear();
+            if (remaining < buffer.capacity()) {
+                buffer.limit((int) remaining);
+            }
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            outputStream.write(buffer.array(), 0, read);
+            position += read;
+            remaining -= read;
+        }
+    }
+}
@@ -1,8 +1,15 @@
 package com.financekb.common;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -11,18 +18,64 @@ import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWT工具类
+ * 签名密钥和解析器在启动时构建一次（均为线程安全），
+ * 已验证的Token按过期时间缓存，重复请求无需再次做HMAC校验。
  */
 @Component
 public class JwtUtil {
     
-    @Value("${jwt.secret}")
-    private String secret;
+    /**
+     * 毫秒签发时间的声明名
+     */
+    private static final String ISSUED_AT_MILLIS = "iatMs";
+    
+    private final Long expiration;
+    
+    private final SecretKey key;
+    
+    private final JwtParser parser;
     
-    @Value("${jwt.expiration}")
-    private Long expiration;
+    /**
+     * 已验证Token -> 身份，条目在Token过期时失效；缓存大小为0时不缓存
+     */
+    private final Cache<String, TokenPrincipal> verifiedTokens;
+    
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+                   @Value("${jwt.expiration}") Long expiration,
+                   @Value("${jwt.cache-size:10000}") long cacheSize) {
+        this.expiration = expiration;
+        this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(key).build();
+        this.verifiedTokens = cacheSize > 0
+            ? Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, TokenPrincipal>() {
+                    @Override
+                    public long expireAfterCreate(String token, TokenPrincipal principal, long currentTime) {
+                        long remainingMillis = principal.getExpiresAt() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String token, TokenPrincipal principal, long currentTime,
+                                                  long currentDuration) {
+                        return currentDuration;
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String token, TokenPrincipal principal, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build()
+            : null;
+    }
     
     /**
      * 生成Token
@@ -33,12 +86,13 @@ public class JwtUtil {
         claims.put("username", username);
         
         Date now = new Date();
+        // 标准iat精度为秒，另存毫秒签发时间，用于与用户吊销时间精确比较
+        claims.put(ISSUED_AT_MILLIS, now.getTime());
         Date expireTime = new Date(now.getTime() + expiration);
         
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-        
         return Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString().replace("-", ""))
                 .subject(username)
                 .issuedAt(now)
                 .expiration(expireTime)
@@ -46,16 +100,48 @@ public class JwtUtil {
                 .compact();
     }
     
+    /**
+     * 解析并验证Token（签名、过期时间只校验一次）
+     *
+     * @return 身份信息；Token无效或已过期时返回null
+     */
+    public TokenPrincipal parseToken(String token) {
+        if (verifiedTokens != null) {
+            TokenPrincipal cached = verifiedTokens.getIfPresent(token);
+            if (cached != null && cached.getExpiresAt() > System.currentTimeMillis()) {
+                return cached;
+            }
+        }
+        
+        Claims claims;
+        try {
+            claims = getClaimsFromToken(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        Long userId = claims.get("userId", Long.class);
+        String username = claims.getSubject();
+        Date expireTime = claims.getExpiration();
+        if (userId == null || username == null || expireTime == null) {
+            return null;
+        }
+        Long issuedAtMillis = claims.get(ISSUED_AT_MILLIS, Long.class);
+        Date issuedAt = claims.getIssuedAt();
+        long issuedAtTime = issuedAtMillis != null ? issuedAtMillis : issuedAt == null ? 0 : issuedAt.getTime();
+        
+        TokenPrincipal principal = new TokenPrincipal(userId, username, claims.getId(),
+            issuedAtTime, expireTime.getTime());
+        if (verifiedTokens != null) {
+            verifiedTokens.put(token, principal);
+        }
+        return principal;
+    }
+    
     /**
      * 从Token中获取Claims
      */
     public Claims getClaimsFromToken(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
     
     /**
@@ -96,5 +182,31 @@ public class JwtUtil {
         String username = claims.getSubject();
         return generateToken(userId, username);
     }
+    
+    /**
+     * Token中的身份信息
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class TokenPrincipal {
+        
+        private final Long userId;
+        
+        private final String username;
+        
+        /**
+         * Token唯一标识（jti），用于吊销；旧版Token没有该字段
+         */
+        private final String tokenId;
+        
+        /**
+         * 签发时间（毫秒时间戳；旧版Token没有毫秒签发时间，精度为秒）
+         */
+        private final long issuedAt;
+        
+        /**
+         * 过期时间（毫秒时间戳）
+         */
+        private final long expiresAt;
+    }
 }
-
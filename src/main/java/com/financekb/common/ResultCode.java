@@ -11,6 +11,7 @@ public enum ResultCode {
     FORBIDDEN(403, "禁止访问"),
     NOT_FOUND(404, "资源不存在"),
     BAD_REQUEST(400, "请求参数错误"),
+    TOO_MANY_REQUESTS(429, "请求过于频繁，请稍后重试"),
     
     // 用户相关
     USER_NOT_FOUND(1001, "用户不存在"),
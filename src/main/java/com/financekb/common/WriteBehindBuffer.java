@@ -0,0 +1,141 @@
+package com.financekb.common;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * 合并回写缓冲
+ * <p>
+ * 写入只在内存中按键合并，由调用方定时调用 {@link #flush(int)} 分批写库，写入失败的批次合并回缓冲等待下次回写；
+ * {@link #get(Object)} 返回尚未回写和正在回写的值合并后的结果，供读取时叠加到数据库中的旧值上。
+ * 未回写的数据只保存在内存中：调用方需在停机前再回写一次，进程崩溃时最多丢失一个回写间隔内的数据。
+ *
+ * @param <K> 合并键
+ * @param <V> 待回写的值（合并函数按 旧值、新值 的顺序接收参数，不能修改参数，需返回新对象）
+ */
+@Slf4j
+public class WriteBehindBuffer<K, V> {
+
+    private final String name;
+    private final BinaryOperator<V> merger;
+    private final Consumer<List<V>> writer;
+
+    private final ConcurrentHashMap<K, V> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 正在回写、尚未提交的值（回写期间读取时同样计入）
+     */
+    private volatile Map<K, V> flushing = Map.of();
+
+    private final Object flushLock = new Object();
+
+    /**
+     * 值在待回写与回写中之间转移时持有写锁，读取时持有读锁，读取方不会看到已取出但尚未发布的值
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    /**
+     * @param name   名称（用于日志）
+     * @param merger 同一键的合并函数
+     * @param writer 批量写库，抛出异常时该批合并回缓冲
+     */
+    public WriteBehindBuffer(String name, BinaryOperator<V> merger, Consumer<List<V>> writer) {
+        this.name = name;
+        this.merger = merger;
+        this.writer = writer;
+    }
+
+    /**
+     * 写入一个值，与同一键尚未回写的值合并
+     */
+    public void add(K key, V value) {
+        pending.merge(key, value, merger);
+    }
+
+    /**
+     * 尚未持久化的值（未回写与正在回写的合并结果），没有时返回null
+     */
+    public V get(K key) {
+        V inFlight;
+        V queued;
+        swapLock.readLock().lock();
+        try {
+            inFlight = flushing.get(key);
+            queued = pending.get(key);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if (inFlight == null) {
+            return queued;
+        }
+        return queued == null ? inFlight : merger.apply(inFlight, queued);
+    }
+
+    /**
+     * 分批回写当前所有值
+     *
+     * @param batchSize 每批条数
+     */
+    public void flush(int batchSize) {
+        synchronized (flushLock) {
+            Map<K, V> batch;
+            swapLock.writeLock().lock();
+            try {
+                batch = drain();
+                flushing = batch;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Map.Entry<K, V>> failed = new ArrayList<>();
+            try {
+                List<Map.Entry<K, V>> entries = new ArrayList<>(batch.entrySet());
+                for (int from = 0; from < entries.size(); from += batchSize) {
+                    List<Map.Entry<K, V>> chunk = entries.subList(from, Math.min(from + batchSize, entries.size()));
+                    try {
+                        writer.accept(chunk.stream().map(Map.Entry::getValue).toList());
+                    } catch (Exception e) {
+                        log.warn("{}回写失败，{}条将在下次回写重试", name, chunk.size(), e);
+                        failed.addAll(chunk);
+                    }
+                }
+                log.debug("{}回写完成：{}条", name, entries.size());
+            } finally {
+                swapLock.writeLock().lock();
+                try {
+                    // 失败的值比期间新写入的值更旧
+                    failed.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(),
+                        (current, retry) -> merger.apply(retry, current)));
+                    flushing = Map.of();
+                } finally {
+                    swapLock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * 取出当前所有值（持有写锁；逐个remove，期间新写入的值会进入新的条目，不会丢失）
+     */
+    private Map<K, V> drain() {
+        Map<K, V> batch = new HashMap<>();
+        for (K key : pending.keySet()) {
+            V value = pending.remove(key);
+            if (value != null) {
+                batch.put(key, value);
+            }
+        }
+        return batch;
+    }
+}
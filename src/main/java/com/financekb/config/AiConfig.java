@@ -0,0 +1,132 @@
+package com.financekb.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * AI生成配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "ai")
+public class AiConfig {
+    
+    /**
+     * 提示词最大长度（字符）
+     */
+    private Integer maxPromptLength = 4000;
+    
+    /**
+     * 指定知识库时检索的相关片段数
+     */
+    private Integer contextSnippets = 3;
+    
+    /**
+     * 响应缓存配置
+     */
+    private Cache cache = new Cache();
+    
+    /**
+     * 调用配额配置
+     */
+    private Quota quota = new Quota();
+    
+    @Data
+    public static class Cache {
+        
+        /**
+         * 是否启用响应缓存
+         */
+        private Boolean enabled = true;
+        
+        /**
+         * 缓存有效期（分钟）
+         */
+        private Long ttlMinutes = 1440L;
+        
+        /**
+         * 是否启用相似问题匹配（向量相似度），关闭时只匹配规范化后完全相同的提示词
+         */
+        private Boolean semanticEnabled = false;
+        
+        /**
+         * 相似问题匹配阈值（余弦相似度）
+         */
+        private Double similarityThreshold = 0.95;
+        
+        /**
+         * 每个知识库（版本）在本地保留的相似匹配候选数
+         */
+        private Integer semanticMaxEntries = 1000;
+    }
+    
+    @Data
+    public static class Quota {
+        
+        /**
+         * 是否启用调用配额
+         */
+        private Boolean enabled = true;
+        
+        /**
+         * 用户的角色都未配置额度时使用的角色
+         */
+        private String defaultRole = "user";
+        
+        /**
+         * 角色编码 -> 额度（用户有多个角色时每项取最宽松的）
+         */
+        private Map<String, Budget> roles = new HashMap<>();
+        
+        /**
+         * 每次从Redis预领的请求数，越大访问Redis越少，多节点间的额度误差也越大
+         */
+        private Integer leaseRequests = 5;
+        
+        /**
+         * 每次从Redis预领的Token数
+         */
+        private Long leaseTokens = 5000L;
+        
+        /**
+         * 本地预领额度的有效期（毫秒），过期未用完的额度作废，避免长时间囤积
+         */
+        private Long leaseTtl = 10000L;
+        
+        /**
+         * 用户额度（角色）本地缓存时间（分钟），角色变更后最迟在此时间后生效
+         */
+        private Long budgetCacheMinutes = 5L;
+        
+        /**
+         * 用量汇总写入间隔（毫秒）
+         */
+        private Long usageFlushInterval = 5000L;
+        
+        /**
+         * 用量汇总每批写入的行数
+         */
+        private Integer usageFlushBatchSize = 200;
+    }
+    
+    /**
+     * 额度（为空或0表示不限）
+     */
+    @Data
+    public static class Budget {
+        
+        /**
+         * 每分钟请求数（令牌桶容量，按秒匀速恢复）
+         */
+        private Integer requestsPerMinute;
+        
+        /**
+         * 每天Token数（令牌桶容量，按秒匀速恢复）
+         */
+        private Long tokensPerDay;
+    }
+}
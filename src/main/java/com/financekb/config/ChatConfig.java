@@ -0,0 +1,68 @@
+package com.financekb.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "chat")
+public class ChatConfig {
+    
+    /**
+     * 系统提示词
+     */
+    private String systemPrompt = "你是一个专业的财务知识助手，请用简洁、准确的中文回答用户的问题。";
+    
+    /**
+     * 携带的历史消息条数（上下文）
+     */
+    private Integer contextMessages = 10;
+    
+    /**
+     * 单条消息最大长度（字符）
+     */
+    private Integer maxMessageLength = 4000;
+    
+    /**
+     * SSE连接超时（毫秒）
+     */
+    private Long sseTimeout = 300000L;
+    
+    /**
+     * 会话上下文缓存数
+     */
+    private Long contextCacheSize = 10000L;
+    
+    /**
+     * 会话上下文缓存过期时间（分钟）
+     */
+    private Long contextCacheExpireMinutes = 30L;
+    
+    /**
+     * 对话记录写入配置
+     */
+    private History history = new History();
+    
+    @Data
+    public static class History {
+        
+        /**
+         * 批量写入间隔（毫秒）
+         */
+        private Long flushInterval = 500L;
+        
+        /**
+         * 单条INSERT的最大行数
+         */
+        private Integer batchSize = 200;
+        
+        /**
+         * 内存队列容量，队列满时改为同步写入
+         */
+        private Integer queueCapacity = 10000;
+    }
+}
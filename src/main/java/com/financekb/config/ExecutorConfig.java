@@ -0,0 +1,130 @@
+package com.financekb.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 线程池配置
+ */
+@Configuration
+@RequiredArgsConstructor
+public class ExecutorConfig {
+    
+    private final FileConfig fileConfig;
+    
+    /**
+     * 批量上传线程池（有界，队列满时由请求线程执行，形成背压）
+     */
+    @Bean
+    public ThreadPoolTaskExecutor fileUploadExecutor() {
+        FileConfig.Batch batch = fileConfig.getBatch();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(batch.getParallelism());
+        executor.setMaxPoolSize(batch.getParallelism());
+        executor.setQueueCapacity(batch.getQueueCapacity());
+        executor.setThreadNamePrefix("file-upload-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+    
+    /**
+     * 密码哈希线程池（BCrypt为CPU密集型，线程数按CPU核数，队列有界；
+     * 队列满时直接拒绝，由调用方返回429，避免登录高峰占满Tomcat工作线程）
+     *
+     * @param threads       线程数，0表示使用CPU核数
+     * @param queueCapacity 等待队列长度
+     */
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashExecutor(@Value("${auth.password-hash.threads:0}") int threads,
+                                                       @Value("${auth.password-hash.queue-capacity:64}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+    
+    /**
+     * 认证相关的数据库/Redis写入线程池（密码哈希完成后的用户写入、Token吊销），
+     * 不在按CPU核数设置的哈希线程上阻塞等待IO；队列满时拒绝，由调用方返回429
+     *
+     * @param threads       线程数
+     * @param queueCapacity 等待队列长度
+     */
+    @Bean
+    public ThreadPoolTaskExecutor authIoExecutor(@Value("${auth.io.threads:16}") int threads,
+                                                 @Value("${auth.io.queue-capacity:256}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("auth-io-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+    
+    /**
+     * AI调用完成后的缓存/用量/生成记录写入线程池，不在HTTP客户端的回调线程上执行
+     * （回调线程仍占用并发请求名额，语义缓存的向量化请求会等不到名额）；
+     * 队列满时由回调线程执行，已完成的调用必须记账
+     *
+     * @param threads       线程数
+     * @param queueCapacity 等待队列长度
+     */
+    @Bean
+    public ThreadPoolTaskExecutor aiIoExecutor(@Value("${ai.io.threads:16}") int threads,
+                                               @Value("${ai.io.queue-capacity:512}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ai-io-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+    
+    /**
+     * 文档文本提取线程池（有界，队列满时拒绝，任务留在数据库中等待轮询补充）
+     */
+    @Bean
+    public ThreadPoolTaskExecutor documentExtractExecutor() {
+        FileConfig.Extract extract = fileConfig.getExtract();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(extract.getParallelism());
+        executor.setMaxPoolSize(extract.getParallelism());
+        executor.setQueueCapacity(extract.getQueueCapacity());
+        executor.setThreadNamePrefix("document-extract-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        // 停机时不等待：未完成的任务保持处理中状态，租约过期后由其他节点或重启后重新领取
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+    
+    /**
+     * 预览图生成线程池（有界，队列满时拒绝，预览图在首次访问时生成）
+     */
+    @Bean
+    public ThreadPoolTaskExecutor filePreviewExecutor() {
+        FileConfig.Preview preview = fileConfig.getPreview();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(preview.getParallelism());
+        executor.setMaxPoolSize(preview.getParallelism());
+        executor.setQueueCapacity(preview.getQueueCapacity());
+        executor.setThreadNamePrefix("file-preview-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
@@ -4,7 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 文件配置
@@ -28,5 +30,242 @@ public class FileConfig {
      * 允许的文件类型
      */
     private List<String> allowedTypes;
+    
+    /**
+     * 单文件大小上限（字节）
+     */
+    private Long maxFileSize = 100L * 1024 * 1024;
+    
+    /**
+     * 是否允许跨用户秒传（仅凭摘要即可引用他人上传的内容，默认只允许引用本人上传过的内容）
+     */
+    private Boolean instantUploadCrossUser = false;
+    
+    /**
+     * 分片上传配置
+     */
+    private Chunk chunk = new Chunk();
+    
+    /**
+     * 批量上传配置
+     */
+    private Batch batch = new Batch();
+    
+    /**
+     * 文件下载配置
+     */
+    private Download download = new Download();
+    
+    /**
+     * 下载/查看计数配置
+     */
+    private Counter counter = new Counter();
+    
+    /**
+     * 文件搜索配置
+     */
+    private Search search = new Search();
+    
+    /**
+     * 文档文本提取配置
+     */
+    private Extract extract = new Extract();
+    
+    /**
+     * 预览图配置
+     */
+    private Preview preview = new Preview();
+    
+    @Data
+    public static class Chunk {
+        
+        /**
+         * 默认分片大小（字节）
+         */
+        private Integer defaultSize = 5 * 1024 * 1024;
+        
+        /**
+         * 分片上传允许的最大文件大小（字节）
+         */
+        private Long maxFileSize = 2L * 1024 * 1024 * 1024;
+        
+        /**
+         * 未完成的上传任务保留时长（小时），超时后清理临时文件
+         */
+        private Integer expireHours = 24;
+    }
+    
+    @Data
+    public static class Batch {
+        
+        /**
+         * 单次批量上传最大文件数
+         */
+        private Integer maxFiles = 20;
+        
+        /**
+         * 批量上传并行度（同时写盘的文件数）
+         */
+        private Integer parallelism = 4;
+        
+        /**
+         * 等待队列容量，队列满时由请求线程自行处理
+         */
+        private Integer queueCapacity = 100;
+    }
+    
+    @Data
+    public static class Download {
+        
+        /**
+         * 是否启用零拷贝（Tomcat sendfile），不可用时自动回退为流式复制
+         */
+        private Boolean zeroCopy = true;
+        
+        /**
+         * 启用零拷贝的最小输出字节数，小文件直接复制更快
+         */
+        private Long zeroCopyMinSize = 48L * 1024;
+        
+        /**
+         * 公开预览的浏览器缓存时长（秒），文件上传后不可变，默认一年
+         */
+        private Long previewMaxAge = 365L * 24 * 3600;
+        
+        /**
+         * 文件元数据缓存条数上限
+         */
+        private Long metadataCacheSize = 10000L;
+        
+        /**
+         * 文件元数据缓存过期时间（分钟）
+         */
+        private Long metadataCacheExpireMinutes = 60L;
+    }
+    
+    @Data
+    public static class Counter {
+        
+        /**
+         * 计数回写间隔（毫秒）
+         */
+        private Long flushInterval = 5000L;
+        
+        /**
+         * 单条UPDATE合并的文件数
+         */
+        private Integer flushBatchSize = 500;
+    }
+    
+    @Data
+    public static class Search {
+        
+        /**
+         * 是否启用全文索引搜索（MySQL FULLTEXT + ngram分词），关闭时使用LIKE匹配
+         */
+        private Boolean fullText = true;
+        
+        /**
+         * 分词长度，需与MySQL的 ngram_token_size 一致，短于该长度的关键词使用LIKE匹配
+         */
+        private Integer ngramTokenSize = 2;
+    }
+    
+    @Data
+    public static class Extract {
+        
+        /**
+         * 是否在上传后提取文档文本写入知识库
+         */
+        private Boolean enabled = true;
+        
+        /**
+         * 并行提取的文档数
+         */
+        private Integer parallelism = 2;
+        
+        /**
+         * 内存等待队列长度，队列满时任务留在数据库中由轮询补充
+         */
+        private Integer queueCapacity = 100;
+        
+        /**
+         * 单个文档提取超时（秒）
+         */
+        private Integer timeoutSeconds = 60;
+        
+        /**
+         * 允许滞留的解析线程数（超时后不响应中断、仍在运行的解析），达到上限后新的提取暂缓
+         */
+        private Integer maxStuckParses = 2;
+        
+        /**
+         * 提取的最大字符数，超出部分截断
+         */
+        private Integer maxContentLength = 5_000_000;
+        
+        /**
+         * 摘要长度（字符）
+         */
+        private Integer summaryLength = 300;
+        
+        /**
+         * 最大尝试次数（含进程崩溃后重新领取）
+         */
+        private Integer maxAttempts = 3;
+        
+        /**
+         * 轮询待处理任务的间隔（毫秒）
+         */
+        private Long pollInterval = 5000L;
+    }
+    
+    @Data
+    public static class Preview {
+        
+        /**
+         * 是否生成预览图（图片缩略图、PDF首页、Excel首个工作表、PPT首张幻灯片）
+         */
+        private Boolean enabled = true;
+        
+        /**
+         * 预览图缓存目录，为空时使用 uploadPath/previews
+         */
+        private String cachePath;
+        
+        /**
+         * 预览图规格：名称 -> 最长边像素，请求参数 variant 只能取这里的名称
+         */
+        private Map<String, Integer> variants = new LinkedHashMap<>(Map.of("thumb", 200, "medium", 800));
+        
+        /**
+         * 上传后预先生成的规格，其余规格在首次访问时生成
+         */
+        private List<String> eagerVariants = List.of("thumb");
+        
+        /**
+         * JPEG压缩质量（0~1）
+         */
+        private Float quality = 0.85f;
+        
+        /**
+         * 超过该大小（字节）的源文件不生成预览图
+         */
+        private Long maxSourceSize = 50L * 1024 * 1024;
+        
+        /**
+         * 并行生成的文件数
+         */
+        private Integer parallelism = 2;
+        
+        /**
+         * 等待队列长度，队列满时跳过，首次访问时再生成
+         */
+        private Integer queueCapacity = 200;
+        
+        /**
+         * 访问时生成预览图的最长等待时间（毫秒），超时或线程池已满时图片返回原图，其他类型返回404
+         */
+        private Long waitTimeout = 3000L;
+    }
 }
-
@@ -1,6 +1,7 @@
 package com.financekb.config;
 
 import com.financekb.common.JwtUtil;
+import com.financekb.service.TokenRevocationService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -25,29 +26,27 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private final JwtUtil jwtUtil;
     
+    private final TokenRevocationService tokenRevocationService;
+    
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         
         String token = getTokenFromRequest(request);
         
-        if (StringUtils.hasText(token) && !jwtUtil.isTokenExpired(token)) {
-            try {
-                Long userId = jwtUtil.getUserIdFromToken(token);
-                String username = jwtUtil.getUsernameFromToken(token);
+        if (StringUtils.hasText(token)) {
+            // 签名和过期时间只校验一次，已验证的Token直接命中缓存；吊销检查只查本地内存
+            JwtUtil.TokenPrincipal principal = jwtUtil.parseToken(token);
+            if (principal != null && !tokenRevocationService.isRevoked(principal)) {
+                Long userId = principal.getUserId();
+                UsernamePasswordAuthenticationToken authentication = 
+                    new UsernamePasswordAuthenticationToken(
+                        userId, null, new ArrayList<>());
+                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authentication);
                 
-                if (userId != null && username != null) {
-                    UsernamePasswordAuthenticationToken authentication = 
-                        new UsernamePasswordAuthenticationToken(
-                            userId, null, new ArrayList<>());
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                    
-                    // 将用户ID添加到请求属性，方便Controller获取
-                    request.setAttribute("X-User-Id", userId);
-                }
-            } catch (Exception e) {
-                logger.error("JWT认证失败", e);
+                // 将用户ID添加到请求属性，方便Controller获取
+                request.setAttribute("X-User-Id", userId);
             }
         }
         
@@ -0,0 +1,59 @@
+package com.financekb.config;
+
+import com.financekb.common.JwtUtil;
+import com.financekb.service.TokenRevocationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * WebSocket握手认证
+ * 浏览器建立WebSocket时无法设置请求头，Token可通过 ?token= 传入，也支持 Authorization 请求头。
+ */
+@Component
+@RequiredArgsConstructor
+public class JwtHandshakeInterceptor implements HandshakeInterceptor {
+    
+    /**
+     * 会话属性：用户ID
+     */
+    public static final String USER_ID_ATTRIBUTE = "userId";
+    
+    private final JwtUtil jwtUtil;
+    
+    private final TokenRevocationService tokenRevocationService;
+    
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String token = getToken(request);
+        JwtUtil.TokenPrincipal principal = StringUtils.hasText(token) ? jwtUtil.parseToken(token) : null;
+        if (principal == null || tokenRevocationService.isRevoked(principal)) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        attributes.put(USER_ID_ATTRIBUTE, principal.getUserId());
+        return true;
+    }
+    
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+    
+    private String getToken(ServerHttpRequest request) {
+        String bearerToken = request.getHeaders().getFirst("Authorization");
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+            return bearerToken.substring(7);
+        }
+        return UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("token");
+    }
+}
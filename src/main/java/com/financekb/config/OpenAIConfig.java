@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.math.BigDecimal;
+
 /**
  * OpenAI配置
  */
@@ -38,8 +40,63 @@ public class OpenAIConfig {
     private Double temperature;
     
     /**
-     * 超时时间（毫秒）
+     * 超时时间（毫秒），流式响应中为两段数据之间的最长间隔
      */
     private Integer timeout;
+    
+    /**
+     * 最大并发请求数（流式对话会在整个生成期间占用一个请求）
+     */
+    private Integer maxConcurrentRequests = 64;
+    
+    /**
+     * 连接池保留的空闲连接数
+     */
+    private Integer maxIdleConnections = 16;
+    
+    /**
+     * 空闲连接保留时间（分钟）
+     */
+    private Integer keepAliveMinutes = 5;
+    
+    /**
+     * 失败重试次数（连接失败、408/409/429/5xx）
+     */
+    private Integer maxRetries = 3;
+    
+    /**
+     * 重试退避基准时间（毫秒），每次重试翻倍
+     */
+    private Long retryBaseDelay = 500L;
+    
+    /**
+     * 单次重试最长等待时间（毫秒），服务端要求等待更久时不再重试
+     */
+    private Long retryMaxDelay = 20000L;
+    
+    /**
+     * 向量化模型名称
+     */
+    private String embeddingModel = "text-embedding-3-small";
+    
+    /**
+     * 向量维度（模型支持时按此维度返回），为空时使用模型默认维度
+     */
+    private Integer embeddingDimensions;
+    
+    /**
+     * 单次向量化请求的最大输入条数
+     */
+    private Integer embeddingBatchSize = 64;
+    
+    /**
+     * 向量化攒批等待时间（毫秒）
+     */
+    private Long embeddingBatchDelay = 5L;
+    
+    /**
+     * 每千Token价格（美元），用于记录生成成本
+     */
+    private BigDecimal pricePer1kTokens = new BigDecimal("0.002");
 }
 
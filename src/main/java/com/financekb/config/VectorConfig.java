@@ -0,0 +1,98 @@
+package com.financekb.config;
+
+import com.financekb.client.OpenAIClient;
+import com.financekb.client.OpenAIEmbeddingProvider;
+import com.financekb.vector.EmbeddingProvider;
+import com.financekb.vector.HashingEmbeddingProvider;
+import lombok.Data;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 向量索引配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "vector")
+public class VectorConfig {
+    
+    /**
+     * 是否启用知识库向量索引
+     */
+    private Boolean enabled = true;
+    
+    /**
+     * 索引文件目录，为空时使用 uploadPath/vector
+     */
+    private String path;
+    
+    /**
+     * 向量维度（更换向量化实现或维度后需删除索引目录重建）
+     */
+    private Integer dimension = 256;
+    
+    /**
+     * 向量化实现：hashing-本地哈希，openai-OpenAI兼容接口（需配置 openai.embedding-dimensions 与 dimension 相同）
+     */
+    private String embedding = "hashing";
+    
+    /**
+     * 接口向量化的等待时间（毫秒）
+     */
+    private Long embeddingTimeout = 60000L;
+    
+    /**
+     * HNSW每层邻居数
+     */
+    private Integer m = 16;
+    
+    /**
+     * 构建时候选集大小
+     */
+    private Integer efConstruction = 200;
+    
+    /**
+     * 搜索时候选集大小，越大召回率越高
+     */
+    private Integer efSearch = 64;
+    
+    /**
+     * 文档分块长度（字符）
+     */
+    private Integer chunkSize = 500;
+    
+    /**
+     * 相邻分块重叠长度（字符）
+     */
+    private Integer chunkOverlap = 50;
+    
+    /**
+     * 图结构快照间隔（毫秒），崩溃后只需重放快照之后写入的向量
+     */
+    private Long checkpointInterval = 60000L;
+    
+    /**
+     * 补建索引的轮询间隔（毫秒）
+     */
+    private Long backfillInterval = 60000L;
+    
+    /**
+     * 每次补建的文档数
+     */
+    private Integer backfillBatchSize = 10;
+    
+    /**
+     * 按配置选择向量化实现，接入其他向量服务时声明自己的 EmbeddingProvider 即可替换
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public EmbeddingProvider embeddingProvider(ObjectProvider<OpenAIClient> openAIClient) {
+        if ("openai".equalsIgnoreCase(embedding)) {
+            return new OpenAIEmbeddingProvider(openAIClient.getObject(), dimension, embeddingTimeout);
+        }
+        return new HashingEmbeddingProvider(dimension);
+    }
+}
@@ -0,0 +1,28 @@
+package com.financekb.config;
+
+import com.financekb.controller.ChatWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * WebSocket配置
+ */
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+    
+    private final ChatWebSocketHandler chatWebSocketHandler;
+    
+    private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+    
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(chatWebSocketHandler, "/ws/chat")
+            .addInterceptors(jwtHandshakeInterceptor)
+            .setAllowedOriginPatterns("*");
+    }
+}
@@ -0,0 +1,38 @@
+package com.financekb.controller;
+
+import com.financekb.common.Result;
+import com.financekb.dto.AiGenerateDTO;
+import com.financekb.service.AiGenerationService;
+import com.financekb.vo.AiGenerateVO;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AI生成控制器
+ */
+@Slf4j
+@RestController
+@RequestMapping("/ai")
+@RequiredArgsConstructor
+public class AiController {
+    
+    private final AiGenerationService aiGenerationService;
+    
+    /**
+     * 文本生成（可基于知识库，相同或相似的问题直接返回缓存结果）
+     */
+    @PostMapping("/generate")
+    public CompletableFuture<Result<AiGenerateVO>> generate(@Valid @RequestBody AiGenerateDTO aiGenerateDTO,
+                                                            HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("X-User-Id");
+        if (userId == null) {
+            return CompletableFuture.completedFuture(Result.error(401, "未授权"));
+        }
+        return aiGenerationService.generate(userId, aiGenerateDTO);
+    }
+}
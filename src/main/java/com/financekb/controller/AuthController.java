@@ -1,14 +1,20 @@
 package com.financekb.controller;
 
+import com.financekb.common.JwtUtil;
 import com.financekb.common.Result;
 import com.financekb.dto.LoginDTO;
 import com.financekb.dto.RegisterDTO;
+import com.financekb.service.TokenRevocationService;
 import com.financekb.service.UserService;
+import com.financekb.vo.AvailabilityVO;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 认证控制器
  */
@@ -18,24 +24,52 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
     
     private final UserService userService;
+    private final JwtUtil jwtUtil;
+    private final TokenRevocationService tokenRevocationService;
     
     /**
      * 用户注册
      */
     @PostMapping("/register")
-    public Result<String> register(@Valid @RequestBody RegisterDTO registerDTO) {
+    public CompletableFuture<Result<String>> register(@Valid @RequestBody RegisterDTO registerDTO) {
         return userService.register(registerDTO);
     }
     
+    /**
+     * 检查用户名/邮箱是否可用（注册表单实时提示）
+     */
+    @GetMapping("/availability")
+    public Result<AvailabilityVO> checkAvailability(@RequestParam(required = false) String username,
+                                                    @RequestParam(required = false) String email) {
+        return Result.success(userService.checkAvailability(username, email));
+    }
+    
     /**
      * 用户登录
      */
     @PostMapping("/login")
-    public Result<String> login(@Valid @RequestBody LoginDTO loginDTO, HttpServletRequest request) {
+    public CompletableFuture<Result<String>> login(@Valid @RequestBody LoginDTO loginDTO, HttpServletRequest request) {
         String ip = getClientIp(request);
         return userService.login(loginDTO, ip);
     }
     
+    /**
+     * 退出登录（吊销当前Token）
+     */
+    @PostMapping("/logout")
+    public Result<String> logout(HttpServletRequest request) {
+        String bearerToken = request.getHeader("Authorization");
+        if (!StringUtils.hasText(bearerToken) || !bearerToken.startsWith("Bearer ")) {
+            return Result.error(401, "未授权");
+        }
+        JwtUtil.TokenPrincipal principal = jwtUtil.parseToken(bearerToken.substring(7));
+        if (principal == null) {
+            return Result.error(401, "未授权");
+        }
+        tokenRevocationService.revokeToken(principal);
+        return Result.success("退出成功");
+    }
+    
     /**
      * 获取客户端IP
      */
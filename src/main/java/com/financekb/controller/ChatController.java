@@ -0,0 +1,115 @@
+package com.financekb.controller;
+
+import com.financekb.client.ChatCall;
+import com.financekb.client.ChatStreamListener;
+import com.financekb.common.BusinessException;
+import com.financekb.config.ChatConfig;
+import com.financekb.dto.ChatRequestDTO;
+import com.financekb.service.ChatService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 对话控制器（SSE流式输出）
+ * <p>
+ * 事件：meta（会话ID，连接建立后立即发送）、token（增量内容）、done（生成结束）、error。
+ * 数据均为JSON，内容中的换行不会破坏SSE分帧。
+ */
+@Slf4j
+@RestController
+@RequestMapping("/chat")
+@RequiredArgsConstructor
+public class ChatController {
+    
+    private final ChatService chatService;
+    private final ChatConfig chatConfig;
+    
+    /**
+     * 流式对话
+     */
+    @PostMapping("/stream")
+    public SseEmitter stream(@RequestBody ChatRequestDTO chatRequestDTO,
+                             HttpServletRequest request,
+                             HttpServletResponse response) {
+        SseEmitter emitter = new SseEmitter(chatConfig.getSseTimeout());
+        // 关闭反向代理（nginx）的响应缓冲，Token到达即下发
+        response.setHeader("X-Accel-Buffering", "no");
+        response.setHeader("Cache-Control", "no-cache");
+        
+        Long userId = (Long) request.getAttribute("X-User-Id");
+        if (userId == null) {
+            return fail(emitter, "未授权");
+        }
+        if (!StringUtils.hasText(chatRequestDTO.getMessage())) {
+            return fail(emitter, "消息不能为空");
+        }
+        
+        String sessionId = chatService.resolveSessionId(chatRequestDTO.getSessionId());
+        if (!send(emitter, "meta", Map.of("sessionId", sessionId))) {
+            return emitter;
+        }
+        
+        ChatCall call;
+        try {
+            call = chatService.stream(userId, sessionId, chatRequestDTO, "sse", new ChatStreamListener() {
+                @Override
+                public void onToken(String token) {
+                    send(emitter, "token", Map.of("content", token));
+                }
+                
+                @Override
+                public void onComplete(String content, Integer tokenUsage) {
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("sessionId", sessionId);
+                    data.put("tokenUsage", tokenUsage);
+                    if (send(emitter, "done", data)) {
+                        emitter.complete();
+                    }
+                }
+                
+                @Override
+                public void onError(Throwable error) {
+                    fail(emitter, "AI服务暂时不可用，请稍后重试");
+                }
+            });
+        } catch (IllegalArgumentException | BusinessException e) {
+            return fail(emitter, e.getMessage());
+        }
+        // 客户端断开或超时时取消上游请求，释放连接
+        emitter.onTimeout(call::cancel);
+        emitter.onError(e -> call.cancel());
+        emitter.onCompletion(call::cancel);
+        return emitter;
+    }
+    
+    /**
+     * 发送事件，失败（客户端已断开）时结束连接
+     */
+    private boolean send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("SSE发送失败，客户端可能已断开：{}", e.getMessage());
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+    
+    private SseEmitter fail(SseEmitter emitter, String message) {
+        if (send(emitter, "error", Map.of("message", message))) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+}
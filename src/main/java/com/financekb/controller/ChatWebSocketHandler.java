@@ -0,0 +1,143 @@
+package com.financekb.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.financekb.client.ChatCall;
+import com.financekb.client.ChatStreamListener;
+import com.financekb.common.BusinessException;
+import com.financekb.config.JwtHandshakeInterceptor;
+import com.financekb.dto.ChatRequestDTO;
+import com.financekb.service.ChatService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 对话WebSocket处理器（/ws/chat）
+ * <p>
+ * 客户端发送 {"sessionId","message","knowledgeBaseId"}，服务端依次推送
+ * {"type":"meta","sessionId"}、{"type":"token","content"}、{"type":"done","sessionId","tokenUsage"}，
+ * 失败时推送 {"type":"error","message"}。同一连接同时只处理一条消息，连接关闭时取消生成。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatWebSocketHandler extends TextWebSocketHandler {
+    
+    private static final int SEND_TIME_LIMIT = 10_000;
+    private static final int BUFFER_SIZE_LIMIT = 512 * 1024;
+    
+    private final ChatService chatService;
+    private final ObjectMapper objectMapper;
+    
+    /**
+     * 连接ID -> 线程安全的发送包装
+     */
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    
+    /**
+     * 正在生成回复的连接
+     */
+    private final Set<String> busy = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * 连接ID -> 最近一次生成（连接关闭时取消，已结束的取消无副作用）
+     */
+    private final Map<String, ChatCall> calls = new ConcurrentHashMap<>();
+    
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        // 模型回调在HTTP客户端线程上发送，需串行化
+        sessions.put(session.getId(), new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT, BUFFER_SIZE_LIMIT));
+    }
+    
+    @Override
+    protected void handleTextMessage(WebSocketSession rawSession, TextMessage message) {
+        WebSocketSession session = sessions.getOrDefault(rawSession.getId(), rawSession);
+        Long userId = (Long) session.getAttributes().get(JwtHandshakeInterceptor.USER_ID_ATTRIBUTE);
+        
+        ChatRequestDTO chatRequestDTO;
+        try {
+            chatRequestDTO = objectMapper.readValue(message.getPayload(), ChatRequestDTO.class);
+        } catch (JsonProcessingException e) {
+            send(session, Map.of("type", "error", "message", "消息格式错误"));
+            return;
+        }
+        if (!StringUtils.hasText(chatRequestDTO.getMessage())) {
+            send(session, Map.of("type", "error", "message", "消息不能为空"));
+            return;
+        }
+        if (!busy.add(session.getId())) {
+            send(session, Map.of("type", "error", "message", "上一条消息尚未回复完成"));
+            return;
+        }
+        
+        String sessionId = chatService.resolveSessionId(chatRequestDTO.getSessionId());
+        send(session, Map.of("type", "meta", "sessionId", sessionId));
+        try {
+            ChatCall call = chatService.stream(userId, sessionId, chatRequestDTO, "websocket", new ChatStreamListener() {
+                @Override
+                public void onToken(String token) {
+                    send(session, Map.of("type", "token", "content", token));
+                }
+                
+                @Override
+                public void onComplete(String content, Integer tokenUsage) {
+                    busy.remove(session.getId());
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("type", "done");
+                    data.put("sessionId", sessionId);
+                    data.put("tokenUsage", tokenUsage);
+                    send(session, data);
+                }
+                
+                @Override
+                public void onError(Throwable error) {
+                    busy.remove(session.getId());
+                    send(session, Map.of("type", "error", "message", "AI服务暂时不可用，请稍后重试"));
+                }
+            });
+            calls.put(session.getId(), call);
+            if (!session.isOpen()) {
+                // 登记之前连接已关闭
+                call.cancel();
+            }
+        } catch (IllegalArgumentException | BusinessException e) {
+            busy.remove(session.getId());
+            send(session, Map.of("type", "error", "message", e.getMessage()));
+        }
+    }
+    
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+        busy.remove(session.getId());
+        ChatCall call = calls.remove(session.getId());
+        if (call != null) {
+            call.cancel();
+        }
+    }
+    
+    private void send(WebSocketSession session, Map<String, ?> data) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(data)));
+        } catch (IOException | RuntimeException e) {
+            log.debug("WebSocket发送失败，客户端可能已断开：{}", e.getMessage());
+        }
+    }
+}
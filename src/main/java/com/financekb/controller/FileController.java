@@ -1,23 +1,29 @@
 package com.financekb.controller;
 
+import com.financekb.common.FileMetadataCache;
+import com.financekb.common.FileResponseWriter;
 import com.financekb.common.Result;
+import com.financekb.common.ResultCode;
+import com.financekb.dto.ChunkUploadInitDTO;
+import com.financekb.dto.InstantUploadDTO;
+import com.financekb.service.ChunkUploadService;
+import com.financekb.service.FilePreviewService;
+import com.financekb.service.FileSearchService;
 import com.financekb.service.FileService;
+import com.financekb.service.UserService;
+import com.financekb.vo.ChunkUploadVO;
 import com.financekb.vo.FileInfoVO;
 import com.financekb.config.FileConfig;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.stream.Collectors;
@@ -32,7 +38,13 @@ import java.util.stream.Collectors;
 public class FileController {
     
     private final FileService fileService;
+    private final ChunkUploadService chunkUploadService;
     private final FileConfig fileConfig;
+    private final FileResponseWriter fileResponseWriter;
+    private final FileMetadataCache fileMetadataCache;
+    private final FileSearchService fileSearchService;
+    private final FilePreviewService filePreviewService;
+    private final UserService userService;
     
     /**
      * 单文件上传
@@ -72,16 +84,92 @@ public class FileController {
         return fileService.uploadFiles(files, userId, category, tags, description);
     }
     
+    /**
+     * 秒传：按内容摘要检查，内容已存在时直接完成上传（data为空表示需要正常上传）
+     */
+    @PostMapping("/upload/instant")
+    public Result<FileInfoVO> instantUpload(@Valid @RequestBody InstantUploadDTO dto, HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("X-User-Id");
+        if (userId == null) {
+            return Result.error(401, "未授权");
+        }
+        
+        return fileService.instantUpload(dto, userId);
+    }
+    
+    /**
+     * 分片上传：初始化（同一文件未完成时返回已上传分片，用于断点续传）
+     */
+    @PostMapping("/upload/chunk/init")
+    public Result<ChunkUploadVO> initChunkUpload(@Valid @RequestBody ChunkUploadInitDTO dto, HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("X-User-Id");
+        if (userId == null) {
+            return Result.error(401, "未授权");
+        }
+        
+        return chunkUploadService.initUpload(dto, userId);
+    }
+    
+    /**
+     * 分片上传：上传单个分片（请求体为分片原始字节，可并行、乱序上传）
+     */
+    @PutMapping("/upload/chunk/{uploadId}/{chunkIndex}")
+    public Result<Integer> uploadChunk(
+            @PathVariable String uploadId,
+            @PathVariable Integer chunkIndex,
+            HttpServletRequest request) throws IOException {
+        
+        Long userId = (Long) request.getAttribute("X-User-Id");
+        if (userId == null) {
+            return Result.error(401, "未授权");
+        }
+        
+        return chunkUploadService.uploadChunk(uploadId, chunkIndex, request.getInputStream(), userId);
+    }
+    
+    /**
+     * 分片上传：查询已上传分片
+     */
+    @GetMapping("/upload/chunk/{uploadId}")
+    public Result<ChunkUploadVO> getChunkUploadStatus(@PathVariable String uploadId, HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("X-User-Id");
+        if (userId == null) {
+            return Result.error(401, "未授权");
+        }
+        
+        return chunkUploadService.getUploadStatus(uploadId, userId);
+    }
+    
+    /**
+     * 分片上传：完成上传
+     */
+    @PostMapping("/upload/chunk/{uploadId}/complete")
+    public Result<FileInfoVO> completeChunkUpload(@PathVariable String uploadId, HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("X-User-Id");
+        if (userId == null) {
+            return Result.error(401, "未授权");
+        }
+        
+        return chunkUploadService.completeUpload(uploadId, userId);
+    }
+    
     /**
      * 获取文件列表（分页）
+     * paging=offset（默认）按页码分页；paging=cursor 按游标分页，翻页传入上一页返回的 nextCursor，
+     * 每页开销固定，withTotal=true 时才统计总数；facets=true 时附带分类/扩展名/类型分面计数
      */
     @GetMapping("/list")
     public Result<?> getFileList(
             @RequestParam(value = "keyword", required = false) String keyword,
             @RequestParam(value = "category", required = false) String category,
             @RequestParam(value = "tags", required = false) String tags,
+            @RequestParam(value = "tagMode", defaultValue = "and") String tagMode,
             @RequestParam(value = "current", defaultValue = "1") Integer current,
             @RequestParam(value = "size", defaultValue = "10") Integer size,
+            @RequestParam(value = "paging", defaultValue = "offset") String paging,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "withTotal", defaultValue = "false") Boolean withTotal,
+            @RequestParam(value = "facets", defaultValue = "false") Boolean facets,
             HttpServletRequest request) {
         
         Long userId = (Long) request.getAttribute("X-User-Id");
@@ -89,7 +177,33 @@ public class FileController {
             return Result.error(401, "未授权");
         }
         
-        return fileService.getFileList(userId, keyword, category, tags, current, size);
+        // tagMode=and 同时包含所有标签，tagMode=or 包含任一标签
+        boolean matchAllTags = !"or".equalsIgnoreCase(tagMode);
+        if ("cursor".equalsIgnoreCase(paging)) {
+            return fileService.getFileListByCursor(userId, keyword, category, tags, matchAllTags, cursor, size,
+                Boolean.TRUE.equals(withTotal), Boolean.TRUE.equals(facets));
+        }
+        return fileService.getFileList(userId, keyword, category, tags, matchAllTags, current, size,
+            Boolean.TRUE.equals(facets));
+    }
+    
+    /**
+     * 重建文件全文索引（仅管理员，后台执行）
+     */
+    @PostMapping("/search/rebuild")
+    public Result<String> rebuildSearchIndex(HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("X-User-Id");
+        if (userId == null) {
+            return Result.error(401, "未授权");
+        }
+        if (!userService.hasRole(userId, "admin")) {
+            return Result.error(ResultCode.FORBIDDEN.getCode(), ResultCode.FORBIDDEN.getMessage());
+        }
+        
+        if (!fileSearchService.rebuildIndex()) {
+            return Result.error(ResultCode.BAD_REQUEST.getCode(), "索引正在重建");
+        }
+        return Result.success("索引重建已开始，完成前搜索使用LIKE匹配");
     }
     
     /**
@@ -134,20 +248,17 @@ public class FileController {
         String uploadPath = fileConfig.getUploadPath();
         Path filePath = Paths.get(uploadPath, urlPath);
         
-        if (!Files.exists(filePath)) {
+        FileMetadataCache.FileMetadata metadata = fileMetadataCache.get(filePath);
+        if (metadata == null) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             return;
         }
         
-        // 增加下载次数
-        fileService.incrementDownloadCount(fileId);
-        
         // 设置Content-Type
-        String contentType = Files.probeContentType(filePath);
+        String contentType = metadata.getContentType();
         if (contentType == null) {
             contentType = "application/octet-stream";
         }
-        response.setContentType(contentType);
         
         // 设置Content-Disposition头（完全避免中文字符，只使用ASCII）
         String fileName = fileInfo.getFileName();
@@ -171,9 +282,6 @@ public class FileController {
         String asciiFileName = "file_" + System.currentTimeMillis() + fileExt;
         
         // 设置响应头（必须在写入响应体之前）
-        // 确保响应头在写入响应体之前已经设置完成
-        response.setStatus(HttpServletResponse.SC_OK);
-        
         try {
             // RFC 5987标准编码（URL编码）
             String encodedFileName = java.net.URLEncoder.encode(fileName, java.nio.charset.StandardCharsets.UTF_8)
@@ -231,36 +339,67 @@ public class FileController {
             log.warn("响应头已提交，可能无法设置Content-Disposition");
         }
         
-        // 设置文件大小
-        response.setContentLengthLong(Files.size(filePath));
+        // 下载需要鉴权，只允许客户端私有缓存，每次使用前通过条件请求校验
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        
+        // 写入文件内容（支持Range分段下载）
+        int status = fileResponseWriter.write(request, response, metadata, contentType);
         
-        // 写入文件内容
-        try (var inputStream = Files.newInputStream(filePath);
-             var outputStream = response.getOutputStream()) {
-            inputStream.transferTo(outputStream);
-            outputStream.flush();
+        // 增加下载次数（304不计数，分段续传、拖动播放只在首段请求时计数）
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (status == HttpServletResponse.SC_OK
+                || (status == HttpServletResponse.SC_PARTIAL_CONTENT && range != null && range.startsWith("bytes=0-"))) {
+            fileService.incrementDownloadCount(fileId);
         }
     }
     
     /**
-     * 文件预览（公开访问）
+     * 文件预览（公开访问，支持Range分段请求）
+     * <p>
+     * 指定 variant 时返回对应规格的JPEG预览图（缩略图、PDF首页等），无法生成预览图时图片返回原图，其他类型返回404
      */
     @GetMapping("/public/{userId}/{datePath}/{fileName}")
-    public ResponseEntity<Resource> previewFile(
+    public void previewFile(
             @PathVariable String userId,
             @PathVariable String datePath,
-            @PathVariable String fileName) throws IOException {
+            @PathVariable String fileName,
+            @RequestParam(value = "variant", required = false) String variant,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
         
         // 使用配置的上传路径
         String uploadPath = fileConfig.getUploadPath();
         Path filePath = Paths.get(uploadPath, userId, datePath, fileName);
         
-        if (!Files.exists(filePath)) {
-            return ResponseEntity.notFound().build();
+        // 元数据走缓存，重复访问不再读取文件系统
+        FileMetadataCache.FileMetadata metadata = fileMetadataCache.get(filePath);
+        if (metadata == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
         
-        Resource resource = new FileSystemResource(filePath.toFile());
-        String contentType = Files.probeContentType(filePath);
+        String contentType = metadata.getContentType();
+        
+        if (variant != null) {
+            if (!filePreviewService.isVariant(variant)) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+            // 预览图已缓存时直接返回，未命中时在预览线程池生成并限时等待；未生成时图片返回原图，其他返回404
+            Path variantPath = filePreviewService.getVariant(filePath, variant);
+            FileMetadataCache.FileMetadata variantMetadata = variantPath != null ? fileMetadataCache.get(variantPath) : null;
+            if (variantMetadata != null) {
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline");
+                response.setHeader(HttpHeaders.CACHE_CONTROL,
+                    "public, max-age=" + fileConfig.getDownload().getPreviewMaxAge() + ", immutable");
+                fileResponseWriter.write(request, response, variantMetadata, FilePreviewService.CONTENT_TYPE);
+                return;
+            }
+            if (contentType == null || !contentType.startsWith("image/")) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+        }
         
         // 如果是图片或PDF，直接预览；否则下载
         boolean isPreviewable = contentType != null && 
@@ -290,13 +429,12 @@ public class FileController {
             encodedFileName
         );
         
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
-        
-        return ResponseEntity.ok()
-            .headers(headers)
-            .contentType(MediaType.parseMediaType(contentType != null ? contentType : "application/octet-stream"))
-            .body(resource);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        // 文件名为UUID且上传后不可变，允许浏览器和CDN长期缓存
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+            "public, max-age=" + fileConfig.getDownload().getPreviewMaxAge() + ", immutable");
+        fileResponseWriter.write(request, response, metadata,
+            contentType != null ? contentType : "application/octet-stream");
     }
     
     /**
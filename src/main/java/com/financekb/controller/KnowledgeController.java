@@ -0,0 +1,45 @@
+package com.financekb.controller;
+
+import com.financekb.common.Result;
+import com.financekb.common.ResultCode;
+import com.financekb.service.KnowledgeIndexService;
+import com.financekb.vo.KnowledgeSearchVO;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 知识库控制器
+ */
+@Slf4j
+@RestController
+@RequestMapping("/knowledge")
+@RequiredArgsConstructor
+public class KnowledgeController {
+    
+    private final KnowledgeIndexService knowledgeIndexService;
+    
+    /**
+     * 语义搜索（本人的和公开的知识库文档）
+     */
+    @GetMapping("/search")
+    public Result<List<KnowledgeSearchVO>> search(
+            @RequestParam("q") String query,
+            @RequestParam(value = "topK", defaultValue = "10") Integer topK,
+            HttpServletRequest request) {
+        
+        Long userId = (Long) request.getAttribute("X-User-Id");
+        if (userId == null) {
+            return Result.error(401, "未授权");
+        }
+        if (!StringUtils.hasText(query)) {
+            return Result.error(ResultCode.BAD_REQUEST.getCode(), "搜索内容不能为空");
+        }
+        
+        return Result.success(knowledgeIndexService.search(userId, query.trim(), topK));
+    }
+}
@@ -1,14 +1,19 @@
 package com.financekb.controller;
 
 import com.financekb.common.Result;
+import com.financekb.common.ResultCode;
+import com.financekb.dto.ChangePasswordDTO;
 import com.financekb.service.UserService;
 import com.financekb.vo.UserVO;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 用户控制器
  */
@@ -36,5 +41,33 @@ public class UserController {
         }
         return userService.getUserInfo(userId);
     }
+    
+    /**
+     * 修改密码
+     */
+    @PutMapping("/password")
+    public CompletableFuture<Result<String>> changePassword(@Valid @RequestBody ChangePasswordDTO changePasswordDTO,
+                                         HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute("X-User-Id");
+        if (userId == null) {
+            return CompletableFuture.completedFuture(Result.error(401, "未授权"));
+        }
+        return userService.changePassword(userId, changePasswordDTO);
+    }
+    
+    /**
+     * 启用/禁用用户（仅管理员）
+     */
+    @PutMapping("/{userId}/status")
+    public Result<String> updateStatus(@PathVariable Long userId, @RequestParam Integer status,
+                                       HttpServletRequest request) {
+        Long operatorId = (Long) request.getAttribute("X-User-Id");
+        if (operatorId == null) {
+            return Result.error(401, "未授权");
+        }
+        if (!userService.hasRole(operatorId, "admin")) {
+            return Result.error(ResultCode.FORBIDDEN.getCode(), ResultCode.FORBIDDEN.getMessage());
+        }
+        return userService.updateStatus(userId, status);
+    }
 }
-
@@ -0,0 +1,24 @@
+package com.financekb.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+/**
+ * AI文本生成请求DTO
+ */
+@Data
+public class AiGenerateDTO {
+    
+    @NotBlank(message = "提示词不能为空")
+    private String prompt;
+    
+    /**
+     * 基于的知识库ID（可选）
+     */
+    private Long knowledgeBaseId;
+    
+    /**
+     * 是否使用缓存，默认使用
+     */
+    private Boolean useCache = true;
+}
@@ -0,0 +1,19 @@
+package com.financekb.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+/**
+ * 修改密码DTO
+ */
+@Data
+public class ChangePasswordDTO {
+    
+    @NotBlank(message = "原密码不能为空")
+    private String oldPassword;
+    
+    @NotBlank(message = "新密码不能为空")
+    @Size(min = 6, max = 20, message = "密码长度必须在6-20之间")
+    private String newPassword;
+}
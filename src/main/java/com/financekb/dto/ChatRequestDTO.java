@@ -0,0 +1,26 @@
+package com.financekb.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+/**
+ * 对话请求DTO
+ */
+@Data
+public class ChatRequestDTO {
+    
+    /**
+     * 会话ID，为空时创建新会话
+     */
+    @Size(max = 100, message = "会话ID过长")
+    private String sessionId;
+    
+    @NotBlank(message = "消息不能为空")
+    private String message;
+    
+    /**
+     * 关联知识库ID
+     */
+    private Long knowledgeBaseId;
+}
@@ -0,0 +1,50 @@
+package com.financekb.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+/**
+ * 分片上传初始化DTO
+ */
+@Data
+public class ChunkUploadInitDTO {
+    
+    @NotBlank(message = "文件名不能为空")
+    private String fileName;
+    
+    @NotNull(message = "文件大小不能为空")
+    @Positive(message = "文件大小必须大于0")
+    private Long fileSize;
+    
+    /**
+     * 文件类型（MIME）
+     */
+    private String contentType;
+    
+    /**
+     * 文件内容SHA-256（可选），内容已存在时直接秒传
+     */
+    private String fileHash;
+    
+    /**
+     * 分片大小（字节），不传则使用服务端默认值
+     */
+    private Integer chunkSize;
+    
+    /**
+     * 文件分类
+     */
+    private String category;
+    
+    /**
+     * 文件标签（逗号分隔）
+     */
+    private String tags;
+    
+    /**
+     * 文件描述
+     */
+    private String description;
+}
@@ -0,0 +1,20 @@
+package com.financekb.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 文件计数增量（批量回写用）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileCounterDelta {
+    
+    private Long fileId;
+    
+    private Long downloadDelta;
+    
+    private Long viewDelta;
+}
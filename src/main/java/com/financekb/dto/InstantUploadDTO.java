@@ -0,0 +1,40 @@
+package com.financekb.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+/**
+ * 秒传DTO
+ */
+@Data
+public class InstantUploadDTO {
+    
+    @NotBlank(message = "文件摘要不能为空")
+    @Pattern(regexp = "^[0-9a-fA-F]{64}$", message = "文件摘要必须是SHA-256")
+    private String fileHash;
+    
+    @NotBlank(message = "文件名不能为空")
+    private String fileName;
+    
+    @NotNull(message = "文件大小不能为空")
+    @Positive(message = "文件大小必须大于0")
+    private Long fileSize;
+    
+    /**
+     * 文件分类
+     */
+    private String category;
+    
+    /**
+     * 文件标签（逗号分隔）
+     */
+    private String tags;
+    
+    /**
+     * 文件描述
+     */
+    private String description;
+}
@@ -0,0 +1,22 @@
+package com.financekb.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 最近登录信息（批量回写用）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LastLoginRecord {
+    
+    private Long userId;
+    
+    private LocalDateTime loginTime;
+    
+    private String loginIp;
+}
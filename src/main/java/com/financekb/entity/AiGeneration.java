@@ -0,0 +1,54 @@
+package com.financekb.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * AI生成记录实体
+ */
+@Data
+@TableName("ai_generation")
+public class AiGeneration {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private Long userId;
+    
+    /**
+     * 生成类型：text/voice/image/video/document
+     */
+    private String generationType;
+    
+    private Long knowledgeBaseId;
+    
+    private String prompt;
+    
+    /**
+     * 生成结果（JSON格式）
+     */
+    private String result;
+    
+    private Integer tokenUsage;
+    
+    /**
+     * 成本（美元），命中缓存时为0
+     */
+    private BigDecimal cost;
+    
+    /**
+     * 是否命中缓存：0-否，1-是
+     */
+    private Integer cacheHit;
+    
+    /**
+     * 状态：0-失败，1-成功
+     */
+    private Integer status;
+    
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+}
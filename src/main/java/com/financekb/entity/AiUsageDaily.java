@@ -0,0 +1,39 @@
+package com.financekb.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * AI用量日汇总实体（按 用户+日期 聚合，异步批量累加）
+ */
+@Data
+@TableName("ai_usage_daily")
+public class AiUsageDaily {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private Long userId;
+    
+    private LocalDate usageDate;
+    
+    /**
+     * 请求数（含命中缓存的请求）
+     */
+    private Integer requestCount;
+    
+    /**
+     * 命中缓存的请求数
+     */
+    private Integer cacheHitCount;
+    
+    private Long tokenUsage;
+    
+    /**
+     * 成本（美元）
+     */
+    private BigDecimal cost;
+}
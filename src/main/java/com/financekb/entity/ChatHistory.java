@@ -0,0 +1,34 @@
+package com.financekb.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 对话记录实体
+ */
+@Data
+@TableName("chat_history")
+public class ChatHistory {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private Long userId;
+    
+    private String sessionId;
+    
+    /**
+     * 消息类型：1-用户，2-助手
+     */
+    private Integer messageType;
+    
+    private String content;
+    
+    private Long knowledgeBaseId;
+    
+    private Integer tokenUsage;
+    
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+}
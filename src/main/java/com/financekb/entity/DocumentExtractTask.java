@@ -0,0 +1,35 @@
+package com.financekb.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 文档文本提取任务实体
+ */
+@Data
+@TableName("document_extract_task")
+public class DocumentExtractTask {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private Long fileId;
+    
+    private Long userId;
+    
+    /**
+     * 状态：0-待处理，1-处理中，2-成功，3-失败，4-已跳过
+     */
+    private Integer status;
+    
+    private Integer attempts;
+    
+    private String errorMessage;
+    
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+    
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updateTime;
+}
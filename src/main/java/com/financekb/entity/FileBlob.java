@@ -0,0 +1,32 @@
+package com.financekb.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 文件存储对象实体（按内容SHA-256去重）
+ */
+@Data
+@TableName("file_blob")
+public class FileBlob {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private String fileHash;
+    
+    private String filePath;
+    
+    private String fileType;
+    
+    private Long fileSize;
+    
+    private Integer refCount;
+    
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+    
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,34 @@
+package com.financekb.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+/**
+ * 文件分面计数实体（按 用户+分类+扩展名+类型 聚合的文件数，上传/删除时增量维护）
+ */
+@Data
+@TableName("file_facet_count")
+public class FileFacetCount {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private Long userId;
+    
+    /**
+     * 分类（无分类为空串）
+     */
+    private String category;
+    
+    /**
+     * 扩展名（无扩展名为空串）
+     */
+    private String fileExt;
+    
+    /**
+     * 文件类型（MIME，未知为空串）
+     */
+    private String fileType;
+    
+    private Integer fileCount;
+}
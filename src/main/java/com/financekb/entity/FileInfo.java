@@ -28,6 +28,10 @@ public class FileInfo {
     
     private String fileExt;
     
+    private String fileHash;
+    
+    private Long blobId;
+    
     private String category;
     
     private String tags;
@@ -0,0 +1,25 @@
+package com.financekb.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 文件标签实体（file_info.tags 的规范化索引，每个标签一行）
+ */
+@Data
+@TableName("file_tag")
+public class FileTag {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private Long fileId;
+    
+    private Long userId;
+    
+    private String tag;
+    
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+}
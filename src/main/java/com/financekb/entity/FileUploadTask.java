@@ -0,0 +1,44 @@
+package com.financekb.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 分片上传任务实体
+ */
+@Data
+@TableName("file_upload_task")
+public class FileUploadTask {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private String uploadId;
+    
+    private Long userId;
+    
+    private String fileName;
+    
+    private Long fileSize;
+    
+    private String fileType;
+    
+    private Integer chunkSize;
+    
+    private Integer totalChunks;
+    
+    private String category;
+    
+    private String tags;
+    
+    private String description;
+    
+    private Integer status;
+    
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+    
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updateTime;
+}
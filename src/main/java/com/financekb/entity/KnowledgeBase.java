@@ -0,0 +1,41 @@
+package com.financekb.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 知识库实体
+ */
+@Data
+@TableName("knowledge_base")
+public class KnowledgeBase {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private Long userId;
+    
+    private String name;
+    
+    private String description;
+    
+    private String coverImage;
+    
+    private Long categoryId;
+    
+    private Integer isPublic;
+    
+    private Integer documentCount;
+    
+    private Integer viewCount;
+    
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+    
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updateTime;
+    
+    @TableLogic
+    private Integer deleted;
+}
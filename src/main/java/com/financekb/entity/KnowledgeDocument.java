@@ -0,0 +1,36 @@
+package com.financekb.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 知识库文档实体
+ */
+@Data
+@TableName("knowledge_document")
+public class KnowledgeDocument {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    private Long knowledgeBaseId;
+    
+    private Long fileId;
+    
+    private String title;
+    
+    private String content;
+    
+    private String contentSummary;
+    
+    private String vectorId;
+    
+    private Integer version;
+    
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+    
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,12 @@
+package com.financekb.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.financekb.entity.AiGeneration;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * AI生成记录 Mapper
+ */
+@Mapper
+public interface AiGenerationMapper extends BaseMapper<AiGeneration> {
+}
@@ -0,0 +1,31 @@
+package com.financekb.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.financekb.entity.AiUsageDaily;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * AI用量日汇总 Mapper
+ */
+@Mapper
+public interface AiUsageDailyMapper extends BaseMapper<AiUsageDaily> {
+    
+    /**
+     * 批量累加用量（不存在时插入）
+     */
+    @Insert("<script>" +
+            "INSERT INTO ai_usage_daily (user_id, usage_date, request_count, cache_hit_count, token_usage, cost) VALUES " +
+            "<foreach collection='list' item='u' separator=','>" +
+            "(#{u.userId}, #{u.usageDate}, #{u.requestCount}, #{u.cacheHitCount}, #{u.tokenUsage}, #{u.cost})" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE request_count = request_count + VALUES(request_count)," +
+            " cache_hit_count = cache_hit_count + VALUES(cache_hit_count)," +
+            " token_usage = token_usage + VALUES(token_usage)," +
+            " cost = cost + VALUES(cost)" +
+            "</script>")
+    int upsertBatch(@Param("list") List<AiUsageDaily> list);
+}
@@ -0,0 +1,37 @@
+package com.financekb.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.financekb.entity.ChatHistory;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 对话记录 Mapper
+ */
+@Mapper
+public interface ChatHistoryMapper extends BaseMapper<ChatHistory> {
+    
+    /**
+     * 批量写入（单条多值INSERT）
+     */
+    @Insert("<script>" +
+            "INSERT INTO chat_history (user_id, session_id, message_type, content, knowledge_base_id, token_usage, create_time) VALUES " +
+            "<foreach collection='list' item='h' separator=','>" +
+            "(#{h.userId}, #{h.sessionId}, #{h.messageType}, #{h.content}, #{h.knowledgeBaseId}, #{h.tokenUsage}, #{h.createTime})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("list") List<ChatHistory> list);
+    
+    /**
+     * 查询会话最近的消息（按时间倒序）
+     */
+    @Select("SELECT id, message_type, content, create_time FROM chat_history " +
+            "WHERE user_id = #{userId} AND session_id = #{sessionId} " +
+            "ORDER BY create_time DESC, id DESC LIMIT #{limit}")
+    List<ChatHistory> selectRecent(@Param("userId") Long userId, @Param("sessionId") String sessionId,
+                                   @Param("limit") int limit);
+}
@@ -0,0 +1,75 @@
+package com.financekb.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.financekb.entity.DocumentExtractTask;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+/**
+ * 文档文本提取任务 Mapper
+ */
+@Mapper
+public interface DocumentExtractTaskMapper extends BaseMapper<DocumentExtractTask> {
+    
+    /**
+     * 批量创建待处理任务（同一文件已有任务时忽略）
+     */
+    @Insert("<script>" +
+            "INSERT IGNORE INTO document_extract_task (file_id, user_id, status, attempts, create_time, update_time) VALUES " +
+            "<foreach collection='list' item='t' separator=','>" +
+            "(#{t.fileId}, #{t.userId}, 0, 0, NOW(), NOW())" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("list") List<DocumentExtractTask> list);
+    
+    /**
+     * 查询待处理任务ID（按创建顺序）
+     */
+    @Select("SELECT id FROM document_extract_task WHERE status = 0 ORDER BY id LIMIT #{limit}")
+    List<Long> selectPendingIds(@Param("limit") int limit);
+    
+    /**
+     * 领取任务（待处理 -> 处理中），多节点并发领取时只有一个成功
+     */
+    @Update("UPDATE document_extract_task SET status = 1, attempts = attempts + 1, update_time = NOW() " +
+            "WHERE id = #{id} AND status = 0")
+    int claim(@Param("id") Long id);
+    
+    /**
+     * 退回已领取但未能入队的任务
+     */
+    @Update("UPDATE document_extract_task SET status = 0, attempts = attempts - 1 WHERE id = #{id} AND status = 1")
+    int unclaim(@Param("id") Long id);
+    
+    /**
+     * 更新任务结果
+     */
+    @Update("UPDATE document_extract_task SET status = #{status}, error_message = #{errorMessage}, update_time = NOW() " +
+            "WHERE id = #{id}")
+    int updateStatus(@Param("id") Long id, @Param("status") int status, @Param("errorMessage") String errorMessage);
+    
+    /**
+     * 续租处理中的任务（任务已被回收或删除时返回0）
+     */
+    @Update("UPDATE document_extract_task SET update_time = NOW() WHERE id = #{id} AND status = 1")
+    int renewLease(@Param("id") Long id);
+    
+    /**
+     * 处理中超过租约时间的任务（进程崩溃或重启）退回待处理
+     */
+    @Update("UPDATE document_extract_task SET status = 0 " +
+            "WHERE status = 1 AND update_time < NOW() - INTERVAL #{leaseSeconds} SECOND")
+    int resetExpired(@Param("leaseSeconds") int leaseSeconds);
+    
+    /**
+     * 尝试次数用尽的待处理任务标记为失败
+     */
+    @Update("UPDATE document_extract_task SET status = 3, error_message = '超过最大尝试次数' " +
+            "WHERE status = 0 AND attempts >= #{maxAttempts}")
+    int failExhausted(@Param("maxAttempts") int maxAttempts);
+}
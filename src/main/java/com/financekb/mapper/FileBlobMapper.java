@@ -0,0 +1,40 @@
+package com.financekb.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.financekb.entity.FileBlob;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 文件存储对象 Mapper
+ */
+@Mapper
+public interface FileBlobMapper extends BaseMapper<FileBlob> {
+    
+    /**
+     * 按摘要加锁读取（读取已提交的最新版本，其他事务正在插入或删除同一摘要时等待其结束）
+     */
+    @Select("SELECT * FROM file_blob WHERE file_hash = #{fileHash} FOR UPDATE")
+    FileBlob selectByHashForUpdate(@Param("fileHash") String fileHash);
+    
+    /**
+     * 增加引用（引用数已归零、正在删除的对象不能再被引用）
+     */
+    @Update("UPDATE file_blob SET ref_count = ref_count + 1 WHERE id = #{id} AND ref_count > 0")
+    int incrementRef(@Param("id") Long id);
+    
+    /**
+     * 减少引用
+     */
+    @Update("UPDATE file_blob SET ref_count = ref_count - 1 WHERE id = #{id} AND ref_count > 0")
+    int decrementRef(@Param("id") Long id);
+    
+    /**
+     * 删除无引用的存储对象
+     */
+    @Delete("DELETE FROM file_blob WHERE id = #{id} AND ref_count = 0")
+    int deleteIfUnreferenced(@Param("id") Long id);
+}
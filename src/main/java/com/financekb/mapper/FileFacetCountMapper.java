@@ -0,0 +1,38 @@
+package com.financekb.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.financekb.entity.FileFacetCount;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+/**
+ * 文件分面计数 Mapper
+ */
+@Mapper
+public interface FileFacetCountMapper extends BaseMapper<FileFacetCount> {
+    
+    /**
+     * 批量累加计数（不存在时插入）
+     */
+    @Insert("<script>" +
+            "INSERT INTO file_facet_count (user_id, category, file_ext, file_type, file_count) VALUES " +
+            "<foreach collection='list' item='c' separator=','>" +
+            "(#{c.userId}, #{c.category}, #{c.fileExt}, #{c.fileType}, #{c.fileCount})" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE file_count = file_count + VALUES(file_count)" +
+            "</script>")
+    int upsertBatch(@Param("list") List<FileFacetCount> list);
+    
+    /**
+     * 计数减一
+     */
+    @Update("UPDATE file_facet_count SET file_count = file_count - 1 " +
+            "WHERE user_id = #{userId} AND category = #{category} AND file_ext = #{fileExt} " +
+            "AND file_type = #{fileType} AND file_count > 0")
+    int decrement(@Param("userId") Long userId, @Param("category") String category,
+                  @Param("fileExt") String fileExt, @Param("fileType") String fileType);
+}
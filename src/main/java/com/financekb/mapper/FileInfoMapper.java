@@ -1,13 +1,109 @@
 package com.financekb.mapper;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.financekb.dto.FileCounterDelta;
+import com.financekb.entity.FileFacetCount;
 import com.financekb.entity.FileInfo;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
 
 /**
  * 文件信息 Mapper
  */
 @Mapper
 public interface FileInfoMapper extends BaseMapper<FileInfo> {
+    
+    /**
+     * 批量插入（单条多行INSERT，回填自增ID）
+     * 不经过自动填充，创建/更新时间需由调用方设置
+     */
+    @Insert("<script>" +
+            "INSERT INTO file_info (user_id, file_name, file_path, file_url, file_type, file_size, file_ext, " +
+            "file_hash, blob_id, category, tags, description, download_count, view_count, " +
+            "create_time, update_time, deleted) VALUES " +
+            "<foreach collection='list' item='f' separator=','>" +
+            "(#{f.userId}, #{f.fileName}, #{f.filePath}, #{f.fileUrl}, #{f.fileType}, #{f.fileSize}, #{f.fileExt}, " +
+            "#{f.fileHash}, #{f.blobId}, #{f.category}, #{f.tags}, #{f.description}, #{f.downloadCount}, #{f.viewCount}, " +
+            "#{f.createTime}, #{f.updateTime}, 0)" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    int insertBatch(@Param("list") List<FileInfo> list);
+    
+    /**
+     * 批量累加下载/查看次数（单条UPDATE，原子自增，不覆盖其他字段）
+     */
+    @Update("<script>" +
+            "UPDATE file_info SET " +
+            "download_count = IFNULL(download_count, 0) + CASE id " +
+            "<foreach collection='list' item='d'>WHEN #{d.fileId} THEN #{d.downloadDelta} </foreach>" +
+            "ELSE 0 END, " +
+            "view_count = IFNULL(view_count, 0) + CASE id " +
+            "<foreach collection='list' item='d'>WHEN #{d.fileId} THEN #{d.viewDelta} </foreach>" +
+            "ELSE 0 END " +
+            "WHERE id IN " +
+            "<foreach collection='list' item='d' open='(' separator=',' close=')'>#{d.fileId}</foreach>" +
+            "</script>")
+    int incrementCounters(@Param("list") List<FileCounterDelta> list);
+    
+    /**
+     * 全文检索（MySQL FULLTEXT ngram 索引，按相关度排序）
+     *
+     * @param query    BOOLEAN MODE 查询串
+     * @param tags     规范化后的标签
+     * @param matchAll true：包含所有标签；false：包含任一标签
+     * @param tagCount 标签数（用于 HAVING COUNT）
+     */
+    @Select("<script>" +
+            "SELECT *, MATCH(file_name, description) AGAINST(#{query} IN BOOLEAN MODE) AS score " +
+            "FROM file_info " +
+            "WHERE user_id = #{userId} AND deleted = 0 " +
+            "AND MATCH(file_name, description) AGAINST(#{query} IN BOOLEAN MODE) " +
+            "<if test='category != null'>AND category = #{category} </if>" +
+            "<if test='tags.size() > 0'>" +
+            "AND id IN (SELECT file_id FROM file_tag WHERE user_id = #{userId} AND tag IN " +
+            "<foreach collection='tags' item='tag' open='(' separator=',' close=')'>#{tag}</foreach>" +
+            "<if test='matchAll and tags.size() > 1'> GROUP BY file_id HAVING COUNT(*) = #{tagCount}</if>) " +
+            "</if>" +
+            "ORDER BY score DESC, id DESC" +
+            "</script>")
+    IPage<FileInfo> searchFullText(Page<FileInfo> page, @Param("userId") Long userId, @Param("query") String query,
+                                   @Param("category") String category, @Param("tags") List<String> tags,
+                                   @Param("matchAll") boolean matchAll, @Param("tagCount") int tagCount);
+    
+    /**
+     * 按 分类+扩展名+类型 统计满足条件的文件数（条件中需自带 deleted = 0）
+     */
+    @Select("SELECT category, file_ext, file_type, COUNT(*) AS file_count FROM file_info " +
+            "${ew.customSqlSegment} GROUP BY category, file_ext, file_type")
+    List<FileFacetCount> selectFacetCounts(@Param(Constants.WRAPPER) Wrapper<FileInfo> wrapper);
+    
+    /**
+     * 全文索引是否存在
+     */
+    @Select("SELECT COUNT(*) FROM information_schema.statistics " +
+            "WHERE table_schema = DATABASE() AND table_name = 'file_info' AND index_name = 'ft_file_search'")
+    int countFullTextIndex();
+    
+    /**
+     * 删除全文索引
+     */
+    @Update("ALTER TABLE file_info DROP INDEX ft_file_search")
+    void dropFullTextIndex();
+    
+    /**
+     * 创建全文索引（ngram分词，按现有数据全量构建）
+     */
+    @Update("ALTER TABLE file_info ADD FULLTEXT INDEX ft_file_search (file_name, description) WITH PARSER ngram")
+    void createFullTextIndex();
 }
-
@@ -0,0 +1,34 @@
+package com.financekb.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.financekb.entity.FileTag;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 文件标签 Mapper
+ */
+@Mapper
+public interface FileTagMapper extends BaseMapper<FileTag> {
+    
+    /**
+     * 批量写入标签（同一文件重复标签忽略）
+     */
+    @Insert("<script>" +
+            "INSERT IGNORE INTO file_tag (file_id, user_id, tag) VALUES " +
+            "<foreach collection='list' item='t' separator=','>" +
+            "(#{t.fileId}, #{t.userId}, #{t.tag})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("list") List<FileTag> list);
+    
+    /**
+     * 删除文件的全部标签
+     */
+    @Delete("DELETE FROM file_tag WHERE file_id = #{fileId}")
+    int deleteByFileId(@Param("fileId") Long fileId);
+}
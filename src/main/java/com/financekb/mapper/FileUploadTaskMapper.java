@@ -0,0 +1,12 @@
+package com.financekb.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.financekb.entity.FileUploadTask;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 分片上传任务 Mapper
+ */
+@Mapper
+public interface FileUploadTaskMapper extends BaseMapper<FileUploadTask> {
+}
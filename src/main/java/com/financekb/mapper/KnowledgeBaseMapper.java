@@ -0,0 +1,21 @@
+package com.financekb.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.financekb.entity.KnowledgeBase;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 知识库 Mapper
+ */
+@Mapper
+public interface KnowledgeBaseMapper extends BaseMapper<KnowledgeBase> {
+    
+    /**
+     * 累加文档数量（原子更新，不覆盖其他字段）
+     */
+    @Update("UPDATE knowledge_base SET document_count = GREATEST(IFNULL(document_count, 0) + #{delta}, 0) " +
+            "WHERE id = #{id}")
+    int incrementDocumentCount(@Param("id") Long id, @Param("delta") int delta);
+}
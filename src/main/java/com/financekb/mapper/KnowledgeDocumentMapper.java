@@ -0,0 +1,41 @@
+package com.financekb.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.financekb.entity.KnowledgeDocument;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+/**
+ * 知识库文档 Mapper
+ */
+@Mapper
+public interface KnowledgeDocumentMapper extends BaseMapper<KnowledgeDocument> {
+    
+    /**
+     * 截取文档内容片段（start从1开始，不加载全文）
+     */
+    @Select("SELECT SUBSTRING(content, #{start}, #{length}) FROM knowledge_document WHERE id = #{id}")
+    String selectContentSlice(@Param("id") Long id, @Param("start") int start, @Param("length") int length);
+    
+    /**
+     * 查询尚未建立向量索引的文档ID
+     */
+    @Select("SELECT id FROM knowledge_document WHERE vector_id IS NULL ORDER BY id LIMIT #{limit}")
+    List<Long> selectUnindexedIds(@Param("limit") int limit);
+    
+    /**
+     * 标记文档已建立向量索引
+     */
+    @Update("UPDATE knowledge_document SET vector_id = #{vectorId}, update_time = update_time WHERE id = #{id}")
+    int updateVectorId(@Param("id") Long id, @Param("vectorId") String vectorId);
+    
+    /**
+     * 清除全部向量索引标记（索引目录重建时，由补建任务重新索引）
+     */
+    @Update("UPDATE knowledge_document SET vector_id = NULL, update_time = update_time WHERE vector_id IS NOT NULL")
+    int clearVectorIds();
+}
@@ -1,13 +1,60 @@
 package com.financekb.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.financekb.dto.LastLoginRecord;
 import com.financekb.entity.SysUser;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
 
 /**
  * 用户Mapper
  */
 @Mapper
 public interface SysUserMapper extends BaseMapper<SysUser> {
+    
+    /**
+     * 查询用户的角色编码
+     */
+    @Select("SELECT r.role_code FROM sys_user_role ur " +
+            "INNER JOIN sys_role r ON r.id = ur.role_id " +
+            "WHERE ur.user_id = #{userId} AND r.status = 1")
+    List<String> selectRoleCodes(@Param("userId") Long userId);
+    
+    /**
+     * 批量更新最近登录时间和IP（单条UPDATE，只写这两列）
+     */
+    @Update("<script>" +
+            "UPDATE sys_user SET " +
+            "last_login_time = CASE id " +
+            "<foreach collection='list' item='r'>WHEN #{r.userId} THEN #{r.loginTime} </foreach>" +
+            "ELSE last_login_time END, " +
+            "last_login_ip = CASE id " +
+            "<foreach collection='list' item='r'>WHEN #{r.userId} THEN #{r.loginIp} </foreach>" +
+            "ELSE last_login_ip END " +
+            "WHERE id IN " +
+            "<foreach collection='list' item='r' open='(' separator=',' close=')'>#{r.userId}</foreach>" +
+            "</script>")
+    int updateLastLogin(@Param("list") List<LastLoginRecord> list);
+    
+    /**
+     * 按ID分批读取用户名和邮箱（含已逻辑删除的用户，唯一索引同样包含它们）
+     */
+    @Select("SELECT id, username, email FROM sys_user WHERE id > #{lastId} ORDER BY id LIMIT #{limit}")
+    List<SysUser> selectIdentities(@Param("lastId") Long lastId, @Param("limit") int limit);
+    
+    /**
+     * 用户名是否已被占用（含已逻辑删除的用户）
+     */
+    @Select("SELECT EXISTS(SELECT 1 FROM sys_user WHERE username = #{username})")
+    boolean existsByUsername(@Param("username") String username);
+    
+    /**
+     * 邮箱是否已被占用（含已逻辑删除的用户）
+     */
+    @Select("SELECT EXISTS(SELECT 1 FROM sys_user WHERE email = #{email})")
+    boolean existsByEmail(@Param("email") String email);
 }
-
@@ -0,0 +1,177 @@
+package com.financekb.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.financekb.client.ChatMessage;
+import com.financekb.client.OpenAIClient;
+import com.financekb.common.Result;
+import com.financekb.common.ResultCode;
+import com.financekb.config.AiConfig;
+import com.financekb.config.ChatConfig;
+import com.financekb.dto.AiGenerateDTO;
+import com.financekb.entity.AiGeneration;
+import com.financekb.entity.KnowledgeBase;
+import com.financekb.mapper.AiGenerationMapper;
+import com.financekb.mapper.KnowledgeBaseMapper;
+import com.financekb.vo.AiGenerateVO;
+import com.financekb.vo.KnowledgeSearchVO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AI文本生成服务
+ * <p>
+ * 先查响应缓存（规范化提示词 + 知识库版本），命中时不调用模型，生成记录的Token用量和成本为0；
+ * 未命中时检查调用配额，检索知识库相关片段作为上下文，异步调用模型并写入缓存。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AiGenerationService {
+    
+    public static final String GENERATION_TYPE_TEXT = "text";
+    
+    private final OpenAIClient openAIClient;
+    private final AiResponseCacheService aiResponseCacheService;
+    private final AiQuotaService aiQuotaService;
+    private final AiUsageService aiUsageService;
+    private final KnowledgeIndexService knowledgeIndexService;
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+    private final AiGenerationMapper aiGenerationMapper;
+    private final AiConfig aiConfig;
+    private final ChatConfig chatConfig;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolTaskExecutor aiIoExecutor;
+    
+    /**
+     * 文本生成（模型调用异步进行，不占用请求线程）
+     */
+    public CompletableFuture<Result<AiGenerateVO>> generate(Long userId, AiGenerateDTO dto) {
+        String prompt = dto.getPrompt().trim();
+        if (prompt.length() > aiConfig.getMaxPromptLength()) {
+            return CompletableFuture.completedFuture(Result.error(ResultCode.BAD_REQUEST.getCode(),
+                "提示词长度不能超过" + aiConfig.getMaxPromptLength() + "个字符"));
+        }
+        
+        Long knowledgeBaseId = dto.getKnowledgeBaseId();
+        if (knowledgeBaseId != null) {
+            KnowledgeBase knowledgeBase = knowledgeBaseMapper.selectById(knowledgeBaseId);
+            if (knowledgeBase == null) {
+                return CompletableFuture.completedFuture(Result.error(
+                    ResultCode.KNOWLEDGE_BASE_NOT_FOUND.getCode(), ResultCode.KNOWLEDGE_BASE_NOT_FOUND.getMessage()));
+            }
+            if (!userId.equals(knowledgeBase.getUserId()) && !Integer.valueOf(1).equals(knowledgeBase.getIsPublic())) {
+                return CompletableFuture.completedFuture(Result.error(
+                    ResultCode.FORBIDDEN.getCode(), ResultCode.FORBIDDEN.getMessage()));
+            }
+        }
+        
+        String scope = aiResponseCacheService.scope(knowledgeBaseId, GENERATION_TYPE_TEXT);
+        if (scope != null && !Boolean.FALSE.equals(dto.getUseCache())) {
+            AiResponseCacheService.CachedResponse cached = aiResponseCacheService.get(scope, prompt);
+            if (cached != null) {
+                aiUsageService.record(userId, 0, true);
+                AiGeneration generation = record(userId, knowledgeBaseId, prompt, cached.getContent(), 0,
+                    BigDecimal.ZERO, true, 1);
+                return CompletableFuture.completedFuture(Result.success(
+                    toVO(generation, cached.getContent(), 0, true, cached.getSimilarity())));
+            }
+        }
+        
+        // 命中缓存不消耗模型额度，只在实际调用模型前检查
+        if (!aiQuotaService.tryAcquire(userId)) {
+            return CompletableFuture.completedFuture(Result.error(
+                ResultCode.AI_QUOTA_EXCEEDED.getCode(), ResultCode.AI_QUOTA_EXCEEDED.getMessage()));
+        }
+        
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(new ChatMessage(ChatMessage.ROLE_SYSTEM, chatConfig.getSystemPrompt()));
+        if (knowledgeBaseId != null) {
+            String context = knowledgeContext(userId, knowledgeBaseId, prompt);
+            if (!context.isEmpty()) {
+                messages.add(new ChatMessage(ChatMessage.ROLE_SYSTEM, context));
+            }
+        }
+        messages.add(new ChatMessage(ChatMessage.ROLE_USER, prompt));
+        
+        // 回调线程仍占用HTTP客户端的并发名额，缓存（含向量化请求）与记录写入切换到IO线程池
+        return openAIClient.complete(messages).handleAsync((completion, error) -> {
+            if (error != null) {
+                log.warn("AI生成失败：userId={}", userId, error);
+                aiUsageService.record(userId, null, false);
+                record(userId, knowledgeBaseId, prompt, null, null, BigDecimal.ZERO, false, 0);
+                return Result.<AiGenerateVO>error(ResultCode.AI_API_ERROR.getCode(), ResultCode.AI_API_ERROR.getMessage());
+            }
+            if (scope != null && !completion.getContent().isEmpty()) {
+                aiResponseCacheService.put(scope, prompt, completion.getContent());
+            }
+            aiQuotaService.consumeTokens(userId, completion.getTokenUsage());
+            BigDecimal cost = aiUsageService.record(userId, completion.getTokenUsage(), false);
+            AiGeneration generation = record(userId, knowledgeBaseId, prompt, completion.getContent(),
+                completion.getTokenUsage(), cost, false, 1);
+            return Result.success(toVO(generation, completion.getContent(), completion.getTokenUsage(), false, null));
+        }, aiIoExecutor);
+    }
+    
+    /**
+     * 知识库中与提示词最相关的片段
+     */
+    private String knowledgeContext(Long userId, Long knowledgeBaseId, String prompt) {
+        List<KnowledgeSearchVO> hits = knowledgeIndexService.search(userId, prompt, aiConfig.getContextSnippets(),
+            knowledgeBaseId);
+        StringBuilder context = new StringBuilder();
+        for (KnowledgeSearchVO hit : hits) {
+            if (hit.getSnippet() == null) {
+                continue;
+            }
+            if (context.length() == 0) {
+                context.append("参考以下知识库内容回答：\n");
+            }
+            context.append("【").append(hit.getTitle()).append("】").append(hit.getSnippet()).append('\n');
+        }
+        return context.toString();
+    }
+    
+    /**
+     * 写入生成记录，写入失败不影响返回结果
+     */
+    private AiGeneration record(Long userId, Long knowledgeBaseId, String prompt, String content, Integer tokenUsage,
+                                BigDecimal cost, boolean cacheHit, int status) {
+        AiGeneration generation = new AiGeneration();
+        generation.setUserId(userId);
+        generation.setGenerationType(GENERATION_TYPE_TEXT);
+        generation.setKnowledgeBaseId(knowledgeBaseId);
+        generation.setPrompt(prompt);
+        generation.setTokenUsage(tokenUsage);
+        generation.setCost(cost);
+        generation.setCacheHit(cacheHit ? 1 : 0);
+        generation.setStatus(status);
+        try {
+            if (content != null) {
+                generation.setResult(objectMapper.writeValueAsString(Map.of("content", content)));
+            }
+            aiGenerationMapper.insert(generation);
+        } catch (Exception e) {
+            log.error("AI生成记录写入失败：userId={}", userId, e);
+        }
+        return generation;
+    }
+    
+    private static AiGenerateVO toVO(AiGeneration generation, String content, Integer tokenUsage, boolean cached,
+                                     Double similarity) {
+        AiGenerateVO vo = new AiGenerateVO();
+        vo.setGenerationId(generation.getId());
+        vo.setContent(content);
+        vo.setTokenUsage(tokenUsage);
+        vo.setCached(cached);
+        vo.setSimilarity(similarity);
+        return vo;
+    }
+}
@@ -0,0 +1,298 @@
+package com.financekb.service;
+
+import com.financekb.config.AiConfig;
+import com.financekb.mapper.SysUserMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI调用配额（按用户的令牌桶，额度按角色配置）
+ * <p>
+ * 每个用户两个令牌桶：每分钟请求数、每天Token数，桶状态保存在Redis，多节点共享。
+ * 节点不逐次访问Redis，而是用Lua脚本原子地从桶中预领一小批额度到本地，本地余额用完或过期时再领，
+ * 过期未用完的额度在下次预领时归还；配额检查在绝大多数情况下只是一次本地内存操作。
+ * Token数在调用结束后才知道，先扣本地余额（可为负），欠额在下次预领时补上。
+ * Redis不可用时退化为本节点内的令牌桶，额度按单节点计算。
+ */
+@Slf4j
+@Service
+public class AiQuotaService {
+    
+    private static final String KEY_PREFIX = "ai:quota:";
+    
+    /**
+     * 从令牌桶中预领额度：先按经过的时间恢复，加回归还的额度，再领取不超过可用量的整数额度
+     * <p>
+     * KEYS[1] 桶；ARGV：容量、每毫秒恢复量、申请量、归还量、键有效期（毫秒）。返回实际领取量
+     */
+    private static final RedisScript<Long> LEASE_SCRIPT = new DefaultRedisScript<>(
+        "local capacity = tonumber(ARGV[1]) " +
+        "local rate = tonumber(ARGV[2]) " +
+        "local requested = tonumber(ARGV[3]) " +
+        "local returned = tonumber(ARGV[4]) " +
+        "local time = redis.call('TIME') " +
+        "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) " +
+        "local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts') " +
+        "local tokens = tonumber(state[1]) or capacity " +
+        "local ts = tonumber(state[2]) or now " +
+        "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate + returned) " +
+        "local granted = math.max(0, math.min(requested, math.floor(tokens))) " +
+        "tokens = tokens - granted " +
+        "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now)) " +
+        "redis.call('PEXPIRE', KEYS[1], ARGV[5]) " +
+        "return granted", Long.class);
+    
+    private static final RedisSerializer<Long> LONG_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+    
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    
+    /**
+     * 预领失败后至少间隔多久再访问Redis（毫秒），被拒绝的请求不会每次都访问Redis
+     */
+    private static final long MIN_DENY_INTERVAL = 100L;
+    
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final SysUserMapper sysUserMapper;
+    private final AiConfig aiConfig;
+    private final MeterRegistry meterRegistry;
+    
+    /**
+     * 用户ID -> 生效的额度
+     */
+    private final Cache<Long, AiConfig.Budget> budgets;
+    
+    /**
+     * 用户ID -> 本地预领的额度
+     */
+    private final Cache<Long, UserQuota> quotas;
+    
+    public AiQuotaService(RedisTemplate<String, Object> redisTemplate, SysUserMapper sysUserMapper,
+                          AiConfig aiConfig, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.sysUserMapper = sysUserMapper;
+        this.aiConfig = aiConfig;
+        this.meterRegistry = meterRegistry;
+        this.budgets = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(aiConfig.getQuota().getBudgetCacheMinutes(), TimeUnit.MINUTES)
+            .build();
+        this.quotas = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+    }
+    
+    /**
+     * 占用一次调用额度（调用模型之前）
+     *
+     * @return 请求数或Token额度已用完时返回false
+     */
+    public boolean tryAcquire(Long userId) {
+        AiConfig.Quota config = aiConfig.getQuota();
+        if (!Boolean.TRUE.equals(config.getEnabled())) {
+            return true;
+        }
+        AiConfig.Budget budget = budgetOf(userId);
+        UserQuota quota = quotas.get(userId, id -> new UserQuota());
+        long now = System.currentTimeMillis();
+        synchronized (quota) {
+            if (limited(budget.getTokensPerDay())) {
+                long capacity = budget.getTokensPerDay();
+                refill(key(userId, "tokens"), quota.tokens, capacity, (double) capacity / MILLIS_PER_DAY,
+                    config.getLeaseTokens(), now);
+                if (quota.tokens.balance <= 0) {
+                    meterRegistry.counter("ai.quota.rejected", "type", "tokens").increment();
+                    return false;
+                }
+            }
+            if (limited(budget.getRequestsPerMinute())) {
+                long capacity = budget.getRequestsPerMinute();
+                refill(key(userId, "requests"), quota.requests, capacity, (double) capacity / MILLIS_PER_MINUTE,
+                    config.getLeaseRequests(), now);
+                if (quota.requests.balance <= 0) {
+                    meterRegistry.counter("ai.quota.rejected", "type", "requests").increment();
+                    return false;
+                }
+                quota.requests.balance--;
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * 扣除本次调用实际消耗的Token（调用结束后）
+     */
+    public void consumeTokens(Long userId, Integer tokenUsage) {
+        if (!Boolean.TRUE.equals(aiConfig.getQuota().getEnabled()) || tokenUsage == null || tokenUsage <= 0
+            || !limited(budgetOf(userId).getTokensPerDay())) {
+            return;
+        }
+        UserQuota quota = quotas.get(userId, id -> new UserQuota());
+        synchronized (quota) {
+            quota.tokens.balance -= tokenUsage;
+        }
+    }
+    
+    /**
+     * 本地余额用完（或有欠额）、已过期时预领；过期的余额一并归还
+     */
+    private void refill(String key, Allowance allowance, long capacity, double ratePerMilli, long lease, long now) {
+        long leaseTtl = aiConfig.getQuota().getLeaseTtl();
+        boolean expired = now - allowance.leasedAt > leaseTtl;
+        if ((allowance.balance > 0 && !expired) || now < allowance.deniedUntil) {
+            return;
+        }
+        long returned = Math.max(0, allowance.balance);
+        long debt = Math.max(0, -allowance.balance);
+        long requested = lease + debt;
+        
+        long granted;
+        try {
+            Long result = redisTemplate.execute(LEASE_SCRIPT, RedisSerializer.string(), LONG_SERIALIZER, List.of(key),
+                String.valueOf(capacity), String.valueOf(ratePerMilli), String.valueOf(requested),
+                String.valueOf(returned), String.valueOf((long) Math.ceil(capacity / ratePerMilli) + 1000));
+            granted = result == null ? 0 : result;
+            meterRegistry.counter("ai.quota.leases").increment();
+        } catch (RuntimeException e) {
+            log.warn("Redis预领额度失败，按本节点额度限制：{}", key, e);
+            meterRegistry.counter("ai.quota.fallback").increment();
+            if (allowance.fallback == null) {
+                allowance.fallback = new TokenBucket(capacity, ratePerMilli, now);
+            }
+            granted = allowance.fallback.take(requested, returned, now);
+        }
+        
+        allowance.balance = granted - debt;
+        allowance.leasedAt = now;
+        if (allowance.balance <= 0) {
+            // 约等于恢复一个单位所需的时间，限制在 [100ms, 预领有效期] 内
+            allowance.deniedUntil = now + Math.min(leaseTtl, Math.max(MIN_DENY_INTERVAL, (long) Math.ceil(1 / ratePerMilli)));
+        }
+    }
+    
+    /**
+     * 用户生效的额度（按角色，缓存一段时间）
+     */
+    private AiConfig.Budget budgetOf(Long userId) {
+        AiConfig.Budget cached = budgets.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            AiConfig.Budget budget = resolveBudget(sysUserMapper.selectRoleCodes(userId));
+            budgets.put(userId, budget);
+            return budget;
+        } catch (RuntimeException e) {
+            log.warn("查询用户角色失败，按默认角色额度限制：userId={}", userId, e);
+            return resolveBudget(List.of());
+        }
+    }
+    
+    /**
+     * 多个角色时每项取最宽松的额度；都未配置时使用默认角色，默认角色也未配置时不限
+     */
+    private AiConfig.Budget resolveBudget(List<String> roleCodes) {
+        Map<String, AiConfig.Budget> roles = aiConfig.getQuota().getRoles();
+        AiConfig.Budget result = null;
+        for (String roleCode : roleCodes) {
+            AiConfig.Budget budget = roles.get(roleCode);
+            if (budget == null) {
+                continue;
+            }
+            if (result == null) {
+                result = new AiConfig.Budget();
+                result.setRequestsPerMinute(budget.getRequestsPerMinute());
+                result.setTokensPerDay(budget.getTokensPerDay());
+                continue;
+            }
+            result.setRequestsPerMinute(limited(result.getRequestsPerMinute()) && limited(budget.getRequestsPerMinute())
+                ? Math.max(result.getRequestsPerMinute(), budget.getRequestsPerMinute()) : null);
+            result.setTokensPerDay(limited(result.getTokensPerDay()) && limited(budget.getTokensPerDay())
+                ? Math.max(result.getTokensPerDay(), budget.getTokensPerDay()) : null);
+        }
+        if (result == null) {
+            result = roles.getOrDefault(aiConfig.getQuota().getDefaultRole(), new AiConfig.Budget());
+        }
+        return result;
+    }
+    
+    private static boolean limited(Number limit) {
+        return limit != null && limit.longValue() > 0;
+    }
+    
+    private static String key(Long userId, String type) {
+        return KEY_PREFIX + userId + ":" + type;
+    }
+    
+    /**
+     * 用户在本节点预领的额度
+     */
+    private static class UserQuota {
+        
+        private final Allowance requests = new Allowance();
+        
+        private final Allowance tokens = new Allowance();
+    }
+    
+    private static class Allowance {
+        
+        /**
+         * 本地余额（Token可为负，表示欠额）
+         */
+        private long balance;
+        
+        private long leasedAt;
+        
+        /**
+         * 预领失败后在此时间之前不再访问Redis
+         */
+        private long deniedUntil;
+        
+        /**
+         * Redis不可用时使用的本地令牌桶
+         */
+        private TokenBucket fallback;
+    }
+    
+    /**
+     * 本地令牌桶（与Lua脚本逻辑相同）
+     */
+    static class TokenBucket {
+        
+        private final long capacity;
+        
+        private final double ratePerMilli;
+        
+        private double tokens;
+        
+        private long timestamp;
+        
+        TokenBucket(long capacity, double ratePerMilli, long now) {
+            this.capacity = capacity;
+            this.ratePerMilli = ratePerMilli;
+            this.tokens = capacity;
+            this.timestamp = now;
+        }
+        
+        long take(long requested, long returned, long now) {
+            tokens = Math.min(capacity, tokens + Math.max(0, now - timestamp) * ratePerMilli + returned);
+            timestamp = now;
+            long granted = Math.max(0, Math.min(requested, (long) Math.floor(tokens)));
+            tokens -= granted;
+            return granted;
+        }
+    }
+}
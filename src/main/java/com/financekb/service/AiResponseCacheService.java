@@ -0,0 +1,251 @@
+package com.financekb.service;
+
+import com.financekb.config.AiConfig;
+import com.financekb.config.OpenAIConfig;
+import com.financekb.vector.EmbeddingProvider;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI响应缓存
+ * <p>
+ * 缓存键 = 作用域 + 规范化提示词（全半角、大小写、空白、句尾标点统一）的SHA-256，结果存Redis并设置有效期。
+ * 作用域包含知识库ID、知识库版本号、生成类型和模型：知识库文档变化时递增版本号，
+ * 该知识库的旧缓存全部失效（不扫描、不删除，随有效期过期）。
+ * 可选的相似问题匹配：规范化提示词向量化后，与本节点最近写入同一作用域的条目计算余弦相似度，
+ * 超过阈值时返回对应的缓存结果（候选只保存在本地，其他节点写入的条目只能精确命中）。
+ */
+@Slf4j
+@Service
+public class AiResponseCacheService {
+    
+    private static final String KEY_PREFIX = "ai:cache:";
+    private static final String VERSION_KEY_PREFIX = "ai:cache:kb-version:";
+    private static final String TRAILING_PUNCTUATION = "[\\s?？。.!！~～]+$";
+    
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final EmbeddingProvider embeddingProvider;
+    private final AiConfig aiConfig;
+    private final OpenAIConfig openAIConfig;
+    private final MeterRegistry meterRegistry;
+    
+    /**
+     * 作用域 -> 相似匹配候选
+     */
+    private final Cache<String, SemanticBucket> semanticBuckets;
+    
+    public AiResponseCacheService(RedisTemplate<String, Object> redisTemplate, EmbeddingProvider embeddingProvider,
+                                  AiConfig aiConfig, OpenAIConfig openAIConfig, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.embeddingProvider = embeddingProvider;
+        this.aiConfig = aiConfig;
+        this.openAIConfig = openAIConfig;
+        this.meterRegistry = meterRegistry;
+        this.semanticBuckets = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(aiConfig.getCache().getTtlMinutes(), TimeUnit.MINUTES)
+            .build();
+    }
+    
+    /**
+     * 缓存作用域（含知识库当前版本）
+     *
+     * @return 缓存未启用或Redis不可用时返回null，调用方直接调用模型
+     */
+    public String scope(Long knowledgeBaseId, String generationType) {
+        if (!Boolean.TRUE.equals(aiConfig.getCache().getEnabled())) {
+            return null;
+        }
+        long kbId = knowledgeBaseId == null ? 0 : knowledgeBaseId;
+        try {
+            long version = 0;
+            if (knowledgeBaseId != null) {
+                // INCRBY 0：读取版本号，不存在时为0
+                Long current = redisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + kbId, 0);
+                version = current == null ? 0 : current;
+            }
+            return "kb" + kbId + ":v" + version + ":" + generationType + ":" + openAIConfig.getModel();
+        } catch (RuntimeException e) {
+            log.warn("读取AI缓存版本失败，本次不使用缓存", e);
+            return null;
+        }
+    }
+    
+    /**
+     * 查找缓存结果
+     *
+     * @return 未命中时返回null
+     */
+    public CachedResponse get(String scope, String prompt) {
+        String normalized = normalize(prompt);
+        try {
+            Object exact = redisTemplate.opsForValue().get(entryKey(scope, normalized));
+            if (exact instanceof String) {
+                meterRegistry.counter("ai.cache", "result", "exact").increment();
+                return new CachedResponse((String) exact, 1.0);
+            }
+            
+            if (Boolean.TRUE.equals(aiConfig.getCache().getSemanticEnabled())) {
+                SemanticBucket bucket = semanticBuckets.getIfPresent(scope);
+                if (bucket != null) {
+                    SemanticBucket.Match match = bucket.nearest(embeddingProvider.embed(normalized));
+                    if (match != null && match.getSimilarity() >= aiConfig.getCache().getSimilarityThreshold()) {
+                        Object similar = redisTemplate.opsForValue().get(match.getKey());
+                        if (similar instanceof String) {
+                            meterRegistry.counter("ai.cache", "result", "semantic").increment();
+                            return new CachedResponse((String) similar, match.getSimilarity());
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("读取AI缓存失败", e);
+        }
+        meterRegistry.counter("ai.cache", "result", "miss").increment();
+        return null;
+    }
+    
+    /**
+     * 写入缓存
+     */
+    public void put(String scope, String prompt, String content) {
+        String normalized = normalize(prompt);
+        String key = entryKey(scope, normalized);
+        try {
+            redisTemplate.opsForValue().set(key, content, aiConfig.getCache().getTtlMinutes(), TimeUnit.MINUTES);
+        } catch (RuntimeException e) {
+            log.warn("写入AI缓存失败", e);
+            return;
+        }
+        if (Boolean.TRUE.equals(aiConfig.getCache().getSemanticEnabled())) {
+            semanticBuckets.get(scope, s -> new SemanticBucket(aiConfig.getCache().getSemanticMaxEntries()))
+                .add(embeddingProvider.embed(normalized), key);
+        }
+    }
+    
+    /**
+     * 知识库文档变化：递增版本号，该知识库的缓存全部失效
+     */
+    public void invalidateKnowledgeBase(Long knowledgeBaseId) {
+        if (knowledgeBaseId == null) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + knowledgeBaseId);
+        } catch (RuntimeException e) {
+            log.error("AI缓存失效失败，知识库{}的旧缓存将在有效期后过期", knowledgeBaseId, e);
+        }
+    }
+    
+    /**
+     * 提示词规范化：全角转半角、小写、合并空白、去掉句尾标点
+     */
+    public static String normalize(String prompt) {
+        String text = Normalizer.normalize(prompt, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return text.replaceAll("\\s+", " ").trim().replaceAll(TRAILING_PUNCTUATION, "");
+    }
+    
+    private static String entryKey(String scope, String normalizedPrompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return KEY_PREFIX + scope + ":" + HexFormat.of().formatHex(digest.digest(normalizedPrompt.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * 缓存结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class CachedResponse {
+        
+        private final String content;
+        
+        /**
+         * 与缓存问题的相似度（精确命中为1）
+         */
+        private final double similarity;
+    }
+    
+    /**
+     * 同一作用域的相似匹配候选（环形缓冲，超出容量时覆盖最早的条目），暴力计算余弦相似度
+     */
+    static class SemanticBucket {
+        
+        private final float[][] vectors;
+        
+        private final String[] keys;
+        
+        private int next;
+        
+        private int size;
+        
+        SemanticBucket(int capacity) {
+            this.vectors = new float[Math.max(capacity, 1)][];
+            this.keys = new String[vectors.length];
+        }
+        
+        synchronized void add(float[] vector, String key) {
+            vectors[next] = unit(vector);
+            keys[next] = key;
+            next = (next + 1) % vectors.length;
+            size = Math.min(size + 1, vectors.length);
+        }
+        
+        synchronized Match nearest(float[] vector) {
+            float[] query = unit(vector);
+            Match best = null;
+            for (int i = 0; i < size; i++) {
+                double similarity = 0;
+                float[] candidate = vectors[i];
+                for (int d = 0; d < query.length; d++) {
+                    similarity += candidate[d] * query[d];
+                }
+                if (best == null || similarity > best.getSimilarity()) {
+                    best = new Match(keys[i], similarity);
+                }
+            }
+            return best;
+        }
+        
+        private static float[] unit(float[] vector) {
+            double norm = 0;
+            for (float v : vector) {
+                norm += v * v;
+            }
+            float[] unit = new float[vector.length];
+            if (norm > 0) {
+                double scale = 1 / Math.sqrt(norm);
+                for (int i = 0; i < vector.length; i++) {
+                    unit[i] = (float) (vector[i] * scale);
+                }
+            }
+            return unit;
+        }
+        
+        @Getter
+        @AllArgsConstructor
+        static class Match {
+            
+            private final String key;
+            
+            private final double similarity;
+        }
+    }
+}
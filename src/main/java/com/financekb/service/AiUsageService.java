@@ -0,0 +1,107 @@
+package com.financekb.service;
+
+import com.financekb.common.WriteBehindBuffer;
+import com.financekb.config.AiConfig;
+import com.financekb.config.OpenAIConfig;
+import com.financekb.entity.AiUsageDaily;
+import com.financekb.mapper.AiUsageDailyMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * AI用量统计
+ * <p>
+ * 用量先在内存中按 用户+日期 聚合（{@link WriteBehindBuffer}），定时以 INSERT ... ON DUPLICATE KEY UPDATE
+ * 批量累加到 ai_usage_daily，调用链路上没有数据库写入。
+ */
+@Service
+@RequiredArgsConstructor
+public class AiUsageService {
+    
+    private final AiUsageDailyMapper aiUsageDailyMapper;
+    private final AiConfig aiConfig;
+    private final OpenAIConfig openAIConfig;
+    
+    /**
+     * 用户ID:日期 -> 未写入的用量
+     */
+    private final WriteBehindBuffer<String, AiUsageDaily> usages =
+        new WriteBehindBuffer<>("AI用量", AiUsageService::merge, this::write);
+    
+    /**
+     * 记录一次请求的用量
+     *
+     * @param tokenUsage 消耗的Token数，命中缓存或失败时为0/null
+     * @return 本次成本
+     */
+    public BigDecimal record(Long userId, Integer tokenUsage, boolean cacheHit) {
+        BigDecimal cost = cost(tokenUsage);
+        LocalDate today = LocalDate.now();
+        AiUsageDaily usage = newUsage(userId, today);
+        usage.setRequestCount(1);
+        usage.setCacheHitCount(cacheHit ? 1 : 0);
+        usage.setTokenUsage(tokenUsage == null ? 0L : tokenUsage);
+        usage.setCost(cost);
+        usages.add(userId + ":" + today, usage);
+        return cost;
+    }
+    
+    /**
+     * 按Token数计算成本（美元）
+     */
+    public BigDecimal cost(Integer tokenUsage) {
+        if (tokenUsage == null || tokenUsage == 0 || openAIConfig.getPricePer1kTokens() == null) {
+            return BigDecimal.ZERO;
+        }
+        return openAIConfig.getPricePer1kTokens().multiply(BigDecimal.valueOf(tokenUsage))
+            .divide(BigDecimal.valueOf(1000), 4, RoundingMode.HALF_UP);
+    }
+    
+    /**
+     * 定时批量写入，失败的用量重新放回内存等待下次写入
+     */
+    @Scheduled(fixedDelayString = "${ai.quota.usage-flush-interval:5000}",
+               initialDelayString = "${ai.quota.usage-flush-interval:5000}")
+    public void flush() {
+        usages.flush(aiConfig.getQuota().getUsageFlushBatchSize());
+    }
+    
+    /**
+     * 停机前写入剩余用量
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+    
+    private void write(List<AiUsageDaily> batch) {
+        aiUsageDailyMapper.upsertBatch(batch);
+    }
+    
+    private static AiUsageDaily merge(AiUsageDaily a, AiUsageDaily b) {
+        AiUsageDaily usage = newUsage(a.getUserId(), a.getUsageDate());
+        usage.setRequestCount(a.getRequestCount() + b.getRequestCount());
+        usage.setCacheHitCount(a.getCacheHitCount() + b.getCacheHitCount());
+        usage.setTokenUsage(a.getTokenUsage() + b.getTokenUsage());
+        usage.setCost(a.getCost().add(b.getCost()));
+        return usage;
+    }
+    
+    private static AiUsageDaily newUsage(Long userId, LocalDate date) {
+        AiUsageDaily usage = new AiUsageDaily();
+        usage.setUserId(userId);
+        usage.setUsageDate(date);
+        usage.setRequestCount(0);
+        usage.setCacheHitCount(0);
+        usage.setTokenUsage(0L);
+        usage.setCost(BigDecimal.ZERO);
+        return usage;
+    }
+}
@@ -0,0 +1,222 @@
+package com.financekb.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.financekb.common.FileMetadataCache;
+import com.financekb.config.FileConfig;
+import com.financekb.entity.FileBlob;
+import com.financekb.mapper.FileBlobMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * 内容寻址存储服务
+ * <p>
+ * 物理文件按SHA-256存放在 uploadPath/blobs/{hash前两位}/{hash}{ext}，
+ * file_blob 记录引用次数，最后一个引用释放时才删除物理文件。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlobStorageService {
+
+    private static final String BLOB_DIR = "blobs";
+    private static final String TEMP_DIR = "tmp";
+    private static final int MAX_STORE_RETRY = 3;
+
+    private final FileBlobMapper fileBlobMapper;
+    private final FileConfig fileConfig;
+    private final FileMetadataCache fileMetadataCache;
+    private final FilePreviewService filePreviewService;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * 分配临时文件路径（与存储目录在同一文件系统，入库后原子移动）
+     */
+    public Path allocateTempPath() throws IOException {
+        Path tempDir = Paths.get(fileConfig.getUploadPath(), BLOB_DIR, TEMP_DIR);
+        if (!Files.exists(tempDir)) {
+            Files.createDirectories(tempDir);
+        }
+        return tempDir.resolve(UUID.randomUUID().toString().replace("-", "") + ".tmp");
+    }
+
+    /**
+     * 将已落盘的临时文件存入内容寻址存储，返回引用加一后的存储对象
+     * 相同内容已存在时直接引用已有对象并删除临时文件
+     * <p>
+     * 先插入记录再放置物理文件：删除无记录文件的一方会先加锁确认记录不存在（见 {@link #deleteOrphanFile}），
+     * 插入会等待其完成，放置文件与删除文件不会交错。调用方事务回滚时，本次放置的文件在确认无记录后删除。
+     */
+    public FileBlob store(Path tempFile, String fileHash, long fileSize, String fileType, String fileExt) throws IOException {
+        for (int attempt = 0; attempt < MAX_STORE_RETRY; attempt++) {
+            // 重试时必须加锁读取：调用方事务在可重复读隔离级别下，普通查询始终读到同一快照，
+            // 看不到并发事务刚提交的对象，也看不到正在删除的对象已被删除
+            FileBlob existBlob = attempt == 0 ? getByHash(fileHash) : fileBlobMapper.selectByHashForUpdate(fileHash);
+            if (existBlob != null) {
+                if (fileBlobMapper.incrementRef(existBlob.getId()) == 1) {
+                    Files.deleteIfExists(tempFile);
+                    existBlob.setRefCount(existBlob.getRefCount() + 1);
+                    log.debug("文件内容已存在，复用存储对象：blobId={}, hash={}", existBlob.getId(), fileHash);
+                    return existBlob;
+                }
+                // 对象正在被删除，等待删除完成后重新创建
+                continue;
+            }
+
+            Path blobPath = resolveBlobPath(fileHash, fileExt);
+            FileBlob blob = new FileBlob();
+            blob.setFileHash(fileHash);
+            blob.setFilePath(blobPath.toString());
+            blob.setFileType(fileType);
+            blob.setFileSize(fileSize);
+            blob.setRefCount(1);
+            try {
+                fileBlobMapper.insert(blob);
+            } catch (DuplicateKeyException e) {
+                // 并发上传了相同内容，改为引用对方创建的对象
+                log.debug("并发创建存储对象，改为引用已有对象：hash={}", fileHash);
+                continue;
+            }
+
+            Files.createDirectories(blobPath.getParent());
+            if (Files.exists(blobPath)) {
+                // 之前回滚或删除失败遗留的同内容文件，直接复用
+                Files.deleteIfExists(tempFile);
+            } else {
+                moveFile(tempFile, blobPath);
+            }
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == STATUS_ROLLED_BACK) {
+                            deleteOrphanFile(fileHash, blobPath);
+                        }
+                    }
+                });
+            }
+            return blob;
+        }
+        throw new IOException("存储对象创建失败：" + fileHash);
+    }
+
+    /**
+     * 按摘要引用已有存储对象（秒传），大小不一致或不存在时返回null
+     */
+    public FileBlob acquire(String fileHash, long fileSize) {
+        FileBlob blob = getByHash(fileHash);
+        if (blob == null || blob.getFileSize() != fileSize || !Files.exists(Paths.get(blob.getFilePath()))) {
+            return null;
+        }
+        if (fileBlobMapper.incrementRef(blob.getId()) == 0) {
+            return null;
+        }
+        blob.setRefCount(blob.getRefCount() + 1);
+        return blob;
+    }
+
+    /**
+     * 释放引用，最后一个引用释放时在事务提交后删除物理文件
+     */
+    public void release(Long blobId) {
+        FileBlob blob = fileBlobMapper.selectById(blobId);
+        if (blob == null) {
+            return;
+        }
+        fileBlobMapper.decrementRef(blobId);
+        if (fileBlobMapper.deleteIfUnreferenced(blobId) == 0) {
+            return;
+        }
+
+        Runnable deletePhysicalFile = () -> {
+            if (deleteOrphanFile(blob.getFileHash(), Paths.get(blob.getFilePath()))) {
+                log.info("存储对象已删除：blobId={}, path={}", blobId, blob.getFilePath());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deletePhysicalFile.run();
+                }
+            });
+        } else {
+            deletePhysicalFile.run();
+        }
+    }
+
+    /**
+     * 按摘要查询存储对象
+     */
+    public FileBlob getByHash(String fileHash) {
+        return fileBlobMapper.selectOne(
+            new LambdaQueryWrapper<FileBlob>()
+                .eq(FileBlob::getFileHash, fileHash)
+        );
+    }
+
+    /**
+     * 摘要没有存储对象时删除物理文件（事务提交或回滚之后调用）
+     * <p>
+     * 在新事务中加锁读取：记录不存在时锁住该摘要的间隙，并发创建同一摘要的插入等待删除完成后才放置文件；
+     * 删除期间相同内容重新入库并复用了同一路径时不删除。
+     *
+     * @return 是否已删除
+     */
+    private boolean deleteOrphanFile(String fileHash, Path blobPath) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (fileBlobMapper.selectByHashForUpdate(fileHash) != null) {
+                    return false;
+                }
+                try {
+                    Files.deleteIfExists(blobPath);
+                } catch (IOException e) {
+                    log.error("删除物理文件失败：{}", blobPath, e);
+                    return false;
+                }
+                fileMetadataCache.evict(blobPath);
+                filePreviewService.evict(blobPath);
+                return true;
+            }));
+        } catch (RuntimeException e) {
+            log.error("删除物理文件失败：{}", blobPath, e);
+            return false;
+        }
+    }
+
+    private Path resolveBlobPath(String fileHash, String fileExt) {
+        String ext = fileExt == null ? "" : fileExt.toLowerCase(Locale.ROOT);
+        // 扩展名只用于推断预览类型，限制为安全字符
+        if (!ext.matches("\\.[a-z0-9]{1,10}")) {
+            ext = "";
+        }
+        return Paths.get(fileConfig.getUploadPath(), BLOB_DIR, fileHash.substring(0, 2), fileHash + ext);
+    }
+
+    private void moveFile(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
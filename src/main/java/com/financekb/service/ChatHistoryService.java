@@ -0,0 +1,179 @@
+package com.financekb.service;
+
+import com.financekb.client.ChatMessage;
+import com.financekb.config.ChatConfig;
+import com.financekb.entity.ChatHistory;
+import com.financekb.mapper.ChatHistoryMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话记录服务
+ * <p>
+ * 消息先进入有界内存队列，定时以多值 INSERT 批量写入 chat_history，对话链路上没有数据库写入；
+ * 队列满时改为同步写入（背压）；消息只追加不合并，未写入期间的持久性与 {@link com.financekb.common.WriteBehindBuffer} 相同。
+ * 每个会话最近的消息缓存在本地，作为下一轮对话的上下文，不必在首个Token之前查库。
+ */
+@Slf4j
+@Service
+public class ChatHistoryService {
+    
+    public static final int MESSAGE_TYPE_USER = 1;
+    public static final int MESSAGE_TYPE_ASSISTANT = 2;
+    
+    private final ChatHistoryMapper chatHistoryMapper;
+    private final ChatConfig chatConfig;
+    
+    private final BlockingQueue<ChatHistory> queue;
+    
+    /**
+     * 用户ID:会话ID -> 最近的消息（不可变列表，按时间正序）
+     */
+    private final Cache<String, List<ChatMessage>> recentMessages;
+    
+    private final Object flushLock = new Object();
+    
+    public ChatHistoryService(ChatHistoryMapper chatHistoryMapper, ChatConfig chatConfig, MeterRegistry meterRegistry) {
+        this.chatHistoryMapper = chatHistoryMapper;
+        this.chatConfig = chatConfig;
+        this.queue = new ArrayBlockingQueue<>(chatConfig.getHistory().getQueueCapacity());
+        this.recentMessages = Caffeine.newBuilder()
+            .maximumSize(chatConfig.getContextCacheSize())
+            .expireAfterAccess(chatConfig.getContextCacheExpireMinutes(), TimeUnit.MINUTES)
+            .build();
+        Gauge.builder("chat.history.queue", queue, BlockingQueue::size)
+            .description("等待写入的对话记录数")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * 记录一条消息（异步写库）
+     */
+    public void append(Long userId, String sessionId, int messageType, String content, Long knowledgeBaseId,
+                       Integer tokenUsage) {
+        ChatHistory history = new ChatHistory();
+        history.setUserId(userId);
+        history.setSessionId(sessionId);
+        history.setMessageType(messageType);
+        history.setContent(content);
+        history.setKnowledgeBaseId(knowledgeBaseId);
+        history.setTokenUsage(tokenUsage);
+        // 创建时间在入队时确定，批量写入的先后不影响消息顺序
+        history.setCreateTime(LocalDateTime.now());
+        
+        ChatMessage message = new ChatMessage(
+            messageType == MESSAGE_TYPE_USER ? ChatMessage.ROLE_USER : ChatMessage.ROLE_ASSISTANT, content);
+        recentMessages.asMap().computeIfPresent(key(userId, sessionId), (key, messages) -> appendRecent(messages, message));
+        
+        if (!queue.offer(history)) {
+            log.warn("对话记录队列已满，改为同步写入：sessionId={}", sessionId);
+            try {
+                chatHistoryMapper.insert(history);
+            } catch (RuntimeException e) {
+                log.error("对话记录写入失败：sessionId={}", sessionId, e);
+            }
+        }
+    }
+    
+    /**
+     * 会话最近的消息（对话上下文）
+     *
+     * @param newSession 新会话直接返回空列表，不查库
+     */
+    public List<ChatMessage> recentMessages(Long userId, String sessionId, boolean newSession) {
+        String key = key(userId, sessionId);
+        if (newSession) {
+            recentMessages.put(key, List.of());
+            return List.of();
+        }
+        List<ChatMessage> cached = recentMessages.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            List<ChatHistory> rows = chatHistoryMapper.selectRecent(userId, sessionId, chatConfig.getContextMessages());
+            List<ChatMessage> messages = new ArrayList<>(rows.size());
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                ChatHistory row = rows.get(i);
+                messages.add(new ChatMessage(row.getMessageType() == MESSAGE_TYPE_USER
+                    ? ChatMessage.ROLE_USER : ChatMessage.ROLE_ASSISTANT, row.getContent()));
+            }
+            List<ChatMessage> loaded = Collections.unmodifiableList(messages);
+            // 查询期间已有新消息写入缓存时以缓存为准
+            return recentMessages.asMap().merge(key, loaded, (current, ignored) -> current);
+        } catch (RuntimeException e) {
+            log.warn("加载对话上下文失败，本轮不携带历史消息：sessionId={}", sessionId, e);
+            return List.of();
+        }
+    }
+    
+    /**
+     * 定时批量写入，失败的记录放回队列等待下次写入
+     */
+    @Scheduled(fixedDelayString = "${chat.history.flush-interval:500}",
+               initialDelayString = "${chat.history.flush-interval:500}")
+    public void flush() {
+        synchronized (flushLock) {
+            int batchSize = chatConfig.getHistory().getBatchSize();
+            List<ChatHistory> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                try {
+                    chatHistoryMapper.insertBatch(batch);
+                } catch (RuntimeException e) {
+                    int dropped = 0;
+                    for (ChatHistory history : batch) {
+                        if (!queue.offer(history)) {
+                            dropped++;
+                        }
+                    }
+                    if (dropped > 0) {
+                        log.error("对话记录写入失败且队列已满，丢弃{}条", dropped, e);
+                    } else {
+                        log.warn("对话记录写入失败，{}条记录将在下次写入重试", batch.size(), e);
+                    }
+                    return;
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+    }
+    
+    /**
+     * 停机前写入剩余记录
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+    
+    private List<ChatMessage> appendRecent(List<ChatMessage> messages, ChatMessage message) {
+        int limit = chatConfig.getContextMessages();
+        List<ChatMessage> next = new ArrayList<>(Math.min(messages.size() + 1, limit));
+        int from = Math.max(0, messages.size() + 1 - limit);
+        for (int i = from; i < messages.size(); i++) {
+            next.add(messages.get(i));
+        }
+        if (limit > 0) {
+            next.add(message);
+        }
+        return Collections.unmodifiableList(next);
+    }
+    
+    private static String key(Long userId, String sessionId) {
+        return userId + ":" + sessionId;
+    }
+}
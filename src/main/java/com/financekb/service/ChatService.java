@@ -0,0 +1,160 @@
+package com.financekb.service;
+
+import com.financekb.client.ChatCall;
+import com.financekb.client.ChatMessage;
+import com.financekb.client.ChatStreamListener;
+import com.financekb.client.OpenAIClient;
+import com.financekb.common.BusinessException;
+import com.financekb.common.ResultCode;
+import com.financekb.config.ChatConfig;
+import com.financekb.dto.ChatRequestDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 对话服务（SSE和WebSocket共用）
+ * <p>
+ * 首个Token之前只做内存操作：上下文取自本地缓存，消息记录异步批量写库，请求立即发往模型接口。
+ * 记录首个Token耗时（ai.chat.first.token）和完整生成耗时（ai.chat.completion），按通道打标签。
+ * <p>
+ * 用量在结束时按接口返回的Token数扣除；收到内容后客户端断开或调用失败时，接口不会返回用量，
+ * 按已发送的提示词和已生成的内容估算扣除，中途断开不能绕过每日Token额度。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatService {
+    
+    private final OpenAIClient openAIClient;
+    private final ChatHistoryService chatHistoryService;
+    private final AiQuotaService aiQuotaService;
+    private final AiUsageService aiUsageService;
+    private final ChatConfig chatConfig;
+    private final MeterRegistry meterRegistry;
+    
+    /**
+     * 为空时生成新的会话ID
+     */
+    public String resolveSessionId(String sessionId) {
+        return StringUtils.hasText(sessionId) ? sessionId.trim() : UUID.randomUUID().toString().replace("-", "");
+    }
+    
+    /**
+     * 发起流式对话
+     *
+     * @param sessionId 由 {@link #resolveSessionId} 得到的会话ID
+     * @param channel   通道（sse/websocket），用于指标
+     * @return 可取消的调用（客户端断开时取消）
+     * @throws BusinessException 调用额度已用完
+     */
+    public ChatCall stream(Long userId, String sessionId, ChatRequestDTO request, String channel,
+                       ChatStreamListener listener) {
+        String content = request.getMessage().trim();
+        if (content.length() > chatConfig.getMaxMessageLength()) {
+            throw new IllegalArgumentException("消息长度不能超过" + chatConfig.getMaxMessageLength() + "个字符");
+        }
+        if (!aiQuotaService.tryAcquire(userId)) {
+            throw new BusinessException(ResultCode.AI_QUOTA_EXCEEDED);
+        }
+        boolean newSession = !StringUtils.hasText(request.getSessionId());
+        
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(new ChatMessage(ChatMessage.ROLE_SYSTEM, chatConfig.getSystemPrompt()));
+        messages.addAll(chatHistoryService.recentMessages(userId, sessionId, newSession));
+        messages.add(new ChatMessage(ChatMessage.ROLE_USER, content));
+        chatHistoryService.append(userId, sessionId, ChatHistoryService.MESSAGE_TYPE_USER, content,
+            request.getKnowledgeBaseId(), null);
+        
+        long start = System.nanoTime();
+        Timer firstTokenTimer = meterRegistry.timer("ai.chat.first.token", "channel", channel);
+        Timer completionTimer = meterRegistry.timer("ai.chat.completion", "channel", channel);
+        int promptTokens = messages.stream().mapToInt(message -> estimateTokens(message.getContent())).sum();
+        // 用量只扣一次：正常结束、失败、客户端断开三者先到者扣除
+        AtomicBoolean settled = new AtomicBoolean();
+        StringBuffer partial = new StringBuffer();
+        ChatCall call = openAIClient.streamChat(messages, new ChatStreamListener() {
+            private boolean firstToken = true;
+            
+            @Override
+            public void onToken(String token) {
+                if (firstToken) {
+                    firstToken = false;
+                    firstTokenTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                partial.append(token);
+                listener.onToken(token);
+            }
+            
+            @Override
+            public void onComplete(String reply, Integer tokenUsage) {
+                completionTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (settled.compareAndSet(false, true)) {
+                    aiQuotaService.consumeTokens(userId, tokenUsage);
+                    aiUsageService.record(userId, tokenUsage, false);
+                }
+                chatHistoryService.append(userId, sessionId, ChatHistoryService.MESSAGE_TYPE_ASSISTANT, reply,
+                    request.getKnowledgeBaseId(), tokenUsage);
+                listener.onComplete(reply, tokenUsage);
+            }
+            
+            @Override
+            public void onError(Throwable error) {
+                log.warn("对话生成失败：sessionId={}", sessionId, error);
+                if (settled.compareAndSet(false, true)) {
+                    chargeEstimate(userId, promptTokens, partial);
+                }
+                listener.onError(error);
+            }
+        });
+        call.onCancel(() -> {
+            if (settled.compareAndSet(false, true)) {
+                chargeEstimate(userId, promptTokens, partial);
+            }
+        });
+        return call;
+    }
+    
+    /**
+     * 接口未返回用量时按估算扣除；尚未生成内容时只记录请求
+     */
+    private void chargeEstimate(Long userId, int promptTokens, CharSequence partial) {
+        if (partial.length() == 0) {
+            aiUsageService.record(userId, null, false);
+            return;
+        }
+        int tokenUsage = promptTokens + estimateTokens(partial);
+        aiQuotaService.consumeTokens(userId, tokenUsage);
+        aiUsageService.record(userId, tokenUsage, false);
+    }
+    
+    /**
+     * 估算Token数：中日韩字符每字约一个Token，其他字符约四个一个Token
+     */
+    static int estimateTokens(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            Character.UnicodeScript script = Character.UnicodeScript.of(text.charAt(i));
+            if (script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+}
@@ -0,0 +1,425 @@
+package com.financekb.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.financekb.common.BusinessException;
+import com.financekb.common.Result;
+import com.financekb.common.ResultCode;
+import com.financekb.config.FileConfig;
+import com.financekb.dto.ChunkUploadInitDTO;
+import com.financekb.dto.InstantUploadDTO;
+import com.financekb.entity.FileBlob;
+import com.financekb.entity.FileUploadTask;
+import com.financekb.mapper.FileUploadTaskMapper;
+import com.financekb.vo.ChunkUploadVO;
+import com.financekb.vo.FileInfoVO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * 分片上传服务（断点续传）
+ * <p>
+ * 初始化时预分配目标文件，每个分片按偏移量直接写入该文件，因此分片可以并行、乱序到达；
+ * 已收到的分片记录在同目录的位图文件中（每个分片一个字节），服务重启后仍可续传。
+ * 合并时只需把预分配文件移动到内容寻址存储，不再重新拼接文件内容。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkUploadService {
+
+    private static final String CHUNK_DIR = ".chunks";
+    private static final String DATA_FILE = "data.part";
+    private static final String CHUNK_MAP_FILE = "chunks.map";
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int STATUS_UPLOADING = 0;
+    private static final int STATUS_MERGING = 1;
+
+    private final FileUploadTaskMapper uploadTaskMapper;
+    private final FileService fileService;
+    private final FileIngestService fileIngestService;
+    private final BlobStorageService blobStorageService;
+    private final FileConfig fileConfig;
+
+    /**
+     * 初始化分片上传
+     * 同一用户对同名同大小的文件再次初始化时，返回未完成的任务以便续传
+     */
+    public Result<ChunkUploadVO> initUpload(ChunkUploadInitDTO dto, Long userId) {
+        FileConfig.Chunk chunkConfig = fileConfig.getChunk();
+
+        // 验证文件类型
+        String contentType = dto.getContentType();
+        if (contentType == null || !fileConfig.getAllowedTypes().contains(contentType)) {
+            return Result.error(ResultCode.FILE_TYPE_NOT_ALLOWED.getCode(), "不支持的文件类型：" + contentType);
+        }
+
+        // 验证文件大小
+        if (dto.getFileSize() > chunkConfig.getMaxFileSize()) {
+            return Result.error(ResultCode.FILE_SIZE_EXCEEDED.getCode(),
+                "文件大小不能超过" + (chunkConfig.getMaxFileSize() / 1024 / 1024) + "MB");
+        }
+
+        int chunkSize = dto.getChunkSize() != null && dto.getChunkSize() > 0
+            ? dto.getChunkSize() : chunkConfig.getDefaultSize();
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            return Result.error(ResultCode.BAD_REQUEST.getCode(), "分片大小必须在256KB-64MB之间");
+        }
+
+        // 内容已存在时秒传
+        if (dto.getFileHash() != null && dto.getFileHash().matches("^[0-9a-fA-F]{64}$")) {
+            InstantUploadDTO instantDTO = new InstantUploadDTO();
+            instantDTO.setFileHash(dto.getFileHash());
+            instantDTO.setFileName(dto.getFileName());
+            instantDTO.setFileSize(dto.getFileSize());
+            instantDTO.setCategory(dto.getCategory());
+            instantDTO.setTags(dto.getTags());
+            instantDTO.setDescription(dto.getDescription());
+            Result<FileInfoVO> instantResult = fileService.instantUpload(instantDTO, userId);
+            if (instantResult.getData() != null) {
+                ChunkUploadVO vo = new ChunkUploadVO();
+                vo.setFileName(dto.getFileName());
+                vo.setFileSize(dto.getFileSize());
+                vo.setFileInfo(instantResult.getData());
+                return Result.success("文件上传成功", vo);
+            }
+        }
+        
+        // 存在未完成的同一文件上传任务时直接续传
+        FileUploadTask existTask = uploadTaskMapper.selectOne(
+            new LambdaQueryWrapper<FileUploadTask>()
+                .eq(FileUploadTask::getUserId, userId)
+                .eq(FileUploadTask::getFileName, dto.getFileName())
+                .eq(FileUploadTask::getFileSize, dto.getFileSize())
+                .eq(FileUploadTask::getChunkSize, chunkSize)
+                .eq(FileUploadTask::getStatus, STATUS_UPLOADING)
+                .orderByDesc(FileUploadTask::getId)
+                .last("LIMIT 1")
+        );
+        if (existTask != null && Files.exists(taskDir(existTask.getUploadId()).resolve(CHUNK_MAP_FILE))) {
+            try {
+                return Result.success("继续上传", toVO(existTask));
+            } catch (IOException e) {
+                log.warn("读取分片记录失败，重新创建上传任务：uploadId={}", existTask.getUploadId(), e);
+            }
+        }
+
+        long fileSize = dto.getFileSize();
+        int totalChunks = (int) ((fileSize + chunkSize - 1) / chunkSize);
+        String uploadId = UUID.randomUUID().toString().replace("-", "");
+
+        try {
+            // 预分配目标文件和分片位图
+            Path dir = taskDir(uploadId);
+            Files.createDirectories(dir);
+            try (RandomAccessFile dataFile = new RandomAccessFile(dir.resolve(DATA_FILE).toFile(), "rw");
+                 RandomAccessFile mapFile = new RandomAccessFile(dir.resolve(CHUNK_MAP_FILE).toFile(), "rw")) {
+                dataFile.setLength(fileSize);
+                mapFile.setLength(totalChunks);
+            }
+        } catch (IOException e) {
+            log.error("创建分片上传任务失败", e);
+            return Result.error(ResultCode.FILE_UPLOAD_FAILED.getCode(), "创建上传任务失败：" + e.getMessage());
+        }
+
+        FileUploadTask task = new FileUploadTask();
+        task.setUploadId(uploadId);
+        task.setUserId(userId);
+        task.setFileName(dto.getFileName());
+        task.setFileSize(fileSize);
+        task.setFileType(contentType);
+        task.setChunkSize(chunkSize);
+        task.setTotalChunks(totalChunks);
+        task.setCategory(dto.getCategory());
+        task.setTags(dto.getTags());
+        task.setDescription(dto.getDescription());
+        task.setStatus(STATUS_UPLOADING);
+        uploadTaskMapper.insert(task);
+
+        log.info("分片上传任务创建：userId={}, uploadId={}, fileName={}, totalChunks={}",
+            userId, uploadId, dto.getFileName(), totalChunks);
+
+        ChunkUploadVO vo = new ChunkUploadVO();
+        vo.setUploadId(uploadId);
+        vo.setFileName(task.getFileName());
+        vo.setFileSize(fileSize);
+        vo.setChunkSize(chunkSize);
+        vo.setTotalChunks(totalChunks);
+        vo.setUploadedChunks(new ArrayList<>());
+        return Result.success(vo);
+    }
+
+    /**
+     * 上传单个分片：按偏移量直接写入预分配文件，写入完成后再标记位图
+     */
+    public Result<Integer> uploadChunk(String uploadId, Integer chunkIndex, InputStream inputStream, Long userId) {
+        FileUploadTask task = getTask(uploadId, userId);
+        if (task == null) {
+            return Result.error(ResultCode.NOT_FOUND.getCode(), "上传任务不存在或已过期");
+        }
+        if (task.getStatus() != STATUS_UPLOADING) {
+            return Result.error(ResultCode.BAD_REQUEST.getCode(), "上传任务正在合并");
+        }
+        if (chunkIndex == null || chunkIndex < 0 || chunkIndex >= task.getTotalChunks()) {
+            return Result.error(ResultCode.BAD_REQUEST.getCode(), "分片序号不合法：" + chunkIndex);
+        }
+
+        long offset = (long) chunkIndex * task.getChunkSize();
+        long expectedLength = Math.min(task.getChunkSize(), task.getFileSize() - offset);
+        Path dir = taskDir(uploadId);
+
+        try (FileChannel channel = FileChannel.open(dir.resolve(DATA_FILE), StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[FileIngestService.HEAD_SIZE];
+            long written = 0;
+            int read;
+            if (chunkIndex == 0) {
+                // 首个分片先检测魔数，不允许的类型在写入前拒绝
+                read = inputStream.readNBytes(buffer, 0, buffer.length);
+                String detectedType = fileIngestService.detectType(buffer, read, task.getFileName());
+                if (!fileIngestService.isAllowedType(detectedType)) {
+                    return Result.error(ResultCode.FILE_TYPE_NOT_ALLOWED.getCode(), "不支持的文件类型：" + detectedType);
+                }
+                if (read > expectedLength) {
+                    return Result.error(ResultCode.BAD_REQUEST.getCode(), "分片大小不匹配，期望 " + expectedLength + " 字节");
+                }
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer, offset + byteBuffer.position());
+                }
+                written = read;
+            }
+            while ((read = inputStream.read(buffer)) != -1) {
+                if (written + read > expectedLength) {
+                    return Result.error(ResultCode.BAD_REQUEST.getCode(), "分片大小不匹配，期望 " + expectedLength + " 字节");
+                }
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer, offset + written + byteBuffer.position());
+                }
+                written += read;
+            }
+            if (written != expectedLength) {
+                return Result.error(ResultCode.BAD_REQUEST.getCode(), "分片大小不匹配，期望 " + expectedLength + " 字节");
+            }
+            // 数据落盘后再标记分片，避免位图先于数据持久化
+            channel.force(false);
+        } catch (IOException e) {
+            log.error("分片写入失败：uploadId={}, chunkIndex={}", uploadId, chunkIndex, e);
+            return Result.error(ResultCode.FILE_UPLOAD_FAILED.getCode(), "分片上传失败：" + e.getMessage());
+        }
+
+        try (FileChannel mapChannel = FileChannel.open(dir.resolve(CHUNK_MAP_FILE), StandardOpenOption.WRITE)) {
+            mapChannel.write(ByteBuffer.wrap(new byte[]{1}), chunkIndex);
+        } catch (IOException e) {
+            log.error("分片标记失败：uploadId={}, chunkIndex={}", uploadId, chunkIndex, e);
+            return Result.error(ResultCode.FILE_UPLOAD_FAILED.getCode(), "分片上传失败：" + e.getMessage());
+        }
+
+        return Result.success("分片上传成功", chunkIndex);
+    }
+
+    /**
+     * 查询上传进度（用于断点续传）
+     */
+    public Result<ChunkUploadVO> getUploadStatus(String uploadId, Long userId) {
+        FileUploadTask task = getTask(uploadId, userId);
+        if (task == null) {
+            return Result.error(ResultCode.NOT_FOUND.getCode(), "上传任务不存在或已过期");
+        }
+        try {
+            return Result.success(toVO(task));
+        } catch (IOException e) {
+            log.error("读取分片记录失败：uploadId={}", uploadId, e);
+            return Result.error(ResultCode.FILE_UPLOAD_FAILED.getCode(), "读取上传进度失败");
+        }
+    }
+
+    /**
+     * 完成上传：校验分片完整后将预分配文件移动到内容寻址存储，并写入文件信息
+     */
+    @Transactional
+    public Result<FileInfoVO> completeUpload(String uploadId, Long userId) {
+        FileUploadTask task = getTask(uploadId, userId);
+        if (task == null) {
+            return Result.error(ResultCode.NOT_FOUND.getCode(), "上传任务不存在或已过期");
+        }
+
+        Path dir = taskDir(uploadId);
+        try {
+            List<Integer> uploaded = readUploadedChunks(dir, task.getTotalChunks());
+            if (uploaded.size() < task.getTotalChunks()) {
+                return Result.error(ResultCode.BAD_REQUEST.getCode(),
+                    "还有 " + (task.getTotalChunks() - uploaded.size()) + " 个分片未上传");
+            }
+        } catch (IOException e) {
+            log.error("读取分片记录失败：uploadId={}", uploadId, e);
+            return Result.error(ResultCode.FILE_UPLOAD_FAILED.getCode(), "读取上传进度失败");
+        }
+
+        // 抢占合并，防止重复提交导致生成多条记录
+        int claimed = uploadTaskMapper.update(null,
+            new LambdaUpdateWrapper<FileUploadTask>()
+                .set(FileUploadTask::getStatus, STATUS_MERGING)
+                .eq(FileUploadTask::getId, task.getId())
+                .eq(FileUploadTask::getStatus, STATUS_UPLOADING));
+        if (claimed == 0) {
+            return Result.error(ResultCode.BAD_REQUEST.getCode(), "上传任务正在合并");
+        }
+
+        Path dataFile = dir.resolve(DATA_FILE);
+        FileInfoVO vo;
+        try {
+            // 只读取文件头部检测真实类型
+            String detectedType = fileIngestService.detectType(dataFile);
+            if (!fileIngestService.isAllowedType(detectedType)) {
+                throw new BusinessException(ResultCode.FILE_TYPE_NOT_ALLOWED, "不支持的文件类型：" + detectedType);
+            }
+            // 分片乱序到达无法边写边计算，合并后顺序读取一次计算摘要
+            String fileHash = fileIngestService.sha256(dataFile);
+            // 存入内容寻址存储的是合并文件的硬链接，合并文件本身保留到事务提交：
+            // 之后任一步失败回滚时任务退回上传中，合并文件仍在，客户端可直接重试完成
+            Path stagedFile = stageDataFile(dataFile);
+            FileBlob blob;
+            try {
+                blob = blobStorageService.store(stagedFile, fileHash, task.getFileSize(), detectedType,
+                    fileService.getFileExtension(task.getFileName()));
+            } finally {
+                Files.deleteIfExists(stagedFile);
+            }
+            vo = fileService.saveFileInfo(userId, task.getFileName(), blob,
+                task.getCategory(), task.getTags(), task.getDescription());
+            uploadTaskMapper.deleteById(task.getId());
+        } catch (IOException e) {
+            log.error("合并分片失败：uploadId={}", uploadId, e);
+            throw new IllegalStateException("文件合并失败：" + e.getMessage(), e);
+        }
+
+        // 任务记录删除提交后才删除分片目录
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteDirectory(dir);
+            }
+        });
+        log.info("分片上传完成：userId={}, uploadId={}, fileId={}", userId, uploadId, vo.getId());
+        return Result.success("文件上传成功", vo);
+    }
+
+    /**
+     * 清理过期未完成的上传任务
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 600000)
+    public void cleanExpiredTasks() {
+        LocalDateTime expireTime = LocalDateTime.now().minusHours(fileConfig.getChunk().getExpireHours());
+        List<FileUploadTask> tasks = uploadTaskMapper.selectList(
+            new LambdaQueryWrapper<FileUploadTask>()
+                .lt(FileUploadTask::getUpdateTime, expireTime)
+                .eq(FileUploadTask::getStatus, STATUS_UPLOADING)
+        );
+
+        long expireMillis = System.currentTimeMillis() - fileConfig.getChunk().getExpireHours() * 3600000L;
+        for (FileUploadTask task : tasks) {
+            Path dir = taskDir(task.getUploadId());
+            try {
+                // 分片写入不更新数据库，以位图文件的修改时间作为最后活跃时间
+                Path mapFile = dir.resolve(CHUNK_MAP_FILE);
+                if (Files.exists(mapFile) && Files.getLastModifiedTime(mapFile).toMillis() > expireMillis) {
+                    continue;
+                }
+            } catch (IOException e) {
+                log.warn("读取分片记录失败：{}", dir, e);
+            }
+            deleteDirectory(dir);
+            uploadTaskMapper.deleteById(task.getId());
+            log.info("清理过期上传任务：uploadId={}", task.getUploadId());
+        }
+    }
+
+    private FileUploadTask getTask(String uploadId, Long userId) {
+        return uploadTaskMapper.selectOne(
+            new LambdaQueryWrapper<FileUploadTask>()
+                .eq(FileUploadTask::getUploadId, uploadId)
+                .eq(FileUploadTask::getUserId, userId)
+        );
+    }
+
+    /**
+     * 为合并文件在存储临时目录建立硬链接（不复制数据），文件系统不支持硬链接时复制
+     */
+    private Path stageDataFile(Path dataFile) throws IOException {
+        Path stagedFile = blobStorageService.allocateTempPath();
+        try {
+            Files.createLink(stagedFile, dataFile);
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("无法建立硬链接，复制合并文件：{}", dataFile, e);
+            Files.copy(dataFile, stagedFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return stagedFile;
+    }
+
+    private Path taskDir(String uploadId) {
+        return Paths.get(fileConfig.getUploadPath(), CHUNK_DIR, uploadId);
+    }
+
+    private ChunkUploadVO toVO(FileUploadTask task) throws IOException {
+        ChunkUploadVO vo = new ChunkUploadVO();
+        vo.setUploadId(task.getUploadId());
+        vo.setFileName(task.getFileName());
+        vo.setFileSize(task.getFileSize());
+        vo.setChunkSize(task.getChunkSize());
+        vo.setTotalChunks(task.getTotalChunks());
+        vo.setUploadedChunks(readUploadedChunks(taskDir(task.getUploadId()), task.getTotalChunks()));
+        return vo;
+    }
+
+    private List<Integer> readUploadedChunks(Path dir, int totalChunks) throws IOException {
+        byte[] chunkMap = Files.readAllBytes(dir.resolve(CHUNK_MAP_FILE));
+        List<Integer> uploaded = new ArrayList<>();
+        for (int i = 0; i < Math.min(chunkMap.length, totalChunks); i++) {
+            if (chunkMap[i] == 1) {
+                uploaded.add(i);
+            }
+        }
+        return uploaded;
+    }
+
+    private void deleteDirectory(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("删除临时文件失败：{}", path, e);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("删除临时目录失败：{}", dir, e);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.financekb.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.financekb.common.DocumentTextExtractor;
+import com.financekb.config.FileConfig;
+import com.financekb.entity.DocumentExtractTask;
+import com.financekb.entity.FileInfo;
+import com.financekb.entity.KnowledgeBase;
+import com.financekb.entity.KnowledgeDocument;
+import com.financekb.mapper.DocumentExtractTaskMapper;
+import com.financekb.mapper.FileInfoMapper;
+import com.financekb.mapper.KnowledgeBaseMapper;
+import com.financekb.mapper.KnowledgeDocumentMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 文档文本提取服务
+ * <p>
+ * 上传时在同一事务中写入 document_extract_task（状态持久化，重启不丢失），提交后通知调度线程；
+ * 调度线程只按线程池队列剩余容量领取任务，其余任务留在数据库中，由定时轮询在有空位时补充（背压）。
+ * 领取通过条件UPDATE完成，多节点不会重复处理；处理中超过租约时间的任务退回待处理。
+ * 提取结果写入用户默认知识库的 knowledge_document（按文件去重），上传接口不等待提取完成。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentExtractService {
+    
+    public static final int STATUS_PENDING = 0;
+    public static final int STATUS_RUNNING = 1;
+    public static final int STATUS_SUCCESS = 2;
+    public static final int STATUS_FAILED = 3;
+    public static final int STATUS_SKIPPED = 4;
+    
+    /**
+     * 上传文件自动归入的知识库名称
+     */
+    public static final String DEFAULT_KNOWLEDGE_BASE_NAME = "我的文档";
+    
+    private static final int MAX_ERROR_LENGTH = 500;
+    
+    private final DocumentExtractTaskMapper taskMapper;
+    private final FileInfoMapper fileInfoMapper;
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+    private final KnowledgeDocumentMapper knowledgeDocumentMapper;
+    private final DocumentTextExtractor documentTextExtractor;
+    private final KnowledgeIndexService knowledgeIndexService;
+    private final AiResponseCacheService aiResponseCacheService;
+    private final ThreadPoolTaskExecutor documentExtractExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final FileConfig fileConfig;
+    
+    /**
+     * 调度线程：把数据库中的待处理任务领取到线程池，多次通知合并为一次
+     */
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "document-extract-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final AtomicBoolean dispatchRequested = new AtomicBoolean();
+    
+    /**
+     * 为处理中的任务定期续租，耗时较长的任务不会被回收后重复处理
+     */
+    private final ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "document-extract-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * 为新上传的文件创建提取任务（与文件信息写入在同一事务中调用）
+     */
+    public void submit(List<FileInfo> fileInfos) {
+        if (!Boolean.TRUE.equals(fileConfig.getExtract().getEnabled())) {
+            return;
+        }
+        List<DocumentExtractTask> tasks = fileInfos.stream()
+            .filter(fileInfo -> isExtractable(fileInfo.getFileType()))
+            .map(fileInfo -> {
+                DocumentExtractTask task = new DocumentExtractTask();
+                task.setFileId(fileInfo.getId());
+                task.setUserId(fileInfo.getUserId());
+                return task;
+            })
+            .collect(Collectors.toList());
+        if (tasks.isEmpty()) {
+            return;
+        }
+        taskMapper.insertBatch(tasks);
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    requestDispatch();
+                }
+            });
+        } else {
+            requestDispatch();
+        }
+    }
+    
+    /**
+     * 文件删除后清理提取任务和知识库文档
+     */
+    public void onFileRemoved(Long fileId) {
+        taskMapper.delete(new LambdaQueryWrapper<DocumentExtractTask>().eq(DocumentExtractTask::getFileId, fileId));
+        List<KnowledgeDocument> documents = knowledgeDocumentMapper.selectList(
+            new LambdaQueryWrapper<KnowledgeDocument>()
+                .select(KnowledgeDocument::getId, KnowledgeDocument::getKnowledgeBaseId)
+                .eq(KnowledgeDocument::getFileId, fileId)
+        );
+        for (KnowledgeDocument document : documents) {
+            knowledgeDocumentMapper.deleteById(document.getId());
+            knowledgeBaseMapper.incrementDocumentCount(document.getKnowledgeBaseId(), -1);
+        }
+        if (documents.isEmpty()) {
+            return;
+        }
+        
+        // 向量索引和回答缓存不随事务回滚，提交后再删除
+        Runnable cleanup = () -> documents.forEach(document -> {
+            knowledgeIndexService.removeDocument(document.getId());
+            aiResponseCacheService.invalidateKnowledgeBase(document.getKnowledgeBaseId());
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cleanup.run();
+                }
+            });
+        } else {
+            cleanup.run();
+        }
+    }
+    
+    /**
+     * 定时轮询：回收过期租约、补充线程池空位（处理积压、重启后继续）
+     */
+    @Scheduled(fixedDelayString = "${file.extract.poll-interval:5000}",
+               initialDelayString = "${file.extract.poll-interval:5000}")
+    public void poll() {
+        if (!Boolean.TRUE.equals(fileConfig.getExtract().getEnabled())) {
+            return;
+        }
+        try {
+            FileConfig.Extract extract = fileConfig.getExtract();
+            // 租约为超时时间的两倍，处理中的任务定期续租，只有进程崩溃遗留的任务会被回收
+            int reset = taskMapper.resetExpired(extract.getTimeoutSeconds() * 2);
+            if (reset > 0) {
+                log.warn("{}个文本提取任务租约过期，已退回待处理", reset);
+            }
+            taskMapper.failExhausted(extract.getMaxAttempts());
+        } catch (RuntimeException e) {
+            log.warn("回收文本提取任务失败", e);
+        }
+        requestDispatch();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        leaseRenewer.shutdownNow();
+    }
+    
+    /**
+     * 通知调度线程领取任务（已有待执行的调度时不重复提交）
+     */
+    private void requestDispatch() {
+        if (dispatchRequested.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> {
+                    dispatchRequested.set(false);
+                    dispatchPending();
+                });
+            } catch (RejectedExecutionException e) {
+                dispatchRequested.set(false);
+            }
+        }
+    }
+    
+    /**
+     * 按线程池队列剩余容量领取待处理任务
+     */
+    void dispatchPending() {
+        try {
+            int capacity = documentExtractExecutor.getThreadPoolExecutor().getQueue().remainingCapacity();
+            if (capacity <= 0) {
+                return;
+            }
+            for (Long taskId : taskMapper.selectPendingIds(capacity)) {
+                if (taskMapper.claim(taskId) == 0) {
+                    // 已被其他节点领取
+                    continue;
+                }
+                try {
+                    documentExtractExecutor.execute(() -> process(taskId));
+                } catch (RejectedExecutionException e) {
+                    taskMapper.unclaim(taskId);
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("领取文本提取任务失败，将在下次轮询重试", e);
+        }
+    }
+    
+    /**
+     * 执行单个提取任务，执行期间按租约的三分之一间隔续租
+     */
+    void process(Long taskId) {
+        long renewInterval = Math.max(1, fileConfig.getExtract().getTimeoutSeconds() * 2 / 3);
+        ScheduledFuture<?> renewal = leaseRenewer.scheduleWithFixedDelay(() -> {
+            try {
+                taskMapper.renewLease(taskId);
+            } catch (RuntimeException e) {
+                log.warn("文本提取任务续租失败：taskId={}", taskId, e);
+            }
+        }, renewInterval, renewInterval, TimeUnit.SECONDS);
+        try {
+            extract(taskId);
+        } finally {
+            renewal.cancel(false);
+        }
+    }
+    
+    private void extract(Long taskId) {
+        DocumentExtractTask task = taskMapper.selectById(taskId);
+        if (task == null || task.getStatus() != STATUS_RUNNING) {
+            return;
+        }
+        FileConfig.Extract extract = fileConfig.getExtract();
+        
+        FileInfo fileInfo = fileInfoMapper.selectById(task.getFileId());
+        if (fileInfo == null) {
+            taskMapper.updateStatus(taskId, STATUS_SKIPPED, "文件已删除");
+            return;
+        }
+        Path path = Paths.get(fileInfo.getFilePath());
+        if (!Files.isReadable(path)) {
+            taskMapper.updateStatus(taskId, STATUS_SKIPPED, "文件不存在");
+            return;
+        }
+        
+        long start = System.currentTimeMillis();
+        String content;
+        try {
+            content = documentTextExtractor.extract(path, fileInfo.getFileName(),
+                Duration.ofSeconds(extract.getTimeoutSeconds()), extract.getMaxContentLength());
+        } catch (DocumentTextExtractor.ExtractTimeoutException e) {
+            // 超时与文档本身有关，重试也会超时
+            log.warn("文本提取超时：fileId={}, fileName={}", fileInfo.getId(), fileInfo.getFileName());
+            taskMapper.updateStatus(taskId, STATUS_FAILED, e.getMessage());
+            return;
+        } catch (DocumentTextExtractor.ExtractRejectedException e) {
+            // 超时的解析线程尚未结束，退回待处理（不计尝试次数），等滞留线程释放后由轮询重新领取
+            log.warn("文本提取暂缓：fileId={}, {}", fileInfo.getId(), e.getMessage());
+            taskMapper.unclaim(taskId);
+            return;
+        } catch (Exception e) {
+            boolean retry = task.getAttempts() < extract.getMaxAttempts();
+            log.warn("文本提取失败：fileId={}, fileName={}, retry={}", fileInfo.getId(), fileInfo.getFileName(), retry, e);
+            taskMapper.updateStatus(taskId, retry ? STATUS_PENDING : STATUS_FAILED, truncate(e.getMessage()));
+            return;
+        }
+        
+        if (content.isEmpty()) {
+            taskMapper.updateStatus(taskId, STATUS_SKIPPED, "未提取到文本");
+            return;
+        }
+        
+        String summary = DocumentTextExtractor.summarize(content, extract.getSummaryLength());
+        // 默认知识库在事务外获取（创建），并发任务不会因看不到未提交的记录而重复创建
+        Long knowledgeBaseId = getDefaultKnowledgeBaseId(fileInfo.getUserId());
+        Long documentId = transactionTemplate.execute(status -> {
+            Long id = saveDocument(fileInfo, knowledgeBaseId, content, summary);
+            taskMapper.updateStatus(taskId, STATUS_SUCCESS, null);
+            return id;
+        });
+        log.info("文本提取完成：fileId={}, 字符数={}, 耗时={}ms", fileInfo.getId(), content.length(),
+            System.currentTimeMillis() - start);
+        
+        // 向量索引在事务提交后建立，失败时由补建任务重试
+        knowledgeIndexService.indexDocument(documentId, content);
+        // 知识库内容变化，基于旧内容的AI回答缓存失效
+        aiResponseCacheService.invalidateKnowledgeBase(knowledgeBaseId);
+    }
+    
+    /**
+     * 写入知识库文档（同一文件已有文档时更新内容并升级版本）
+     *
+     * @return 文档ID
+     */
+    private Long saveDocument(FileInfo fileInfo, Long knowledgeBaseId, String content, String summary) {
+        KnowledgeDocument existing = knowledgeDocumentMapper.selectOne(
+            new LambdaQueryWrapper<KnowledgeDocument>()
+                .eq(KnowledgeDocument::getFileId, fileInfo.getId())
+                .last("LIMIT 1")
+        );
+        if (existing != null) {
+            KnowledgeDocument update = new KnowledgeDocument();
+            update.setId(existing.getId());
+            update.setContent(content);
+            update.setContentSummary(summary);
+            update.setVersion((existing.getVersion() == null ? 1 : existing.getVersion()) + 1);
+            knowledgeDocumentMapper.updateById(update);
+            return existing.getId();
+        }
+        
+        KnowledgeDocument document = new KnowledgeDocument();
+        document.setKnowledgeBaseId(knowledgeBaseId);
+        document.setFileId(fileInfo.getId());
+        document.setTitle(fileInfo.getFileName());
+        document.setContent(content);
+        document.setContentSummary(summary);
+        document.setVersion(1);
+        knowledgeDocumentMapper.insert(document);
+        knowledgeBaseMapper.incrementDocumentCount(knowledgeBaseId, 1);
+        return document.getId();
+    }
+    
+    /**
+     * 获取用户默认知识库，不存在时创建
+     */
+    private synchronized Long getDefaultKnowledgeBaseId(Long userId) {
+        KnowledgeBase knowledgeBase = knowledgeBaseMapper.selectOne(
+            new LambdaQueryWrapper<KnowledgeBase>()
+                .eq(KnowledgeBase::getUserId, userId)
+                .eq(KnowledgeBase::getName, DEFAULT_KNOWLEDGE_BASE_NAME)
+                .orderByAsc(KnowledgeBase::getId)
+                .last("LIMIT 1")
+        );
+        if (knowledgeBase != null) {
+            return knowledgeBase.getId();
+        }
+        knowledgeBase = new KnowledgeBase();
+        knowledgeBase.setUserId(userId);
+        knowledgeBase.setName(DEFAULT_KNOWLEDGE_BASE_NAME);
+        knowledgeBase.setDescription("上传文件自动提取的文档");
+        knowledgeBase.setIsPublic(0);
+        knowledgeBase.setDocumentCount(0);
+        knowledgeBase.setViewCount(0);
+        knowledgeBaseMapper.insert(knowledgeBase);
+        return knowledgeBase.getId();
+    }
+    
+    /**
+     * 是否为可提取文本的类型（图片、音视频跳过）
+     */
+    static boolean isExtractable(String fileType) {
+        return fileType != null && (fileType.startsWith("text/") || fileType.startsWith("application/"));
+    }
+    
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
@@ -0,0 +1,86 @@
+package com.financekb.service;
+
+import com.financekb.common.WriteBehindBuffer;
+import com.financekb.config.FileConfig;
+import com.financekb.dto.FileCounterDelta;
+import com.financekb.mapper.FileInfoMapper;
+import com.financekb.vo.FileInfoVO;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 文件下载/查看计数服务
+ * <p>
+ * 计数先在内存中按文件聚合（{@link WriteBehindBuffer}），定时以单条 UPDATE ... SET download_count = download_count + ?
+ * 批量回写，避免每次下载都读写整行、争用行锁；读取详情/列表时会合并尚未回写的增量。
+ */
+@Service
+@RequiredArgsConstructor
+public class FileCounterService {
+
+    private final FileInfoMapper fileInfoMapper;
+    private final FileConfig fileConfig;
+
+    private final WriteBehindBuffer<Long, FileCounterDelta> counters =
+        new WriteBehindBuffer<>("文件计数", FileCounterService::merge, this::write);
+
+    /**
+     * 下载次数加一
+     */
+    public void incrementDownload(Long fileId) {
+        counters.add(fileId, new FileCounterDelta(fileId, 1L, 0L));
+    }
+
+    /**
+     * 查看次数加一
+     */
+    public void incrementView(Long fileId) {
+        counters.add(fileId, new FileCounterDelta(fileId, 0L, 1L));
+    }
+
+    /**
+     * 将未回写的增量合并到返回结果中
+     */
+    public void applyPending(FileInfoVO vo) {
+        FileCounterDelta delta = counters.get(vo.getId());
+        if (delta == null) {
+            return;
+        }
+        if (delta.getDownloadDelta() > 0) {
+            vo.setDownloadCount((int) ((vo.getDownloadCount() == null ? 0 : vo.getDownloadCount()) + delta.getDownloadDelta()));
+        }
+        if (delta.getViewDelta() > 0) {
+            vo.setViewCount((int) ((vo.getViewCount() == null ? 0 : vo.getViewCount()) + delta.getViewDelta()));
+        }
+    }
+
+    /**
+     * 定时批量回写，失败的增量重新放回内存等待下次回写
+     */
+    @Scheduled(fixedDelayString = "${file.counter.flush-interval:5000}",
+               initialDelayString = "${file.counter.flush-interval:5000}")
+    public void flush() {
+        counters.flush(fileConfig.getCounter().getFlushBatchSize());
+    }
+
+    /**
+     * 停机前回写剩余计数
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void write(List<FileCounterDelta> deltas) {
+        fileInfoMapper.incrementCounters(deltas);
+    }
+
+    private static FileCounterDelta merge(FileCounterDelta a, FileCounterDelta b) {
+        return new FileCounterDelta(a.getFileId(), a.getDownloadDelta() + b.getDownloadDelta(),
+            a.getViewDelta() + b.getViewDelta());
+    }
+}
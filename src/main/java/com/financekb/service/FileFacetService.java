@@ -0,0 +1,279 @@
+package com.financekb.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.financekb.entity.FileFacetCount;
+import com.financekb.entity.FileInfo;
+import com.financekb.mapper.FileFacetCountMapper;
+import com.financekb.mapper.FileInfoMapper;
+import com.financekb.vo.FacetCountVO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 文件分面计数服务
+ * <p>
+ * file_facet_count 按 用户+分类+扩展名+类型 保存文件数，上传/删除时在同一事务内增量维护；
+ * 读取时整用户的计数缓存在Redis哈希中，写入提交后递增缓存代数并删除缓存，
+ * 回填缓存前校验代数，避免把失效前读到的旧计数写回。
+ * 分类列表、无关键词/标签筛选时的分面都由这些计数汇总得到，不再扫描 file_info；
+ * 带关键词/标签筛选时按相同条件对 file_info 分组统计。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileFacetService {
+
+    private static final String CACHE_KEY_PREFIX = "file:facet:";
+    private static final String GENERATION_KEY_PREFIX = "file:facet:gen:";
+    private static final long CACHE_TTL_MINUTES = 30;
+    private static final String FIELD_SEPARATOR = "\u0001";
+
+    /**
+     * 空用户占位字段，避免没有文件的用户每次都查库
+     */
+    private static final String EMPTY_MARKER = "#";
+
+    private final FileFacetCountMapper fileFacetCountMapper;
+    private final FileInfoMapper fileInfoMapper;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 新增文件后累加计数（与文件信息写入在同一事务中调用）
+     */
+    public void onFilesAdded(List<FileInfo> fileInfos) {
+        Map<String, FileFacetCount> cells = new LinkedHashMap<>();
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (FileInfo fileInfo : fileInfos) {
+            FileFacetCount cell = toCell(fileInfo);
+            String key = cell.getUserId() + FIELD_SEPARATOR + toField(cell);
+            cells.merge(key, cell, (a, b) -> {
+                a.setFileCount(a.getFileCount() + 1);
+                return a;
+            });
+            userIds.add(cell.getUserId());
+        }
+        if (cells.isEmpty()) {
+            return;
+        }
+        fileFacetCountMapper.upsertBatch(new ArrayList<>(cells.values()));
+        userIds.forEach(this::evictAfterCommit);
+    }
+
+    /**
+     * 删除文件后扣减计数
+     */
+    public void onFileRemoved(FileInfo fileInfo) {
+        FileFacetCount cell = toCell(fileInfo);
+        fileFacetCountMapper.decrement(cell.getUserId(), cell.getCategory(), cell.getFileExt(), cell.getFileType());
+        evictAfterCommit(cell.getUserId());
+    }
+
+    /**
+     * 用户的分类列表（按文件数倒序）
+     */
+    public List<String> getCategories(Long userId) {
+        return new ArrayList<>(sumBy(getCells(userId), FileFacetCount::getCategory).keySet());
+    }
+
+    /**
+     * 分面计数
+     * 分类分面不受分类筛选影响（便于切换分类），扩展名/类型分面只统计所选分类
+     *
+     * @param category 当前分类筛选，可为空
+     * @param filter   关键词/标签等其余筛选条件，为空时直接使用预聚合计数
+     */
+    public FacetCountVO getFacets(Long userId, String category, Consumer<LambdaQueryWrapper<FileInfo>> filter) {
+        List<FileFacetCount> cells = filter == null ? getCells(userId) : countFiltered(userId, filter);
+        List<FileFacetCount> filtered = category == null || category.isEmpty()
+            ? cells
+            : cells.stream().filter(c -> c.getCategory().equalsIgnoreCase(category)).collect(Collectors.toList());
+
+        FacetCountVO vo = new FacetCountVO();
+        vo.setCategories(sumBy(cells, FileFacetCount::getCategory));
+        vo.setFileExts(sumBy(filtered, FileFacetCount::getFileExt));
+        vo.setFileTypes(sumBy(filtered, FileFacetCount::getFileType));
+        return vo;
+    }
+
+    /**
+     * 删除用户的分面缓存
+     */
+    public void evict(Long userId) {
+        try {
+            // 先递增代数，正在回填的旧计数在写入前即可发现已失效
+            redisTemplate.opsForValue().increment(GENERATION_KEY_PREFIX + userId);
+            redisTemplate.delete(CACHE_KEY_PREFIX + userId);
+        } catch (RuntimeException e) {
+            log.warn("删除分面缓存失败：userId={}", userId, e);
+        }
+    }
+
+    private List<FileFacetCount> getCells(Long userId) {
+        String key = CACHE_KEY_PREFIX + userId;
+        try {
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+            if (!entries.isEmpty()) {
+                return fromCache(userId, entries);
+            }
+        } catch (RuntimeException e) {
+            log.warn("读取分面缓存失败，改为查询数据库：userId={}", userId, e);
+        }
+
+        // 查库前记下缓存代数，查询期间发生失效时不回填
+        Long generation = null;
+        try {
+            generation = toGeneration(redisTemplate.opsForValue().get(GENERATION_KEY_PREFIX + userId));
+        } catch (RuntimeException e) {
+            log.warn("读取分面缓存代数失败，本次不回填缓存：userId={}", userId, e);
+        }
+
+        List<FileFacetCount> cells = fileFacetCountMapper.selectList(
+            new LambdaQueryWrapper<FileFacetCount>()
+                .eq(FileFacetCount::getUserId, userId)
+                .gt(FileFacetCount::getFileCount, 0)
+        );
+        if (generation != null) {
+            fillCache(userId, generation, cells);
+        }
+        return cells;
+    }
+
+    /**
+     * 代数未变时写入缓存
+     * WATCH 代数键后再比较，比较之后、EXEC之前发生的失效会使事务放弃执行
+     */
+    private void fillCache(Long userId, long generation, List<FileFacetCount> cells) {
+        String key = CACHE_KEY_PREFIX + userId;
+        String generationKey = GENERATION_KEY_PREFIX + userId;
+        Map<String, Object> entries = new HashMap<>();
+        entries.put(EMPTY_MARKER, 0);
+        for (FileFacetCount cell : cells) {
+            entries.put(toField(cell), cell.getFileCount());
+        }
+        try {
+            redisTemplate.execute(new SessionCallback<List<Object>>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    ops.watch(generationKey);
+                    if (toGeneration(ops.opsForValue().get(generationKey)) != generation) {
+                        ops.unwatch();
+                        return null;
+                    }
+                    ops.multi();
+                    ops.opsForHash().putAll(key, entries);
+                    ops.expire(key, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+                    return ops.exec();
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("写入分面缓存失败：userId={}", userId, e);
+        }
+    }
+
+    /**
+     * 按筛选条件对 file_info 分组统计（关键词/标签无法从预聚合计数得出）
+     */
+    private List<FileFacetCount> countFiltered(Long userId, Consumer<LambdaQueryWrapper<FileInfo>> filter) {
+        LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<FileInfo>()
+            .eq(FileInfo::getUserId, userId)
+            .eq(FileInfo::getDeleted, 0);
+        filter.accept(wrapper);
+        List<FileFacetCount> cells = fileInfoMapper.selectFacetCounts(wrapper);
+        for (FileFacetCount cell : cells) {
+            cell.setUserId(userId);
+            cell.setCategory(cell.getCategory() == null ? "" : cell.getCategory());
+            cell.setFileExt(cell.getFileExt() == null ? "" : cell.getFileExt().toLowerCase(Locale.ROOT));
+            cell.setFileType(cell.getFileType() == null ? "" : cell.getFileType());
+        }
+        return cells;
+    }
+
+    private List<FileFacetCount> fromCache(Long userId, Map<Object, Object> entries) {
+        List<FileFacetCount> cells = new ArrayList<>(entries.size());
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            String field = (String) entry.getKey();
+            if (EMPTY_MARKER.equals(field)) {
+                continue;
+            }
+            String[] parts = field.split(FIELD_SEPARATOR, -1);
+            FileFacetCount cell = new FileFacetCount();
+            cell.setUserId(userId);
+            cell.setCategory(parts[0]);
+            cell.setFileExt(parts[1]);
+            cell.setFileType(parts[2]);
+            cell.setFileCount(((Number) entry.getValue()).intValue());
+            cells.add(cell);
+        }
+        return cells;
+    }
+
+    private void evictAfterCommit(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId);
+                }
+            });
+        } else {
+            evict(userId);
+        }
+    }
+
+    private static long toGeneration(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * 按维度汇总（忽略空值），按文件数倒序
+     */
+    private static Map<String, Long> sumBy(List<FileFacetCount> cells, Function<FileFacetCount, String> dimension) {
+        Map<String, Long> sums = new HashMap<>();
+        for (FileFacetCount cell : cells) {
+            String value = dimension.apply(cell);
+            if (!value.isEmpty() && cell.getFileCount() > 0) {
+                sums.merge(value, (long) cell.getFileCount(), Long::sum);
+            }
+        }
+        return sums.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    private static FileFacetCount toCell(FileInfo fileInfo) {
+        FileFacetCount cell = new FileFacetCount();
+        cell.setUserId(fileInfo.getUserId());
+        cell.setCategory(fileInfo.getCategory() == null ? "" : fileInfo.getCategory());
+        cell.setFileExt(fileInfo.getFileExt() == null ? "" : fileInfo.getFileExt().toLowerCase(Locale.ROOT));
+        cell.setFileType(fileInfo.getFileType() == null ? "" : fileInfo.getFileType());
+        cell.setFileCount(1);
+        return cell;
+    }
+
+    private static String toField(FileFacetCount cell) {
+        return cell.getCategory() + FIELD_SEPARATOR + cell.getFileExt() + FIELD_SEPARATOR + cell.getFileType();
+    }
+}
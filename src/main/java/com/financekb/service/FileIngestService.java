@@ -0,0 +1,187 @@
+package com.financekb.service;
+
+import com.financekb.common.BusinessException;
+import com.financekb.common.ResultCode;
+import com.financekb.config.FileConfig;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.Tika;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MediaTypeRegistry;
+import org.apache.tika.mime.MimeTypes;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 文件入库流水线
+ * <p>
+ * 在写盘的同一次读取中完成：首块魔数检测类型（不允许的类型在写入前拒绝）、
+ * SHA-256摘要计算和大小上限校验，避免落盘后再次读取文件。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileIngestService {
+
+    /**
+     * 类型检测读取的首块大小
+     */
+    public static final int HEAD_SIZE = 64 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final MediaTypeRegistry MEDIA_TYPE_REGISTRY = MimeTypes.getDefaultMimeTypes().getMediaTypeRegistry();
+
+    private final FileConfig fileConfig;
+    private final Tika tika = new Tika();
+    private volatile Set<MediaType> allowedTypes;
+
+    /**
+     * 流式写入文件：读取首块检测类型，边写边计算摘要并校验大小
+     *
+     * @param inputStream 文件内容
+     * @param fileName    原始文件名（辅助类型检测）
+     * @param target      目标路径（不能已存在）
+     * @param maxSize     大小上限（字节）
+     */
+    public IngestResult ingest(InputStream inputStream, String fileName, Path target, long maxSize) throws IOException {
+        byte[] head = new byte[HEAD_SIZE];
+        int headLength = inputStream.readNBytes(head, 0, HEAD_SIZE);
+
+        // 写入前根据魔数检测真实类型
+        String detectedType = detectType(head, headLength, fileName);
+        if (!isAllowedType(detectedType)) {
+            throw new BusinessException(ResultCode.FILE_TYPE_NOT_ALLOWED, "不支持的文件类型：" + detectedType);
+        }
+        if (headLength > maxSize) {
+            throw new BusinessException(ResultCode.FILE_SIZE_EXCEEDED, "文件大小不能超过" + (maxSize / 1024 / 1024) + "MB");
+        }
+
+        MessageDigest digest = newSha256();
+        long size = headLength;
+        boolean completed = false;
+        try (OutputStream outputStream = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            digest.update(head, 0, headLength);
+            outputStream.write(head, 0, headLength);
+
+            // 首块未读满说明已到达流末尾；否则复用首块缓冲区继续读取
+            int read;
+            while (headLength == HEAD_SIZE && (read = inputStream.read(head)) != -1) {
+                size += read;
+                if (size > maxSize) {
+                    throw new BusinessException(ResultCode.FILE_SIZE_EXCEEDED, "文件大小不能超过" + (maxSize / 1024 / 1024) + "MB");
+                }
+                digest.update(head, 0, read);
+                outputStream.write(head, 0, read);
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(target);
+            }
+        }
+
+        return new IngestResult(detectedType, HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    /**
+     * 根据首块字节和文件名检测类型
+     */
+    public String detectType(byte[] head, int length, String fileName) {
+        byte[] prefix = length == head.length ? head : Arrays.copyOf(head, length);
+        return tika.detect(prefix, fileName);
+    }
+
+    /**
+     * 根据已落盘的文件检测类型（只读取文件头部）
+     */
+    public String detectType(Path file) throws IOException {
+        return tika.detect(file);
+    }
+
+    /**
+     * 类型是否在允许列表中（按Tika注册表归一化别名，如 video/avi 与 video/x-msvideo）
+     */
+    public boolean isAllowedType(String type) {
+        if (type == null) {
+            return false;
+        }
+        MediaType mediaType = MediaType.parse(type);
+        if (mediaType == null) {
+            return false;
+        }
+        return getAllowedTypes().contains(MEDIA_TYPE_REGISTRY.normalize(mediaType.getBaseType()));
+    }
+
+    /**
+     * 计算已落盘文件的SHA-256（用于无法流式计算的分片上传）
+     */
+    public String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private Set<MediaType> getAllowedTypes() {
+        Set<MediaType> types = allowedTypes;
+        if (types == null) {
+            types = fileConfig.getAllowedTypes().stream()
+                .map(MediaType::parse)
+                .filter(t -> t != null)
+                .map(MEDIA_TYPE_REGISTRY::normalize)
+                .collect(Collectors.toUnmodifiableSet());
+            allowedTypes = types;
+        }
+        return types;
+    }
+
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    /**
+     * 入库结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class IngestResult {
+
+        /**
+         * 检测到的真实类型（MIME）
+         */
+        private final String fileType;
+
+        /**
+         * SHA-256摘要（十六进制）
+         */
+        private final String fileHash;
+
+        /**
+         * 实际写入字节数
+         */
+        private final long fileSize;
+    }
+}
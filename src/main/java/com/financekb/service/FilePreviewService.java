@@ -0,0 +1,535 @@
+package com.financekb.service;
+
+import com.financekb.common.FileMetadataCache;
+import com.financekb.config.FileConfig;
+import com.financekb.entity.FileInfo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * 文件预览图服务
+ * <p>
+ * 预览图为限定最长边的JPEG：图片缩放（解码时按倍数采样，大图不完整解码），PDF渲染首页，
+ * Excel绘制首个工作表左上区域，PPT绘制首张幻灯片。
+ * 预览图按 源文件路径+规格 的SHA-256缓存在 cachePath/{前两位}/{三四位}/{hash}_{规格}.jpg，
+ * 源文件上传后不可变，缓存无需校验，删除源文件时一并删除。
+ * 上传事务提交后在线程池中预先生成常用规格，其余规格及队列满时跳过的在首次访问时生成，
+ * 同一预览图的并发请求只生成一次；生成失败的结果短时间内不再重试。
+ * 访问时的生成同样在线程池中执行，请求线程最多等待 waitTimeout，不会因渲染大量文件占满请求线程。
+ */
+@Slf4j
+@Service
+public class FilePreviewService {
+    
+    public static final String CONTENT_TYPE = "image/jpeg";
+    
+    private static final String CACHE_DIR = "previews";
+    private static final String VARIANT_EXT = ".jpg";
+    
+    private static final Set<String> IMAGE_EXTS = Set.of(".jpg", ".jpeg", ".png", ".gif", ".bmp", ".tif", ".tiff");
+    private static final Set<String> SHEET_EXTS = Set.of(".xlsx", ".xls");
+    private static final Set<String> SLIDE_EXTS = Set.of(".pptx");
+    private static final String PDF_EXT = ".pdf";
+    
+    /**
+     * 工作表预览绘制的行列数和单元格尺寸（像素，绘制后再缩放到规格尺寸）
+     */
+    private static final int SHEET_ROWS = 40;
+    private static final int SHEET_COLUMNS = 10;
+    private static final int CELL_WIDTH = 96;
+    private static final int CELL_HEIGHT = 22;
+    
+    private final FileConfig fileConfig;
+    private final ThreadPoolTaskExecutor filePreviewExecutor;
+    private final FileMetadataCache fileMetadataCache;
+    private final MeterRegistry meterRegistry;
+    
+    /**
+     * 预览图路径 -> 正在进行的生成
+     */
+    private final ConcurrentHashMap<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    
+    /**
+     * 生成失败的预览图路径（文件损坏、加密等），过期前直接返回无预览图
+     */
+    private final Cache<Path, Boolean> failures = Caffeine.newBuilder()
+        .maximumSize(10_000)
+        .expireAfterWrite(10, TimeUnit.MINUTES)
+        .build();
+    
+    public FilePreviewService(FileConfig fileConfig, ThreadPoolTaskExecutor filePreviewExecutor,
+                              FileMetadataCache fileMetadataCache, MeterRegistry meterRegistry) {
+        this.fileConfig = fileConfig;
+        this.filePreviewExecutor = filePreviewExecutor;
+        this.fileMetadataCache = fileMetadataCache;
+        this.meterRegistry = meterRegistry;
+    }
+    
+    /**
+     * 是否为已配置的预览图规格
+     */
+    public boolean isVariant(String variant) {
+        return variant != null && fileConfig.getPreview().getVariants().containsKey(variant);
+    }
+    
+    /**
+     * 获取预览图，缓存未命中时提交到线程池生成并限时等待
+     *
+     * @return 预览图路径；未启用、文件类型不支持、生成失败、线程池已满或等待超时时返回null
+     */
+    public Path getVariant(Path source, String variant) {
+        FileConfig.Preview preview = fileConfig.getPreview();
+        Integer maxEdge = preview.getVariants().get(variant);
+        Kind kind = kindOf(source);
+        if (!Boolean.TRUE.equals(preview.getEnabled()) || maxEdge == null || kind == null) {
+            return null;
+        }
+        Path target = resolveCachePath(source, variant);
+        if (Files.exists(target)) {
+            meterRegistry.counter("file.preview.cache", "result", "hit").increment();
+            return target;
+        }
+        if (failures.getIfPresent(target) != null) {
+            return null;
+        }
+        
+        CompletableFuture<Path> pending = inFlight.get(target);
+        if (pending == null) {
+            try {
+                pending = CompletableFuture.supplyAsync(() -> generateVariant(source, variant), filePreviewExecutor);
+            } catch (RejectedExecutionException e) {
+                meterRegistry.counter("file.preview.rejected").increment();
+                return null;
+            }
+        }
+        try {
+            return pending.get(preview.getWaitTimeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 生成继续进行，完成后的访问直接命中缓存
+            meterRegistry.counter("file.preview.wait.timeout").increment();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 在当前线程生成预览图（预览线程池中执行），同一预览图正在生成时等待其结果
+     */
+    private Path generateVariant(Path source, String variant) {
+        FileConfig.Preview preview = fileConfig.getPreview();
+        Integer maxEdge = preview.getVariants().get(variant);
+        Kind kind = kindOf(source);
+        if (!Boolean.TRUE.equals(preview.getEnabled()) || maxEdge == null || kind == null) {
+            return null;
+        }
+        Path target = resolveCachePath(source, variant);
+        if (Files.exists(target)) {
+            meterRegistry.counter("file.preview.cache", "result", "hit").increment();
+            return target;
+        }
+        if (failures.getIfPresent(target) != null) {
+            return null;
+        }
+        
+        CompletableFuture<Path> flight = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(target, flight);
+        if (existing != null) {
+            return existing.join();
+        }
+        try {
+            // 检查与登记之间可能刚有其他线程生成完成
+            if (Files.exists(target)) {
+                flight.complete(target);
+            } else {
+                meterRegistry.counter("file.preview.cache", "result", "miss").increment();
+                flight.complete(generate(source, kind, maxEdge, target));
+            }
+        } catch (Exception | LinkageError e) {
+            log.warn("预览图生成失败：source={}, variant={}", source, variant, e);
+            meterRegistry.counter("file.preview.failed", "type", kind.name().toLowerCase(Locale.ROOT)).increment();
+            failures.put(target, Boolean.TRUE);
+            flight.complete(null);
+        } finally {
+            inFlight.remove(target, flight);
+        }
+        return flight.join();
+    }
+    
+    /**
+     * 上传事务提交后在线程池中预先生成常用规格（队列满时跳过，首次访问时再生成）
+     */
+    public void submit(List<FileInfo> fileInfos) {
+        FileConfig.Preview preview = fileConfig.getPreview();
+        if (!Boolean.TRUE.equals(preview.getEnabled()) || preview.getEagerVariants().isEmpty()) {
+            return;
+        }
+        // 相同内容的文件共用同一物理文件，只需生成一次
+        List<Path> sources = fileInfos.stream()
+            .map(FileInfo::getFilePath)
+            .filter(Objects::nonNull)
+            .distinct()
+            .map(Paths::get)
+            .filter(source -> kindOf(source) != null)
+            .collect(Collectors.toList());
+        if (sources.isEmpty()) {
+            return;
+        }
+        
+        Runnable schedule = () -> sources.forEach(this::schedule);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedule.run();
+                }
+            });
+        } else {
+            schedule.run();
+        }
+    }
+    
+    /**
+     * 删除源文件的所有预览图（源文件删除后调用）
+     */
+    public void evict(Path source) {
+        for (String variant : fileConfig.getPreview().getVariants().keySet()) {
+            Path target = resolveCachePath(source, variant);
+            try {
+                Files.deleteIfExists(target);
+            } catch (IOException e) {
+                log.warn("删除预览图失败：{}", target, e);
+            }
+            fileMetadataCache.evict(target);
+            failures.invalidate(target);
+        }
+    }
+    
+    /**
+     * 预览图缓存路径：按 源文件路径（相对上传根目录）+规格 的摘要分两级目录，单个目录下的文件数保持在较小规模
+     */
+    private Path resolveCachePath(Path source, String variant) {
+        String hash = sha256(relativeKey(source) + "#" + variant);
+        return cacheRoot().resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4))
+            .resolve(hash + "_" + variant + VARIANT_EXT);
+    }
+    
+    private void schedule(Path source) {
+        for (String variant : fileConfig.getPreview().getEagerVariants()) {
+            try {
+                filePreviewExecutor.execute(() -> generateVariant(source, variant));
+            } catch (RejectedExecutionException e) {
+                meterRegistry.counter("file.preview.rejected").increment();
+                log.debug("预览图队列已满，首次访问时生成：{}", source);
+                return;
+            }
+        }
+    }
+    
+    private Path generate(Path source, Kind kind, int maxEdge, Path target) throws Exception {
+        if (!Files.exists(source) || Files.size(source) > fileConfig.getPreview().getMaxSourceSize()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        BufferedImage image = switch (kind) {
+            case IMAGE -> readImage(source, maxEdge);
+            case PDF -> renderPdf(source, maxEdge);
+            case SHEET -> renderSheet(source);
+            case SLIDE -> renderSlide(source, maxEdge);
+        };
+        if (image == null) {
+            return null;
+        }
+        writeJpeg(fit(image, maxEdge), target);
+        meterRegistry.timer("file.preview.generate", "type", kind.name().toLowerCase(Locale.ROOT))
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return target;
+    }
+    
+    /**
+     * 读取图片，解码时按整数倍隔行隔列采样（采样后仍不小于目标尺寸的两倍，保证缩放质量）
+     */
+    private BufferedImage readImage(Path source, int maxEdge) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, longEdge / (maxEdge * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+    
+    /**
+     * 按目标尺寸渲染PDF首页（不渲染更高分辨率再缩小），解析用的缓冲放在临时文件中
+     */
+    private BufferedImage renderPdf(Path source, int maxEdge) throws IOException {
+        try (PDDocument document = PDDocument.load(source.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            if (document.getNumberOfPages() == 0) {
+                return null;
+            }
+            PDRectangle box = document.getPage(0).getCropBox();
+            float scale = maxEdge / Math.max(box.getWidth(), box.getHeight());
+            return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+    }
+    
+    /**
+     * 绘制首个工作表左上区域的单元格文本和网格线（公式单元格显示缓存的计算结果）
+     */
+    private BufferedImage renderSheet(Path source) throws IOException {
+        try (Workbook workbook = WorkbookFactory.create(source.toFile(), null, true)) {
+            if (workbook.getNumberOfSheets() == 0) {
+                return null;
+            }
+            Sheet sheet = workbook.getSheetAt(0);
+            DataFormatter formatter = new DataFormatter();
+            formatter.setUseCachedValuesForFormulaCells(true);
+            
+            int width = SHEET_COLUMNS * CELL_WIDTH;
+            int height = SHEET_ROWS * CELL_HEIGHT;
+            BufferedImage image = new BufferedImage(width + 1, height + 1, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = image.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width + 1, height + 1);
+                graphics.setColor(Color.LIGHT_GRAY);
+                for (int row = 0; row <= SHEET_ROWS; row++) {
+                    graphics.drawLine(0, row * CELL_HEIGHT, width, row * CELL_HEIGHT);
+                }
+                for (int column = 0; column <= SHEET_COLUMNS; column++) {
+                    graphics.drawLine(column * CELL_WIDTH, 0, column * CELL_WIDTH, height);
+                }
+                
+                graphics.setColor(Color.BLACK);
+                graphics.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+                int baseline = (CELL_HEIGHT + graphics.getFontMetrics().getAscent()) / 2 - 1;
+                for (int rowIndex = 0; rowIndex < SHEET_ROWS; rowIndex++) {
+                    Row row = sheet.getRow(rowIndex);
+                    if (row == null) {
+                        continue;
+                    }
+                    for (int column = 0; column < SHEET_COLUMNS; column++) {
+                        String text = formatter.formatCellValue(row.getCell(column));
+                        if (text.isEmpty()) {
+                            continue;
+                        }
+                        int x = column * CELL_WIDTH;
+                        int y = rowIndex * CELL_HEIGHT;
+                        graphics.setClip(x + 1, y + 1, CELL_WIDTH - 2, CELL_HEIGHT - 2);
+                        graphics.drawString(text, x + 4, y + baseline);
+                    }
+                }
+            } finally {
+                graphics.dispose();
+            }
+            return image;
+        }
+    }
+    
+    /**
+     * 按目标尺寸绘制首张幻灯片（以只读方式打开，不把整个文件读入内存）
+     */
+    private BufferedImage renderSlide(Path source, int maxEdge) throws Exception {
+        try (XMLSlideShow slideShow = new XMLSlideShow(OPCPackage.open(source.toFile(), PackageAccess.READ))) {
+            if (slideShow.getSlides().isEmpty()) {
+                return null;
+            }
+            Dimension size = slideShow.getPageSize();
+            double scale = (double) maxEdge / Math.max(size.width, size.height);
+            int width = Math.max(1, (int) Math.round(size.width * scale));
+            int height = Math.max(1, (int) Math.round(size.height * scale));
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = image.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+                graphics.scale(scale, scale);
+                slideShow.getSlides().get(0).draw(graphics);
+            } finally {
+                graphics.dispose();
+            }
+            return image;
+        }
+    }
+    
+    /**
+     * 缩放到最长边不超过目标尺寸（不放大），转为不透明RGB（透明区域填白色）
+     * <p>
+     * 缩小超过一半时逐次减半，避免单次双线性插值跳过大量像素产生锯齿
+     */
+    private static BufferedImage fit(BufferedImage image, int maxEdge) {
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(image.getWidth(), image.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, Color.WHITE, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width > targetWidth || height > targetHeight);
+        return current;
+    }
+    
+    /**
+     * 写入临时文件后原子替换，读取方不会看到写了一半的预览图
+     */
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(temp.toFile())) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(fileConfig.getPreview().getQuality());
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    private Path cacheRoot() {
+        String cachePath = fileConfig.getPreview().getCachePath();
+        return cachePath != null && !cachePath.isBlank()
+            ? Paths.get(cachePath) : Paths.get(fileConfig.getUploadPath(), CACHE_DIR);
+    }
+    
+    /**
+     * 缓存键使用相对上传根目录的路径，上传目录整体迁移后缓存仍然有效
+     */
+    private String relativeKey(Path source) {
+        Path normalized = source.toAbsolutePath().normalize();
+        Path uploadRoot = Paths.get(fileConfig.getUploadPath()).toAbsolutePath().normalize();
+        Path key = normalized.startsWith(uploadRoot) ? uploadRoot.relativize(normalized) : normalized;
+        return key.toString().replace('\\', '/');
+    }
+    
+    private static Kind kindOf(Path source) {
+        String fileName = source.getFileName().toString();
+        int lastDot = fileName.lastIndexOf('.');
+        if (lastDot < 0) {
+            return null;
+        }
+        String ext = fileName.substring(lastDot).toLowerCase(Locale.ROOT);
+        if (IMAGE_EXTS.contains(ext)) {
+            return Kind.IMAGE;
+        }
+        if (PDF_EXT.equals(ext)) {
+            return Kind.PDF;
+        }
+        if (SHEET_EXTS.contains(ext)) {
+            return Kind.SHEET;
+        }
+        return SLIDE_EXTS.contains(ext) ? Kind.SLIDE : null;
+    }
+    
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private enum Kind {
+        IMAGE, PDF, SHEET, SLIDE
+    }
+}
@@ -0,0 +1,213 @@
+package com.financekb.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.financekb.config.FileConfig;
+import com.financekb.entity.FileInfo;
+import com.financekb.mapper.FileInfoMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 文件全文搜索服务
+ * <p>
+ * 基于 file_info(file_name, description) 上的 MySQL FULLTEXT 索引（ngram分词，支持中文），
+ * 索引随记录增删由数据库自动维护，结果按相关度排序。
+ * 关键词短于分词长度或索引不可用时返回null，由调用方退回LIKE匹配。
+ * 索引是否存在定期检查一次，查询时发现索引缺失立即标记为不可用，分页和游标查询都改用LIKE；
+ * 重建索引在后台执行，重建期间同样使用LIKE。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileSearchService {
+    
+    /**
+     * MySQL错误码：找不到与MATCH列匹配的FULLTEXT索引
+     */
+    private static final int ER_FT_MATCHING_KEY_NOT_FOUND = 1191;
+    
+    /**
+     * 重新检查索引是否存在的间隔（毫秒）
+     */
+    private static final long INDEX_CHECK_INTERVAL = 5 * 60_000L;
+    
+    private final FileInfoMapper fileInfoMapper;
+    private final FileConfig fileConfig;
+    
+    private volatile boolean indexAvailable;
+    
+    private volatile long indexCheckedAt;
+    
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "file-search-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * 全文搜索
+     *
+     * @return 搜索结果；无法使用全文索引时返回null
+     */
+    public IPage<FileInfo> search(Page<FileInfo> page, Long userId, String keyword, String category,
+                                  List<String> tags, boolean matchAllTags) {
+        String query = fullTextQuery(keyword);
+        if (query == null) {
+            return null;
+        }
+        
+        try {
+            return fileInfoMapper.searchFullText(page, userId, query, category, tags, matchAllTags, tags.size());
+        } catch (DataAccessException e) {
+            if (!isIndexMissing(e)) {
+                throw e;
+            }
+            markIndexMissing(e);
+            return null;
+        }
+    }
+    
+    /**
+     * 执行带关键词条件的查询（按时间排序的游标分页、分面统计等）：
+     * 可用全文索引时传入 MATCH 条件，否则传入LIKE条件；执行时发现索引缺失则标记为不可用，改用LIKE条件重新执行
+     *
+     * @param query 把传入的关键词条件加到查询上并执行
+     */
+    public <T> T queryWithKeyword(String keyword, Function<Consumer<LambdaQueryWrapper<FileInfo>>, T> query) {
+        String fullText = fullTextQuery(keyword);
+        if (fullText != null) {
+            try {
+                return query.apply(w -> w.apply("MATCH(file_name, description) AGAINST({0} IN BOOLEAN MODE)", fullText));
+            } catch (DataAccessException e) {
+                if (!isIndexMissing(e)) {
+                    throw e;
+                }
+                markIndexMissing(e);
+            }
+        }
+        return query.apply(w -> w.and(c -> c.like(FileInfo::getFileName, keyword)
+                                          .or()
+                                          .like(FileInfo::getDescription, keyword)));
+    }
+    
+    /**
+     * 在后台重建全文索引（按 file_info 现有数据全量构建，DDL耗时与数据量成正比）
+     *
+     * @return 已有重建在进行时返回false
+     */
+    public boolean rebuildIndex() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildExecutor.execute(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                if (fileInfoMapper.countFullTextIndex() > 0) {
+                    fileInfoMapper.dropFullTextIndex();
+                }
+                fileInfoMapper.createFullTextIndex();
+                log.info("文件全文索引重建完成，耗时{}ms", System.currentTimeMillis() - start);
+            } catch (RuntimeException e) {
+                log.error("文件全文索引重建失败", e);
+            } finally {
+                // 下次查询时重新检查索引
+                indexCheckedAt = 0;
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+    
+    /**
+     * 可以使用全文索引时返回 BOOLEAN MODE 查询，否则返回null
+     */
+    private String fullTextQuery(String keyword) {
+        FileConfig.Search search = fileConfig.getSearch();
+        if (!Boolean.TRUE.equals(search.getFullText()) || !isIndexAvailable()) {
+            return null;
+        }
+        return buildBooleanQuery(keyword, search.getNgramTokenSize());
+    }
+    
+    /**
+     * 未执行升级脚本、索引被删除时：标记为不可用，到下次检查前都使用LIKE
+     */
+    private void markIndexMissing(DataAccessException e) {
+        log.warn("全文索引不可用，使用LIKE匹配：{}", e.getMessage());
+        indexAvailable = false;
+        indexCheckedAt = System.currentTimeMillis();
+    }
+    
+    private boolean isIndexAvailable() {
+        if (rebuilding.get()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now - indexCheckedAt > INDEX_CHECK_INTERVAL) {
+            indexCheckedAt = now;
+            try {
+                indexAvailable = fileInfoMapper.countFullTextIndex() > 0;
+            } catch (DataAccessException e) {
+                log.warn("检查全文索引失败，使用LIKE匹配：{}", e.getMessage());
+                indexAvailable = false;
+            }
+            if (!indexAvailable) {
+                log.warn("全文索引不存在，使用LIKE匹配");
+            }
+        }
+        return indexAvailable;
+    }
+    
+    /**
+     * 是否为索引缺失导致的错误（只认错误码1191，其他SQL错误照常抛出，不掩盖查询本身的问题）
+     */
+    private static boolean isIndexMissing(DataAccessException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException
+                && sqlException.getErrorCode() == ER_FT_MATCHING_KEY_NOT_FOUND) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 构建 BOOLEAN MODE 查询：按空白拆分，每个词作为必须匹配的短语
+     * 任一词短于分词长度时返回null（ngram无法切出词元，全文索引匹配不到）
+     */
+    public static String buildBooleanQuery(String keyword, int ngramTokenSize) {
+        if (keyword == null) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        for (String term : keyword.trim().split("\\s+")) {
+            // 短语内只需去掉引号，其他运算符在引号内不生效
+            term = term.replace("\"", "");
+            if (term.isEmpty()) {
+                continue;
+            }
+            if (term.codePointCount(0, term.length()) < ngramTokenSize) {
+                return null;
+            }
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append("+\"").append(term).append('"');
+        }
+        return query.length() == 0 ? null : query.toString();
+    }
+}
@@ -4,28 +4,42 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.financekb.config.FileConfig;
+import com.financekb.dto.InstantUploadDTO;
+import com.financekb.entity.FileBlob;
 import com.financekb.entity.FileInfo;
 import com.financekb.mapper.FileInfoMapper;
+import com.financekb.common.BusinessException;
+import com.financekb.common.FileMetadataCache;
 import com.financekb.common.Result;
 import com.financekb.common.ResultCode;
+import com.financekb.vo.CursorPageVO;
+import com.financekb.vo.FacetCountVO;
 import com.financekb.vo.FileInfoVO;
+import com.financekb.vo.FilePageVO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.tika.Tika;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -36,90 +50,41 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class FileService {
     
+    /**
+     * 游标分页单页最大条数
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    
     private final FileInfoMapper fileInfoMapper;
     private final FileConfig fileConfig;
-    private final Tika tika = new Tika();
+    private final FileIngestService fileIngestService;
+    private final BlobStorageService blobStorageService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor fileUploadExecutor;
+    private final FileMetadataCache fileMetadataCache;
+    private final FileCounterService fileCounterService;
+    private final FileSearchService fileSearchService;
+    private final FileTagService fileTagService;
+    private final FileFacetService fileFacetService;
+    private final DocumentExtractService documentExtractService;
+    private final FilePreviewService filePreviewService;
+    
     /**
      * 单文件上传
      */
     @Transactional
     public Result<FileInfoVO> uploadFile(MultipartFile file, Long userId, String category, String tags, String description) {
         try {
-            // 验证文件
-            if (file == null || file.isEmpty()) {
-                return Result.error(ResultCode.BAD_REQUEST.getCode(), "文件不能为空");
-            }
-            
-            // 验证文件类型
-            String contentType = file.getContentType();
-            if (contentType == null || !fileConfig.getAllowedTypes().contains(contentType)) {
-                return Result.error(ResultCode.FILE_TYPE_NOT_ALLOWED.getCode(), 
-                    "不支持的文件类型：" + contentType);
-            }
-            
-            // 验证文件大小
-            long fileSize = file.getSize();
-            if (fileSize > 100 * 1024 * 1024) { // 100MB
-                return Result.error(ResultCode.FILE_SIZE_EXCEEDED.getCode(), 
-                    "文件大小不能超过100MB");
-            }
-            
-            // 生成文件存储路径
-            String originalFilename = file.getOriginalFilename();
-            if (originalFilename == null || originalFilename.isEmpty()) {
-                return Result.error(ResultCode.BAD_REQUEST.getCode(), "文件名不能为空");
-            }
-            
-            String fileExt = getFileExtension(originalFilename);
-            String datePath = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
-            String fileName = UUID.randomUUID().toString() + "_" + System.currentTimeMillis() + fileExt;
-            
-            // 创建存储目录
-            Path uploadDir = Paths.get(fileConfig.getUploadPath(), String.valueOf(userId), datePath);
-            if (!Files.exists(uploadDir)) {
-                Files.createDirectories(uploadDir);
-            }
-            
-            // 保存文件
-            Path filePath = uploadDir.resolve(fileName);
-            file.transferTo(filePath.toFile());
-            
-            // 检测真实文件类型
-            String detectedType = tika.detect(filePath.toFile());
-            if (detectedType == null) {
-                detectedType = contentType;
-            }
-            
-            // 生成文件URL（相对路径用于预览）
-            String fileUrl = "/api/files/public/" + userId + "/" + datePath + "/" + fileName;
+            FileBlob blob = storeUploadedFile(file);
             
             // 保存文件信息到数据库
-            FileInfo fileInfo = new FileInfo();
-            fileInfo.setUserId(userId);
-            fileInfo.setFileName(originalFilename);
-            fileInfo.setFilePath(filePath.toString());
-            fileInfo.setFileUrl(fileUrl);
-            fileInfo.setFileType(detectedType);
-            fileInfo.setFileSize(fileSize);
-            fileInfo.setFileExt(fileExt);
-            fileInfo.setCategory(category);
-            fileInfo.setTags(tags);
-            fileInfo.setDescription(description);
-            fileInfo.setDownloadCount(0);
-            fileInfo.setViewCount(0);
-            
-            fileInfoMapper.insert(fileInfo);
+            FileInfoVO vo = saveFileInfo(userId, file.getOriginalFilename(), blob, category, tags, description);
             
-            log.debug("文件保存路径: {}", filePath.toString());
-            log.debug("文件访问URL: {}", fileUrl);
-            
-            // 转换为VO
-            FileInfoVO vo = new FileInfoVO();
-            BeanUtils.copyProperties(fileInfo, vo);
-            
-            log.info("文件上传成功：userId={}, fileName={}, fileId={}", userId, originalFilename, fileInfo.getId());
+            log.info("文件上传成功：userId={}, fileName={}, fileId={}", userId, file.getOriginalFilename(), vo.getId());
             return Result.success("文件上传成功", vo);
             
+        } catch (BusinessException e) {
+            return Result.error(e.getCode(), e.getMessage());
         } catch (IOException e) {
             log.error("文件上传失败", e);
             return Result.error(ResultCode.FILE_UPLOAD_FAILED.getCode(), "文件上传失败：" + e.getMessage());
@@ -128,32 +93,74 @@ public class FileService {
     
     /**
      * 批量文件上传
+     * 各文件在有界线程池中并行写盘，每个文件的存储对象引用在独立事务中提交；
+     * 全部完成后用一条多行INSERT写入文件信息，结果按提交顺序返回。
      */
     public Result<List<FileInfoVO>> uploadFiles(MultipartFile[] files, Long userId, String category, String tags, String description) {
         if (files == null || files.length == 0) {
             return Result.error(ResultCode.BAD_REQUEST.getCode(), "文件不能为空");
         }
         
-        if (files.length > 20) {
-            return Result.error(ResultCode.BAD_REQUEST.getCode(), "一次最多上传20个文件");
+        int maxFiles = fileConfig.getBatch().getMaxFiles();
+        if (files.length > maxFiles) {
+            return Result.error(ResultCode.BAD_REQUEST.getCode(), "一次最多上传" + maxFiles + "个文件");
         }
         
-        List<FileInfoVO> successList = new ArrayList<>();
-        List<String> errorList = new ArrayList<>();
-        
+        List<CompletableFuture<FileBlob>> futures = new ArrayList<>(files.length);
         for (MultipartFile file : files) {
-            Result<FileInfoVO> result = uploadFile(file, userId, category, tags, description);
-            if (result.getCode() == 200) {
-                successList.add(result.getData());
-            } else {
-                errorList.add(file.getOriginalFilename() + ": " + result.getMessage());
+            futures.add(CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+                try {
+                    return storeUploadedFile(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }), fileUploadExecutor));
+        }
+        
+        // 按提交顺序收集结果
+        List<FileInfo> fileInfos = new ArrayList<>();
+        List<String> errorList = new ArrayList<>();
+        for (int i = 0; i < files.length; i++) {
+            MultipartFile file = files[i];
+            try {
+                FileBlob blob = futures.get(i).join();
+                fileInfos.add(buildFileInfo(userId, file.getOriginalFilename(), blob, category, tags, description));
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                if (!(cause instanceof BusinessException)) {
+                    log.error("文件上传失败：{}", file.getOriginalFilename(), cause);
+                }
+                errorList.add(file.getOriginalFilename() + ": " + cause.getMessage());
             }
         }
         
-        if (successList.isEmpty()) {
+        if (fileInfos.isEmpty()) {
             return Result.error("所有文件上传失败：" + String.join("; ", errorList));
         }
         
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                fileInfoMapper.insertBatch(fileInfos);
+                fileTagService.saveTags(fileInfos);
+                fileFacetService.onFilesAdded(fileInfos);
+                documentExtractService.submit(fileInfos);
+                filePreviewService.submit(fileInfos);
+            });
+        } catch (RuntimeException e) {
+            // 文件信息写入失败，释放已引用的存储对象
+            log.error("批量保存文件信息失败", e);
+            transactionTemplate.executeWithoutResult(status ->
+                fileInfos.forEach(fileInfo -> blobStorageService.release(fileInfo.getBlobId())));
+            return Result.error(ResultCode.FILE_UPLOAD_FAILED.getCode(), "文件上传失败：" + e.getMessage());
+        }
+        
+        List<FileInfoVO> successList = fileInfos.stream().map(fileInfo -> {
+            FileInfoVO vo = new FileInfoVO();
+            BeanUtils.copyProperties(fileInfo, vo);
+            return vo;
+        }).collect(Collectors.toList());
+        log.info("批量上传完成：userId={}, success={}, failed={}", userId, successList.size(), errorList.size());
+        
         String message = "成功上传 " + successList.size() + " 个文件";
         if (!errorList.isEmpty()) {
             message += "，" + errorList.size() + " 个文件失败：" + String.join("; ", errorList);
@@ -162,51 +169,214 @@ public class FileService {
         return Result.success(message, successList);
     }
     
+    /**
+     * 校验并写入上传文件，返回引用加一后的存储对象
+     */
+    private FileBlob storeUploadedFile(MultipartFile file) throws IOException {
+        // 验证文件
+        if (file == null || file.isEmpty()) {
+            throw new BusinessException(ResultCode.BAD_REQUEST, "文件不能为空");
+        }
+        
+        // 验证文件大小（声明大小快速拒绝，写入时仍会按实际字节数校验）
+        long maxFileSize = fileConfig.getMaxFileSize();
+        if (file.getSize() > maxFileSize) {
+            throw new BusinessException(ResultCode.FILE_SIZE_EXCEEDED, "文件大小不能超过" + (maxFileSize / 1024 / 1024) + "MB");
+        }
+        
+        String originalFilename = file.getOriginalFilename();
+        if (originalFilename == null || originalFilename.isEmpty()) {
+            throw new BusinessException(ResultCode.BAD_REQUEST, "文件名不能为空");
+        }
+        
+        // 流式写入：按魔数检测类型（不信任客户端Content-Type）、计算摘要、校验大小
+        Path tempPath = blobStorageService.allocateTempPath();
+        FileIngestService.IngestResult ingest;
+        try (InputStream inputStream = file.getInputStream()) {
+            ingest = fileIngestService.ingest(inputStream, originalFilename, tempPath, maxFileSize);
+        }
+        
+        // 按内容摘要入库，相同内容只保留一份物理文件
+        return blobStorageService.store(tempPath, ingest.getFileHash(), ingest.getFileSize(),
+            ingest.getFileType(), getFileExtension(originalFilename));
+    }
+    
     /**
      * 获取文件列表（分页）
+     *
+     * @param matchAllTags true：同时包含所有标签；false：包含任一标签
+     * @param withFacets   是否附带分面计数（无关键词/标签时来自预聚合计数，否则按相同条件分组统计）
      */
     public Result<IPage<FileInfoVO>> getFileList(Long userId, String keyword, String category, String tags, 
-                                                   Integer current, Integer size) {
+                                                   boolean matchAllTags, Integer current, Integer size,
+                                                   boolean withFacets) {
         Page<FileInfo> page = new Page<>(current != null && current > 0 ? current : 1, 
                                         size != null && size > 0 ? size : 10);
         
-        LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(FileInfo::getUserId, userId);
+        List<String> tagList = FileTagService.normalizeTags(tags);
         
-        // 关键词搜索（文件名、描述）
+        // 关键词优先走全文索引（按相关度排序），无法使用时退回LIKE匹配
+        IPage<FileInfo> filePage = null;
         if (StringUtils.hasText(keyword)) {
-            wrapper.and(w -> w.like(FileInfo::getFileName, keyword)
-                            .or()
-                            .like(FileInfo::getDescription, keyword));
+            filePage = fileSearchService.search(page, userId, keyword.trim(),
+                StringUtils.hasText(category) ? category : null, tagList, matchAllTags);
         }
         
-        // 分类筛选
-        if (StringUtils.hasText(category)) {
-            wrapper.eq(FileInfo::getCategory, category);
-        }
-        
-        // 标签筛选
-        if (StringUtils.hasText(tags)) {
-            String[] tagArray = tags.split(",");
-            for (String tag : tagArray) {
-                wrapper.like(FileInfo::getTags, tag.trim());
+        if (filePage == null) {
+            LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+            wrapper.eq(FileInfo::getUserId, userId);
+            
+            // 关键词搜索（文件名、描述）
+            if (StringUtils.hasText(keyword)) {
+                wrapper.and(w -> w.like(FileInfo::getFileName, keyword)
+                                .or()
+                                .like(FileInfo::getDescription, keyword));
             }
+            
+            // 分类筛选
+            if (StringUtils.hasText(category)) {
+                wrapper.eq(FileInfo::getCategory, category);
+            }
+            
+            // 标签筛选（标签索引精确匹配）
+            fileTagService.applyTagFilter(wrapper, userId, tagList, matchAllTags);
+            
+            wrapper.orderByDesc(FileInfo::getCreateTime);
+            
+            filePage = fileInfoMapper.selectPage(page, wrapper);
         }
         
-        wrapper.orderByDesc(FileInfo::getCreateTime);
-        
-        IPage<FileInfo> filePage = fileInfoMapper.selectPage(page, wrapper);
-        
         // 转换为VO
         IPage<FileInfoVO> voPage = filePage.convert(fileInfo -> {
             FileInfoVO vo = new FileInfoVO();
             BeanUtils.copyProperties(fileInfo, vo);
+            fileCounterService.applyPending(vo);
             return vo;
         });
         
+        if (withFacets) {
+            FilePageVO<FileInfoVO> facetPage = new FilePageVO<>(voPage);
+            facetPage.setFacets(getFacets(userId, keyword, category, tagList, matchAllTags));
+            return Result.success(facetPage);
+        }
         return Result.success(voPage);
     }
     
+    /**
+     * 获取文件列表（游标分页）
+     * 按 (create_time, id) 倒序定位下一页，借助 (user_id, deleted, create_time, id) 索引，
+     * 每页开销与页码无关；总数只在 withTotal 时统计。
+     *
+     * @param cursor 上一页返回的游标，第一页为空
+     */
+    public Result<CursorPageVO<FileInfoVO>> getFileListByCursor(Long userId, String keyword, String category, String tags,
+                                                                boolean matchAllTags, String cursor, Integer size,
+                                                                boolean withTotal, boolean withFacets) {
+        int pageSize = size != null && size > 0 ? Math.min(size, MAX_CURSOR_PAGE_SIZE) : 10;
+        List<String> tagList = FileTagService.normalizeTags(tags);
+        
+        CursorPageVO<FileInfoVO> pageVO = StringUtils.hasText(keyword)
+            ? fileSearchService.queryWithKeyword(keyword.trim(), keywordFilter ->
+                listByCursor(userId, keywordFilter, category, tagList, matchAllTags, cursor, pageSize, withTotal))
+            : listByCursor(userId, null, category, tagList, matchAllTags, cursor, pageSize, withTotal);
+        if (withFacets) {
+            pageVO.setFacets(getFacets(userId, keyword, category, tagList, matchAllTags));
+        }
+        return Result.success(pageVO);
+    }
+    
+    /**
+     * 按游标查询一页
+     *
+     * @param keywordFilter 关键词条件，可为空
+     */
+    private CursorPageVO<FileInfoVO> listByCursor(Long userId, Consumer<LambdaQueryWrapper<FileInfo>> keywordFilter,
+                                                  String category, List<String> tagList, boolean matchAllTags,
+                                                  String cursor, int pageSize, boolean withTotal) {
+        LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(FileInfo::getUserId, userId);
+        if (keywordFilter != null) {
+            keywordFilter.accept(wrapper);
+        }
+        if (StringUtils.hasText(category)) {
+            wrapper.eq(FileInfo::getCategory, category);
+        }
+        fileTagService.applyTagFilter(wrapper, userId, tagList, matchAllTags);
+        
+        Long total = withTotal ? fileInfoMapper.selectCount(wrapper) : null;
+        
+        if (StringUtils.hasText(cursor)) {
+            long[] position = decodeCursor(cursor);
+            LocalDateTime createTime = LocalDateTime.ofEpochSecond(position[0], 0, ZoneOffset.UTC);
+            long lastId = position[1];
+            wrapper.and(w -> w.lt(FileInfo::getCreateTime, createTime)
+                            .or(o -> o.eq(FileInfo::getCreateTime, createTime).lt(FileInfo::getId, lastId)));
+        }
+        // 多取一条判断是否还有下一页
+        wrapper.orderByDesc(FileInfo::getCreateTime, FileInfo::getId)
+               .last("LIMIT " + (pageSize + 1));
+        
+        List<FileInfo> fileInfos = fileInfoMapper.selectList(wrapper);
+        boolean hasMore = fileInfos.size() > pageSize;
+        if (hasMore) {
+            fileInfos = fileInfos.subList(0, pageSize);
+        }
+        
+        CursorPageVO<FileInfoVO> pageVO = new CursorPageVO<>();
+        pageVO.setRecords(fileInfos.stream().map(fileInfo -> {
+            FileInfoVO vo = new FileInfoVO();
+            BeanUtils.copyProperties(fileInfo, vo);
+            fileCounterService.applyPending(vo);
+            return vo;
+        }).collect(Collectors.toList()));
+        pageVO.setHasMore(hasMore);
+        pageVO.setTotal(total);
+        if (hasMore) {
+            FileInfo last = fileInfos.get(fileInfos.size() - 1);
+            pageVO.setNextCursor(encodeCursor(last.getCreateTime().toEpochSecond(ZoneOffset.UTC), last.getId()));
+        }
+        return pageVO;
+    }
+    
+    /**
+     * 分面计数：带关键词/标签时按相同条件统计（分类由分面服务单独处理），否则使用预聚合计数
+     */
+    private FacetCountVO getFacets(Long userId, String keyword, String category, List<String> tagList,
+                                   boolean matchAllTags) {
+        if (!StringUtils.hasText(keyword)) {
+            return fileFacetService.getFacets(userId, category, tagList.isEmpty()
+                ? null : wrapper -> fileTagService.applyTagFilter(wrapper, userId, tagList, matchAllTags));
+        }
+        return fileSearchService.queryWithKeyword(keyword.trim(), keywordFilter ->
+            fileFacetService.getFacets(userId, category, wrapper -> {
+                keywordFilter.accept(wrapper);
+                fileTagService.applyTagFilter(wrapper, userId, tagList, matchAllTags);
+            }));
+    }
+    
+    /**
+     * 编码游标：创建时间（秒）+ 文件ID
+     */
+    public static String encodeCursor(long createTimeSeconds, long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((createTimeSeconds + ":" + id).getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    /**
+     * 解码游标
+     *
+     * @return [创建时间（秒）, 文件ID]
+     */
+    public static long[] decodeCursor(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int separator = value.indexOf(':');
+            return new long[]{Long.parseLong(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1))};
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BusinessException(ResultCode.BAD_REQUEST, "无效的分页游标");
+        }
+    }
+    
     /**
      * 获取文件详情
      */
@@ -223,6 +393,7 @@ public class FileService {
         
         FileInfoVO vo = new FileInfoVO();
         BeanUtils.copyProperties(fileInfo, vo);
+        fileCounterService.applyPending(vo);
         return Result.success(vo);
     }
     
@@ -241,18 +412,28 @@ public class FileService {
             return Result.error(ResultCode.FILE_NOT_FOUND.getCode(), ResultCode.FILE_NOT_FOUND.getMessage());
         }
         
-        // 物理删除文件
-        try {
-            Path filePath = Paths.get(fileInfo.getFilePath());
-            if (Files.exists(filePath)) {
-                Files.delete(filePath);
-            }
-        } catch (IOException e) {
-            log.error("删除物理文件失败：{}", fileInfo.getFilePath(), e);
-        }
-        
         // 逻辑删除数据库记录
         fileInfoMapper.deleteById(fileId);
+        fileTagService.removeTags(fileId);
+        fileFacetService.onFileRemoved(fileInfo);
+        documentExtractService.onFileRemoved(fileId);
+        
+        if (fileInfo.getBlobId() != null) {
+            // 释放存储对象引用，最后一个引用释放时删除物理文件
+            blobStorageService.release(fileInfo.getBlobId());
+        } else {
+            // 历史文件独占物理文件，直接删除
+            try {
+                Path filePath = Paths.get(fileInfo.getFilePath());
+                if (Files.exists(filePath)) {
+                    Files.delete(filePath);
+                }
+                fileMetadataCache.evict(filePath);
+                filePreviewService.evict(filePath);
+            } catch (IOException e) {
+                log.error("删除物理文件失败：{}", fileInfo.getFilePath(), e);
+            }
+        }
         
         log.info("文件删除成功：fileId={}, fileName={}", fileId, fileInfo.getFileName());
         return Result.success("文件删除成功");
@@ -262,50 +443,116 @@ public class FileService {
      * 获取文件分类列表
      */
     public Result<List<String>> getCategories(Long userId) {
-        List<FileInfo> files = fileInfoMapper.selectList(
-            new LambdaQueryWrapper<FileInfo>()
-                .eq(FileInfo::getUserId, userId)
-                .select(FileInfo::getCategory)
-                .isNotNull(FileInfo::getCategory)
-                .ne(FileInfo::getCategory, "")
-        );
-        
-        Set<String> categories = files.stream()
-            .map(FileInfo::getCategory)
-            .filter(Objects::nonNull)
-            .collect(Collectors.toSet());
-        
-        return Result.success(new ArrayList<>(categories));
+        return Result.success(fileFacetService.getCategories(userId));
     }
     
     /**
-     * 增加下载次数
+     * 增加下载次数（内存聚合，定时批量回写）
      */
-    @Transactional
     public void incrementDownloadCount(Long fileId) {
-        FileInfo fileInfo = fileInfoMapper.selectById(fileId);
-        if (fileInfo != null) {
-            fileInfo.setDownloadCount((fileInfo.getDownloadCount() == null ? 0 : fileInfo.getDownloadCount()) + 1);
-            fileInfoMapper.updateById(fileInfo);
-        }
+        fileCounterService.incrementDownload(fileId);
     }
     
     /**
-     * 增加查看次数
+     * 增加查看次数（内存聚合，定时批量回写）
      */
-    @Transactional
     public void incrementViewCount(Long fileId) {
-        FileInfo fileInfo = fileInfoMapper.selectById(fileId);
-        if (fileInfo != null) {
-            fileInfo.setViewCount((fileInfo.getViewCount() == null ? 0 : fileInfo.getViewCount()) + 1);
-            fileInfoMapper.updateById(fileInfo);
+        fileCounterService.incrementView(fileId);
+    }
+    
+    /**
+     * 秒传：按内容摘要引用已有存储对象，不存在时返回空数据，客户端需正常上传
+     */
+    @Transactional
+    public Result<FileInfoVO> instantUpload(InstantUploadDTO dto, Long userId) {
+        String fileHash = dto.getFileHash().toLowerCase(Locale.ROOT);
+        
+        // 默认只允许秒传本人已上传过的内容，避免仅凭摘要获取他人文件
+        if (!Boolean.TRUE.equals(fileConfig.getInstantUploadCrossUser())) {
+            Long ownCount = fileInfoMapper.selectCount(
+                new LambdaQueryWrapper<FileInfo>()
+                    .eq(FileInfo::getUserId, userId)
+                    .eq(FileInfo::getFileHash, fileHash)
+            );
+            if (ownCount == 0) {
+                return Result.success("文件不存在，需要上传", null);
+            }
+        }
+        
+        FileBlob blob = blobStorageService.acquire(fileHash, dto.getFileSize());
+        if (blob == null) {
+            return Result.success("文件不存在，需要上传", null);
         }
+        
+        FileInfoVO vo = saveFileInfo(userId, dto.getFileName(), blob, dto.getCategory(), dto.getTags(), dto.getDescription());
+        log.info("文件秒传成功：userId={}, fileName={}, fileId={}", userId, dto.getFileName(), vo.getId());
+        return Result.success("文件上传成功", vo);
+    }
+    
+    /**
+     * 保存文件信息到数据库（存储对象已引用），返回VO
+     */
+    public FileInfoVO saveFileInfo(Long userId, String originalFilename, FileBlob blob,
+                                   String category, String tags, String description) {
+        FileInfo fileInfo = buildFileInfo(userId, originalFilename, blob, category, tags, description);
+        fileInfoMapper.insert(fileInfo);
+        fileTagService.saveTags(List.of(fileInfo));
+        fileFacetService.onFilesAdded(List.of(fileInfo));
+        // 文本提取、预览图生成在事务提交后异步执行，不阻塞上传
+        documentExtractService.submit(List.of(fileInfo));
+        filePreviewService.submit(List.of(fileInfo));
+        
+        log.debug("文件保存路径: {}", fileInfo.getFilePath());
+        log.debug("文件访问URL: {}", fileInfo.getFileUrl());
+        
+        // 转换为VO
+        FileInfoVO vo = new FileInfoVO();
+        BeanUtils.copyProperties(fileInfo, vo);
+        return vo;
+    }
+    
+    /**
+     * 根据存储对象构建文件信息
+     */
+    private FileInfo buildFileInfo(Long userId, String originalFilename, FileBlob blob,
+                                   String category, String tags, String description) {
+        // 生成文件URL（相对路径用于预览）
+        String fileUrl = buildFileUrl(Paths.get(blob.getFilePath()));
+        LocalDateTime now = LocalDateTime.now();
+        
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setUserId(userId);
+        fileInfo.setFileName(originalFilename);
+        fileInfo.setFilePath(blob.getFilePath());
+        fileInfo.setFileUrl(fileUrl);
+        fileInfo.setFileType(blob.getFileType());
+        fileInfo.setFileSize(blob.getFileSize());
+        fileInfo.setFileExt(getFileExtension(originalFilename));
+        fileInfo.setFileHash(blob.getFileHash());
+        fileInfo.setBlobId(blob.getId());
+        fileInfo.setCategory(category);
+        List<String> tagList = FileTagService.normalizeTags(tags);
+        fileInfo.setTags(tagList.isEmpty() ? null : String.join(",", tagList));
+        fileInfo.setDescription(description);
+        fileInfo.setDownloadCount(0);
+        fileInfo.setViewCount(0);
+        fileInfo.setCreateTime(now);
+        fileInfo.setUpdateTime(now);
+        return fileInfo;
+    }
+    
+    /**
+     * 根据存储路径生成访问URL（相对于上传根目录）
+     */
+    private String buildFileUrl(Path filePath) {
+        Path relative = Paths.get(fileConfig.getUploadPath()).relativize(filePath);
+        return "/api/files/public/" + relative.toString().replace('\\', '/');
     }
     
     /**
      * 获取文件扩展名
      */
-    private String getFileExtension(String filename) {
+    public String getFileExtension(String filename) {
         int lastDot = filename.lastIndexOf('.');
         return lastDot > 0 ? filename.substring(lastDot) : "";
     }
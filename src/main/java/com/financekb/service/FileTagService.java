@@ -0,0 +1,121 @@
+package com.financekb.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.financekb.entity.FileInfo;
+import com.financekb.entity.FileTag;
+import com.financekb.mapper.FileTagMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 文件标签服务
+ * <p>
+ * 标签规范化后写入 file_tag，按 (user_id, tag, file_id) 索引。
+ * 多标签筛选在索引上取各标签的文件ID列表再求交集（AND：GROUP BY + HAVING COUNT）或并集（OR），
+ * 只做精确匹配，不再对 file_info.tags 做 LIKE 扫描。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileTagService {
+
+    /**
+     * 单个标签最大长度（与 file_tag.tag 列一致）
+     */
+    public static final int MAX_TAG_LENGTH = 50;
+
+    /**
+     * 单个文件最多标签数
+     */
+    public static final int MAX_TAGS = 20;
+
+    private final FileTagMapper fileTagMapper;
+
+    /**
+     * 规范化标签：按中英文逗号拆分、去空白、去重（忽略大小写，保留首次出现的写法）
+     */
+    public static List<String> normalizeTags(String tags) {
+        if (!StringUtils.hasText(tags)) {
+            return Collections.emptyList();
+        }
+        Map<String, String> unique = new LinkedHashMap<>();
+        for (String tag : tags.split("[,，]")) {
+            tag = tag.trim();
+            if (tag.isEmpty() || tag.length() > MAX_TAG_LENGTH) {
+                continue;
+            }
+            unique.putIfAbsent(tag.toLowerCase(Locale.ROOT), tag);
+            if (unique.size() >= MAX_TAGS) {
+                break;
+            }
+        }
+        return new ArrayList<>(unique.values());
+    }
+
+    /**
+     * 写入文件标签（文件信息已插入、ID已回填）
+     */
+    public void saveTags(List<FileInfo> fileInfos) {
+        List<FileTag> fileTags = new ArrayList<>();
+        for (FileInfo fileInfo : fileInfos) {
+            for (String tag : normalizeTags(fileInfo.getTags())) {
+                FileTag fileTag = new FileTag();
+                fileTag.setFileId(fileInfo.getId());
+                fileTag.setUserId(fileInfo.getUserId());
+                fileTag.setTag(tag);
+                fileTags.add(fileTag);
+            }
+        }
+        if (!fileTags.isEmpty()) {
+            fileTagMapper.insertBatch(fileTags);
+        }
+    }
+
+    /**
+     * 删除文件标签
+     */
+    public void removeTags(Long fileId) {
+        fileTagMapper.deleteByFileId(fileId);
+    }
+
+    /**
+     * 为文件查询追加标签筛选条件
+     *
+     * @param matchAll true：同时包含所有标签（AND）；false：包含任一标签（OR）
+     */
+    public void applyTagFilter(LambdaQueryWrapper<FileInfo> wrapper, Long userId, List<String> tags, boolean matchAll) {
+        if (tags.isEmpty()) {
+            return;
+        }
+
+        // apply 的 {n} 占位符按预编译参数绑定，标签内容不会拼接进SQL
+        List<Object> params = new ArrayList<>(tags.size() + 2);
+        params.add(userId);
+        StringBuilder placeholders = new StringBuilder();
+        for (String tag : tags) {
+            if (placeholders.length() > 0) {
+                placeholders.append(", ");
+            }
+            placeholders.append('{').append(params.size()).append('}');
+            params.add(tag);
+        }
+
+        StringBuilder sql = new StringBuilder("id IN (SELECT file_id FROM file_tag WHERE user_id = {0} AND tag IN (")
+            .append(placeholders).append(')');
+        if (matchAll && tags.size() > 1) {
+            sql.append(" GROUP BY file_id HAVING COUNT(*) = {").append(params.size()).append('}');
+            params.add(tags.size());
+        }
+        sql.append(')');
+        wrapper.apply(sql.toString(), params.toArray());
+    }
+}
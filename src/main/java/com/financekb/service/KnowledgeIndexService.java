@@ -0,0 +1,326 @@
+package com.financekb.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.financekb.config.FileConfig;
+import com.financekb.config.VectorConfig;
+import com.financekb.entity.KnowledgeBase;
+import com.financekb.entity.KnowledgeDocument;
+import com.financekb.mapper.KnowledgeBaseMapper;
+import com.financekb.mapper.KnowledgeDocumentMapper;
+import com.financekb.vector.EmbeddingProvider;
+import com.financekb.vector.HnswIndex;
+import com.financekb.vo.KnowledgeSearchVO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 知识库向量索引服务
+ * <p>
+ * 文档按固定长度（带重叠）分块，每块向量化后写入本地 HNSW 索引，向量ID为 文档ID&lt;&lt;16 | 分块序号。
+ * 文档提取完成后立即建索引；knowledge_document.vector_id 为空的文档（历史数据、建索引失败、索引目录重建）
+ * 由定时任务补建。索引为单机嵌入式，多节点部署时每个节点各自维护一份。
+ * <p>
+ * 补建（可能长时间等待向量化接口）和快照（刷盘全部分段）在本服务自己的线程上执行，
+ * 不占用 {@code @Scheduled} 共用的调度线程。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KnowledgeIndexService {
+    
+    /**
+     * 单个文档最多的分块数（分块序号占16位）
+     */
+    static final int MAX_CHUNKS = 1 << 16;
+    
+    private static final String VECTOR_ID_PREFIX = "hnsw:";
+    private static final String INDEX_DIR = "vector";
+    private static final int MAX_TOP_K = 50;
+    
+    /**
+     * 按分块搜索时的放大倍数（同一文档的多个分块合并、无权限的文档过滤后仍有足够结果）
+     */
+    private static final int OVERSAMPLE = 4;
+    
+    private final KnowledgeDocumentMapper knowledgeDocumentMapper;
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+    private final EmbeddingProvider embeddingProvider;
+    private final VectorConfig vectorConfig;
+    private final FileConfig fileConfig;
+    
+    /**
+     * 同一文档的建索引/删除串行执行（按文档ID分段加锁）
+     */
+    private final Object[] documentLocks = createLocks(64);
+    
+    /**
+     * 补建与快照各占一个线程，互不等待
+     */
+    private final ScheduledExecutorService maintenanceScheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "vector-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private volatile HnswIndex index;
+    
+    @PostConstruct
+    public void init() {
+        if (!Boolean.TRUE.equals(vectorConfig.getEnabled())) {
+            return;
+        }
+        // 未配置时放在上传目录下，与上传文件同在持久化卷中，重启后不必重建
+        Path indexPath = StringUtils.hasText(vectorConfig.getPath())
+            ? Paths.get(vectorConfig.getPath()) : Paths.get(fileConfig.getUploadPath(), INDEX_DIR);
+        try {
+            HnswIndex opened = HnswIndex.open(indexPath, embeddingProvider.dimension(),
+                vectorConfig.getM(), vectorConfig.getEfConstruction());
+            if (opened.size() == 0) {
+                // 新建（或被删除重建）的索引：清除旧标记，由补建任务重新索引全部文档
+                int cleared = knowledgeDocumentMapper.clearVectorIds();
+                if (cleared > 0) {
+                    log.info("向量索引为空，{}个文档将重新建立索引", cleared);
+                }
+            }
+            index = opened;
+            log.info("知识库向量索引已加载：{}，{}个分块", indexPath, opened.size());
+            maintenanceScheduler.scheduleWithFixedDelay(this::backfill, vectorConfig.getBackfillInterval(),
+                vectorConfig.getBackfillInterval(), TimeUnit.MILLISECONDS);
+            maintenanceScheduler.scheduleWithFixedDelay(this::checkpoint, vectorConfig.getCheckpointInterval(),
+                vectorConfig.getCheckpointInterval(), TimeUnit.MILLISECONDS);
+        } catch (IOException | RuntimeException e) {
+            log.error("打开知识库向量索引失败，语义搜索不可用", e);
+        }
+    }
+    
+    /**
+     * 为文档建立（或重建）向量索引
+     */
+    public void indexDocument(Long documentId, String content) {
+        HnswIndex current = index;
+        if (current == null) {
+            return;
+        }
+        List<String> chunks = chunk(content, vectorConfig.getChunkSize(), vectorConfig.getChunkOverlap());
+        synchronized (lockFor(documentId)) {
+            try {
+                List<float[]> vectors = embeddingProvider.embedBatch(chunks);
+                for (int i = 0; i < chunks.size(); i++) {
+                    current.upsert(chunkId(documentId, i), vectors.get(i));
+                }
+                // 内容变短时删除多出的旧分块
+                int stale = chunks.size();
+                while (stale < MAX_CHUNKS && current.remove(chunkId(documentId, stale))) {
+                    stale++;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("文档建立向量索引失败，将由补建任务重试：documentId={}", documentId, e);
+                knowledgeDocumentMapper.updateVectorId(documentId, null);
+                return;
+            }
+        }
+        knowledgeDocumentMapper.updateVectorId(documentId, VECTOR_ID_PREFIX + chunks.size());
+    }
+    
+    /**
+     * 删除文档的全部分块向量
+     */
+    public void removeDocument(Long documentId) {
+        HnswIndex current = index;
+        if (current == null) {
+            return;
+        }
+        synchronized (lockFor(documentId)) {
+            int chunkIndex = 0;
+            while (chunkIndex < MAX_CHUNKS && current.remove(chunkId(documentId, chunkIndex))) {
+                chunkIndex++;
+            }
+        }
+    }
+    
+    /**
+     * 语义搜索用户可访问的知识库文档（本人的和公开的），每个文档取最相关的分块
+     */
+    public List<KnowledgeSearchVO> search(Long userId, String query, int topK) {
+        return search(userId, query, topK, null);
+    }
+    
+    /**
+     * 语义搜索，knowledgeBaseId 不为空时只返回该知识库的文档（仍校验访问权限）
+     */
+    public List<KnowledgeSearchVO> search(Long userId, String query, int topK, Long knowledgeBaseId) {
+        HnswIndex current = index;
+        if (current == null || !StringUtils.hasText(query)) {
+            return List.of();
+        }
+        int k = Math.max(1, Math.min(topK, MAX_TOP_K));
+        int chunkHits = k * OVERSAMPLE;
+        List<HnswIndex.SearchResult> hits = current.search(embeddingProvider.embed(query), chunkHits,
+            Math.max(vectorConfig.getEfSearch(), chunkHits));
+        
+        // 结果已按相似度倒序，每个文档保留第一个（最相关的）分块
+        Map<Long, HnswIndex.SearchResult> bestChunks = new LinkedHashMap<>();
+        for (HnswIndex.SearchResult hit : hits) {
+            bestChunks.putIfAbsent(hit.getId() >>> 16, hit);
+        }
+        if (bestChunks.isEmpty()) {
+            return List.of();
+        }
+        
+        Map<Long, KnowledgeDocument> documents = knowledgeDocumentMapper.selectList(
+            new LambdaQueryWrapper<KnowledgeDocument>()
+                .select(KnowledgeDocument::getId, KnowledgeDocument::getKnowledgeBaseId,
+                    KnowledgeDocument::getFileId, KnowledgeDocument::getTitle)
+                .in(KnowledgeDocument::getId, bestChunks.keySet())
+        ).stream().collect(Collectors.toMap(KnowledgeDocument::getId, Function.identity()));
+        if (documents.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, KnowledgeBase> knowledgeBases = knowledgeBaseMapper.selectBatchIds(
+            documents.values().stream().map(KnowledgeDocument::getKnowledgeBaseId).collect(Collectors.toSet())
+        ).stream().collect(Collectors.toMap(KnowledgeBase::getId, Function.identity()));
+        
+        int step = chunkStep(vectorConfig.getChunkSize(), vectorConfig.getChunkOverlap());
+        List<KnowledgeSearchVO> results = new ArrayList<>(k);
+        for (Map.Entry<Long, HnswIndex.SearchResult> entry : bestChunks.entrySet()) {
+            KnowledgeDocument document = documents.get(entry.getKey());
+            if (document == null
+                || (knowledgeBaseId != null && !knowledgeBaseId.equals(document.getKnowledgeBaseId()))) {
+                continue;
+            }
+            KnowledgeBase knowledgeBase = knowledgeBases.get(document.getKnowledgeBaseId());
+            if (knowledgeBase == null
+                || (!userId.equals(knowledgeBase.getUserId()) && !Integer.valueOf(1).equals(knowledgeBase.getIsPublic()))) {
+                continue;
+            }
+            int chunkIndex = (int) (entry.getValue().getId() & (MAX_CHUNKS - 1));
+            String snippet = knowledgeDocumentMapper.selectContentSlice(document.getId(),
+                chunkIndex * step + 1, vectorConfig.getChunkSize());
+            
+            KnowledgeSearchVO vo = new KnowledgeSearchVO();
+            vo.setDocumentId(document.getId());
+            vo.setKnowledgeBaseId(document.getKnowledgeBaseId());
+            vo.setFileId(document.getFileId());
+            vo.setTitle(document.getTitle());
+            vo.setScore(entry.getValue().getScore());
+            vo.setSnippet(snippet == null ? null : snippet.replaceAll("\\s+", " ").trim());
+            results.add(vo);
+            if (results.size() == k) {
+                break;
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * 补建索引：处理 vector_id 为空的文档
+     */
+    public void backfill() {
+        if (index == null) {
+            return;
+        }
+        try {
+            for (Long documentId : knowledgeDocumentMapper.selectUnindexedIds(vectorConfig.getBackfillBatchSize())) {
+                KnowledgeDocument document = knowledgeDocumentMapper.selectById(documentId);
+                if (document != null) {
+                    indexDocument(documentId, document.getContent());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("补建向量索引失败，将在下次轮询重试", e);
+        }
+    }
+    
+    /**
+     * 定时写入图结构快照
+     */
+    public void checkpoint() {
+        HnswIndex current = index;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.checkpoint();
+        } catch (IOException | RuntimeException e) {
+            log.warn("写入向量索引快照失败", e);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        // 不中断正在执行的补建/快照：中断会关闭其正在读写的文件通道
+        maintenanceScheduler.shutdown();
+        try {
+            if (!maintenanceScheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("向量索引维护任务未在30秒内结束");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        HnswIndex current = index;
+        index = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.warn("关闭向量索引失败", e);
+            }
+        }
+    }
+    
+    /**
+     * 固定长度分块，相邻分块重叠 overlap 个字符
+     */
+    static List<String> chunk(String content, int size, int overlap) {
+        List<String> chunks = new ArrayList<>();
+        if (!StringUtils.hasText(content)) {
+            return chunks;
+        }
+        int step = chunkStep(size, overlap);
+        for (int start = 0; start < content.length() && chunks.size() < MAX_CHUNKS; start += step) {
+            int end = Math.min(content.length(), start + size);
+            chunks.add(content.substring(start, end));
+            if (end == content.length()) {
+                break;
+            }
+        }
+        return chunks;
+    }
+    
+    static long chunkId(Long documentId, int chunkIndex) {
+        return documentId << 16 | chunkIndex;
+    }
+    
+    private static int chunkStep(int size, int overlap) {
+        return Math.max(1, size - Math.max(0, overlap));
+    }
+    
+    private Object lockFor(Long documentId) {
+        return documentLocks[(int) (documentId % documentLocks.length)];
+    }
+    
+    private static Object[] createLocks(int count) {
+        Object[] locks = new Object[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+}
@@ -0,0 +1,80 @@
+package com.financekb.service;
+
+import com.financekb.common.WriteBehindBuffer;
+import com.financekb.dto.LastLoginRecord;
+import com.financekb.mapper.SysUserMapper;
+import com.financekb.vo.UserVO;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 最近登录信息服务
+ * <p>
+ * 登录时只在内存中记录每个用户最新的登录时间和IP（同一用户多次登录合并为一条，见 {@link WriteBehindBuffer}），
+ * 定时以单条 UPDATE ... CASE 批量回写 last_login_time / last_login_ip，登录链路上不再有数据库写入；
+ * 读取用户信息时会合并尚未回写的记录，回写后删除对应用户的信息缓存。
+ */
+@Service
+@RequiredArgsConstructor
+public class LastLoginService {
+    
+    private final SysUserMapper userMapper;
+    
+    private final UserCacheService userCacheService;
+    
+    @Value("${auth.last-login.flush-batch-size:500}")
+    private int flushBatchSize = 500;
+    
+    private final WriteBehindBuffer<Long, LastLoginRecord> logins =
+        new WriteBehindBuffer<>("登录信息", LastLoginService::latest, this::write);
+    
+    /**
+     * 记录一次登录（只保留最新的一条）
+     */
+    public void record(Long userId, LocalDateTime loginTime, String loginIp) {
+        logins.add(userId, new LastLoginRecord(userId, loginTime, loginIp));
+    }
+    
+    /**
+     * 将未回写的登录时间合并到返回结果中
+     */
+    public void applyPending(UserVO vo) {
+        LastLoginRecord record = logins.get(vo.getId());
+        if (record != null && (vo.getLastLoginTime() == null || record.getLoginTime().isAfter(vo.getLastLoginTime()))) {
+            vo.setLastLoginTime(record.getLoginTime());
+        }
+    }
+    
+    /**
+     * 定时批量回写，失败的记录重新放回内存（不覆盖期间产生的更新的记录）
+     */
+    @Scheduled(fixedDelayString = "${auth.last-login.flush-interval:5000}",
+               initialDelayString = "${auth.last-login.flush-interval:5000}")
+    public void flush() {
+        logins.flush(flushBatchSize);
+    }
+    
+    /**
+     * 停机前回写剩余记录
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+    
+    private void write(List<LastLoginRecord> records) {
+        userMapper.updateLastLogin(records);
+        userCacheService.evict(records.stream().map(LastLoginRecord::getUserId).collect(Collectors.toList()));
+    }
+    
+    private static LastLoginRecord latest(LastLoginRecord a, LastLoginRecord b) {
+        return b.getLoginTime().isBefore(a.getLoginTime()) ? a : b;
+    }
+}
@@ -0,0 +1,104 @@
+package com.financekb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 密码哈希服务
+ * <p>
+ * BCrypt 计算在独立的有界线程池中执行，不占用Tomcat请求线程；
+ * 线程池队列满时立即抛出 {@link RejectedExecutionException}（由全局异常处理返回429），
+ * 而不是让请求排队等待。记录排队时长、计算耗时、队列深度和拒绝次数。
+ */
+@Slf4j
+@Service
+public class PasswordHashService {
+    
+    private final PasswordEncoder passwordEncoder;
+    
+    private final ThreadPoolTaskExecutor passwordHashExecutor;
+    
+    private final Timer encodeTimer;
+    
+    private final Timer matchesTimer;
+    
+    private final Timer queueWaitTimer;
+    
+    private final Counter rejectedCounter;
+    
+    public PasswordHashService(PasswordEncoder passwordEncoder,
+                               ThreadPoolTaskExecutor passwordHashExecutor,
+                               MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashExecutor = passwordHashExecutor;
+        this.encodeTimer = Timer.builder("auth.password.hash")
+            .description("密码哈希计算耗时")
+            .tag("operation", "encode")
+            .register(meterRegistry);
+        this.matchesTimer = Timer.builder("auth.password.hash")
+            .description("密码哈希计算耗时")
+            .tag("operation", "matches")
+            .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("auth.password.hash.wait")
+            .description("密码哈希任务排队时长")
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.password.hash.rejected")
+            .description("线程池已满被拒绝的密码哈希任务数")
+            .register(meterRegistry);
+        Gauge.builder("auth.password.hash.queue", passwordHashExecutor,
+                executor -> executor.getThreadPoolExecutor().getQueue().size())
+            .description("等待中的密码哈希任务数")
+            .register(meterRegistry);
+        Gauge.builder("auth.password.hash.active", passwordHashExecutor, ThreadPoolTaskExecutor::getActiveCount)
+            .description("正在计算的密码哈希任务数")
+            .register(meterRegistry);
+    }
+    
+    /**
+     * 异步计算密码哈希
+     *
+     * @throws RejectedExecutionException 线程池已满
+     */
+    public CompletableFuture<String> encode(CharSequence rawPassword) {
+        return submit(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+    }
+    
+    /**
+     * 异步校验密码
+     *
+     * @throws RejectedExecutionException 线程池已满
+     */
+    public CompletableFuture<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(matchesTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+    
+    private <T> CompletableFuture<T> submit(Timer timer, Supplier<T> task) {
+        long queuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long startedAt = System.nanoTime();
+                queueWaitTimer.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    return task.get();
+                } finally {
+                    timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            }, passwordHashExecutor);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.warn("密码哈希线程池已满，拒绝请求");
+            throw e;
+        }
+    }
+}
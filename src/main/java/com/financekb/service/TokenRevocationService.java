@@ -0,0 +1,239 @@
+package com.financekb.service;
+
+import com.financekb.common.BloomFilter;
+import com.financekb.common.JwtUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token吊销服务
+ * <p>
+ * 吊销记录持久化在Redis（单个Token：ZSET jti -> 过期时间；整个用户：HASH userId -> 吊销时间），
+ * 并通过发布订阅同步到各节点。每个节点在内存中保存布隆过滤器 + 精确集合，
+ * 请求认证时的检查不产生任何网络IO：绝大多数未吊销的Token在布隆过滤器处即返回。
+ * 定时从Redis全量重载，补齐漏收的消息并清理已过期的记录。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenRevocationService implements MessageListener {
+    
+    private static final String REVOKED_TOKENS_KEY = "auth:revoked:tokens";
+    private static final String REVOKED_USERS_KEY = "auth:revoked:users";
+    private static final String CHANNEL = "auth:revocation";
+    private static final String TYPE_TOKEN = "T";
+    private static final String TYPE_USER = "U";
+    
+    /**
+     * 小于该值的吊销时间为秒（毫秒时间戳早已超过该值）
+     */
+    private static final long SECONDS_THRESHOLD = 100_000_000_000L;
+    
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    
+    @Value("${jwt.expiration}")
+    private Long tokenExpiration;
+    
+    @Value("${jwt.revocation.expected-tokens:100000}")
+    private long expectedTokens;
+    
+    @Value("${jwt.revocation.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+    
+    /**
+     * 已吊销的 jti -> Token过期时间（毫秒）
+     */
+    private volatile Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    
+    /**
+     * 用户ID -> 吊销时间（毫秒），此前签发的Token全部无效
+     */
+    private volatile Map<Long, Long> revokedUsers = new ConcurrentHashMap<>();
+    
+    private volatile BloomFilter tokenFilter;
+    
+    /**
+     * 写入吊销记录与重载替换集合互斥，重载期间收到的吊销不会写入即将被替换的旧集合
+     */
+    private final Object revocationLock = new Object();
+    
+    @PostConstruct
+    public void init() {
+        tokenFilter = new BloomFilter(expectedTokens, falsePositiveRate);
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.warn("加载Token吊销记录失败，将在下次同步时重试", e);
+        }
+    }
+    
+    /**
+     * Token是否已吊销（纯内存检查）
+     */
+    public boolean isRevoked(JwtUtil.TokenPrincipal principal) {
+        Long revokedBefore = revokedUsers.get(principal.getUserId());
+        // 吊销时刻之后（含同一秒内）重新登录签发的Token不受影响
+        if (revokedBefore != null && principal.getIssuedAt() < revokedBefore) {
+            return true;
+        }
+        String tokenId = principal.getTokenId();
+        if (tokenId == null) {
+            return false;
+        }
+        return tokenFilter.mightContain(tokenId) && revokedTokens.containsKey(tokenId);
+    }
+    
+    /**
+     * 吊销单个Token（退出登录）
+     */
+    public void revokeToken(JwtUtil.TokenPrincipal principal) {
+        String tokenId = principal.getTokenId();
+        long expiresAt = principal.getExpiresAt();
+        if (tokenId == null) {
+            // 旧版Token没有jti，只能按用户吊销
+            revokeUser(principal.getUserId());
+            return;
+        }
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        
+        applyTokenRevocation(tokenId, expiresAt);
+        try {
+            redisTemplate.opsForZSet().add(REVOKED_TOKENS_KEY, tokenId, expiresAt);
+            redisTemplate.convertAndSend(CHANNEL, TYPE_TOKEN + ":" + tokenId + ":" + expiresAt);
+        } catch (RuntimeException e) {
+            log.error("同步Token吊销失败，其他节点将在Redis恢复后生效：jti={}", tokenId, e);
+        }
+    }
+    
+    /**
+     * 吊销用户此前签发的全部Token（修改密码、禁用账号）
+     */
+    public void revokeUser(Long userId) {
+        long revokedBefore = System.currentTimeMillis();
+        applyUserRevocation(userId, revokedBefore);
+        try {
+            redisTemplate.opsForHash().put(REVOKED_USERS_KEY, userId.toString(), revokedBefore);
+            redisTemplate.convertAndSend(CHANNEL, TYPE_USER + ":" + userId + ":" + revokedBefore);
+        } catch (RuntimeException e) {
+            log.error("同步用户Token吊销失败，其他节点将在Redis恢复后生效：userId={}", userId, e);
+        }
+    }
+    
+    /**
+     * 接收其他节点的吊销消息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (!(body instanceof String)) {
+            return;
+        }
+        String[] parts = ((String) body).split(":");
+        if (parts.length != 3) {
+            return;
+        }
+        try {
+            if (TYPE_TOKEN.equals(parts[0])) {
+                applyTokenRevocation(parts[1], Long.parseLong(parts[2]));
+            } else if (TYPE_USER.equals(parts[0])) {
+                applyUserRevocation(Long.parseLong(parts[1]), toMillis(Long.parseLong(parts[2])));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("无效的吊销消息：{}", body);
+        }
+    }
+    
+    /**
+     * 定时从Redis全量重载：补齐漏收的消息，清理过期记录并重建布隆过滤器
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval:300000}",
+               initialDelayString = "${jwt.revocation.sync-interval:300000}")
+    public void reload() {
+        long now = System.currentTimeMillis();
+        redisTemplate.opsForZSet().removeRangeByScore(REVOKED_TOKENS_KEY, Double.NEGATIVE_INFINITY, now);
+        
+        Map<String, Long> tokens = new ConcurrentHashMap<>();
+        Set<ZSetOperations.TypedTuple<Object>> tuples =
+            redisTemplate.opsForZSet().rangeByScoreWithScores(REVOKED_TOKENS_KEY, now, Double.POSITIVE_INFINITY);
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+                if (tuple.getValue() != null && tuple.getScore() != null) {
+                    tokens.put(tuple.getValue().toString(), tuple.getScore().longValue());
+                }
+            }
+        }
+        
+        // 超过Token有效期的用户吊销记录已无意义
+        long expiredBefore = now - tokenExpiration;
+        Map<Long, Long> users = new ConcurrentHashMap<>();
+        for (Map.Entry<Object, Object> entry : redisTemplate.opsForHash().entries(REVOKED_USERS_KEY).entrySet()) {
+            long revokedBefore = toMillis(((Number) entry.getValue()).longValue());
+            if (revokedBefore < expiredBefore) {
+                redisTemplate.opsForHash().delete(REVOKED_USERS_KEY, entry.getKey());
+            } else {
+                users.put(Long.parseLong(entry.getKey().toString()), revokedBefore);
+            }
+        }
+        
+        synchronized (revocationLock) {
+            // 合并本地尚未过期的记录，避免重载期间收到的消息丢失
+            revokedTokens.forEach((tokenId, expiresAt) -> {
+                if (expiresAt > now) {
+                    tokens.putIfAbsent(tokenId, expiresAt);
+                }
+            });
+            revokedUsers.forEach((userId, revokedBefore) -> {
+                if (revokedBefore >= expiredBefore) {
+                    users.merge(userId, revokedBefore, Math::max);
+                }
+            });
+            
+            BloomFilter filter = new BloomFilter(Math.max(expectedTokens, tokens.size() * 2L), falsePositiveRate);
+            tokens.keySet().forEach(filter::put);
+            
+            // 先发布精确集合再发布过滤器，过滤器命中时精确集合一定已包含该记录
+            revokedTokens = tokens;
+            revokedUsers = users;
+            tokenFilter = filter;
+        }
+        log.debug("Token吊销记录已同步：tokens={}, users={}", tokens.size(), users.size());
+    }
+    
+    private void applyTokenRevocation(String tokenId, long expiresAt) {
+        synchronized (revocationLock) {
+            revokedTokens.put(tokenId, expiresAt);
+            tokenFilter.put(tokenId);
+        }
+    }
+    
+    private void applyUserRevocation(Long userId, long revokedBefore) {
+        synchronized (revocationLock) {
+            revokedUsers.merge(userId, revokedBefore, Math::max);
+        }
+    }
+    
+    /**
+     * 吊销时间统一为毫秒：旧版本按秒记录（Redis中的历史记录、滚动升级期间旧节点的消息）
+     */
+    private static long toMillis(long revokedBefore) {
+        return revokedBefore < SECONDS_THRESHOLD ? revokedBefore * 1000 : revokedBefore;
+    }
+}
@@ -0,0 +1,184 @@
+package com.financekb.service;
+
+import com.financekb.common.BloomFilter;
+import com.financekb.entity.SysUser;
+import com.financekb.mapper.SysUserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 用户名/邮箱可用性检查
+ * <p>
+ * 内存中保存所有已注册用户名、邮箱的布隆过滤器（忽略大小写，与MySQL默认排序规则一致）。
+ * 过滤器判定"不存在"时直接返回可用，不访问数据库；只有可能命中时才查库确认。
+ * 过滤器在启动后和定时任务中全量重建，注册成功时增量添加并通过发布订阅同步到其他节点。
+ * 首次构建完成前所有检查都直接查库。该检查仅用于提示，注册最终以唯一索引为准。
+ */
+@Slf4j
+@Service
+public class UserAvailabilityService implements MessageListener {
+    
+    private static final String CHANNEL = "user:registered";
+    private static final String SEPARATOR = "\u0001";
+    private static final int LOAD_BATCH_SIZE = 5000;
+    
+    private final SysUserMapper userMapper;
+    
+    private final RedisTemplate<String, Object> redisTemplate;
+    
+    private final long expectedUsers;
+    
+    private final double falsePositiveRate;
+    
+    private volatile BloomFilter usernames;
+    
+    private volatile BloomFilter emails;
+    
+    /**
+     * 重建中的过滤器，重建期间注册的用户同时写入，避免替换后丢失
+     */
+    private volatile BloomFilter rebuildingUsernames;
+    
+    private volatile BloomFilter rebuildingEmails;
+    
+    public UserAvailabilityService(SysUserMapper userMapper,
+                                   RedisTemplate<String, Object> redisTemplate,
+                                   RedisMessageListenerContainer redisMessageListenerContainer,
+                                   @Value("${auth.availability.expected-users:1000000}") long expectedUsers,
+                                   @Value("${auth.availability.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userMapper = userMapper;
+        this.redisTemplate = redisTemplate;
+        this.expectedUsers = expectedUsers;
+        this.falsePositiveRate = falsePositiveRate;
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+    
+    /**
+     * 用户名是否可用
+     */
+    public boolean isUsernameAvailable(String username) {
+        BloomFilter filter = usernames;
+        if (filter != null && !filter.mightContain(normalize(username))) {
+            return true;
+        }
+        return !userMapper.existsByUsername(username);
+    }
+    
+    /**
+     * 邮箱是否可用
+     */
+    public boolean isEmailAvailable(String email) {
+        BloomFilter filter = emails;
+        if (filter != null && !filter.mightContain(normalize(email))) {
+            return true;
+        }
+        return !userMapper.existsByEmail(email);
+    }
+    
+    /**
+     * 注册成功后加入过滤器并通知其他节点
+     */
+    public void onRegistered(String username, String email) {
+        add(username, email);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, username + SEPARATOR + (email == null ? "" : email));
+        } catch (RuntimeException e) {
+            log.warn("同步新注册用户失败，其他节点将在下次重建时生效：{}", username, e);
+        }
+    }
+    
+    /**
+     * 接收其他节点的注册消息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (!(body instanceof String)) {
+            return;
+        }
+        String[] parts = ((String) body).split(SEPARATOR, -1);
+        add(parts[0], parts.length > 1 ? parts[1] : null);
+    }
+    
+    /**
+     * 启动后在后台构建过滤器，不阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread thread = new Thread(this::rebuild, "user-availability-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * 按ID分批全量重建（补齐漏收的消息）
+     */
+    @Scheduled(cron = "${auth.availability.rebuild-cron:0 30 3 * * ?}")
+    public synchronized void rebuild() {
+        BloomFilter newUsernames = new BloomFilter(expectedUsers, falsePositiveRate);
+        BloomFilter newEmails = new BloomFilter(expectedUsers, falsePositiveRate);
+        rebuildingUsernames = newUsernames;
+        rebuildingEmails = newEmails;
+        try {
+            long lastId = 0;
+            long count = 0;
+            List<SysUser> batch;
+            do {
+                batch = userMapper.selectIdentities(lastId, LOAD_BATCH_SIZE);
+                for (SysUser user : batch) {
+                    newUsernames.put(normalize(user.getUsername()));
+                    if (user.getEmail() != null && !user.getEmail().isEmpty()) {
+                        newEmails.put(normalize(user.getEmail()));
+                    }
+                    lastId = user.getId();
+                }
+                count += batch.size();
+            } while (batch.size() == LOAD_BATCH_SIZE);
+            
+            usernames = newUsernames;
+            emails = newEmails;
+            log.info("用户名/邮箱过滤器构建完成：{}个用户", count);
+            if (count > expectedUsers) {
+                log.warn("用户数{}超过过滤器预计容量{}，误判率将升高，请调大 auth.availability.expected-users", count, expectedUsers);
+            }
+        } catch (RuntimeException e) {
+            log.error("用户名/邮箱过滤器构建失败，保留原过滤器", e);
+        } finally {
+            rebuildingUsernames = null;
+            rebuildingEmails = null;
+        }
+    }
+    
+    private void add(String username, String email) {
+        if (username != null && !username.isEmpty()) {
+            put(usernames, username);
+            put(rebuildingUsernames, username);
+        }
+        if (email != null && !email.isEmpty()) {
+            put(emails, email);
+            put(rebuildingEmails, email);
+        }
+    }
+    
+    private static void put(BloomFilter filter, String value) {
+        if (filter != null) {
+            filter.put(normalize(value));
+        }
+    }
+    
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,163 @@
+package com.financekb.service;
+
+import com.financekb.entity.SysUser;
+import com.financekb.mapper.SysUserMapper;
+import com.financekb.vo.UserVO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 用户信息两级缓存
+ * <p>
+ * L1 为进程内 Caffeine（限制条数），L2 为 Redis。读取时依次查 L1、L2、数据库并逐级回填；
+ * 同一用户并发未命中时由 Caffeine 保证只有一个线程回源，其余线程等待同一结果（防击穿）。
+ * 用户信息变更时删除 L2 并通过发布订阅通知所有节点删除 L1。
+ * 返回的是缓存对象的副本，调用方可以放心修改。
+ */
+@Slf4j
+@Service
+public class UserCacheService implements MessageListener {
+    
+    private static final String CACHE_KEY_PREFIX = "user:profile:";
+    private static final String CHANNEL = "user:profile:evict";
+    
+    private final SysUserMapper userMapper;
+    
+    private final RedisTemplate<String, Object> redisTemplate;
+    
+    private final Cache<Long, UserVO> localCache;
+    
+    private final long redisTtlMinutes;
+    
+    private final Counter redisHits;
+    
+    private final Counter redisMisses;
+    
+    public UserCacheService(SysUserMapper userMapper,
+                            RedisTemplate<String, Object> redisTemplate,
+                            RedisMessageListenerContainer redisMessageListenerContainer,
+                            MeterRegistry meterRegistry,
+                            @Value("${auth.user-cache.local-size:10000}") long localSize,
+                            @Value("${auth.user-cache.local-expire-minutes:10}") long localExpireMinutes,
+                            @Value("${auth.user-cache.redis-ttl-minutes:30}") long redisTtlMinutes) {
+        this.userMapper = userMapper;
+        this.redisTemplate = redisTemplate;
+        this.redisTtlMinutes = redisTtlMinutes;
+        // 本地过期时间兜底：即使漏收失效消息，也只会短时间读到旧数据
+        this.localCache = Caffeine.newBuilder()
+            .maximumSize(localSize)
+            .expireAfterWrite(localExpireMinutes, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "user.profile.local");
+        this.redisHits = Counter.builder("user.profile.redis")
+            .description("用户信息Redis缓存读取次数")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        this.redisMisses = Counter.builder("user.profile.redis")
+            .description("用户信息Redis缓存读取次数")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+    
+    /**
+     * 获取用户信息（副本）
+     *
+     * @return 用户不存在时返回null
+     */
+    public UserVO get(Long userId) {
+        UserVO cached = localCache.get(userId, this::loadFromRedisOrDb);
+        if (cached == null) {
+            return null;
+        }
+        UserVO copy = new UserVO();
+        BeanUtils.copyProperties(cached, copy);
+        return copy;
+    }
+    
+    /**
+     * 用户信息变更后删除缓存（所有节点）
+     */
+    public void evict(Long userId) {
+        evict(List.of(userId));
+    }
+    
+    /**
+     * 批量删除缓存，一次删除L2、一次广播
+     */
+    public void evict(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        localCache.invalidateAll(userIds);
+        try {
+            redisTemplate.delete(userIds.stream().map(id -> CACHE_KEY_PREFIX + id).collect(Collectors.toList()));
+            redisTemplate.convertAndSend(CHANNEL, userIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        } catch (RuntimeException e) {
+            log.warn("删除用户缓存失败，其他节点将在本地缓存过期后生效：userIds={}", userIds, e);
+        }
+    }
+    
+    /**
+     * 接收其他节点的失效消息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (!(body instanceof String)) {
+            return;
+        }
+        for (String id : ((String) body).split(",")) {
+            try {
+                localCache.invalidate(Long.parseLong(id));
+            } catch (NumberFormatException e) {
+                log.warn("无效的用户缓存失效消息：{}", body);
+            }
+        }
+    }
+    
+    private UserVO loadFromRedisOrDb(Long userId) {
+        String key = CACHE_KEY_PREFIX + userId;
+        try {
+            Object cached = redisTemplate.opsForValue().get(key);
+            if (cached instanceof UserVO) {
+                redisHits.increment();
+                return (UserVO) cached;
+            }
+        } catch (RuntimeException e) {
+            log.warn("读取用户缓存失败，改为查询数据库：userId={}", userId, e);
+        }
+        redisMisses.increment();
+        
+        SysUser user = userMapper.selectById(userId);
+        if (user == null) {
+            return null;
+        }
+        UserVO userVO = new UserVO();
+        BeanUtils.copyProperties(user, userVO);
+        try {
+            redisTemplate.opsForValue().set(key, userVO, redisTtlMinutes, TimeUnit.MINUTES);
+        } catch (RuntimeException e) {
+            log.warn("写入用户缓存失败：userId={}", userId, e);
+        }
+        return userVO;
+    }
+}
@@ -1,5 +1,6 @@
 package com.financekb.service;
 
+import com.financekb.dto.ChangePasswordDTO;
 import com.financekb.dto.LoginDTO;
 import com.financekb.dto.RegisterDTO;
 import com.financekb.entity.SysUser;
@@ -7,14 +8,17 @@ import com.financekb.mapper.SysUserMapper;
 import com.financekb.common.JwtUtil;
 import com.financekb.common.Result;
 import com.financekb.common.ResultCode;
+import com.financekb.vo.AvailabilityVO;
 import com.financekb.vo.UserVO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 用户服务
@@ -25,54 +29,73 @@ import java.time.LocalDateTime;
 public class UserService {
     
     private final SysUserMapper userMapper;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashService passwordHashService;
     private final JwtUtil jwtUtil;
+    private final TokenRevocationService tokenRevocationService;
+    private final LastLoginService lastLoginService;
+    private final UserCacheService userCacheService;
+    private final UserAvailabilityService userAvailabilityService;
+    private final ThreadPoolTaskExecutor authIoExecutor;
     
     /**
-     * 用户注册
+     * 用户注册（密码哈希在独立线程池中异步计算）
      */
-    public Result<String> register(RegisterDTO registerDTO) {
-        // 检查用户名是否存在
-        SysUser existUser = userMapper.selectOne(
-            com.baomidou.mybatisplus.core.toolkit.Wrappers.<SysUser>lambdaQuery()
-                .eq(SysUser::getUsername, registerDTO.getUsername())
-                .last("LIMIT 1")
-        );
-        if (existUser != null) {
-            return Result.error(ResultCode.USERNAME_EXISTS.getCode(), ResultCode.USERNAME_EXISTS.getMessage());
+    public CompletableFuture<Result<String>> register(RegisterDTO registerDTO) {
+        // 空邮箱按未填写处理，避免多个空串触发唯一索引冲突
+        String email = StringUtils.hasText(registerDTO.getEmail()) ? registerDTO.getEmail() : null;
+        
+        // 预检查（布隆过滤器判定不存在时不查库），已占用时不必计算密码哈希
+        if (!userAvailabilityService.isUsernameAvailable(registerDTO.getUsername())) {
+            return CompletableFuture.completedFuture(
+                Result.error(ResultCode.USERNAME_EXISTS.getCode(), ResultCode.USERNAME_EXISTS.getMessage()));
+        }
+        if (email != null && !userAvailabilityService.isEmailAvailable(email)) {
+            return CompletableFuture.completedFuture(
+                Result.error(ResultCode.EMAIL_EXISTS.getCode(), ResultCode.EMAIL_EXISTS.getMessage()));
         }
         
-        // 检查邮箱是否存在
-        if (registerDTO.getEmail() != null && !registerDTO.getEmail().isEmpty()) {
-            existUser = userMapper.selectOne(
-                com.baomidou.mybatisplus.core.toolkit.Wrappers.<SysUser>lambdaQuery()
-                    .eq(SysUser::getEmail, registerDTO.getEmail())
-                    .last("LIMIT 1")
-            );
-            if (existUser != null) {
-                return Result.error(ResultCode.EMAIL_EXISTS.getCode(), ResultCode.EMAIL_EXISTS.getMessage());
+        // 创建新用户，并发注册同名用户由唯一索引兜底；写库切换到IO线程池，不占用哈希线程
+        return passwordHashService.encode(registerDTO.getPassword()).thenApplyAsync(encodedPassword -> {
+            SysUser user = new SysUser();
+            user.setUsername(registerDTO.getUsername());
+            user.setPassword(encodedPassword);
+            user.setEmail(email);
+            user.setPhone(registerDTO.getPhone());
+            user.setNickname(registerDTO.getNickname() != null ? registerDTO.getNickname() : registerDTO.getUsername());
+            user.setStatus(1);
+            
+            try {
+                userMapper.insert(user);
+            } catch (DuplicateKeyException e) {
+                ResultCode code = e.getMessage() != null && e.getMessage().contains("uk_email")
+                    ? ResultCode.EMAIL_EXISTS : ResultCode.USERNAME_EXISTS;
+                return Result.<String>error(code.getCode(), code.getMessage());
             }
+            userAvailabilityService.onRegistered(user.getUsername(), email);
+            
+            log.info("用户注册成功：{}", registerDTO.getUsername());
+            return Result.success("注册成功");
+        }, authIoExecutor);
+    }
+    
+    /**
+     * 用户名/邮箱可用性检查（未传的参数不检查）
+     */
+    public AvailabilityVO checkAvailability(String username, String email) {
+        AvailabilityVO vo = new AvailabilityVO();
+        if (StringUtils.hasText(username)) {
+            vo.setUsernameAvailable(userAvailabilityService.isUsernameAvailable(username.trim()));
         }
-        
-        // 创建新用户
-        SysUser user = new SysUser();
-        user.setUsername(registerDTO.getUsername());
-        user.setPassword(passwordEncoder.encode(registerDTO.getPassword()));
-        user.setEmail(registerDTO.getEmail());
-        user.setPhone(registerDTO.getPhone());
-        user.setNickname(registerDTO.getNickname() != null ? registerDTO.getNickname() : registerDTO.getUsername());
-        user.setStatus(1);
-        
-        userMapper.insert(user);
-        
-        log.info("用户注册成功：{}", registerDTO.getUsername());
-        return Result.success("注册成功");
+        if (StringUtils.hasText(email)) {
+            vo.setEmailAvailable(userAvailabilityService.isEmailAvailable(email.trim()));
+        }
+        return vo;
     }
     
     /**
-     * 用户登录
+     * 用户登录（密码校验在独立线程池中异步计算）
      */
-    public Result<String> login(LoginDTO loginDTO, String ip) {
+    public CompletableFuture<Result<String>> login(LoginDTO loginDTO, String ip) {
         SysUser user = userMapper.selectOne(
             com.baomidou.mybatisplus.core.toolkit.Wrappers.<SysUser>lambdaQuery()
                 .eq(SysUser::getUsername, loginDTO.getUsername())
@@ -80,41 +103,103 @@ public class UserService {
         );
         
         if (user == null) {
-            return Result.error(ResultCode.USER_NOT_FOUND.getCode(), ResultCode.USER_NOT_FOUND.getMessage());
+            return CompletableFuture.completedFuture(
+                Result.error(ResultCode.USER_NOT_FOUND.getCode(), ResultCode.USER_NOT_FOUND.getMessage()));
         }
         
         if (user.getStatus() == 0) {
-            return Result.error(ResultCode.USER_DISABLED.getCode(), ResultCode.USER_DISABLED.getMessage());
+            return CompletableFuture.completedFuture(
+                Result.error(ResultCode.USER_DISABLED.getCode(), ResultCode.USER_DISABLED.getMessage()));
         }
         
-        if (!passwordEncoder.matches(loginDTO.getPassword(), user.getPassword())) {
-            return Result.error(ResultCode.PASSWORD_ERROR.getCode(), ResultCode.PASSWORD_ERROR.getMessage());
+        return passwordHashService.matches(loginDTO.getPassword(), user.getPassword()).thenApply(matched -> {
+            if (!matched) {
+                return Result.error(ResultCode.PASSWORD_ERROR.getCode(), ResultCode.PASSWORD_ERROR.getMessage());
+            }
+            
+            // 登录信息异步合并回写，不在登录链路上写库
+            lastLoginService.record(user.getId(), LocalDateTime.now(), ip);
+            
+            // 生成Token
+            String token = jwtUtil.generateToken(user.getId(), user.getUsername());
+            
+            log.info("用户登录成功：{}", loginDTO.getUsername());
+            return Result.success("登录成功", token);
+        });
+    }
+    
+    /**
+     * 获取用户信息（两级缓存）
+     */
+    public Result<UserVO> getUserInfo(Long userId) {
+        UserVO userVO = userCacheService.get(userId);
+        if (userVO == null) {
+            return Result.error(ResultCode.USER_NOT_FOUND.getCode(), ResultCode.USER_NOT_FOUND.getMessage());
         }
         
-        // 更新登录信息
-        user.setLastLoginTime(LocalDateTime.now());
-        user.setLastLoginIp(ip);
-        userMapper.updateById(user);
-        
-        // 生成Token
-        String token = jwtUtil.generateToken(user.getId(), user.getUsername());
+        lastLoginService.applyPending(userVO);
+        return Result.success(userVO);
+    }
+    
+    /**
+     * 修改密码，成功后此前签发的Token全部失效
+     */
+    public CompletableFuture<Result<String>> changePassword(Long userId, ChangePasswordDTO changePasswordDTO) {
+        SysUser user = userMapper.selectById(userId);
+        if (user == null) {
+            return CompletableFuture.completedFuture(
+                Result.error(ResultCode.USER_NOT_FOUND.getCode(), ResultCode.USER_NOT_FOUND.getMessage()));
+        }
         
-        log.info("用户登录成功：{}", loginDTO.getUsername());
-        return Result.success("登录成功", token);
+        return passwordHashService.matches(changePasswordDTO.getOldPassword(), user.getPassword())
+            .thenCompose(matched -> {
+                if (!matched) {
+                    return CompletableFuture.completedFuture(
+                        Result.error(ResultCode.PASSWORD_ERROR.getCode(), ResultCode.PASSWORD_ERROR.getMessage()));
+                }
+                // 写库、吊销Token切换到IO线程池，不占用哈希线程
+                return passwordHashService.encode(changePasswordDTO.getNewPassword()).thenApplyAsync(encodedPassword -> {
+                    SysUser update = new SysUser();
+                    update.setId(userId);
+                    update.setPassword(encodedPassword);
+                    userMapper.updateById(update);
+                    
+                    tokenRevocationService.revokeUser(userId);
+                    log.info("用户修改密码：{}", user.getUsername());
+                    return Result.success("密码修改成功，请重新登录");
+                }, authIoExecutor);
+            });
     }
     
     /**
-     * 获取用户信息
+     * 修改用户状态（0-禁用，1-启用），禁用时吊销该用户的全部Token
      */
-    public Result<UserVO> getUserInfo(Long userId) {
+    public Result<String> updateStatus(Long userId, Integer status) {
+        if (status == null || (status != 0 && status != 1)) {
+            return Result.error(ResultCode.BAD_REQUEST.getCode(), "状态只能是0或1");
+        }
         SysUser user = userMapper.selectById(userId);
         if (user == null) {
             return Result.error(ResultCode.USER_NOT_FOUND.getCode(), ResultCode.USER_NOT_FOUND.getMessage());
         }
         
-        UserVO userVO = new UserVO();
-        BeanUtils.copyProperties(user, userVO);
-        return Result.success(userVO);
+        SysUser update = new SysUser();
+        update.setId(userId);
+        update.setStatus(status);
+        userMapper.updateById(update);
+        userCacheService.evict(userId);
+        
+        if (status == 0) {
+            tokenRevocationService.revokeUser(userId);
+        }
+        log.info("用户状态已修改：{} -> {}", user.getUsername(), status);
+        return Result.success("操作成功");
+    }
+    
+    /**
+     * 用户是否拥有指定角色
+     */
+    public boolean hasRole(Long userId, String roleCode) {
+        return userMapper.selectRoleCodes(userId).contains(roleCode);
     }
 }
-
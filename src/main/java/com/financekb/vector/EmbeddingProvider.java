@@ -0,0 +1,32 @@
+package com.financekb.vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文本向量化接口
+ * 实现类需保证同一输入得到同一向量，维度固定；返回的向量不要求归一化。
+ */
+public interface EmbeddingProvider {
+    
+    /**
+     * 向量维度
+     */
+    int dimension();
+    
+    /**
+     * 单条文本向量化
+     */
+    float[] embed(String text);
+    
+    /**
+     * 批量向量化（远程实现可重写为单次请求）
+     */
+    default List<float[]> embedBatch(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embed(text));
+        }
+        return vectors;
+    }
+}
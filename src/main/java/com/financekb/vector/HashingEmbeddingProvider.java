@@ -0,0 +1,89 @@
+package com.financekb.vector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * 本地哈希向量化（特征哈希）
+ * <p>
+ * 按字符一元、二元组（中文无需分词）和英文单词做特征哈希，结果确定、无外部依赖，
+ * 用于测试和未配置向量服务时的兜底。只能反映字面重合度，不具备语义理解能力。
+ */
+public class HashingEmbeddingProvider implements EmbeddingProvider {
+    
+    private final int dimension;
+    
+    public HashingEmbeddingProvider(int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("向量维度必须大于0");
+        }
+        this.dimension = dimension;
+    }
+    
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+    
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimension];
+        if (text == null || text.isEmpty()) {
+            return vector;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT);
+        int previous = -1;
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (!Character.isLetterOrDigit(codePoint)) {
+                flushWord(vector, word);
+                previous = -1;
+                continue;
+            }
+            if (codePoint < 0x80) {
+                // 英文、数字按单词计
+                word.appendCodePoint(codePoint);
+                previous = -1;
+                continue;
+            }
+            flushWord(vector, word);
+            add(vector, "u" + new String(Character.toChars(codePoint)), 1.0f);
+            if (previous >= 0) {
+                add(vector, "b" + new String(Character.toChars(previous)) + new String(Character.toChars(codePoint)), 1.5f);
+            }
+            previous = codePoint;
+        }
+        flushWord(vector, word);
+        return vector;
+    }
+    
+    private void flushWord(float[] vector, StringBuilder word) {
+        if (word.length() > 0) {
+            add(vector, "w" + word, 1.5f);
+            word.setLength(0);
+        }
+    }
+    
+    /**
+     * 特征哈希：哈希值决定维度和符号，减少冲突带来的偏差
+     */
+    private void add(float[] vector, String feature, float weight) {
+        long hash = fnv1a(feature);
+        int index = (int) ((hash >>> 1) % dimension);
+        vector[index] += (hash & 1) == 0 ? weight : -weight;
+    }
+    
+    private static long fnv1a(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,665 @@
+package com.financekb.vector;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 嵌入式近似最近邻索引（HNSW，余弦相似度）
+ * <p>
+ * 向量保存在内存映射文件中（{@link VectorStore}，堆外），只有图结构（邻居表）在堆内。
+ * 图结构定期写入快照文件；启动时加载快照，再把快照之后追加的向量重新插入图中，不需要全量重建。
+ * 删除为逻辑删除（标志位写入映射内存，下次快照时随向量一起刷盘），已删除节点仍参与图遍历但不出现在结果中；
+ * 更新即删除旧节点并追加新节点。插入、删除串行执行，搜索可并发。
+ */
+@Slf4j
+public class HnswIndex implements Closeable {
+    
+    private static final int GRAPH_MAGIC = 0x484E5357;
+    private static final int GRAPH_VERSION = 1;
+    private static final String GRAPH_FILE = "graph.bin";
+    
+    private final VectorStore store;
+    
+    private final Path graphFile;
+    
+    /**
+     * 上层每个节点的最大邻居数，第0层为其两倍
+     */
+    private final int m;
+    
+    private final int maxM0;
+    
+    private final int efConstruction;
+    
+    private final double levelMultiplier;
+    
+    private final Random random = new Random(42);
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+    
+    /**
+     * links[节点][层] = {邻居数, 邻居1, 邻居2, ...}
+     */
+    private int[][][] links = new int[1024][][];
+    
+    private int entryPoint = -1;
+    
+    private int maxLevel = -1;
+    
+    /**
+     * 外部ID -> 未删除的节点
+     */
+    private final Map<Long, Integer> nodesById = new HashMap<>();
+    
+    /**
+     * 已写入快照的节点数
+     */
+    private int checkpointedCount;
+    
+    /**
+     * 快照串行执行（定时快照与关闭时的快照可能同时发生）
+     */
+    private final Object checkpointLock = new Object();
+    
+    private boolean closed;
+    
+    private HnswIndex(VectorStore store, Path directory, int m, int efConstruction) {
+        this.store = store;
+        this.graphFile = directory.resolve(GRAPH_FILE);
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+    
+    /**
+     * 打开或创建索引
+     *
+     * @param directory      索引目录
+     * @param dimension      向量维度（与已有索引不一致时抛出异常）
+     * @param m              每层邻居数（常用16）
+     * @param efConstruction 构建时的候选集大小（常用100-200）
+     */
+    public static HnswIndex open(Path directory, int dimension, int m, int efConstruction) throws IOException {
+        VectorStore store = VectorStore.open(directory, dimension);
+        HnswIndex index = new HnswIndex(store, directory, m, efConstruction);
+        index.load();
+        return index;
+    }
+    
+    /**
+     * 插入或替换向量
+     */
+    public void upsert(long id, float[] vector) throws IOException {
+        if (vector.length != store.dimension()) {
+            throw new IllegalArgumentException("向量维度应为" + store.dimension() + "，实际为" + vector.length);
+        }
+        float[] normalized = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            Integer old = nodesById.remove(id);
+            if (old != null) {
+                store.markDeleted(old);
+            }
+            int node = store.append(id, normalized);
+            insertNode(node, normalized);
+            nodesById.put(id, node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * 删除向量
+     *
+     * @return 不存在时返回false
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodesById.remove(id);
+            if (node == null) {
+                return false;
+            }
+            store.markDeleted(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return nodesById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * 未删除的向量数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodesById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * 搜索最相似的向量
+     *
+     * @param k  返回条数
+     * @param ef 搜索候选集大小（越大召回率越高、越慢，不小于k）
+     * @return 按相似度倒序
+     */
+    public List<SearchResult> search(float[] query, int k, int ef) {
+        float[] q = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return List.of();
+            }
+            int ep = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                ep = greedyClosest(q, ep, level);
+            }
+            long[] candidates = searchLayer(q, ep, Math.max(ef, k), 0);
+            List<SearchResult> results = new ArrayList<>(k);
+            for (long packed : candidates) {
+                int node = node(packed);
+                if (store.isDeleted(node)) {
+                    continue;
+                }
+                results.add(new SearchResult(store.externalId(node), 1 - distance(packed)));
+                if (results.size() == k) {
+                    break;
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * 持久化：先刷向量（含删除标志），再原子替换图快照（快照引用的节点一定已落盘）
+     * <p>
+     * 快照之间串行执行，持读锁时搜索可继续；每次写入独立的临时文件，替换前内容已完整。
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            if (closed) {
+                return;
+            }
+            writeCheckpoint();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        synchronized (checkpointLock) {
+            if (closed) {
+                return;
+            }
+            try {
+                writeCheckpoint();
+            } finally {
+                closed = true;
+                store.close();
+            }
+        }
+    }
+    
+    private void writeCheckpoint() throws IOException {
+        lock.readLock().lock();
+        try {
+            int count = store.size();
+            if (count == checkpointedCount && Files.exists(graphFile)) {
+                store.force();
+                return;
+            }
+            store.force();
+            Path temp = Files.createTempFile(graphFile.getParent(), GRAPH_FILE, ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                    out.writeInt(GRAPH_MAGIC);
+                    out.writeInt(GRAPH_VERSION);
+                    out.writeInt(m);
+                    out.writeInt(count);
+                    out.writeInt(entryPoint);
+                    out.writeInt(maxLevel);
+                    for (int node = 0; node < count; node++) {
+                        int[][] nodeLinks = links[node];
+                        out.writeByte(nodeLinks.length);
+                        for (int[] levelLinks : nodeLinks) {
+                            out.writeShort(levelLinks[0]);
+                            for (int i = 1; i <= levelLinks[0]; i++) {
+                                out.writeInt(levelLinks[i]);
+                            }
+                        }
+                    }
+                }
+                Files.move(temp, graphFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            checkpointedCount = count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * 加载快照并重放快照之后追加的向量
+     */
+    private void load() throws IOException {
+        int count = store.size();
+        ensureCapacity(count);
+        int loaded = loadGraph(count);
+        for (int node = 0; node < count; node++) {
+            if (!store.isDeleted(node)) {
+                nodesById.put(store.externalId(node), node);
+            }
+        }
+        for (int node = loaded; node < count; node++) {
+            insertNode(node, store.vector(node));
+        }
+        if (count > loaded) {
+            log.info("向量索引已重放{}个未写入快照的节点", count - loaded);
+        }
+        checkpointedCount = loaded;
+    }
+    
+    private int loadGraph(int storeCount) throws IOException {
+        if (!Files.exists(graphFile)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(graphFile), 1 << 16))) {
+            if (in.readInt() != GRAPH_MAGIC || in.readInt() != GRAPH_VERSION || in.readInt() != m) {
+                log.warn("向量索引快照格式或参数不匹配，将重建图结构");
+                return 0;
+            }
+            int count = in.readInt();
+            if (count > storeCount) {
+                log.warn("向量索引快照节点数{}超过向量数{}，将重建图结构", count, storeCount);
+                return 0;
+            }
+            int savedEntryPoint = in.readInt();
+            int savedMaxLevel = in.readInt();
+            for (int node = 0; node < count; node++) {
+                int levels = in.readUnsignedByte();
+                int[][] nodeLinks = new int[levels][];
+                for (int level = 0; level < levels; level++) {
+                    int[] levelLinks = new int[(level == 0 ? maxM0 : m) + 1];
+                    levelLinks[0] = in.readUnsignedShort();
+                    for (int i = 1; i <= levelLinks[0]; i++) {
+                        levelLinks[i] = in.readInt();
+                    }
+                    nodeLinks[level] = levelLinks;
+                }
+                links[node] = nodeLinks;
+            }
+            entryPoint = savedEntryPoint;
+            maxLevel = savedMaxLevel;
+            return count;
+        } catch (IOException e) {
+            log.warn("读取向量索引快照失败，将重建图结构", e);
+            Arrays.fill(links, null);
+            entryPoint = -1;
+            maxLevel = -1;
+            return 0;
+        }
+    }
+    
+    /**
+     * 将已写入存储的节点插入图中
+     */
+    private void insertNode(int node, float[] vector) {
+        ensureCapacity(node + 1);
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[(l == 0 ? maxM0 : m) + 1];
+        }
+        links[node] = nodeLinks;
+        
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+        
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(vector, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            long[] candidates = searchLayer(vector, ep, efConstruction, l);
+            int[] selected = selectNeighbors(candidates, l == 0 ? maxM0 : m);
+            int[] levelLinks = nodeLinks[l];
+            levelLinks[0] = selected.length;
+            System.arraycopy(selected, 0, levelLinks, 1, selected.length);
+            for (int neighbor : selected) {
+                addLink(neighbor, node, l);
+            }
+            ep = node(candidates[0]);
+        }
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+    
+    /**
+     * 为邻居添加反向连接；已满时替换其中最远的邻居（只需M次距离计算，启发式重选的代价是M²）
+     */
+    private void addLink(int node, int newNeighbor, int level) {
+        int[] levelLinks = links[node][level];
+        int count = levelLinks[0];
+        if (count < levelLinks.length - 1) {
+            levelLinks[count + 1] = newNeighbor;
+            levelLinks[0] = count + 1;
+            return;
+        }
+        float[] base = store.vector(node);
+        int farthest = -1;
+        float farthestDistance = distance(newNeighbor, base);
+        for (int i = 1; i <= count; i++) {
+            float d = distance(levelLinks[i], base);
+            if (d > farthestDistance) {
+                farthestDistance = d;
+                farthest = i;
+            }
+        }
+        if (farthest > 0) {
+            levelLinks[farthest] = newNeighbor;
+        }
+    }
+    
+    /**
+     * 启发式选邻居：候选按距离升序，只保留比已选邻居更靠近目标的候选，保证不同方向都有连接
+     */
+    private int[] selectNeighbors(long[] sortedCandidates, int max) {
+        if (sortedCandidates.length <= max) {
+            int[] all = new int[sortedCandidates.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = node(sortedCandidates[i]);
+            }
+            return all;
+        }
+        int[] selected = new int[max];
+        float[][] selectedVectors = new float[max][];
+        int count = 0;
+        for (long candidate : sortedCandidates) {
+            if (count == max) {
+                break;
+            }
+            int node = node(candidate);
+            float distanceToTarget = distance(candidate);
+            boolean keep = true;
+            for (int i = 0; i < count; i++) {
+                if (distance(node, selectedVectors[i]) < distanceToTarget) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[count] = node;
+                selectedVectors[count] = store.vector(node);
+                count++;
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+    
+    /**
+     * 在单层上贪心移动到最近的节点（上层导航用）
+     */
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentDistance = distance(current, query);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] levelLinks = links[current][level];
+            for (int i = 1; i <= levelLinks[0]; i++) {
+                int neighbor = levelLinks[i];
+                float d = distance(neighbor, query);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+    
+    /**
+     * 单层束搜索，返回按距离升序的候选（距离和节点打包为long）
+     */
+    private long[] searchLayer(float[] query, int start, int ef, int level) {
+        Visited seen = visited.get();
+        seen.reset(store.size());
+        LongHeap candidates = new LongHeap(ef * 2);
+        // 结果集为最大堆（存负值），堆顶是当前最远的结果
+        LongHeap results = new LongHeap(ef + 1);
+        
+        long first = pack(distance(start, query), start);
+        seen.mark(start);
+        candidates.push(first);
+        results.push(-first);
+        
+        while (candidates.size() > 0) {
+            long current = candidates.pop();
+            if (results.size() >= ef && distance(current) > distance(-results.peek())) {
+                break;
+            }
+            int[][] nodeLinks = links[node(current)];
+            if (level >= nodeLinks.length) {
+                continue;
+            }
+            int[] levelLinks = nodeLinks[level];
+            for (int i = 1; i <= levelLinks[0]; i++) {
+                int neighbor = levelLinks[i];
+                if (!seen.mark(neighbor)) {
+                    continue;
+                }
+                float d = distance(neighbor, query);
+                if (results.size() < ef || d < distance(-results.peek())) {
+                    long packed = pack(d, neighbor);
+                    candidates.push(packed);
+                    results.push(-packed);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        
+        long[] sorted = new long[results.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = -results.pop();
+        }
+        return sorted;
+    }
+    
+    /**
+     * 余弦距离（向量已归一化），截断为非负以保证打包后的排序正确
+     */
+    private float distance(int node, float[] query) {
+        return Math.max(0f, 1f - store.dot(node, query));
+    }
+    
+    private void ensureCapacity(int size) {
+        if (size > links.length) {
+            links = Arrays.copyOf(links, Math.max(size, links.length * 2));
+        }
+    }
+    
+    private static long pack(float distance, int node) {
+        return ((long) Float.floatToRawIntBits(distance) << 32) | node;
+    }
+    
+    private static float distance(long packed) {
+        return Float.intBitsToFloat((int) (packed >>> 32));
+    }
+    
+    private static int node(long packed) {
+        return (int) packed;
+    }
+    
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] normalized = Arrays.copyOf(vector, vector.length);
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] *= scale;
+            }
+        }
+        return normalized;
+    }
+    
+    /**
+     * 搜索结果
+     */
+    public static class SearchResult {
+        
+        private final long id;
+        
+        private final float score;
+        
+        SearchResult(long id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+        
+        public long getId() {
+            return id;
+        }
+        
+        /**
+         * 余弦相似度（-1 ~ 1）
+         */
+        public float getScore() {
+            return score;
+        }
+    }
+    
+    /**
+     * 访问标记（按代数复用数组，避免每次搜索分配）
+     */
+    private static class Visited {
+        
+        private int[] marks = new int[0];
+        
+        private int generation;
+        
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                generation = 0;
+            }
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+        
+        /**
+         * @return 首次访问返回true
+         */
+        boolean mark(int node) {
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+    
+    /**
+     * long 最小堆
+     */
+    private static class LongHeap {
+        
+        private long[] heap;
+        
+        private int size;
+        
+        LongHeap(int capacity) {
+            heap = new long[Math.max(capacity, 16)];
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        long peek() {
+            return heap[0];
+        }
+        
+        void push(long value) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= value) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+        
+        long pop() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+}
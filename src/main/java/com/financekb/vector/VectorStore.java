@@ -0,0 +1,197 @@
+package com.financekb.vector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 内存映射向量存储
+ * <p>
+ * 向量按节点序号顺序追加到分段文件（每段固定 {@link #SEGMENT_NODES} 条），数据在堆外，由操作系统页缓存管理。
+ * 记录格式：[外部ID long][标志 int，1=已删除][向量 float×维度]，小端序。
+ * 元数据文件保存维度和条数，追加时先写记录再更新条数。
+ * 追加和删除只写入映射内存，{@link #force()} 之后才保证落盘（由索引快照调用），进程崩溃不丢失，断电可能丢失上次快照之后的修改。
+ * 写入需由调用方串行化；读取只访问已计数的记录，可与写入并发。
+ */
+class VectorStore implements Closeable {
+    
+    static final int SEGMENT_SHIFT = 16;
+    static final int SEGMENT_NODES = 1 << SEGMENT_SHIFT;
+    
+    private static final int MAGIC = 0x56454354;
+    private static final int META_SIZE = 64;
+    private static final int OFFSET_ID = 0;
+    private static final int OFFSET_FLAGS = 8;
+    private static final int OFFSET_VECTOR = 12;
+    
+    private final Path directory;
+    
+    private final int dimension;
+    
+    private final int recordSize;
+    
+    private final MappedByteBuffer meta;
+    
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    
+    private volatile int count;
+    
+    private VectorStore(Path directory, int dimension, MappedByteBuffer meta, int count) throws IOException {
+        this.directory = directory;
+        this.dimension = dimension;
+        this.recordSize = OFFSET_VECTOR + dimension * Float.BYTES;
+        this.meta = meta;
+        this.count = count;
+        int segmentCount = (count + SEGMENT_NODES - 1) >>> SEGMENT_SHIFT;
+        for (int i = 0; i < segmentCount; i++) {
+            addSegment();
+        }
+    }
+    
+    /**
+     * 打开或创建存储
+     */
+    static VectorStore open(Path directory, int dimension) throws IOException {
+        if ((long) SEGMENT_NODES * (OFFSET_VECTOR + (long) dimension * Float.BYTES) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("向量维度过大：" + dimension);
+        }
+        Files.createDirectories(directory);
+        MappedByteBuffer meta = map(directory.resolve("vectors.meta"), META_SIZE);
+        int count = 0;
+        if (meta.getInt(0) == MAGIC) {
+            int storedDimension = meta.getInt(4);
+            if (storedDimension != dimension) {
+                throw new IOException("向量维度不一致：索引为" + storedDimension + "，配置为" + dimension);
+            }
+            count = meta.getInt(8);
+        } else {
+            meta.putInt(4, dimension);
+            meta.putInt(8, 0);
+            meta.putInt(0, MAGIC);
+        }
+        return new VectorStore(directory, dimension, meta, count);
+    }
+    
+    int dimension() {
+        return dimension;
+    }
+    
+    /**
+     * 已写入的记录数（含已删除）
+     */
+    int size() {
+        return count;
+    }
+    
+    /**
+     * 追加向量，返回节点序号
+     */
+    int append(long externalId, float[] vector) throws IOException {
+        int node = count;
+        if ((node >>> SEGMENT_SHIFT) >= segments.length) {
+            addSegment();
+        }
+        MappedByteBuffer segment = segments[node >>> SEGMENT_SHIFT];
+        int base = offset(node);
+        segment.putLong(base + OFFSET_ID, externalId);
+        segment.putInt(base + OFFSET_FLAGS, 0);
+        for (int i = 0; i < dimension; i++) {
+            segment.putFloat(base + OFFSET_VECTOR + i * Float.BYTES, vector[i]);
+        }
+        count = node + 1;
+        meta.putInt(8, count);
+        return node;
+    }
+    
+    long externalId(int node) {
+        return segments[node >>> SEGMENT_SHIFT].getLong(offset(node) + OFFSET_ID);
+    }
+    
+    boolean isDeleted(int node) {
+        return segments[node >>> SEGMENT_SHIFT].getInt(offset(node) + OFFSET_FLAGS) != 0;
+    }
+    
+    /**
+     * 标记删除（只写映射内存，下次 force 时落盘）
+     */
+    void markDeleted(int node) {
+        segments[node >>> SEGMENT_SHIFT].putInt(offset(node) + OFFSET_FLAGS, 1);
+    }
+    
+    /**
+     * 节点向量与查询向量的内积（直接读映射内存，不复制）
+     */
+    float dot(int node, float[] query) {
+        MappedByteBuffer segment = segments[node >>> SEGMENT_SHIFT];
+        int base = offset(node) + OFFSET_VECTOR;
+        // 四路累加，缩短浮点加法的依赖链
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int i = 0;
+        for (int limit = dimension & ~3; i < limit; i += 4) {
+            int position = base + i * Float.BYTES;
+            s0 += segment.getFloat(position) * query[i];
+            s1 += segment.getFloat(position + 4) * query[i + 1];
+            s2 += segment.getFloat(position + 8) * query[i + 2];
+            s3 += segment.getFloat(position + 12) * query[i + 3];
+        }
+        for (; i < dimension; i++) {
+            s0 += segment.getFloat(base + i * Float.BYTES) * query[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+    
+    float[] vector(int node) {
+        MappedByteBuffer segment = segments[node >>> SEGMENT_SHIFT];
+        int base = offset(node) + OFFSET_VECTOR;
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = segment.getFloat(base + i * Float.BYTES);
+        }
+        return vector;
+    }
+    
+    /**
+     * 将脏页刷到磁盘
+     */
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        meta.force();
+    }
+    
+    @Override
+    public void close() {
+        force();
+    }
+    
+    private int offset(int node) {
+        return (node & (SEGMENT_NODES - 1)) * recordSize;
+    }
+    
+    private void addSegment() throws IOException {
+        MappedByteBuffer[] current = segments;
+        Path file = directory.resolve(String.format("vectors-%04d.dat", current.length));
+        MappedByteBuffer[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = map(file, (long) SEGMENT_NODES * recordSize);
+        segments = next;
+    }
+    
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.financekb.vo;
+
+import lombok.Data;
+
+/**
+ * AI文本生成结果视图对象
+ */
+@Data
+public class AiGenerateVO {
+    
+    private Long generationId;
+    
+    private String content;
+    
+    private Integer tokenUsage;
+    
+    /**
+     * 是否命中缓存
+     */
+    private Boolean cached;
+    
+    /**
+     * 命中缓存时与缓存问题的相似度（完全匹配为1）
+     */
+    private Double similarity;
+}
@@ -0,0 +1,14 @@
+package com.financekb.vo;
+
+import lombok.Data;
+
+/**
+ * 用户名/邮箱可用性视图对象（未查询的字段为null）
+ */
+@Data
+public class AvailabilityVO {
+    
+    private Boolean usernameAvailable;
+    
+    private Boolean emailAvailable;
+}
@@ -0,0 +1,27 @@
+package com.financekb.vo;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * 分片上传任务视图对象
+ */
+@Data
+public class ChunkUploadVO {
+    
+    private String uploadId;
+    private String fileName;
+    private Long fileSize;
+    private Integer chunkSize;
+    private Integer totalChunks;
+    
+    /**
+     * 服务端已收到的分片序号（从0开始），客户端据此续传
+     */
+    private List<Integer> uploadedChunks;
+    
+    /**
+     * 秒传成功时返回的文件信息（此时无需再上传分片）
+     */
+    private FileInfoVO fileInfo;
+}
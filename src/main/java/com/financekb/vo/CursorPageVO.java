@@ -0,0 +1,30 @@
+package com.financekb.vo;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * 游标分页结果
+ */
+@Data
+public class CursorPageVO<T> {
+    
+    private List<T> records;
+    
+    /**
+     * 下一页游标（不透明字符串），没有更多数据时为空
+     */
+    private String nextCursor;
+    
+    private Boolean hasMore;
+    
+    /**
+     * 总条数（仅在请求时统计，否则为空）
+     */
+    private Long total;
+    
+    /**
+     * 分面计数（请求 facets=true 时返回）
+     */
+    private FacetCountVO facets;
+}
@@ -0,0 +1,26 @@
+package com.financekb.vo;
+
+import lombok.Data;
+import java.util.Map;
+
+/**
+ * 文件分面计数视图对象（按文件数倒序）
+ */
+@Data
+public class FacetCountVO {
+    
+    /**
+     * 分类 -> 文件数
+     */
+    private Map<String, Long> categories;
+    
+    /**
+     * 扩展名 -> 文件数
+     */
+    private Map<String, Long> fileExts;
+    
+    /**
+     * 文件类型 -> 文件数
+     */
+    private Map<String, Long> fileTypes;
+}
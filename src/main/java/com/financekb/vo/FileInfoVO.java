@@ -16,6 +16,7 @@ public class FileInfoVO {
     private String fileType;
     private Long fileSize;
     private String fileExt;
+    private String fileHash;
     private String category;
     private String tags;
     private String description;
@@ -0,0 +1,24 @@
+package com.financekb.vo;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 文件分页结果（可附带分面计数）
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class FilePageVO<T> extends Page<T> {
+    
+    /**
+     * 分面计数（请求 facets=true 时返回）
+     */
+    private FacetCountVO facets;
+    
+    public FilePageVO(IPage<T> page) {
+        super(page.getCurrent(), page.getSize(), page.getTotal());
+        setRecords(page.getRecords());
+    }
+}
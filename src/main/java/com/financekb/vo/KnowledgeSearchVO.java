@@ -0,0 +1,28 @@
+package com.financekb.vo;
+
+import lombok.Data;
+
+/**
+ * 知识库语义搜索结果
+ */
+@Data
+public class KnowledgeSearchVO {
+    
+    private Long documentId;
+    
+    private Long knowledgeBaseId;
+    
+    private Long fileId;
+    
+    private String title;
+    
+    /**
+     * 相似度（余弦，越大越相关）
+     */
+    private Float score;
+    
+    /**
+     * 最相关分块的内容片段
+     */
+    private String snippet;
+}
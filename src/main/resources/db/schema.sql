@@ -86,6 +86,8 @@ CREATE TABLE IF NOT EXISTS `file_info` (
   `file_type` VARCHAR(255) COMMENT '文件类型（MIME）',
   `file_size` BIGINT COMMENT '文件大小（字节）',
   `file_ext` VARCHAR(20) COMMENT '文件扩展名',
+  `file_hash` CHAR(64) COMMENT '文件内容SHA-256',
+  `blob_id` BIGINT COMMENT '存储对象ID',
   `category` VARCHAR(50) COMMENT '文件分类',
   `tags` VARCHAR(255) COMMENT '标签（逗号分隔）',
   `description` TEXT COMMENT '文件描述',
@@ -100,9 +102,73 @@ CREATE TABLE IF NOT EXISTS `file_info` (
   KEY `idx_user_id` (`user_id`),
   KEY `idx_category` (`category`),
   KEY `idx_create_time` (`create_time`),
-  KEY `idx_share_code` (`share_code`)
+  KEY `idx_share_code` (`share_code`),
+  KEY `idx_file_hash` (`file_hash`),
+  KEY `idx_blob_id` (`blob_id`),
+  KEY `idx_user_deleted_time_id` (`user_id`, `deleted`, `create_time`, `id`),
+  FULLTEXT KEY `ft_file_search` (`file_name`, `description`) WITH PARSER ngram
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件信息表';
 
+-- 文件标签表（file_info.tags 的规范化索引，按 用户+标签 查文件ID）
+CREATE TABLE IF NOT EXISTS `file_tag` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT 'ID',
+  `file_id` BIGINT NOT NULL COMMENT '文件ID',
+  `user_id` BIGINT NOT NULL COMMENT '用户ID',
+  `tag` VARCHAR(50) NOT NULL COMMENT '标签',
+  `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_file_tag` (`file_id`, `tag`),
+  KEY `idx_user_tag_file` (`user_id`, `tag`, `file_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件标签表';
+
+-- 文件分面计数表（按 用户+分类+扩展名+类型 预聚合文件数，上传/删除时增量维护）
+CREATE TABLE IF NOT EXISTS `file_facet_count` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT 'ID',
+  `user_id` BIGINT NOT NULL COMMENT '用户ID',
+  `category` VARCHAR(50) NOT NULL DEFAULT '' COMMENT '文件分类（无分类为空串）',
+  `file_ext` VARCHAR(20) NOT NULL DEFAULT '' COMMENT '文件扩展名（小写）',
+  `file_type` VARCHAR(255) NOT NULL DEFAULT '' COMMENT '文件类型（MIME）',
+  `file_count` INT NOT NULL DEFAULT 0 COMMENT '文件数',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_user_facet` (`user_id`, `category`, `file_ext`, `file_type`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件分面计数表';
+
+-- 文件存储对象表（按内容SHA-256去重，多条文件记录共享同一物理文件）
+CREATE TABLE IF NOT EXISTS `file_blob` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '存储对象ID',
+  `file_hash` CHAR(64) NOT NULL COMMENT '文件内容SHA-256',
+  `file_path` VARCHAR(500) NOT NULL COMMENT '物理文件路径',
+  `file_type` VARCHAR(255) COMMENT '文件类型（MIME）',
+  `file_size` BIGINT NOT NULL COMMENT '文件大小（字节）',
+  `ref_count` INT NOT NULL DEFAULT 0 COMMENT '引用次数',
+  `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_file_hash` (`file_hash`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件存储对象表';
+
+-- 分片上传任务表
+CREATE TABLE IF NOT EXISTS `file_upload_task` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '任务ID',
+  `upload_id` VARCHAR(64) NOT NULL COMMENT '上传ID',
+  `user_id` BIGINT NOT NULL COMMENT '上传用户ID',
+  `file_name` VARCHAR(255) NOT NULL COMMENT '原始文件名',
+  `file_size` BIGINT NOT NULL COMMENT '文件大小（字节）',
+  `file_type` VARCHAR(255) COMMENT '客户端声明的文件类型（MIME）',
+  `chunk_size` INT NOT NULL COMMENT '分片大小（字节）',
+  `total_chunks` INT NOT NULL COMMENT '分片总数',
+  `category` VARCHAR(50) COMMENT '文件分类',
+  `tags` VARCHAR(255) COMMENT '标签（逗号分隔）',
+  `description` TEXT COMMENT '文件描述',
+  `status` TINYINT DEFAULT 0 COMMENT '状态：0-上传中，1-合并中',
+  `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_upload_id` (`upload_id`),
+  KEY `idx_user_file` (`user_id`, `file_name`, `file_size`),
+  KEY `idx_update_time` (`update_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='分片上传任务表';
+
 -- 知识库表
 CREATE TABLE IF NOT EXISTS `knowledge_base` (
   `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '知识库ID',
@@ -150,6 +216,21 @@ CREATE TABLE IF NOT EXISTS `knowledge_document` (
   KEY `idx_file_id` (`file_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='知识库文档表';
 
+-- 文档文本提取任务表
+CREATE TABLE IF NOT EXISTS `document_extract_task` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '任务ID',
+  `file_id` BIGINT NOT NULL COMMENT '文件ID',
+  `user_id` BIGINT NOT NULL COMMENT '用户ID',
+  `status` TINYINT NOT NULL DEFAULT 0 COMMENT '状态：0-待处理，1-处理中，2-成功，3-失败，4-已跳过',
+  `attempts` INT NOT NULL DEFAULT 0 COMMENT '已尝试次数',
+  `error_message` VARCHAR(500) COMMENT '失败原因',
+  `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_file_id` (`file_id`),
+  KEY `idx_status_id` (`status`, `id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文档文本提取任务表';
+
 -- 对话记录表
 CREATE TABLE IF NOT EXISTS `chat_history` (
   `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '记录ID',
@@ -171,10 +252,12 @@ CREATE TABLE IF NOT EXISTS `ai_generation` (
   `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '记录ID',
   `user_id` BIGINT NOT NULL COMMENT '用户ID',
   `generation_type` VARCHAR(50) COMMENT '生成类型：text/voice/image/video/document',
+  `knowledge_base_id` BIGINT COMMENT '知识库ID',
   `prompt` TEXT COMMENT '提示词',
   `result` TEXT COMMENT '生成结果（JSON格式）',
   `token_usage` INT COMMENT 'Token使用量',
   `cost` DECIMAL(10, 4) COMMENT '成本（美元）',
+  `cache_hit` TINYINT NOT NULL DEFAULT 0 COMMENT '是否命中缓存：0-否，1-是',
   `status` TINYINT DEFAULT 1 COMMENT '状态：0-失败，1-成功',
   `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   PRIMARY KEY (`id`),
@@ -183,6 +266,20 @@ CREATE TABLE IF NOT EXISTS `ai_generation` (
   KEY `idx_create_time` (`create_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI生成记录表';
 
+-- AI用量日汇总表（异步批量累加）
+CREATE TABLE IF NOT EXISTS `ai_usage_daily` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT 'ID',
+  `user_id` BIGINT NOT NULL COMMENT '用户ID',
+  `usage_date` DATE NOT NULL COMMENT '日期',
+  `request_count` INT NOT NULL DEFAULT 0 COMMENT '请求数（含命中缓存）',
+  `cache_hit_count` INT NOT NULL DEFAULT 0 COMMENT '命中缓存的请求数',
+  `token_usage` BIGINT NOT NULL DEFAULT 0 COMMENT 'Token使用量',
+  `cost` DECIMAL(12, 4) NOT NULL DEFAULT 0 COMMENT '成本（美元）',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_user_date` (`user_id`, `usage_date`),
+  KEY `idx_usage_date` (`usage_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI用量日汇总表';
+
 -- 系统配置表
 CREATE TABLE IF NOT EXISTS `sys_config` (
   `id` BIGINT NOT NULL AUTO_INCREMENT,
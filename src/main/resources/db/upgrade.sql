@@ -0,0 +1,134 @@
+-- 财务会计知识库系统数据库升级脚本
+-- 已有数据库按顺序执行；新建数据库直接使用 schema.sql 即可
+
+USE `finance_kb`;
+
+-- 分片上传任务表
+CREATE TABLE IF NOT EXISTS `file_upload_task` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '任务ID',
+  `upload_id` VARCHAR(64) NOT NULL COMMENT '上传ID',
+  `user_id` BIGINT NOT NULL COMMENT '上传用户ID',
+  `file_name` VARCHAR(255) NOT NULL COMMENT '原始文件名',
+  `file_size` BIGINT NOT NULL COMMENT '文件大小（字节）',
+  `file_type` VARCHAR(255) COMMENT '客户端声明的文件类型（MIME）',
+  `chunk_size` INT NOT NULL COMMENT '分片大小（字节）',
+  `total_chunks` INT NOT NULL COMMENT '分片总数',
+  `category` VARCHAR(50) COMMENT '文件分类',
+  `tags` VARCHAR(255) COMMENT '标签（逗号分隔）',
+  `description` TEXT COMMENT '文件描述',
+  `status` TINYINT DEFAULT 0 COMMENT '状态：0-上传中，1-合并中',
+  `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_upload_id` (`upload_id`),
+  KEY `idx_user_file` (`user_id`, `file_name`, `file_size`),
+  KEY `idx_update_time` (`update_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='分片上传任务表';
+
+-- 文件内容摘要（流式入库时计算）
+ALTER TABLE `file_info`
+  ADD COLUMN `file_hash` CHAR(64) COMMENT '文件内容SHA-256' AFTER `file_ext`,
+  ADD KEY `idx_file_hash` (`file_hash`);
+
+-- 内容寻址存储（按SHA-256去重，引用计数）
+CREATE TABLE IF NOT EXISTS `file_blob` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '存储对象ID',
+  `file_hash` CHAR(64) NOT NULL COMMENT '文件内容SHA-256',
+  `file_path` VARCHAR(500) NOT NULL COMMENT '物理文件路径',
+  `file_type` VARCHAR(255) COMMENT '文件类型（MIME）',
+  `file_size` BIGINT NOT NULL COMMENT '文件大小（字节）',
+  `ref_count` INT NOT NULL DEFAULT 0 COMMENT '引用次数',
+  `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_file_hash` (`file_hash`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件存储对象表';
+
+-- 历史文件（blob_id为空）仍按原路径存储，删除时直接删除物理文件
+ALTER TABLE `file_info`
+  ADD COLUMN `blob_id` BIGINT COMMENT '存储对象ID' AFTER `file_hash`,
+  ADD KEY `idx_blob_id` (`blob_id`);
+
+-- 文件名/描述全文索引（ngram分词，支持中文），也可通过 POST /api/files/search/rebuild 重建
+ALTER TABLE `file_info`
+  ADD FULLTEXT KEY `ft_file_search` (`file_name`, `description`) WITH PARSER ngram;
+
+-- 文件标签索引表
+CREATE TABLE IF NOT EXISTS `file_tag` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT 'ID',
+  `file_id` BIGINT NOT NULL COMMENT '文件ID',
+  `user_id` BIGINT NOT NULL COMMENT '用户ID',
+  `tag` VARCHAR(50) NOT NULL COMMENT '标签',
+  `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_file_tag` (`file_id`, `tag`),
+  KEY `idx_user_tag_file` (`user_id`, `tag`, `file_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件标签表';
+
+-- 从 file_info.tags（逗号分隔）回填标签
+INSERT IGNORE INTO `file_tag` (`file_id`, `user_id`, `tag`)
+SELECT f.`id`, f.`user_id`, TRIM(t.`tag`)
+FROM `file_info` f,
+  JSON_TABLE(
+    CONCAT('["', REPLACE(REPLACE(REPLACE(REPLACE(f.`tags`, '\\', ''), '"', ''), '，', ','), ',', '","'), '"]'),
+    '$[*]' COLUMNS (`tag` VARCHAR(50) PATH '$')
+  ) t
+WHERE f.`deleted` = 0 AND f.`tags` IS NOT NULL AND TRIM(t.`tag`) <> '';
+
+-- 文件列表游标分页（按 create_time, id 倒序定位）
+ALTER TABLE `file_info`
+  ADD KEY `idx_user_deleted_time_id` (`user_id`, `deleted`, `create_time`, `id`);
+
+-- 文件分面计数表
+CREATE TABLE IF NOT EXISTS `file_facet_count` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT 'ID',
+  `user_id` BIGINT NOT NULL COMMENT '用户ID',
+  `category` VARCHAR(50) NOT NULL DEFAULT '' COMMENT '文件分类（无分类为空串）',
+  `file_ext` VARCHAR(20) NOT NULL DEFAULT '' COMMENT '文件扩展名（小写）',
+  `file_type` VARCHAR(255) NOT NULL DEFAULT '' COMMENT '文件类型（MIME）',
+  `file_count` INT NOT NULL DEFAULT 0 COMMENT '文件数',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_user_facet` (`user_id`, `category`, `file_ext`, `file_type`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件分面计数表';
+
+-- 按现有文件回填分面计数
+INSERT INTO `file_facet_count` (`user_id`, `category`, `file_ext`, `file_type`, `file_count`)
+SELECT `user_id`, IFNULL(`category`, ''), LOWER(IFNULL(`file_ext`, '')), IFNULL(`file_type`, ''), COUNT(*)
+FROM `file_info`
+WHERE `deleted` = 0
+GROUP BY `user_id`, IFNULL(`category`, ''), LOWER(IFNULL(`file_ext`, '')), IFNULL(`file_type`, '')
+ON DUPLICATE KEY UPDATE `file_count` = VALUES(`file_count`);
+
+-- 文档文本提取任务表
+CREATE TABLE IF NOT EXISTS `document_extract_task` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '任务ID',
+  `file_id` BIGINT NOT NULL COMMENT '文件ID',
+  `user_id` BIGINT NOT NULL COMMENT '用户ID',
+  `status` TINYINT NOT NULL DEFAULT 0 COMMENT '状态：0-待处理，1-处理中，2-成功，3-失败，4-已跳过',
+  `attempts` INT NOT NULL DEFAULT 0 COMMENT '已尝试次数',
+  `error_message` VARCHAR(500) COMMENT '失败原因',
+  `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_file_id` (`file_id`),
+  KEY `idx_status_id` (`status`, `id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文档文本提取任务表';
+
+-- AI生成记录：知识库与缓存命中
+ALTER TABLE `ai_generation`
+  ADD COLUMN `knowledge_base_id` BIGINT COMMENT '知识库ID' AFTER `generation_type`,
+  ADD COLUMN `cache_hit` TINYINT NOT NULL DEFAULT 0 COMMENT '是否命中缓存：0-否，1-是' AFTER `cost`;
+
+-- AI用量日汇总表（异步批量累加）
+CREATE TABLE IF NOT EXISTS `ai_usage_daily` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT 'ID',
+  `user_id` BIGINT NOT NULL COMMENT '用户ID',
+  `usage_date` DATE NOT NULL COMMENT '日期',
+  `request_count` INT NOT NULL DEFAULT 0 COMMENT '请求数（含命中缓存）',
+  `cache_hit_count` INT NOT NULL DEFAULT 0 COMMENT '命中缓存的请求数',
+  `token_usage` BIGINT NOT NULL DEFAULT 0 COMMENT 'Token使用量',
+  `cost` DECIMAL(12, 4) NOT NULL DEFAULT 0 COMMENT '成本（美元）',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_user_date` (`user_id`, `usage_date`),
+  KEY `idx_usage_date` (`usage_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI用量日汇总表';
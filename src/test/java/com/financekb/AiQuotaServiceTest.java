@@ -0,0 +1,124 @@
+package com.financekb;
+
+import com.financekb.config.AiConfig;
+import com.financekb.mapper.SysUserMapper;
+import com.financekb.service.AiQuotaService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * AI调用配额测试（Redis令牌桶用内存计数模拟，不计时间恢复）
+ */
+public class AiQuotaServiceTest {
+    
+    private final AiConfig aiConfig = new AiConfig();
+    
+    private final SysUserMapper sysUserMapper = mock(SysUserMapper.class);
+    
+    private final Map<String, Long> remaining = new HashMap<>();
+    
+    private final AtomicInteger leases = new AtomicInteger();
+    
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    private AiQuotaService service;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class),
+            anyList(), any(Object[].class))).thenAnswer(invocation -> {
+                leases.incrementAndGet();
+                String key = invocation.<List<String>>getArgument(3).get(0);
+                long capacity = Long.parseLong(invocation.getArgument(4));
+                long requested = Long.parseLong(invocation.getArgument(6));
+                long returned = Long.parseLong(invocation.getArgument(7));
+                long available = Math.min(capacity, remaining.getOrDefault(key, capacity) + returned);
+                long granted = Math.min(requested, available);
+                remaining.put(key, available - granted);
+                return granted;
+            });
+        when(sysUserMapper.selectRoleCodes(anyLong())).thenReturn(List.of("user"));
+        
+        aiConfig.getQuota().setLeaseRequests(5);
+        aiConfig.getQuota().setLeaseTokens(4000L);
+        aiConfig.getQuota().getRoles().put("user", budget(10, null));
+        aiConfig.getQuota().getRoles().put("admin", budget(null, null));
+        service = new AiQuotaService(redisTemplate, sysUserMapper, aiConfig, new SimpleMeterRegistry());
+    }
+    
+    @Test
+    public void testRequestsAreLeasedInBatches() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(service.tryAcquire(1L), "第" + (i + 1) + "次请求应在额度内");
+        }
+        assertEquals(2, leases.get());
+        
+        assertFalse(service.tryAcquire(1L));
+        assertEquals(3, leases.get());
+        // 刚被拒绝，短时间内不再访问Redis
+        assertFalse(service.tryAcquire(1L));
+        assertEquals(3, leases.get());
+        
+        // 其他用户的额度互不影响，角色只查询一次
+        assertTrue(service.tryAcquire(2L));
+        verify(sysUserMapper, times(1)).selectRoleCodes(1L);
+    }
+    
+    @Test
+    public void testTokenDebtIsRepaidOnNextLease() {
+        aiConfig.getQuota().getRoles().put("user", budget(null, 10_000L));
+        
+        assertTrue(service.tryAcquire(1L));
+        service.consumeTokens(1L, 9000);
+        // 欠5000，补领 4000+5000，桶里只剩6000
+        assertTrue(service.tryAcquire(1L));
+        service.consumeTokens(1L, 2000);
+        assertFalse(service.tryAcquire(1L));
+    }
+    
+    @Test
+    public void testMostGenerousRoleApplies() {
+        when(sysUserMapper.selectRoleCodes(1L)).thenReturn(List.of("user", "admin"));
+        
+        for (int i = 0; i < 100; i++) {
+            assertTrue(service.tryAcquire(1L));
+        }
+        assertEquals(0, leases.get());
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRedisFailureFallsBackToLocalBucket() {
+        aiConfig.getQuota().getRoles().put("user", budget(3, null));
+        doThrow(new RedisConnectionFailureException("down")).when(redisTemplate).execute(any(RedisScript.class),
+            any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any(Object[].class));
+        
+        assertTrue(service.tryAcquire(1L));
+        assertTrue(service.tryAcquire(1L));
+        assertTrue(service.tryAcquire(1L));
+        assertFalse(service.tryAcquire(1L));
+    }
+    
+    private static AiConfig.Budget budget(Integer requestsPerMinute, Long tokensPerDay) {
+        AiConfig.Budget budget = new AiConfig.Budget();
+        budget.setRequestsPerMinute(requestsPerMinute);
+        budget.setTokensPerDay(tokensPerDay);
+        return budget;
+    }
+}
@@ -0,0 +1,103 @@
+package com.financekb;
+
+import com.financekb.config.AiConfig;
+import com.financekb.config.OpenAIConfig;
+import com.financekb.service.AiResponseCacheService;
+import com.financekb.vector.HashingEmbeddingProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * AI响应缓存测试（内存模拟Redis）
+ */
+public class AiResponseCacheServiceTest {
+    
+    private final Map<String, Object> redis = new HashMap<>();
+    
+    private final AiConfig aiConfig = new AiConfig();
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
+    private AiResponseCacheService service;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, Object> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        when(ops.get(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(ops).set(anyString(), any(), anyLong(), any(TimeUnit.class));
+        when(ops.increment(anyString(), anyLong())).thenAnswer(invocation -> (Long) redis.merge(
+            invocation.getArgument(0), invocation.<Long>getArgument(1), (a, b) -> (Long) a + (Long) b));
+        when(ops.increment(anyString())).thenAnswer(invocation -> (Long) redis.merge(
+            invocation.getArgument(0), 1L, (a, b) -> (Long) a + (Long) b));
+        
+        service = new AiResponseCacheService(redisTemplate, new HashingEmbeddingProvider(256), aiConfig,
+            new OpenAIConfig(), meterRegistry);
+    }
+    
+    @Test
+    public void testNormalize() {
+        assertEquals("如何计提固定资产折旧", AiResponseCacheService.normalize("  如何计提固定资产折旧？ "));
+        assertEquals("what is ebitda", AiResponseCacheService.normalize("What  is\nEBITDA?"));
+        // 全角字母数字转半角
+        assertEquals("abc 123", AiResponseCacheService.normalize("ＡＢＣ　１２３。"));
+    }
+    
+    @Test
+    public void testExactHitAfterNormalization() {
+        String scope = service.scope(1L, "text");
+        assertNull(service.get(scope, "什么是权责发生制？"));
+        
+        service.put(scope, "什么是权责发生制？", "权责发生制是……");
+        AiResponseCacheService.CachedResponse cached = service.get(scope, "什么是 权责发生制");
+        assertNull(cached, "空白不同视为不同提示词");
+        cached = service.get(scope, "  什么是权责发生制 ");
+        assertNotNull(cached);
+        assertEquals("权责发生制是……", cached.getContent());
+        assertEquals(1.0, cached.getSimilarity());
+        assertEquals(1.0, meterRegistry.counter("ai.cache", "result", "exact").count());
+    }
+    
+    @Test
+    public void testKnowledgeBaseInvalidation() {
+        String scope = service.scope(1L, "text");
+        service.put(scope, "增值税税率", "13%");
+        String otherScope = service.scope(2L, "text");
+        service.put(otherScope, "增值税税率", "9%");
+        
+        service.invalidateKnowledgeBase(1L);
+        
+        String newScope = service.scope(1L, "text");
+        assertNotEquals(scope, newScope);
+        assertNull(service.get(newScope, "增值税税率"));
+        assertEquals("9%", service.get(service.scope(2L, "text"), "增值税税率").getContent());
+    }
+    
+    @Test
+    public void testSemanticHit() {
+        aiConfig.getCache().setSemanticEnabled(true);
+        aiConfig.getCache().setSimilarityThreshold(0.8);
+        String scope = service.scope(null, "text");
+        service.put(scope, "固定资产折旧的计提方法有哪些", "年限平均法、工作量法……");
+        
+        AiResponseCacheService.CachedResponse cached = service.get(scope, "固定资产折旧的计提方法都有哪些");
+        assertNotNull(cached);
+        assertEquals("年限平均法、工作量法……", cached.getContent());
+        assertTrue(cached.getSimilarity() < 1.0);
+        assertNull(service.get(scope, "如何编制现金流量表"));
+    }
+}
@@ -0,0 +1,263 @@
+package com.financekb;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.financekb.common.FileMetadataCache;
+import com.financekb.config.FileConfig;
+import com.financekb.entity.FileBlob;
+import com.financekb.mapper.FileBlobMapper;
+import com.financekb.service.BlobStorageService;
+import com.financekb.service.FilePreviewService;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 内容寻址存储引用计数测试
+ */
+public class BlobStorageServiceTest {
+    
+    private static final String HASH = "ab" + "0".repeat(62);
+    
+    @TempDir
+    Path tempDir;
+    
+    private final FileBlobMapper fileBlobMapper = mock(FileBlobMapper.class);
+    private final FileMetadataCache fileMetadataCache = mock(FileMetadataCache.class);
+    private final FilePreviewService filePreviewService = mock(FilePreviewService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    
+    private BlobStorageService service;
+    
+    @BeforeAll
+    public static void initTableInfo() {
+        // LambdaQueryWrapper.eq 需要实体的列映射
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), FileBlob.class);
+    }
+    
+    @BeforeEach
+    public void setUp() {
+        FileConfig config = new FileConfig();
+        config.setUploadPath(tempDir.resolve("uploads").toString());
+        service = new BlobStorageService(fileBlobMapper, config, fileMetadataCache, filePreviewService, transactionManager);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    @Test
+    public void testStoreNewContentPlacesFile() throws Exception {
+        Path temp = stage("hello");
+        
+        FileBlob blob = service.store(temp, HASH, 5, "text/plain", ".TXT");
+        
+        assertEquals(1, blob.getRefCount());
+        assertTrue(blob.getFilePath().endsWith(HASH + ".txt"));
+        assertEquals("hello", Files.readString(Paths.get(blob.getFilePath())));
+        assertFalse(Files.exists(temp));
+        verify(fileBlobMapper).insert(blob);
+    }
+    
+    @Test
+    public void testStoreExistingContentIncrementsRef() throws Exception {
+        FileBlob exist = blob(7L, 1);
+        when(fileBlobMapper.selectOne(any())).thenReturn(exist);
+        when(fileBlobMapper.incrementRef(7L)).thenReturn(1);
+        Path temp = stage("hello");
+        
+        FileBlob blob = service.store(temp, HASH, 5, "text/plain", ".txt");
+        
+        assertSame(exist, blob);
+        assertEquals(2, blob.getRefCount());
+        assertFalse(Files.exists(temp));
+        verify(fileBlobMapper, never()).insert(any(FileBlob.class));
+    }
+    
+    @Test
+    public void testStoreRecreatesBlobBeingDeleted() throws Exception {
+        // 已有对象引用数归零正在删除：加锁重读等删除完成后重新创建
+        when(fileBlobMapper.selectOne(any())).thenReturn(blob(7L, 0));
+        when(fileBlobMapper.incrementRef(7L)).thenReturn(0);
+        when(fileBlobMapper.selectByHashForUpdate(HASH)).thenReturn(null);
+        Path temp = stage("hello");
+        
+        FileBlob blob = service.store(temp, HASH, 5, "text/plain", ".txt");
+        
+        assertEquals(1, blob.getRefCount());
+        assertTrue(Files.exists(Paths.get(blob.getFilePath())));
+        verify(fileBlobMapper).selectByHashForUpdate(HASH);
+        verify(fileBlobMapper).insert(blob);
+    }
+    
+    @Test
+    public void testConcurrentStoreOfSameContent() throws Exception {
+        // 两个上传都未查到已有对象，插入冲突的一方加锁重读后引用对方创建的对象
+        AtomicReference<FileBlob> stored = new AtomicReference<>();
+        AtomicLong ids = new AtomicLong();
+        CyclicBarrier bothLookedUp = new CyclicBarrier(2);
+        when(fileBlobMapper.selectOne(any())).thenAnswer(invocation -> {
+            FileBlob current = stored.get();
+            bothLookedUp.await(5, TimeUnit.SECONDS);
+            return current;
+        });
+        when(fileBlobMapper.insert(any(FileBlob.class))).thenAnswer(invocation -> {
+            FileBlob blob = invocation.getArgument(0);
+            if (!stored.compareAndSet(null, blob)) {
+                throw new DuplicateKeyException("uk_file_hash");
+            }
+            blob.setId(ids.incrementAndGet());
+            return 1;
+        });
+        when(fileBlobMapper.selectByHashForUpdate(HASH)).thenAnswer(invocation -> stored.get());
+        when(fileBlobMapper.incrementRef(anyLong())).thenReturn(1);
+        Path first = stage("hello");
+        Path second = stage("hello");
+        
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<FileBlob>> results = new ArrayList<>();
+            for (Path temp : List.of(first, second)) {
+                results.add(executor.submit(() -> service.store(temp, HASH, 5, "text/plain", ".txt")));
+            }
+            assertEquals(results.get(0).get(5, TimeUnit.SECONDS).getId(), results.get(1).get(5, TimeUnit.SECONDS).getId());
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        FileBlob blob = stored.get();
+        assertEquals(1L, blob.getId());
+        verify(fileBlobMapper, times(1)).incrementRef(1L);
+        verify(fileBlobMapper).selectByHashForUpdate(HASH);
+        assertEquals("hello", Files.readString(Paths.get(blob.getFilePath())));
+        assertFalse(Files.exists(first));
+        assertFalse(Files.exists(second));
+    }
+    
+    @Test
+    public void testRollbackDeletesOrphanFile() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        FileBlob blob = service.store(stage("hello"), HASH, 5, "text/plain", ".txt");
+        Path blobPath = Paths.get(blob.getFilePath());
+        
+        // 提交时不删除；回滚后记录已不存在，删除本次放置的文件
+        afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        assertTrue(Files.exists(blobPath));
+        when(fileBlobMapper.selectByHashForUpdate(HASH)).thenReturn(null);
+        afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        
+        assertFalse(Files.exists(blobPath));
+        verify(fileMetadataCache).evict(blobPath);
+        verify(filePreviewService).evict(blobPath);
+    }
+    
+    @Test
+    public void testRollbackKeepsFileReusedByAnotherUpload() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        FileBlob blob = service.store(stage("hello"), HASH, 5, "text/plain", ".txt");
+        Path blobPath = Paths.get(blob.getFilePath());
+        
+        // 回滚前相同内容已被其他上传重新入库并复用同一路径
+        when(fileBlobMapper.selectByHashForUpdate(HASH)).thenReturn(blob(9L, 1));
+        afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        
+        assertTrue(Files.exists(blobPath));
+        verify(fileMetadataCache, never()).evict(any());
+    }
+    
+    @Test
+    public void testReleaseToZeroDeletesFileAfterCommit() throws Exception {
+        Path blobPath = placeBlobFile();
+        FileBlob blob = blob(7L, 1);
+        blob.setFilePath(blobPath.toString());
+        when(fileBlobMapper.selectById(7L)).thenReturn(blob);
+        when(fileBlobMapper.decrementRef(7L)).thenReturn(1);
+        when(fileBlobMapper.deleteIfUnreferenced(7L)).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+        
+        service.release(7L);
+        
+        // 事务提交前文件仍在，回滚时其他引用方仍可读取
+        assertTrue(Files.exists(blobPath));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+        synchronizations.get(0).afterCommit();
+        
+        assertFalse(Files.exists(blobPath));
+        verify(fileMetadataCache).evict(blobPath);
+        verify(filePreviewService).evict(blobPath);
+    }
+    
+    @Test
+    public void testReleaseWithRemainingReferencesKeepsFile() throws Exception {
+        Path blobPath = placeBlobFile();
+        FileBlob blob = blob(7L, 2);
+        blob.setFilePath(blobPath.toString());
+        when(fileBlobMapper.selectById(7L)).thenReturn(blob);
+        when(fileBlobMapper.decrementRef(7L)).thenReturn(1);
+        when(fileBlobMapper.deleteIfUnreferenced(7L)).thenReturn(0);
+        TransactionSynchronizationManager.initSynchronization();
+        
+        service.release(7L);
+        
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+        assertTrue(Files.exists(blobPath));
+        verify(fileBlobMapper, never()).selectByHashForUpdate(anyString());
+    }
+    
+    private Path stage(String content) throws Exception {
+        Path temp = service.allocateTempPath();
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        return temp;
+    }
+    
+    private Path placeBlobFile() throws Exception {
+        Path blobPath = tempDir.resolve("uploads").resolve("blobs").resolve("ab").resolve(HASH + ".txt");
+        Files.createDirectories(blobPath.getParent());
+        Files.writeString(blobPath, "hello", StandardCharsets.UTF_8);
+        return blobPath;
+    }
+    
+    private FileBlob blob(Long id, int refCount) {
+        FileBlob blob = new FileBlob();
+        blob.setId(id);
+        blob.setFileHash(HASH);
+        blob.setFileSize(5L);
+        blob.setRefCount(refCount);
+        return blob;
+    }
+    
+    private void afterCompletion(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+    }
+}
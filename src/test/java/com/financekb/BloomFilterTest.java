@@ -0,0 +1,39 @@
+package com.financekb;
+
+import com.financekb.common.BloomFilter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 布隆过滤器测试
+ */
+public class BloomFilterTest {
+    
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10000, 0.001);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("jti-" + i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain("jti-" + i));
+        }
+    }
+    
+    @Test
+    public void testFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(10000, 0.001);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("jti-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        // 期望约0.1%，留出足够余量
+        assertTrue(falsePositives < 500, "误判数过高：" + falsePositives);
+    }
+}
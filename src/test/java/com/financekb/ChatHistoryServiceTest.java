@@ -0,0 +1,92 @@
+package com.financekb;
+
+import com.financekb.client.ChatMessage;
+import com.financekb.config.ChatConfig;
+import com.financekb.entity.ChatHistory;
+import com.financekb.mapper.ChatHistoryMapper;
+import com.financekb.service.ChatHistoryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 对话记录批量写入测试
+ */
+public class ChatHistoryServiceTest {
+    
+    @Test
+    public void testMessagesAreWrittenInBatches() {
+        ChatHistoryMapper mapper = mock(ChatHistoryMapper.class);
+        List<List<ChatHistory>> batches = new ArrayList<>();
+        when(mapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            batches.add(new ArrayList<>(invocation.getArgument(0)));
+            return 1;
+        });
+        ChatConfig config = new ChatConfig();
+        config.getHistory().setBatchSize(3);
+        ChatHistoryService service = new ChatHistoryService(mapper, config, new SimpleMeterRegistry());
+        
+        for (int i = 0; i < 7; i++) {
+            service.append(1L, "s1", ChatHistoryService.MESSAGE_TYPE_USER, "消息" + i, null, null);
+        }
+        verifyNoInteractions(mapper);
+        
+        service.flush();
+        
+        assertEquals(3, batches.size());
+        assertEquals(List.of(3, 3, 1), batches.stream().map(List::size).toList());
+        assertEquals("消息0", batches.get(0).get(0).getContent());
+        assertNotNull(batches.get(0).get(0).getCreateTime());
+        verify(mapper, never()).insert(any(ChatHistory.class));
+    }
+    
+    @Test
+    public void testFailedBatchIsRetried() {
+        ChatHistoryMapper mapper = mock(ChatHistoryMapper.class);
+        when(mapper.insertBatch(anyList())).thenThrow(new RuntimeException("db down")).thenReturn(2);
+        ChatHistoryService service = new ChatHistoryService(mapper, new ChatConfig(), new SimpleMeterRegistry());
+        
+        service.append(1L, "s1", ChatHistoryService.MESSAGE_TYPE_USER, "问题", null, null);
+        service.append(1L, "s1", ChatHistoryService.MESSAGE_TYPE_ASSISTANT, "回答", null, 42);
+        service.flush();
+        service.flush();
+        
+        verify(mapper, times(2)).insertBatch(argThat(list -> list.size() == 2));
+    }
+    
+    @Test
+    public void testRecentMessagesCachedAndTrimmed() {
+        ChatHistoryMapper mapper = mock(ChatHistoryMapper.class);
+        ChatConfig config = new ChatConfig();
+        config.setContextMessages(3);
+        ChatHistoryService service = new ChatHistoryService(mapper, config, new SimpleMeterRegistry());
+        
+        assertTrue(service.recentMessages(1L, "new", true).isEmpty());
+        service.append(1L, "new", ChatHistoryService.MESSAGE_TYPE_USER, "q1", null, null);
+        service.append(1L, "new", ChatHistoryService.MESSAGE_TYPE_ASSISTANT, "a1", null, null);
+        service.append(1L, "new", ChatHistoryService.MESSAGE_TYPE_USER, "q2", null, null);
+        service.append(1L, "new", ChatHistoryService.MESSAGE_TYPE_ASSISTANT, "a2", null, null);
+        
+        List<ChatMessage> recent = service.recentMessages(1L, "new", false);
+        assertEquals(List.of("a1", "q2", "a2"), recent.stream().map(ChatMessage::getContent).toList());
+        assertEquals(ChatMessage.ROLE_ASSISTANT, recent.get(0).getRole());
+        // 新会话和缓存命中都不查库
+        verify(mapper, never()).selectRecent(anyLong(), anyString(), anyInt());
+        
+        ChatHistory older = new ChatHistory();
+        older.setMessageType(ChatHistoryService.MESSAGE_TYPE_ASSISTANT);
+        older.setContent("旧回答");
+        ChatHistory oldest = new ChatHistory();
+        oldest.setMessageType(ChatHistoryService.MESSAGE_TYPE_USER);
+        oldest.setContent("旧问题");
+        when(mapper.selectRecent(2L, "old", 3)).thenReturn(List.of(older, oldest));
+        List<ChatMessage> loaded = service.recentMessages(2L, "old", false);
+        assertEquals(List.of("旧问题", "旧回答"), loaded.stream().map(ChatMessage::getContent).toList());
+    }
+}
@@ -0,0 +1,88 @@
+package com.financekb;
+
+import com.financekb.client.ChatCall;
+import com.financekb.client.ChatStreamListener;
+import com.financekb.client.OpenAIClient;
+import com.financekb.config.ChatConfig;
+import com.financekb.dto.ChatRequestDTO;
+import com.financekb.service.AiQuotaService;
+import com.financekb.service.AiUsageService;
+import com.financekb.service.ChatHistoryService;
+import com.financekb.service.ChatService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 流式对话用量测试
+ */
+public class ChatServiceTest {
+    
+    private final OpenAIClient openAIClient = mock(OpenAIClient.class);
+    private final ChatHistoryService chatHistoryService = mock(ChatHistoryService.class);
+    private final AiQuotaService aiQuotaService = mock(AiQuotaService.class);
+    private final AiUsageService aiUsageService = mock(AiUsageService.class);
+    private final ChatStreamListener client = mock(ChatStreamListener.class);
+    
+    private ChatService service;
+    private ChatStreamListener upstream;
+    private ChatCall call;
+    
+    @BeforeEach
+    public void setUp() {
+        service = new ChatService(openAIClient, chatHistoryService, aiQuotaService, aiUsageService, new ChatConfig(),
+            new SimpleMeterRegistry());
+        when(aiQuotaService.tryAcquire(1L)).thenReturn(true);
+        when(chatHistoryService.recentMessages(anyLong(), anyString(), anyBoolean())).thenReturn(List.of());
+        when(openAIClient.streamChat(anyList(), any())).thenAnswer(invocation -> {
+            upstream = invocation.getArgument(1);
+            return new ChatCall();
+        });
+        ChatRequestDTO request = new ChatRequestDTO();
+        request.setMessage("应收账款如何计提坏账准备？");
+        call = service.stream(1L, "s1", request, "sse", client);
+    }
+    
+    @Test
+    public void testDisconnectAfterFirstTokenChargesEstimate() {
+        upstream.onToken("按账龄分析法计提");
+        call.cancel();
+        
+        ArgumentCaptor<Integer> tokens = ArgumentCaptor.forClass(Integer.class);
+        verify(aiQuotaService).consumeTokens(eq(1L), tokens.capture());
+        // 提示词与已生成内容都计入，中文按每字一个Token估算
+        assertTrue(tokens.getValue() > "按账龄分析法计提".length() + "应收账款如何计提坏账准备？".length());
+        verify(aiUsageService).record(1L, tokens.getValue(), false);
+        
+        // 取消后迟到的结束回调不再重复扣除
+        upstream.onComplete("按账龄分析法计提", 120);
+        verify(aiQuotaService, times(1)).consumeTokens(anyLong(), any());
+    }
+    
+    @Test
+    public void testCompletedStreamIsChargedOnce() {
+        upstream.onToken("按账龄");
+        upstream.onComplete("按账龄分析法计提", 120);
+        // 连接结束时控制器总会取消调用
+        call.cancel();
+        
+        verify(aiQuotaService, times(1)).consumeTokens(1L, 120);
+        verify(aiUsageService, times(1)).record(1L, 120, false);
+        verify(client).onComplete("按账龄分析法计提", 120);
+    }
+    
+    @Test
+    public void testDisconnectBeforeFirstTokenRecordsRequestOnly() {
+        call.cancel();
+        
+        verify(aiQuotaService, never()).consumeTokens(anyLong(), any());
+        verify(aiUsageService).record(1L, null, false);
+    }
+}
@@ -0,0 +1,188 @@
+package com.financekb;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.financekb.common.Result;
+import com.financekb.common.ResultCode;
+import com.financekb.config.FileConfig;
+import com.financekb.dto.ChunkUploadInitDTO;
+import com.financekb.entity.FileBlob;
+import com.financekb.entity.FileUploadTask;
+import com.financekb.mapper.FileUploadTaskMapper;
+import com.financekb.service.BlobStorageService;
+import com.financekb.service.ChunkUploadService;
+import com.financekb.service.FileIngestService;
+import com.financekb.service.FileService;
+import com.financekb.vo.ChunkUploadVO;
+import com.financekb.vo.FileInfoVO;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 分片上传测试
+ */
+public class ChunkUploadServiceTest {
+    
+    private static final int CHUNK_SIZE = 256 * 1024;
+    
+    @TempDir
+    Path tempDir;
+    
+    private final FileUploadTaskMapper uploadTaskMapper = mock(FileUploadTaskMapper.class);
+    private final FileService fileService = mock(FileService.class);
+    private final BlobStorageService blobStorageService = mock(BlobStorageService.class);
+    private final AtomicInteger tempFiles = new AtomicInteger();
+    
+    private ChunkUploadService service;
+    private FileUploadTask task;
+    private byte[] content;
+    
+    @BeforeAll
+    public static void initTableInfo() {
+        // LambdaUpdateWrapper.set 需要实体的列映射
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), FileUploadTask.class);
+    }
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        FileConfig config = new FileConfig();
+        config.setUploadPath(tempDir.resolve("uploads").toString());
+        config.setAllowedTypes(List.of("text/plain"));
+        service = new ChunkUploadService(uploadTaskMapper, fileService, new FileIngestService(config),
+            blobStorageService, config);
+        
+        when(blobStorageService.allocateTempPath())
+            .thenAnswer(invocation -> tempDir.resolve("staged-" + tempFiles.incrementAndGet() + ".tmp"));
+        when(fileService.getFileExtension(anyString())).thenReturn(".txt");
+        when(uploadTaskMapper.insert(any(FileUploadTask.class))).thenAnswer(invocation -> {
+            task = invocation.getArgument(0);
+            task.setId(1L);
+            return 1;
+        });
+        
+        // 3个分片，最后一个不满
+        content = "应收账款周转率=营业收入/平均应收账款\n".repeat(12000).getBytes(StandardCharsets.UTF_8);
+        content = Arrays.copyOf(content, 2 * CHUNK_SIZE + 1000);
+        
+        ChunkUploadInitDTO dto = new ChunkUploadInitDTO();
+        dto.setFileName("ratio.txt");
+        dto.setFileSize((long) content.length);
+        dto.setContentType("text/plain");
+        dto.setChunkSize(CHUNK_SIZE);
+        Result<ChunkUploadVO> init = service.initUpload(dto, 7L);
+        assertEquals(3, init.getData().getTotalChunks());
+        when(uploadTaskMapper.selectOne(any())).thenReturn(task);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    @Test
+    public void testOutOfOrderChunksAreWrittenAtOffsets() throws Exception {
+        assertEquals(2, upload(2).getData());
+        assertEquals(0, upload(0).getData());
+        
+        Path dir = taskDir();
+        assertArrayEquals(new byte[]{1, 0, 1}, Files.readAllBytes(dir.resolve("chunks.map")));
+        assertEquals(List.of(0, 2), service.getUploadStatus(task.getUploadId(), 7L).getData().getUploadedChunks());
+        
+        // 大小不符的分片不标记
+        Result<Integer> wrongSize = service.uploadChunk(task.getUploadId(), 1,
+            new ByteArrayInputStream(new byte[100]), 7L);
+        assertEquals(ResultCode.BAD_REQUEST.getCode(), wrongSize.getCode());
+        assertEquals(0, Files.readAllBytes(dir.resolve("chunks.map"))[1]);
+        
+        upload(1);
+        assertArrayEquals(content, Files.readAllBytes(dir.resolve("data.part")));
+    }
+    
+    @Test
+    public void testIncompleteOrClaimedUploadIsNotMerged() throws Exception {
+        upload(0);
+        upload(2);
+        Result<FileInfoVO> incomplete = service.completeUpload(task.getUploadId(), 7L);
+        assertEquals(ResultCode.BAD_REQUEST.getCode(), incomplete.getCode());
+        
+        upload(1);
+        // 另一请求已抢占合并
+        when(uploadTaskMapper.update(any(), any())).thenReturn(0);
+        Result<FileInfoVO> claimed = service.completeUpload(task.getUploadId(), 7L);
+        assertEquals(ResultCode.BAD_REQUEST.getCode(), claimed.getCode());
+        verify(blobStorageService, never()).store(any(), anyString(), anyLong(), anyString(), anyString());
+    }
+    
+    @Test
+    public void testFailedMergeCanBeRetried() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            upload(i);
+        }
+        when(uploadTaskMapper.update(any(), any())).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+        
+        // 第一次合并时存储失败，事务回滚
+        when(blobStorageService.store(any(), anyString(), anyLong(), anyString(), anyString()))
+            .thenThrow(new IOException("disk full"));
+        assertThrows(IllegalStateException.class, () -> service.completeUpload(task.getUploadId(), 7L));
+        Path dir = taskDir();
+        assertArrayEquals(content, Files.readAllBytes(dir.resolve("data.part")));
+        assertFalse(Files.exists(tempDir.resolve("staged-1.tmp")));
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+        
+        // 重试成功：存入的是合并文件的完整内容
+        FileBlob blob = new FileBlob();
+        blob.setId(3L);
+        doAnswer(invocation -> {
+            assertArrayEquals(content, Files.readAllBytes(invocation.<Path>getArgument(0)));
+            return blob;
+        }).when(blobStorageService).store(any(), anyString(), anyLong(), anyString(), anyString());
+        FileInfoVO vo = new FileInfoVO();
+        vo.setId(9L);
+        when(fileService.saveFileInfo(eq(7L), eq("ratio.txt"), eq(blob), any(), any(), any())).thenReturn(vo);
+        
+        Result<FileInfoVO> result = service.completeUpload(task.getUploadId(), 7L);
+        assertEquals(9L, result.getData().getId());
+        verify(uploadTaskMapper).deleteById(1L);
+        assertFalse(Files.exists(tempDir.resolve("staged-2.tmp")));
+        
+        // 分片目录在提交后才删除
+        assertTrue(Files.exists(dir));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+        synchronizations.get(0).afterCommit();
+        assertFalse(Files.exists(dir));
+    }
+    
+    private Result<Integer> upload(int chunkIndex) {
+        int from = chunkIndex * CHUNK_SIZE;
+        int to = Math.min(from + CHUNK_SIZE, content.length);
+        return service.uploadChunk(task.getUploadId(), chunkIndex,
+            new ByteArrayInputStream(Arrays.copyOfRange(content, from, to)), 7L);
+    }
+    
+    private Path taskDir() {
+        return tempDir.resolve("uploads").resolve(".chunks").resolve(task.getUploadId());
+    }
+}
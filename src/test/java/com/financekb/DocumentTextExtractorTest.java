@@ -0,0 +1,124 @@
+package com.financekb;
+
+import com.financekb.common.DocumentTextExtractor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.ContentHandler;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文档文本提取测试
+ */
+public class DocumentTextExtractorTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private final DocumentTextExtractor extractor =
+        new DocumentTextExtractor(new AutoDetectParser(), 2, 2, new SimpleMeterRegistry());
+    
+    @Test
+    public void testExtractHtmlKeepsParagraphs() throws Exception {
+        Path file = tempDir.resolve("report.html");
+        Files.writeString(file, "<html><body><h1>季度报告</h1><p>营业收入   增长10%。</p><p>净利润持平。</p></body></html>",
+            StandardCharsets.UTF_8);
+        
+        String text = extractor.extract(file, "report.html", Duration.ofSeconds(10), 10000);
+        
+        assertEquals("季度报告\n营业收入 增长10%。\n净利润持平。", text);
+    }
+    
+    @Test
+    public void testTruncatesAtMaxLength() throws Exception {
+        Path file = tempDir.resolve("long.txt");
+        Files.writeString(file, "财务".repeat(10000), StandardCharsets.UTF_8);
+        
+        String text = extractor.extract(file, "long.txt", Duration.ofSeconds(10), 100);
+        
+        // 结构性换行计入长度后被合并，截断后的正文不超过上限
+        assertTrue(text.length() <= 100 && text.length() > 80, "长度：" + text.length());
+        assertTrue(text.startsWith("财务财务"));
+    }
+    
+    @Test
+    public void testTimeout() throws Exception {
+        Path file = tempDir.resolve("slow.txt");
+        Files.writeString(file, "内容", StandardCharsets.UTF_8);
+        
+        assertThrows(DocumentTextExtractor.ExtractTimeoutException.class,
+            () -> extractor.extract(file, "slow.txt", Duration.ofNanos(-1), 100));
+    }
+    
+    @Test
+    public void testTimeoutWhileParserProducesNoOutput() throws Exception {
+        Path file = tempDir.resolve("stuck.bin");
+        Files.writeString(file, "内容", StandardCharsets.UTF_8);
+        CountDownLatch release = new CountDownLatch(1);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // 模拟卡在解码中、不产生任何输出且不响应中断的解析器
+        Parser stuck = new Parser() {
+            @Override
+            public Set<MediaType> getSupportedTypes(ParseContext context) {
+                return Set.of();
+            }
+            
+            @Override
+            public void parse(InputStream stream, ContentHandler handler,
+                              Metadata metadata, ParseContext context) {
+                while (true) {
+                    try {
+                        release.await();
+                        return;
+                    } catch (InterruptedException e) {
+                        // 忽略中断
+                    }
+                }
+            }
+        };
+        DocumentTextExtractor stuckExtractor = new DocumentTextExtractor(stuck, 1, 1, meterRegistry);
+        
+        long start = System.nanoTime();
+        assertThrows(DocumentTextExtractor.ExtractTimeoutException.class,
+            () -> stuckExtractor.extract(file, "stuck.bin", Duration.ofMillis(200), 100));
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+        assertEquals(1.0, meterRegistry.get("document.extract.stuck").gauge().value());
+        
+        // 滞留线程占满允许数量后，新的提取直接拒绝
+        assertThrows(DocumentTextExtractor.ExtractTimeoutException.class,
+            () -> stuckExtractor.extract(file, "stuck.bin", Duration.ofMillis(200), 100));
+        assertThrows(DocumentTextExtractor.ExtractRejectedException.class,
+            () -> stuckExtractor.extract(file, "stuck.bin", Duration.ofMillis(200), 100));
+        assertEquals(2.0, meterRegistry.get("document.extract.stuck").gauge().value());
+        
+        // 解析结束后滞留数归零
+        release.countDown();
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (meterRegistry.get("document.extract.stuck").gauge().value() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0.0, meterRegistry.get("document.extract.stuck").gauge().value());
+        stuckExtractor.shutdown();
+    }
+    
+    @Test
+    public void testSummarize() {
+        assertEquals("短文本", DocumentTextExtractor.summarize("  短文本 ", 10));
+        assertEquals("第一句话很长很长。", DocumentTextExtractor.summarize("第一句话很长很长。第二句话也很长很长很长", 15));
+        assertEquals("abcde…", DocumentTextExtractor.summarize("abcdefghij", 5));
+    }
+}
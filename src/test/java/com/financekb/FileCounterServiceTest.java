@@ -0,0 +1,113 @@
+package com.financekb;
+
+import com.financekb.config.FileConfig;
+import com.financekb.dto.FileCounterDelta;
+import com.financekb.mapper.FileInfoMapper;
+import com.financekb.service.FileCounterService;
+import com.financekb.vo.FileInfoVO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * 计数聚合回写测试
+ */
+public class FileCounterServiceTest {
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlushAggregatesDeltas() {
+        FileInfoMapper mapper = mock(FileInfoMapper.class);
+        List<FileCounterDelta> written = new ArrayList<>();
+        when(mapper.incrementCounters(anyList())).thenAnswer(invocation -> {
+            written.addAll(invocation.getArgument(0));
+            return 1;
+        });
+        FileCounterService service = new FileCounterService(mapper, new FileConfig());
+        
+        for (int i = 0; i < 3; i++) {
+            service.incrementDownload(1L);
+        }
+        service.incrementView(1L);
+        service.incrementView(2L);
+        
+        FileInfoVO vo = new FileInfoVO();
+        vo.setId(1L);
+        vo.setDownloadCount(10);
+        service.applyPending(vo);
+        assertEquals(13, vo.getDownloadCount());
+        assertEquals(1, vo.getViewCount());
+        
+        service.flush();
+        
+        verify(mapper, times(1)).incrementCounters(anyList());
+        assertEquals(2, written.size());
+        FileCounterDelta first = written.stream().filter(d -> d.getFileId() == 1L).findFirst().orElseThrow();
+        assertEquals(3L, first.getDownloadDelta());
+        assertEquals(1L, first.getViewDelta());
+        
+        // 回写后不再重复计入
+        FileInfoVO flushed = new FileInfoVO();
+        flushed.setId(1L);
+        flushed.setDownloadCount(13);
+        service.applyPending(flushed);
+        assertEquals(13, flushed.getDownloadCount());
+    }
+    
+    @Test
+    public void testFailedFlushIsRetried() {
+        FileInfoMapper mapper = mock(FileInfoMapper.class);
+        when(mapper.incrementCounters(anyList()))
+            .thenThrow(new RuntimeException("db down"))
+            .thenReturn(1);
+        FileCounterService service = new FileCounterService(mapper, new FileConfig());
+        
+        service.incrementDownload(1L);
+        service.flush();
+        service.incrementDownload(1L);
+        
+        FileInfoVO vo = new FileInfoVO();
+        vo.setId(1L);
+        service.applyPending(vo);
+        assertEquals(2, vo.getDownloadCount());
+        
+        service.flush();
+        verify(mapper, times(2)).incrementCounters(anyList());
+        FileInfoVO after = new FileInfoVO();
+        after.setId(1L);
+        service.applyPending(after);
+        assertNull(after.getDownloadCount());
+    }
+    
+    @Test
+    public void testDeltasInFlightAreVisibleOnce() {
+        FileInfoMapper mapper = mock(FileInfoMapper.class);
+        FileCounterService service = new FileCounterService(mapper, new FileConfig());
+        List<Integer> seen = new ArrayList<>();
+        when(mapper.incrementCounters(anyList())).thenAnswer(invocation -> {
+            // 回写进行中：已取出的增量计入一次，回写期间的新增同样计入
+            service.incrementDownload(1L);
+            FileInfoVO vo = new FileInfoVO();
+            vo.setId(1L);
+            service.applyPending(vo);
+            seen.add(vo.getDownloadCount());
+            throw new RuntimeException("db down");
+        });
+        
+        service.incrementDownload(1L);
+        service.incrementDownload(1L);
+        service.flush();
+        assertEquals(List.of(3), seen);
+        
+        // 失败的增量放回后与新增合并，不重复计入
+        FileInfoVO vo = new FileInfoVO();
+        vo.setId(1L);
+        service.applyPending(vo);
+        assertEquals(3, vo.getDownloadCount());
+    }
+}
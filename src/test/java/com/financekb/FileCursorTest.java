@@ -0,0 +1,26 @@
+package com.financekb;
+
+import com.financekb.common.BusinessException;
+import com.financekb.service.FileService;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 游标分页编码测试
+ */
+public class FileCursorTest {
+    
+    @Test
+    public void testCursorRoundTrip() {
+        String cursor = FileService.encodeCursor(1700000000L, 123456789L);
+        assertFalse(cursor.contains("="));
+        assertArrayEquals(new long[]{1700000000L, 123456789L}, FileService.decodeCursor(cursor));
+    }
+    
+    @Test
+    public void testInvalidCursor() {
+        assertThrows(BusinessException.class, () -> FileService.decodeCursor("not a cursor!"));
+        assertThrows(BusinessException.class, () -> FileService.decodeCursor("MTIz"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.financekb;
+
+import com.financekb.entity.FileFacetCount;
+import com.financekb.mapper.FileFacetCountMapper;
+import com.financekb.mapper.FileInfoMapper;
+import com.financekb.service.FileFacetService;
+import com.financekb.vo.FacetCountVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 文件分面计数测试
+ */
+@SuppressWarnings("unchecked")
+public class FileFacetServiceTest {
+    
+    private final FileFacetCountMapper fileFacetCountMapper = mock(FileFacetCountMapper.class);
+    private final FileInfoMapper fileInfoMapper = mock(FileInfoMapper.class);
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+    private final ValueOperations<String, Object> valueOperations = mock(ValueOperations.class);
+    
+    private FileFacetService service;
+    
+    @BeforeEach
+    public void setUp() {
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(hashOperations.entries(anyString())).thenReturn(Map.of());
+        service = new FileFacetService(fileFacetCountMapper, fileInfoMapper, redisTemplate);
+    }
+    
+    @Test
+    public void testFillIsSkippedWhenEvictedDuringQuery() {
+        when(fileFacetCountMapper.selectList(any())).thenReturn(List.of(cell("报表", "pdf", "application/pdf", 3)));
+        // 查库前代数为0，写入前已被失效递增为1
+        when(valueOperations.get("file:facet:gen:1")).thenReturn(0);
+        RedisOperations<String, Object> operations = mock(RedisOperations.class);
+        ValueOperations<String, Object> sessionValues = mock(ValueOperations.class);
+        when(operations.opsForValue()).thenReturn(sessionValues);
+        when(sessionValues.get("file:facet:gen:1")).thenReturn(1);
+        when(redisTemplate.execute(any(SessionCallback.class)))
+            .thenAnswer(invocation -> ((SessionCallback<Object>) invocation.getArgument(0)).execute(operations));
+        
+        FacetCountVO facets = service.getFacets(1L, null, null);
+        
+        assertEquals(3L, facets.getCategories().get("报表"));
+        verify(operations).watch("file:facet:gen:1");
+        verify(operations).unwatch();
+        verify(operations, never()).multi();
+        verify(operations, never()).opsForHash();
+    }
+    
+    @Test
+    public void testFilteredFacetsAreCountedFromFiles() {
+        when(fileInfoMapper.selectFacetCounts(any())).thenReturn(List.of(
+            cell("报表", "PDF", "application/pdf", 2),
+            cell("报表", "pdf", "application/pdf", 1),
+            cell(null, "xlsx", null, 4)));
+        
+        FacetCountVO facets = service.getFacets(1L, "报表", wrapper -> wrapper.apply("1 = 1"));
+        
+        assertEquals(Map.of("报表", 3L), facets.getCategories());
+        assertEquals(Map.of("pdf", 3L), facets.getFileExts());
+        verifyNoInteractions(fileFacetCountMapper);
+        verify(redisTemplate, never()).opsForHash();
+    }
+    
+    private static FileFacetCount cell(String category, String fileExt, String fileType, int count) {
+        FileFacetCount cell = new FileFacetCount();
+        cell.setCategory(category);
+        cell.setFileExt(fileExt);
+        cell.setFileType(fileType);
+        cell.setFileCount(count);
+        return cell;
+    }
+}
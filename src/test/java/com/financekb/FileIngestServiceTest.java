@@ -0,0 +1,78 @@
+package com.financekb;
+
+import com.financekb.common.BusinessException;
+import com.financekb.common.ResultCode;
+import com.financekb.config.FileConfig;
+import com.financekb.service.FileIngestService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式入库测试
+ */
+public class FileIngestServiceTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private FileIngestService newService() {
+        FileConfig config = new FileConfig();
+        config.setAllowedTypes(List.of("text/plain", "image/png", "video/avi"));
+        return new FileIngestService(config);
+    }
+    
+    @Test
+    public void testIngestComputesHashAndSize() throws Exception {
+        byte[] content = "财务报表说明\n".repeat(20000).getBytes(StandardCharsets.UTF_8);
+        Path target = tempDir.resolve("a.txt");
+        
+        FileIngestService.IngestResult result = newService()
+            .ingest(new ByteArrayInputStream(content), "a.txt", target, 10 * 1024 * 1024);
+        
+        String expectedHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertEquals("text/plain", result.getFileType());
+        assertEquals(expectedHash, result.getFileHash());
+        assertEquals(content.length, result.getFileSize());
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+    
+    @Test
+    public void testRejectDisguisedTypeBeforeWrite() {
+        byte[] content = "<html><body><script>alert(1)</script></body></html>".getBytes(StandardCharsets.UTF_8);
+        Path target = tempDir.resolve("b.txt");
+        
+        BusinessException e = assertThrows(BusinessException.class, () -> newService()
+            .ingest(new ByteArrayInputStream(content), "b.txt", target, 1024));
+        assertEquals(ResultCode.FILE_TYPE_NOT_ALLOWED.getCode(), e.getCode());
+        assertFalse(Files.exists(target));
+    }
+    
+    @Test
+    public void testRejectOversizedStream() {
+        byte[] content = "x".repeat(200 * 1024).getBytes(StandardCharsets.UTF_8);
+        Path target = tempDir.resolve("c.txt");
+        
+        BusinessException e = assertThrows(BusinessException.class, () -> newService()
+            .ingest(new ByteArrayInputStream(content), "c.txt", target, 100 * 1024));
+        assertEquals(ResultCode.FILE_SIZE_EXCEEDED.getCode(), e.getCode());
+        assertFalse(Files.exists(target));
+    }
+    
+    @Test
+    public void testAllowedTypeAliases() {
+        FileIngestService service = newService();
+        assertTrue(service.isAllowedType("video/x-msvideo"));
+        assertFalse(service.isAllowedType("text/html"));
+        assertFalse(service.isAllowedType(null));
+    }
+}
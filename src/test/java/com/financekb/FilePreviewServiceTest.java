@@ -0,0 +1,182 @@
+package com.financekb;
+
+import com.financekb.common.FileMetadataCache;
+import com.financekb.config.FileConfig;
+import com.financekb.service.FilePreviewService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文件预览图测试
+ */
+public class FilePreviewServiceTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
+    private FileConfig fileConfig;
+    
+    private ThreadPoolTaskExecutor executor;
+    
+    private FilePreviewService service;
+    
+    @BeforeEach
+    public void setUp() {
+        fileConfig = new FileConfig();
+        fileConfig.setUploadPath(tempDir.resolve("uploads").toString());
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.initialize();
+        service = new FilePreviewService(fileConfig, executor, new FileMetadataCache(fileConfig), meterRegistry);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+    
+    @Test
+    public void testImageIsScaledIntoShardedCache() throws Exception {
+        Path source = upload("blobs/ab/abcdef.png");
+        BufferedImage original = new BufferedImage(1600, 800, BufferedImage.TYPE_INT_ARGB);
+        ImageIO.write(original, "png", source.toFile());
+        
+        Path thumb = service.getVariant(source, "thumb");
+        assertNotNull(thumb);
+        BufferedImage image = ImageIO.read(thumb.toFile());
+        assertEquals(200, image.getWidth());
+        assertEquals(100, image.getHeight());
+        
+        // uploads/previews/{2位}/{2位}/{hash}_thumb.jpg
+        Path relative = tempDir.resolve("uploads").resolve("previews").relativize(thumb);
+        assertEquals(3, relative.getNameCount());
+        assertTrue(relative.getFileName().toString().startsWith(relative.getName(0).toString() + relative.getName(1)));
+        assertTrue(relative.getFileName().toString().endsWith("_thumb.jpg"));
+        
+        // 第二次直接命中缓存，不同规格分别缓存
+        assertEquals(thumb, service.getVariant(source, "thumb"));
+        assertEquals(1.0, meterRegistry.counter("file.preview.cache", "result", "hit").count());
+        Path medium = service.getVariant(source, "medium");
+        assertNotEquals(thumb, medium);
+        assertEquals(800, ImageIO.read(medium.toFile()).getWidth());
+    }
+    
+    @Test
+    public void testSmallImageIsNotUpscaled() throws Exception {
+        Path source = upload("blobs/cd/cdef.png");
+        ImageIO.write(new BufferedImage(120, 60, BufferedImage.TYPE_INT_RGB), "png", source.toFile());
+        
+        BufferedImage image = ImageIO.read(service.getVariant(source, "thumb").toFile());
+        assertEquals(120, image.getWidth());
+        assertEquals(60, image.getHeight());
+    }
+    
+    @Test
+    public void testPdfAndSheetFirstPage() throws Exception {
+        Path pdf = upload("blobs/ef/ef01.pdf");
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage(PDRectangle.A4));
+            document.addPage(new PDPage(PDRectangle.A4));
+            document.save(pdf.toFile());
+        }
+        BufferedImage page = ImageIO.read(service.getVariant(pdf, "thumb").toFile());
+        assertEquals(200, page.getHeight());
+        assertTrue(page.getWidth() < page.getHeight());
+        
+        Path xlsx = upload("blobs/ef/ef02.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(xlsx)) {
+            XSSFSheet sheet = workbook.createSheet("收入");
+            sheet.createRow(0).createCell(0).setCellValue("营业收入");
+            sheet.createRow(1).createCell(0).setCellValue(12345.67);
+            workbook.write(out);
+        }
+        BufferedImage sheet = ImageIO.read(service.getVariant(xlsx, "thumb").toFile());
+        assertEquals(200, sheet.getWidth());
+    }
+    
+    @Test
+    public void testUnsupportedAndBrokenFilesHaveNoVariant() throws Exception {
+        Path text = upload("blobs/01/0123.txt");
+        Files.writeString(text, "hello");
+        assertNull(service.getVariant(text, "thumb"));
+        assertFalse(service.isVariant("huge"));
+        assertNull(service.getVariant(text, "huge"));
+        
+        Path broken = upload("blobs/01/0124.pdf");
+        Files.writeString(broken, "not a pdf");
+        assertNull(service.getVariant(broken, "thumb"));
+        assertNull(service.getVariant(broken, "thumb"));
+        assertEquals(1.0, meterRegistry.counter("file.preview.failed", "type", "pdf").count());
+    }
+    
+    @Test
+    public void testEvictRemovesAllVariants() throws Exception {
+        Path source = upload("blobs/ab/abab.png");
+        ImageIO.write(new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB), "png", source.toFile());
+        Path thumb = service.getVariant(source, "thumb");
+        Path medium = service.getVariant(source, "medium");
+        
+        service.evict(source);
+        assertFalse(Files.exists(thumb));
+        assertFalse(Files.exists(medium));
+    }
+    
+    @Test
+    public void testBusyExecutorDoesNotRenderOnRequestThread() throws Exception {
+        Path source = upload("blobs/ba/babe.png");
+        ImageIO.write(new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB), "png", source.toFile());
+        CountDownLatch release = new CountDownLatch(1);
+        // 占满线程和队列
+        for (int i = 0; i < 2; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        
+        // 线程池已满：不在请求线程生成，直接返回
+        assertNull(service.getVariant(source, "thumb"));
+        assertEquals(1.0, meterRegistry.counter("file.preview.rejected").count());
+        
+        release.countDown();
+        Path thumb = null;
+        for (int i = 0; i < 100 && thumb == null; i++) {
+            thumb = service.getVariant(source, "thumb");
+            if (thumb == null) {
+                Thread.sleep(20);
+            }
+        }
+        assertNotNull(thumb);
+    }
+    
+    private Path upload(String relativePath) throws Exception {
+        Path path = tempDir.resolve("uploads").resolve(relativePath);
+        Files.createDirectories(path.getParent());
+        return path;
+    }
+}
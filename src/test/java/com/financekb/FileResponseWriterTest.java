@@ -0,0 +1,219 @@
+package com.financekb;
+
+import com.financekb.common.FileMetadataCache;
+import com.financekb.common.FileResponseWriter;
+import com.financekb.config.FileConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文件分段输出测试
+ */
+public class FileResponseWriterTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private Path file;
+    
+    private final FileConfig fileConfig = new FileConfig();
+    
+    private final FileResponseWriter writer = new FileResponseWriter(fileConfig, new FileMetadataCache(fileConfig));
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        file = tempDir.resolve("a.txt");
+        Files.writeString(file, "0123456789", StandardCharsets.US_ASCII);
+    }
+    
+    @Test
+    public void testParseRanges() {
+        assertNull(FileResponseWriter.parseRanges(null, 10));
+        assertNull(FileResponseWriter.parseRanges("items=0-1", 10));
+        assertNull(FileResponseWriter.parseRanges("bytes=5-3", 10));
+        assertTrue(FileResponseWriter.parseRanges("bytes=20-", 10).isEmpty());
+        
+        List<long[]> ranges = FileResponseWriter.parseRanges("bytes=0-1, 4-5, -3", 10);
+        assertEquals(3, ranges.size());
+        assertArrayEquals(new long[]{0, 1}, ranges.get(0));
+        assertArrayEquals(new long[]{4, 5}, ranges.get(1));
+        assertArrayEquals(new long[]{7, 9}, ranges.get(2));
+    }
+    
+    @Test
+    public void testParseRangesCoalescesOverlaps() {
+        // 重叠、相邻和乱序的范围合并后按起点升序返回
+        List<long[]> ranges = FileResponseWriter.parseRanges("bytes=8-9, 0-1, 4-, -3, 2-2", 10);
+        assertEquals(2, ranges.size());
+        assertArrayEquals(new long[]{0, 2}, ranges.get(0));
+        assertArrayEquals(new long[]{4, 9}, ranges.get(1));
+        
+        String repeated = "bytes=" + String.join(",", Collections.nCopies(16, "0-"));
+        ranges = FileResponseWriter.parseRanges(repeated, 10);
+        assertEquals(1, ranges.size());
+        assertArrayEquals(new long[]{0, 9}, ranges.get(0));
+    }
+    
+    @Test
+    public void testOverlappingRangesAreSentOnce() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=0-,0-,0-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        writer.write(request, response, file, "text/plain");
+        
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 0-9/10", response.getHeader("Content-Range"));
+        assertEquals("0123456789", response.getContentAsString());
+    }
+    
+    @Test
+    public void testFullContent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        writer.write(request, response, file, "text/plain");
+        
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals("0123456789", response.getContentAsString());
+    }
+    
+    @Test
+    public void testSingleRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=2-5");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        writer.write(request, response, file, "text/plain");
+        
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+        assertEquals("2345", response.getContentAsString());
+    }
+    
+    @Test
+    public void testMultipleRanges() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=0-1,8-9");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        writer.write(request, response, file, "text/plain");
+        
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String body = response.getContentAsString();
+        assertTrue(body.contains("Content-Range: bytes 0-1/10\r\n\r\n01"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89"));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLengthLong());
+    }
+    
+    @Test
+    public void testSendfileWhenConnectorSupportsIt() throws Exception {
+        Path largeFile = tempDir.resolve("large.bin");
+        Files.write(largeFile, new byte[100 * 1024]);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=1024-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        writer.write(request, response, largeFile, "application/octet-stream");
+        
+        assertEquals(206, response.getStatus());
+        assertEquals(100 * 1024 - 1024, response.getContentLengthLong());
+        assertEquals(largeFile.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(1024L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(100L * 1024, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+    
+    @Test
+    public void testNotModified() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        writer.write(request, response, file, "text/plain");
+        String etag = response.getHeader("ETag");
+        long lastModified = response.getDateHeader("Last-Modified");
+        
+        MockHttpServletRequest etagRequest = new MockHttpServletRequest("GET", "/");
+        etagRequest.addHeader("If-None-Match", "\"other\", W/" + etag);
+        MockHttpServletResponse etagResponse = new MockHttpServletResponse();
+        assertEquals(304, writer.write(etagRequest, etagResponse, file, "text/plain"));
+        assertEquals(etag, etagResponse.getHeader("ETag"));
+        assertEquals(0, etagResponse.getContentAsByteArray().length);
+        
+        MockHttpServletRequest dateRequest = new MockHttpServletRequest("GET", "/");
+        dateRequest.addHeader("If-Modified-Since", lastModified);
+        assertEquals(304, writer.write(dateRequest, new MockHttpServletResponse(), file, "text/plain"));
+        
+        // If-None-Match 不匹配时忽略 If-Modified-Since
+        MockHttpServletRequest mismatchRequest = new MockHttpServletRequest("GET", "/");
+        mismatchRequest.addHeader("If-None-Match", "\"other\"");
+        mismatchRequest.addHeader("If-Modified-Since", lastModified);
+        assertEquals(200, writer.write(mismatchRequest, new MockHttpServletResponse(), file, "text/plain"));
+    }
+    
+    @Test
+    public void testDeletedFileAfterCached() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        assertEquals(200, writer.write(request, new MockHttpServletResponse(), file, "text/plain"));
+        
+        Files.delete(file);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertEquals(404, writer.write(request, response, file, "text/plain"));
+        assertEquals(404, writer.write(request, new MockHttpServletResponse(), file, "text/plain"));
+    }
+    
+    @Test
+    public void testUnsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=100-200");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        writer.write(request, response, file, "text/plain");
+        
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+    }
+    
+    @Test
+    public void testIfRangeMismatchReturnsFullContent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=2-5");
+        request.addHeader("If-Range", "\"stale-etag\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        writer.write(request, response, file, "text/plain");
+        
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+    
+    @Test
+    public void testIfRangeMatchReturnsPartialContent() throws Exception {
+        MockHttpServletRequest first = new MockHttpServletRequest("GET", "/");
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        writer.write(first, firstResponse, file, "text/plain");
+        
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=2-5");
+        request.addHeader("If-Range", firstResponse.getHeader("ETag"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        writer.write(request, response, file, "text/plain");
+        
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString());
+    }
+}
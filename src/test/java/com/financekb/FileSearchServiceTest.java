@@ -0,0 +1,109 @@
+package com.financekb;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.financekb.config.FileConfig;
+import com.financekb.entity.FileInfo;
+import com.financekb.mapper.FileInfoMapper;
+import com.financekb.service.FileSearchService;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.UncategorizedSQLException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 全文搜索查询构建测试
+ */
+public class FileSearchServiceTest {
+    
+    @Test
+    public void testBuildBooleanQuery() {
+        assertEquals("+\"财务报表\"", FileSearchService.buildBooleanQuery("财务报表", 2));
+        assertEquals("+\"2023\" +\"年度预算\"", FileSearchService.buildBooleanQuery("  2023   年度预算 ", 2));
+        // 引号被去除，避免破坏短语
+        assertEquals("+\"审计报告\"", FileSearchService.buildBooleanQuery("\"审计\"报告", 2));
+        // 运算符在短语内不生效，原样保留
+        assertEquals("+\"-税务+\"", FileSearchService.buildBooleanQuery("-税务+", 2));
+    }
+    
+    @Test
+    public void testShortKeywordFallsBack() {
+        assertNull(FileSearchService.buildBooleanQuery("税", 2));
+        assertNull(FileSearchService.buildBooleanQuery("发票 税", 2));
+        assertNull(FileSearchService.buildBooleanQuery("\"\"", 2));
+        assertNotNull(FileSearchService.buildBooleanQuery("税", 1));
+    }
+    
+    @Test
+    public void testMissingIndexFallsBackOnce() {
+        FileInfoMapper mapper = mock(FileInfoMapper.class);
+        when(mapper.countFullTextIndex()).thenReturn(1);
+        when(mapper.searchFullText(any(), anyLong(), anyString(), any(), anyList(), anyBoolean(), anyInt()))
+            .thenThrow(new UncategorizedSQLException("search", "MATCH",
+                new SQLException("Can't find FULLTEXT index matching the column list", "HY000", 1191)));
+        FileSearchService service = new FileSearchService(mapper, new FileConfig());
+        
+        assertNull(service.search(new Page<>(1, 10), 1L, "财务报表", null, List.of(), false));
+        // 标记为不可用后不再尝试全文查询，也不重复检查索引
+        assertNull(service.search(new Page<>(1, 10), 1L, "财务报表", null, List.of(), false));
+        verify(mapper, times(1)).searchFullText(any(), anyLong(), anyString(), any(), anyList(), anyBoolean(), anyInt());
+        verify(mapper, times(1)).countFullTextIndex();
+    }
+    
+    @Test
+    public void testOtherSqlErrorsAreNotHidden() {
+        FileInfoMapper mapper = mock(FileInfoMapper.class);
+        when(mapper.countFullTextIndex()).thenReturn(1);
+        when(mapper.searchFullText(any(), anyLong(), anyString(), any(), anyList(), anyBoolean(), anyInt()))
+            .thenThrow(new BadSqlGrammarException("search", "SELECT",
+                new SQLException("Unknown column 'scor' in 'order clause'", "42S22", 1054)));
+        FileSearchService service = new FileSearchService(mapper, new FileConfig());
+        
+        assertThrows(BadSqlGrammarException.class,
+            () -> service.search(new Page<>(1, 10), 1L, "财务报表", null, List.of(), false));
+    }
+    
+    @Test
+    public void testKeywordQueryRetriesWithLikeWhenIndexMissing() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), FileInfo.class);
+        FileInfoMapper mapper = mock(FileInfoMapper.class);
+        when(mapper.countFullTextIndex()).thenReturn(1);
+        FileSearchService service = new FileSearchService(mapper, new FileConfig());
+        List<String> executed = new ArrayList<>();
+        
+        String result = service.queryWithKeyword("财务报表", keywordFilter -> {
+            LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+            keywordFilter.accept(wrapper);
+            String sql = wrapper.getSqlSegment();
+            executed.add(sql);
+            if (sql.contains("MATCH")) {
+                throw new UncategorizedSQLException("list", sql,
+                    new SQLException("Can't find FULLTEXT index matching the column list", "HY000", 1191));
+            }
+            return "like";
+        });
+        
+        assertEquals("like", result);
+        assertEquals(2, executed.size());
+        assertTrue(executed.get(1).contains("LIKE"));
+        // 已标记为不可用，后续查询直接使用LIKE
+        service.queryWithKeyword("财务报表", keywordFilter -> {
+            LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+            keywordFilter.accept(wrapper);
+            executed.add(wrapper.getSqlSegment());
+            return null;
+        });
+        assertEquals(3, executed.size());
+        assertFalse(executed.get(2).contains("MATCH"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.financekb;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.financekb.entity.FileInfo;
+import com.financekb.service.FileTagService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文件标签测试
+ */
+public class FileTagServiceTest {
+    
+    @Test
+    public void testNormalizeTags() {
+        assertEquals(List.of("税务", "Tax", "审计"), FileTagService.normalizeTags(" 税务, Tax ，tax,, 审计 ,税务"));
+        assertTrue(FileTagService.normalizeTags(null).isEmpty());
+        assertTrue(FileTagService.normalizeTags(" , ").isEmpty());
+    }
+    
+    @Test
+    public void testTagFilterUsesBoundParameters() {
+        FileTagService service = new FileTagService(null);
+        
+        LambdaQueryWrapper<FileInfo> all = new LambdaQueryWrapper<>();
+        service.applyTagFilter(all, 1L, List.of("税务", "审计' OR 1=1 --"), true);
+        String allSql = all.getSqlSegment();
+        assertTrue(allSql.contains("GROUP BY file_id HAVING COUNT(*) ="));
+        assertFalse(allSql.contains("OR 1=1"));
+        assertTrue(all.getParamNameValuePairs().containsValue("审计' OR 1=1 --"));
+        assertTrue(all.getParamNameValuePairs().containsValue(2));
+        
+        LambdaQueryWrapper<FileInfo> any = new LambdaQueryWrapper<>();
+        service.applyTagFilter(any, 1L, List.of("税务", "审计"), false);
+        assertFalse(any.getSqlSegment().contains("HAVING"));
+    }
+}
@@ -0,0 +1,144 @@
+package com.financekb;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 文件下载传输方式对比
+ * 在本机回环连接上比较 InputStream.transferTo（经堆缓冲区复制）与 FileChannel.transferTo（sendfile零拷贝）
+ * 的吞吐量（MB/s）和发送线程每GB消耗的CPU时间。
+ * 类名不以Test结尾，不随构建执行，需要时手动运行：
+ * mvn test -Dtest=FileTransferBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+ */
+public class FileTransferBenchmark {
+
+    private static final long FILE_SIZE = 512L * 1024 * 1024;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void compareStreamCopyAndZeroCopy() throws Exception {
+        Path file = Files.createTempFile("transfer-benchmark", ".bin");
+        ExecutorService receiver = Executors.newSingleThreadExecutor();
+        try {
+            prepareFile(file);
+
+            // 预热，保证文件进入页缓存、JIT完成编译
+            run("warmup-stream", file, receiver, this::streamCopy);
+            run("warmup-zero-copy", file, receiver, this::zeroCopy);
+
+            System.out.println("========================================");
+            System.out.printf("文件大小: %d MB, 轮数: %d%n", FILE_SIZE / 1024 / 1024, ROUNDS);
+            System.out.println("========================================");
+            report("stream copy", run("stream", file, receiver, this::streamCopy));
+            report("zero copy  ", run("zero-copy", file, receiver, this::zeroCopy));
+        } finally {
+            receiver.shutdownNow();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private long[] run(String name, Path file, ExecutorService receiver, Sender sender) throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long totalNanos = 0;
+        long totalCpuNanos = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            try (ServerSocketChannel server = ServerSocketChannel.open()) {
+                server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                Future<Long> received = receiver.submit(() -> drain(server.getLocalAddress()));
+                try (SocketChannel socket = server.accept()) {
+                    long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+                    long start = System.nanoTime();
+                    sender.send(file, socket);
+                    socket.shutdownOutput();
+                    long bytes = received.get();
+                    totalNanos += System.nanoTime() - start;
+                    totalCpuNanos += threadMXBean.getCurrentThreadCpuTime() - cpuStart;
+                    if (bytes != FILE_SIZE) {
+                        throw new IllegalStateException(name + " 传输字节数不一致: " + bytes);
+                    }
+                }
+            }
+        }
+        return new long[]{totalNanos, totalCpuNanos};
+    }
+
+    private void report(String name, long[] result) {
+        double totalMb = (double) FILE_SIZE * ROUNDS / 1024 / 1024;
+        double seconds = result[0] / 1_000_000_000.0;
+        double cpuMsPerGb = result[1] / 1_000_000.0 / (totalMb / 1024);
+        System.out.printf("%s  吞吐量: %8.1f MB/s  发送线程CPU: %8.1f ms/GB%n", name, totalMb / seconds, cpuMsPerGb);
+    }
+
+    /**
+     * 现有实现：经堆缓冲区从文件流复制到socket流
+     */
+    private void streamCopy(Path file, SocketChannel socket) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            OutputStream outputStream = Channels.newOutputStream(socket);
+            inputStream.transferTo(outputStream);
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * 零拷贝：由内核从页缓存直接写入socket
+     */
+    private void zeroCopy(Path file, SocketChannel socket) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = channel.size();
+            while (position < size) {
+                position += channel.transferTo(position, size - position, socket);
+            }
+        }
+    }
+
+    private long drain(SocketAddress address) throws IOException {
+        try (SocketChannel socket = SocketChannel.open(address)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+            long total = 0;
+            int read;
+            while ((read = socket.read(buffer)) != -1) {
+                total += read;
+                buffer.clear();
+            }
+            return total;
+        }
+    }
+
+    private void prepareFile(Path file) throws IOException {
+        byte[] block = new byte[1024 * 1024];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (byte) (i * 31);
+        }
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            for (long written = 0; written < FILE_SIZE; written += block.length) {
+                outputStream.write(block);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Sender {
+        void send(Path file, SocketChannel socket) throws IOException;
+    }
+}
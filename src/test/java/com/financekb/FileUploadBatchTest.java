@@ -0,0 +1,139 @@
+package com.financekb;
+
+import com.financekb.common.FileMetadataCache;
+import com.financekb.common.Result;
+import com.financekb.common.ResultCode;
+import com.financekb.config.FileConfig;
+import com.financekb.entity.FileBlob;
+import com.financekb.mapper.FileInfoMapper;
+import com.financekb.service.BlobStorageService;
+import com.financekb.service.DocumentExtractService;
+import com.financekb.service.FileCounterService;
+import com.financekb.service.FileFacetService;
+import com.financekb.service.FileIngestService;
+import com.financekb.service.FilePreviewService;
+import com.financekb.service.FileSearchService;
+import com.financekb.service.FileService;
+import com.financekb.service.FileTagService;
+import com.financekb.vo.FileInfoVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 批量上传测试
+ */
+public class FileUploadBatchTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private final FileInfoMapper fileInfoMapper = mock(FileInfoMapper.class);
+    private final BlobStorageService blobStorageService = mock(BlobStorageService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final FileTagService fileTagService = mock(FileTagService.class);
+    private final FileFacetService fileFacetService = mock(FileFacetService.class);
+    private final DocumentExtractService documentExtractService = mock(DocumentExtractService.class);
+    private final FilePreviewService filePreviewService = mock(FilePreviewService.class);
+    private final Set<String> storeThreads = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger tempFiles = new AtomicInteger();
+    private final AtomicLong blobIds = new AtomicLong();
+    
+    private ThreadPoolTaskExecutor executor;
+    private FileService service;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        FileConfig config = new FileConfig();
+        config.setUploadPath(tempDir.toString());
+        config.setAllowedTypes(List.of("text/plain"));
+        
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setThreadNamePrefix("upload-test-");
+        executor.initialize();
+        
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        service = new FileService(fileInfoMapper, config, new FileIngestService(config), blobStorageService,
+            new TransactionTemplate(transactionManager), executor, mock(FileMetadataCache.class),
+            mock(FileCounterService.class), mock(FileSearchService.class), fileTagService, fileFacetService,
+            documentExtractService, filePreviewService);
+        
+        when(blobStorageService.allocateTempPath())
+            .thenAnswer(invocation -> tempDir.resolve("staged-" + tempFiles.incrementAndGet() + ".tmp"));
+        when(blobStorageService.store(any(Path.class), anyString(), anyLong(), anyString(), anyString()))
+            .thenAnswer(invocation -> {
+                storeThreads.add(Thread.currentThread().getName());
+                FileBlob blob = new FileBlob();
+                blob.setId(blobIds.incrementAndGet());
+                blob.setFileHash(invocation.getArgument(1));
+                blob.setFileSize(invocation.getArgument(2));
+                blob.setFileType(invocation.getArgument(3));
+                blob.setFilePath(tempDir.resolve("blobs").resolve(blob.getFileHash()).toString());
+                blob.setRefCount(1);
+                return blob;
+            });
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+    
+    @Test
+    public void testBatchUploadStoresOnExecutorAndInsertsOnce() {
+        Result<List<FileInfoVO>> result = service.uploadFiles(new MultipartFile[]{
+            text("a.txt", "alpha"), text("b.txt", "beta"), text("empty.txt", "")
+        }, 1L, "report", "q1", null);
+        
+        assertEquals(200, result.getCode());
+        assertEquals(List.of("a.txt", "b.txt"), result.getData().stream().map(FileInfoVO::getFileName).toList());
+        assertTrue(result.getMessage().contains("1 个文件失败"));
+        assertFalse(storeThreads.isEmpty());
+        assertTrue(storeThreads.stream().allMatch(name -> name.startsWith("upload-test-")), storeThreads.toString());
+        verify(fileInfoMapper).insertBatch(argThat(list -> list.size() == 2));
+        verify(blobStorageService, never()).release(anyLong());
+    }
+    
+    @Test
+    public void testFailedMetadataTransactionReleasesBlobs() {
+        doThrow(new RuntimeException("db down")).when(fileInfoMapper).insertBatch(anyList());
+        
+        Result<List<FileInfoVO>> result = service.uploadFiles(new MultipartFile[]{
+            text("a.txt", "alpha"), text("b.txt", "beta"), text("empty.txt", "")
+        }, 1L, "report", null, null);
+        
+        assertEquals(ResultCode.FILE_UPLOAD_FAILED.getCode(), result.getCode());
+        // 空文件的存储事务和文件信息事务各回滚一次，补偿事务释放已存入的两个存储对象
+        verify(transactionManager, times(2)).rollback(any());
+        verify(blobStorageService).release(1L);
+        verify(blobStorageService).release(2L);
+        verify(blobStorageService, times(2)).release(anyLong());
+        verify(documentExtractService, never()).submit(anyList());
+        verify(filePreviewService, never()).submit(anyList());
+    }
+    
+    private MockMultipartFile text(String name, String content) {
+        return new MockMultipartFile("files", name, "text/plain", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,188 @@
+package com.financekb;
+
+import com.financekb.vector.HashingEmbeddingProvider;
+import com.financekb.vector.HnswIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HNSW向量索引测试
+ */
+public class HnswIndexTest {
+    
+    private static final int DIMENSION = 32;
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    public void testRecallAgainstBruteForce() throws Exception {
+        float[][] vectors = randomVectors(5000, 1);
+        try (HnswIndex index = HnswIndex.open(directory, DIMENSION, 16, 100)) {
+            for (int i = 0; i < vectors.length; i++) {
+                index.upsert(i, vectors[i]);
+            }
+            
+            float[][] queries = randomVectors(50, 2);
+            int found = 0;
+            for (float[] query : queries) {
+                Set<Long> expected = bruteForce(vectors, query, 10);
+                for (HnswIndex.SearchResult result : index.search(query, 10, 64)) {
+                    if (expected.contains(result.getId())) {
+                        found++;
+                    }
+                }
+            }
+            double recall = found / (queries.length * 10.0);
+            assertTrue(recall > 0.9, "召回率过低：" + recall);
+        }
+    }
+    
+    @Test
+    public void testExactMatchRankedFirst() throws Exception {
+        HashingEmbeddingProvider provider = new HashingEmbeddingProvider(256);
+        try (HnswIndex index = HnswIndex.open(directory, 256, 16, 100)) {
+            index.upsert(1, provider.embed("2023年度财务报表审计报告"));
+            index.upsert(2, provider.embed("员工差旅费用报销制度"));
+            index.upsert(3, provider.embed("固定资产折旧方法说明"));
+            
+            List<HnswIndex.SearchResult> results = index.search(provider.embed("差旅报销"), 3, 16);
+            assertEquals(2L, results.get(0).getId());
+            assertTrue(results.get(0).getScore() > results.get(1).getScore());
+        }
+    }
+    
+    @Test
+    public void testUpsertReplacesAndRemoveHides() throws Exception {
+        float[][] vectors = randomVectors(200, 3);
+        try (HnswIndex index = HnswIndex.open(directory, DIMENSION, 8, 50)) {
+            for (int i = 0; i < vectors.length; i++) {
+                index.upsert(i, vectors[i]);
+            }
+            index.upsert(7, vectors[100]);
+            assertEquals(200, index.size());
+            
+            List<HnswIndex.SearchResult> results = index.search(vectors[100], 2, 32);
+            Set<Long> ids = new HashSet<>();
+            results.forEach(result -> ids.add(result.getId()));
+            assertEquals(Set.of(7L, 100L), ids);
+            
+            assertTrue(index.remove(100));
+            assertFalse(index.remove(100));
+            assertEquals(7L, index.search(vectors[100], 1, 32).get(0).getId());
+            assertEquals(199, index.size());
+        }
+    }
+    
+    @Test
+    public void testReopenWithCheckpointAndReplay() throws Exception {
+        float[][] vectors = randomVectors(1000, 4);
+        HnswIndex index = HnswIndex.open(directory, DIMENSION, 16, 100);
+        for (int i = 0; i < 600; i++) {
+            index.upsert(i, vectors[i]);
+        }
+        index.checkpoint();
+        // 快照之后写入的向量和删除标记只在向量文件中
+        for (int i = 600; i < vectors.length; i++) {
+            index.upsert(i, vectors[i]);
+        }
+        index.remove(5);
+        index.remove(700);
+        float[][] queries = randomVectors(20, 5);
+        List<List<HnswIndex.SearchResult>> before = Arrays.stream(queries)
+            .map(query -> index.search(query, 10, 64))
+            .toList();
+        // 模拟崩溃：不写最终快照
+        closeWithoutCheckpoint(index);
+        
+        try (HnswIndex reopened = HnswIndex.open(directory, DIMENSION, 16, 100)) {
+            assertEquals(998, reopened.size());
+            assertFalse(reopened.contains(5));
+            assertFalse(reopened.contains(700));
+            assertTrue(reopened.contains(999));
+            
+            int same = 0;
+            for (int q = 0; q < queries.length; q++) {
+                Set<Long> expected = new HashSet<>();
+                before.get(q).forEach(result -> expected.add(result.getId()));
+                for (HnswIndex.SearchResult result : reopened.search(queries[q], 10, 64)) {
+                    assertNotEquals(5L, result.getId());
+                    assertNotEquals(700L, result.getId());
+                    if (expected.contains(result.getId())) {
+                        same++;
+                    }
+                }
+            }
+            assertTrue(same > queries.length * 10 * 0.9, "重新打开后结果差异过大：" + same);
+        }
+    }
+    
+    @Test
+    public void testDimensionMismatchRejected() throws Exception {
+        try (HnswIndex index = HnswIndex.open(directory, DIMENSION, 16, 100)) {
+            index.upsert(1, randomVectors(1, 6)[0]);
+        }
+        assertThrows(Exception.class, () -> HnswIndex.open(directory, DIMENSION * 2, 16, 100));
+        assertTrue(Files.exists(directory.resolve("graph.bin")));
+    }
+    
+    /**
+     * 只刷向量文件，不写图快照
+     */
+    private void closeWithoutCheckpoint(HnswIndex index) throws Exception {
+        Path graph = directory.resolve("graph.bin");
+        Path saved = directory.resolve("graph.saved");
+        Files.copy(graph, saved);
+        index.close();
+        Files.move(saved, graph, StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    private static Set<Long> bruteForce(float[][] vectors, float[] query, int k) {
+        float[] q = normalize(query);
+        Long[] ids = new Long[vectors.length];
+        double[] scores = new double[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            ids[i] = (long) i;
+            float[] v = normalize(vectors[i]);
+            for (int d = 0; d < DIMENSION; d++) {
+                scores[i] += v[d] * q[d];
+            }
+        }
+        Arrays.sort(ids, (a, b) -> Double.compare(scores[b.intValue()], scores[a.intValue()]));
+        return new HashSet<>(Arrays.asList(ids).subList(0, k));
+    }
+    
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / Math.sqrt(norm));
+        }
+        return normalized;
+    }
+    
+    private static float[][] randomVectors(int count, long seed) {
+        Random random = new Random(seed);
+        float[][] vectors = new float[count][DIMENSION];
+        for (float[] vector : vectors) {
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+}
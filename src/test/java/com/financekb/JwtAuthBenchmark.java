@@ -0,0 +1,72 @@
+package com.financekb;
+
+import com.financekb.common.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.function.ToLongFunction;
+
+/**
+ * 单次请求认证开销对比
+ * 原实现：每次请求解析三次Token，每次都重新构建密钥和解析器；
+ * 现实现：密钥和解析器只构建一次，解析一次，已验证的Token走缓存。
+ * 类名不以Test结尾，不随构建执行，需要时手动运行：
+ * mvn test -Dtest=JwtAuthBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+ */
+public class JwtAuthBenchmark {
+    
+    private static final String SECRET = "finance-kb-secret-key-2024-very-long-key-for-security";
+    private static final int WARMUP = 50_000;
+    private static final int ITERATIONS = 200_000;
+    
+    @Test
+    public void compareAuthCost() {
+        JwtUtil uncached = new JwtUtil(SECRET, 3600_000L, 0);
+        JwtUtil cached = new JwtUtil(SECRET, 3600_000L, 10_000);
+        String token = uncached.generateToken(1L, "admin");
+        
+        System.out.println("========================================");
+        System.out.println("每次请求认证耗时（纳秒/次）");
+        System.out.println("========================================");
+        report("原实现（3次解析+重建密钥）", token, JwtAuthBenchmark::legacyAuth);
+        report("单次解析（预构建解析器）  ", token, t -> uncached.parseToken(t).getUserId());
+        report("单次解析+已验证缓存      ", token, t -> cached.parseToken(t).getUserId());
+    }
+    
+    private void report(String name, String token, ToLongFunction<String> auth) {
+        long blackhole = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            blackhole += auth.applyAsLong(token);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            blackhole += auth.applyAsLong(token);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%s  %10.0f ns/op  (%d)%n", name, (double) elapsed / ITERATIONS, blackhole % 10);
+    }
+    
+    /**
+     * 原过滤器逻辑：isTokenExpired、getUserIdFromToken、getUsernameFromToken 各解析一次
+     */
+    private static long legacyAuth(String token) {
+        boolean expired = legacyClaims(token).getExpiration().before(new Date());
+        Long userId = legacyClaims(token).get("userId", Long.class);
+        String username = legacyClaims(token).getSubject();
+        return expired || username == null ? 0 : userId;
+    }
+    
+    private static Claims legacyClaims(String token) {
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        return Jwts.parser()
+                .verifyWith(key)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+}
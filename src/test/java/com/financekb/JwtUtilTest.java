@@ -0,0 +1,61 @@
+package com.financekb;
+
+import com.financekb.common.JwtUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JWT解析测试
+ */
+public class JwtUtilTest {
+    
+    private static final String SECRET = "finance-kb-secret-key-2024-very-long-key-for-security";
+    
+    @Test
+    public void testParseToken() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 60000L, 100);
+        String token = jwtUtil.generateToken(42L, "alice");
+        
+        JwtUtil.TokenPrincipal principal = jwtUtil.parseToken(token);
+        assertNotNull(principal);
+        assertEquals(42L, principal.getUserId());
+        assertEquals("alice", principal.getUsername());
+        assertTrue(principal.getExpiresAt() > System.currentTimeMillis());
+        
+        // 第二次命中缓存
+        assertSame(principal, jwtUtil.parseToken(token));
+    }
+    
+    @Test
+    public void testIssuedAtHasMillisecondPrecision() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 60000L, 100);
+        long before = System.currentTimeMillis();
+        String token = jwtUtil.generateToken(42L, "alice");
+        long after = System.currentTimeMillis();
+        
+        // 用户吊销时间按毫秒比较，同一秒内吊销后重新登录的Token不能被判为吊销前签发
+        long issuedAt = jwtUtil.parseToken(token).getIssuedAt();
+        assertTrue(issuedAt >= before && issuedAt <= after);
+    }
+    
+    @Test
+    public void testRejectsInvalidToken() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 60000L, 100);
+        String token = jwtUtil.generateToken(42L, "alice");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        
+        assertNull(jwtUtil.parseToken(tampered));
+        assertNull(jwtUtil.parseToken("not-a-jwt"));
+        assertNull(new JwtUtil(SECRET + "-other", 60000L, 100).parseToken(token));
+    }
+    
+    @Test
+    public void testRejectsExpiredToken() {
+        JwtUtil jwtUtil = new JwtUtil(SECRET, -1000L, 100);
+        String token = jwtUtil.generateToken(42L, "alice");
+        
+        assertNull(jwtUtil.parseToken(token));
+        assertTrue(jwtUtil.isTokenExpired(token));
+    }
+}
@@ -0,0 +1,82 @@
+package com.financekb;
+
+import com.financekb.dto.LastLoginRecord;
+import com.financekb.mapper.SysUserMapper;
+import com.financekb.service.LastLoginService;
+import com.financekb.service.UserCacheService;
+import com.financekb.vo.UserVO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * 登录信息合并回写测试
+ */
+public class LastLoginServiceTest {
+    
+    @Test
+    public void testCoalescesToLatestLogin() {
+        SysUserMapper mapper = mock(SysUserMapper.class);
+        List<LastLoginRecord> written = new ArrayList<>();
+        when(mapper.updateLastLogin(anyList())).thenAnswer(invocation -> {
+            written.addAll(invocation.getArgument(0));
+            return 1;
+        });
+        LastLoginService service = new LastLoginService(mapper, mock(UserCacheService.class));
+        
+        LocalDateTime base = LocalDateTime.of(2024, 1, 31, 9, 0);
+        service.record(1L, base, "10.0.0.1");
+        service.record(1L, base.plusMinutes(5), "10.0.0.2");
+        // 乱序到达的旧记录不覆盖新记录
+        service.record(1L, base.plusMinutes(1), "10.0.0.3");
+        service.record(2L, base, "10.0.0.4");
+        
+        UserVO vo = new UserVO();
+        vo.setId(1L);
+        vo.setLastLoginTime(base.minusDays(1));
+        service.applyPending(vo);
+        assertEquals(base.plusMinutes(5), vo.getLastLoginTime());
+        
+        service.flush();
+        
+        verify(mapper, times(1)).updateLastLogin(anyList());
+        assertEquals(2, written.size());
+        LastLoginRecord first = written.stream().filter(r -> r.getUserId() == 1L).findFirst().orElseThrow();
+        assertEquals(base.plusMinutes(5), first.getLoginTime());
+        assertEquals("10.0.0.2", first.getLoginIp());
+        
+        service.flush();
+        verify(mapper, times(1)).updateLastLogin(anyList());
+    }
+    
+    @Test
+    public void testFailedFlushIsRetried() {
+        SysUserMapper mapper = mock(SysUserMapper.class);
+        when(mapper.updateLastLogin(anyList()))
+            .thenThrow(new RuntimeException("db down"))
+            .thenReturn(1);
+        LastLoginService service = new LastLoginService(mapper, mock(UserCacheService.class));
+        
+        LocalDateTime base = LocalDateTime.of(2024, 1, 31, 9, 0);
+        service.record(1L, base, "10.0.0.1");
+        service.flush();
+        
+        UserVO vo = new UserVO();
+        vo.setId(1L);
+        service.applyPending(vo);
+        assertEquals(base, vo.getLastLoginTime());
+        
+        service.flush();
+        verify(mapper, times(2)).updateLastLogin(anyList());
+        UserVO after = new UserVO();
+        after.setId(1L);
+        service.applyPending(after);
+        assertNull(after.getLastLoginTime());
+    }
+}
@@ -0,0 +1,213 @@
+package com.financekb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.financekb.client.ChatCompletion;
+import com.financekb.client.ChatMessage;
+import com.financekb.client.ChatStreamListener;
+import com.financekb.client.OpenAIClient;
+import com.financekb.client.OpenAIException;
+import com.financekb.config.OpenAIConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OpenAI客户端测试（本地模拟服务，不访问网络）
+ */
+public class OpenAIClientTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private HttpServer server;
+
+    private OpenAIClient client;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        OpenAIConfig config = new OpenAIConfig();
+        config.setApiKey("test-key");
+        config.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        config.setModel("test-model");
+        config.setTimeout(5000);
+        config.setRetryBaseDelay(1L);
+        config.setEmbeddingBatchDelay(50L);
+        client = new OpenAIClient(config, objectMapper, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        client.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testIdenticalCompletionsAreCoalesced() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        server.createContext("/chat/completions", exchange -> {
+            hits.incrementAndGet();
+            await(release);
+            respond(exchange, 200, Map.of(), "{\"choices\":[{\"message\":{\"content\":\"借贷必相等\"}}],"
+                + "\"usage\":{\"total_tokens\":12}}");
+        });
+
+        List<ChatMessage> messages = List.of(new ChatMessage(ChatMessage.ROLE_USER, "什么是复式记账"));
+        CompletableFuture<ChatCompletion> first = client.complete(messages);
+        CompletableFuture<ChatCompletion> second = client.complete(messages);
+        release.countDown();
+
+        assertEquals("借贷必相等", first.get(5, TimeUnit.SECONDS).getContent());
+        assertEquals(12, second.get(5, TimeUnit.SECONDS).getTokenUsage());
+        assertEquals(1, hits.get());
+
+        // 上一次调用已结束，再次请求重新发起
+        client.complete(messages).get(5, TimeUnit.SECONDS);
+        assertEquals(2, hits.get());
+    }
+
+    @Test
+    public void testEmbeddingsAreBatched() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        server.createContext("/embeddings", exchange -> {
+            JsonNode input = objectMapper.readTree(exchange.getRequestBody()).path("input");
+            batchSizes.add(input.size());
+            StringBuilder data = new StringBuilder();
+            for (int i = 0; i < input.size(); i++) {
+                data.append(i == 0 ? "" : ",")
+                    .append("{\"index\":").append(i)
+                    .append(",\"embedding\":[").append(input.get(i).asText().length()).append(",0.5]}");
+            }
+            respond(exchange, 200, Map.of(), "{\"data\":[" + data + "]}");
+        });
+
+        CompletableFuture<List<float[]>> batch = client.embedAll(List.of("a", "bb", "ccc"));
+        CompletableFuture<float[]> single = client.embed("dddd");
+        CompletableFuture<float[]> duplicate = client.embed("bb");
+
+        List<float[]> vectors = batch.get(5, TimeUnit.SECONDS);
+        assertEquals(3, vectors.size());
+        assertEquals(1f, vectors.get(0)[0]);
+        assertEquals(3f, vectors.get(2)[0]);
+        assertEquals(4f, single.get(5, TimeUnit.SECONDS)[0]);
+        assertEquals(2f, duplicate.get(5, TimeUnit.SECONDS)[0]);
+        assertEquals(List.of(4), batchSizes);
+    }
+
+    @Test
+    public void testRetryHonorsRetryAfter() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        server.createContext("/chat/completions", exchange -> {
+            if (hits.incrementAndGet() == 1) {
+                respond(exchange, 429, Map.of("retry-after-ms", "300"), "{\"error\":\"rate limited\"}");
+            } else {
+                respond(exchange, 200, Map.of(), "{\"choices\":[{\"message\":{\"content\":\"ok\"}}]}");
+            }
+        });
+
+        long start = System.nanoTime();
+        ChatCompletion completion = client.complete(List.of(new ChatMessage(ChatMessage.ROLE_USER, "hi")))
+            .get(5, TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("ok", completion.getContent());
+        assertEquals(2, hits.get());
+        assertTrue(elapsed >= 300, "重试应等待服务端要求的时间，实际" + elapsed + "ms");
+    }
+
+    @Test
+    public void testRetryAfterBeyondMaxDelayFails() {
+        AtomicInteger hits = new AtomicInteger();
+        server.createContext("/chat/completions", exchange -> {
+            hits.incrementAndGet();
+            respond(exchange, 429, Map.of("Retry-After", "120"), "{\"error\":\"quota\"}");
+        });
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+            () -> client.complete(List.of(new ChatMessage(ChatMessage.ROLE_USER, "hi"))).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(OpenAIException.class, error.getCause());
+        assertEquals(429, ((OpenAIException) error.getCause()).getStatusCode());
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    public void testStreamRetriedBeforeFirstToken() throws Exception {
+        AtomicInteger hits = new AtomicInteger();
+        server.createContext("/chat/completions", exchange -> {
+            if (hits.incrementAndGet() == 1) {
+                respond(exchange, 503, Map.of(), "busy");
+                return;
+            }
+            respond(exchange, 200, Map.of("Content-Type", "text/event-stream"),
+                "data: {\"choices\":[{\"delta\":{\"content\":\"资产\"}}]}\n\n"
+                    + "data: {\"choices\":[{\"delta\":{\"content\":\"=负债+权益\"}}]}\n\n"
+                    + "data: {\"choices\":[],\"usage\":{\"total_tokens\":7}}\n\n"
+                    + "data: [DONE]\n\n");
+        });
+
+        List<String> tokens = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> done = new CompletableFuture<>();
+        client.streamChat(List.of(new ChatMessage(ChatMessage.ROLE_USER, "会计恒等式")), new ChatStreamListener() {
+            @Override
+            public void onToken(String token) {
+                tokens.add(token);
+            }
+
+            @Override
+            public void onComplete(String content, Integer tokenUsage) {
+                done.complete(content + "/" + tokenUsage);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                done.completeExceptionally(error);
+            }
+        });
+
+        assertEquals("资产=负债+权益/7", done.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("资产", "=负债+权益"), tokens);
+        assertEquals(2, hits.get());
+    }
+
+    private static void respond(HttpExchange exchange, int status, Map<String, String> headers, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        headers.forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.financekb;
+
+import com.financekb.service.PasswordHashService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 密码哈希线程池测试
+ */
+public class PasswordHashServiceTest {
+    
+    private ThreadPoolTaskExecutor executor;
+    
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+    
+    @Test
+    public void testEncodeAndMatchesOffRequestThread() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PasswordHashService service = new PasswordHashService(new BCryptPasswordEncoder(4), newExecutor(2, 4), registry);
+        
+        String encoded = service.encode("secret123").join();
+        assertTrue(service.matches("secret123", encoded).join());
+        assertFalse(service.matches("wrong", encoded).join());
+        
+        assertEquals(1, registry.get("auth.password.hash").tag("operation", "encode").timer().count());
+        assertEquals(2, registry.get("auth.password.hash").tag("operation", "matches").timer().count());
+    }
+    
+    @Test
+    public void testRejectsWhenSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blockingEncoder = new BCryptPasswordEncoder(4) {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.encode(rawPassword);
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PasswordHashService service = new PasswordHashService(blockingEncoder, newExecutor(1, 1), registry);
+        
+        CompletableFuture<String> running = service.encode("a");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = service.encode("b");
+        assertEquals(1.0, registry.get("auth.password.hash.queue").gauge().value());
+        
+        assertThrows(RejectedExecutionException.class, () -> service.encode("c"));
+        assertEquals(1.0, registry.get("auth.password.hash.rejected").counter().count());
+        
+        release.countDown();
+        assertNotNull(running.get(5, TimeUnit.SECONDS));
+        assertNotNull(queued.get(5, TimeUnit.SECONDS));
+    }
+    
+    private ThreadPoolTaskExecutor newExecutor(int threads, int queueCapacity) {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
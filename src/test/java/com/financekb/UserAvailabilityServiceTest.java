@@ -0,0 +1,51 @@
+package com.financekb;
+
+import com.financekb.entity.SysUser;
+import com.financekb.mapper.SysUserMapper;
+import com.financekb.service.UserAvailabilityService;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 用户名/邮箱可用性检查测试
+ */
+public class UserAvailabilityServiceTest {
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDatabaseOnlyCheckedOnPossibleHit() {
+        SysUserMapper mapper = mock(SysUserMapper.class);
+        SysUser alice = new SysUser();
+        alice.setId(1L);
+        alice.setUsername("alice");
+        alice.setEmail("alice@example.com");
+        when(mapper.selectIdentities(eq(0L), anyInt())).thenReturn(List.of(alice));
+        when(mapper.existsByUsername(anyString())).thenAnswer(i -> "alice".equalsIgnoreCase(i.getArgument(0)));
+        UserAvailabilityService service = new UserAvailabilityService(mapper, mock(RedisTemplate.class),
+            mock(RedisMessageListenerContainer.class), 1000, 0.001);
+        
+        // 过滤器构建前直接查库
+        assertTrue(service.isUsernameAvailable("bob"));
+        verify(mapper, times(1)).existsByUsername("bob");
+        
+        service.rebuild();
+        
+        assertTrue(service.isUsernameAvailable("carol"));
+        verify(mapper, never()).existsByUsername("carol");
+        
+        // 忽略大小写命中后查库确认
+        assertFalse(service.isUsernameAvailable("Alice"));
+        verify(mapper, times(1)).existsByUsername("Alice");
+        
+        service.onRegistered("dave", null);
+        service.isUsernameAvailable("dave");
+        verify(mapper, times(1)).existsByUsername("dave");
+    }
+}
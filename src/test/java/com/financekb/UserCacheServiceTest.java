@@ -0,0 +1,77 @@
+package com.financekb;
+
+import com.financekb.config.RedisConfig;
+import com.financekb.entity.SysUser;
+import com.financekb.mapper.SysUserMapper;
+import com.financekb.service.UserCacheService;
+import com.financekb.vo.UserVO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 用户信息两级缓存测试
+ */
+public class UserCacheServiceTest {
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReadThroughAndInvalidation() {
+        SysUserMapper mapper = mock(SysUserMapper.class);
+        SysUser user = new SysUser();
+        user.setId(1L);
+        user.setUsername("alice");
+        when(mapper.selectById(1L)).thenReturn(user);
+        
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, Object> valueOps = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        doReturn(RedisSerializer.json()).when(redisTemplate).getValueSerializer();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        UserCacheService service = new UserCacheService(mapper, redisTemplate,
+            mock(RedisMessageListenerContainer.class), registry, 100, 10, 30);
+        
+        UserVO first = service.get(1L);
+        first.setNickname("changed");
+        UserVO second = service.get(1L);
+        
+        // 只回源一次，且返回副本
+        assertEquals("alice", second.getUsername());
+        assertNull(second.getNickname());
+        verify(mapper, times(1)).selectById(1L);
+        verify(valueOps, times(1)).set(eq("user:profile:1"), any(UserVO.class), eq(30L), any());
+        assertEquals(1.0, registry.get("user.profile.redis").tag("result", "miss").counter().count());
+        
+        // 其他节点的失效消息清除本地缓存
+        byte[] body = RedisSerializer.json().serialize("3,1");
+        service.onMessage(new DefaultMessage("user:profile:evict".getBytes(), body), null);
+        service.get(1L);
+        verify(mapper, times(2)).selectById(1L);
+    }
+    
+    @Test
+    public void testRedisSerializerSupportsJavaTime() {
+        RedisTemplate<String, Object> template = new RedisConfig().redisTemplate(mock(RedisConnectionFactory.class));
+        UserVO vo = new UserVO();
+        vo.setId(1L);
+        vo.setLastLoginTime(LocalDateTime.of(2024, 1, 31, 9, 30));
+        
+        @SuppressWarnings("unchecked")
+        RedisSerializer<Object> serializer = (RedisSerializer<Object>) template.getValueSerializer();
+        Object restored = serializer.deserialize(serializer.serialize(vo));
+        
+        assertInstanceOf(UserVO.class, restored);
+        assertEquals(vo.getLastLoginTime(), ((UserVO) restored).getLastLoginTime());
+    }
+}
@@ -0,0 +1,74 @@
+package com.financekb;
+
+import com.financekb.vector.HnswIndex;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 向量索引构建与搜索耗时
+ * 规模通过 -Dvector.size 指定（默认20万，百万级构建需数分钟），维度256。
+ * 类名不以Test结尾，不随构建执行，需要时手动运行：
+ * mvn test -Dtest=VectorSearchBenchmark -Dsurefire.failIfNoSpecifiedTests=false -Dvector.size=1000000
+ */
+public class VectorSearchBenchmark {
+    
+    private static final int DIMENSION = 256;
+    private static final int QUERIES = 1000;
+    
+    @Test
+    public void searchLatency() throws Exception {
+        int size = Integer.getInteger("vector.size", 200_000);
+        Path directory = Files.createTempDirectory("vector-benchmark");
+        Random random = new Random(1);
+        
+        long buildStart = System.nanoTime();
+        try (HnswIndex index = HnswIndex.open(directory, DIMENSION, 16, 100)) {
+            for (int i = 0; i < size; i++) {
+                index.upsert(i, randomVector(random));
+            }
+            index.checkpoint();
+            long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+            
+            float[][] queries = new float[QUERIES][];
+            for (int i = 0; i < QUERIES; i++) {
+                queries[i] = randomVector(random);
+            }
+            long[] latencies = new long[QUERIES];
+            long blackhole = 0;
+            for (float[] query : queries) {
+                blackhole += index.search(query, 10, 64).size();
+            }
+            for (int i = 0; i < QUERIES; i++) {
+                long start = System.nanoTime();
+                blackhole += index.search(queries[i], 10, 64).size();
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            
+            System.out.println("========================================");
+            System.out.println("向量数: " + size + "，维度: " + DIMENSION);
+            System.out.println("构建耗时: " + buildMillis + " ms");
+            System.out.printf("搜索 top10 (ef=64): p50=%.3f ms, p99=%.3f ms%n",
+                latencies[QUERIES / 2] / 1e6, latencies[QUERIES * 99 / 100] / 1e6);
+            System.out.println("(" + blackhole + ")");
+            System.out.println("========================================");
+        } finally {
+            try (var files = Files.list(directory)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+    
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
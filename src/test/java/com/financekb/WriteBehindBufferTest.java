@@ -0,0 +1,53 @@
+package com.financekb;
+
+import com.financekb.common.WriteBehindBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 合并回写缓冲测试
+ */
+public class WriteBehindBufferTest {
+    
+    @Test
+    public void testFlushesInBatches() {
+        List<List<Integer>> written = new ArrayList<>();
+        WriteBehindBuffer<String, Integer> buffer = new WriteBehindBuffer<>("test", Integer::sum, written::add);
+        
+        for (int i = 0; i < 5; i++) {
+            buffer.add("k" + i, 1);
+        }
+        buffer.add("k0", 2);
+        assertEquals(3, buffer.get("k0"));
+        
+        buffer.flush(2);
+        
+        assertEquals(3, written.size());
+        assertEquals(7, written.stream().flatMap(List::stream).mapToInt(Integer::intValue).sum());
+        assertNull(buffer.get("k0"));
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedBatchMergesWithNewerWrites() {
+        // 合并函数保留新值：失败的旧值放回时不能覆盖回写期间写入的新值
+        List<String> seen = new ArrayList<>();
+        WriteBehindBuffer<String, String>[] holder = new WriteBehindBuffer[1];
+        holder[0] = new WriteBehindBuffer<>("test", (older, newer) -> newer, batch -> {
+            holder[0].add("k", "new");
+            seen.add(holder[0].get("k"));
+            throw new IllegalStateException("db down");
+        });
+        WriteBehindBuffer<String, String> buffer = holder[0];
+        
+        buffer.add("k", "old");
+        buffer.flush(10);
+        
+        assertEquals(List.of("new"), seen);
+        assertEquals("new", buffer.get("k"));
+    }
+}